@@ -5,9 +5,9 @@ import com.library.domain.UserRole;
 import com.library.common.LibraryException;
 import com.library.common.AuthService;
 import com.library.repository.UserRepository;
+import com.library.support.IdGenerator;
 import java.util.Collection;
 import java.util.Optional;
-import java.util.UUID;
 //ooooo
 /**
  * Service that provides administrative features such as creating admin
@@ -50,7 +50,7 @@ public class AdminService {
     public User registerAdmin(String username, String name, String password) {
         ensureUsernameAvailable(username);
         User admin = new User(
-            UUID.randomUUID().toString(), 
+            IdGenerator.newId(), 
             username, 
             name, 
             UserRole.ADMIN, 
@@ -0,0 +1,97 @@
+package com.library.circulation;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Immutable fact about a circulation state change.
+ *
+ * <p>Events are appended to the {@link CirculationLog} and never modified afterwards; every
+ * projection (availability, active loans, balances) is derived from them.</p>
+ */
+public sealed interface CirculationEvent
+    permits CirculationEvent.Borrowed, CirculationEvent.Renewed, CirculationEvent.Returned,
+        CirculationEvent.FinePaid {
+
+  /** @return ID of the user the event concerns */
+  String userId();
+
+  /** @return business date on which the event happened */
+  LocalDate date();
+
+  /**
+   * A media item was checked out.
+   *
+   * @param loanId ID of the new loan
+   * @param userId borrowing user
+   * @param mediaId borrowed media item
+   * @param date checkout date
+   * @param dueDate date the item must be returned by
+   */
+  record Borrowed(String loanId, String userId, String mediaId, LocalDate date, LocalDate dueDate)
+      implements CirculationEvent {
+    public Borrowed {
+      Objects.requireNonNull(loanId, "loanId");
+      Objects.requireNonNull(userId, "userId");
+      Objects.requireNonNull(mediaId, "mediaId");
+      Objects.requireNonNull(date, "date");
+      Objects.requireNonNull(dueDate, "dueDate");
+    }
+  }
+
+  /**
+   * A loan was extended.
+   *
+   * @param loanId ID of the renewed loan
+   * @param userId borrowing user
+   * @param mediaId borrowed media item
+   * @param date renewal date
+   * @param dueDate new due date
+   */
+  record Renewed(String loanId, String userId, String mediaId, LocalDate date, LocalDate dueDate)
+      implements CirculationEvent {
+    public Renewed {
+      Objects.requireNonNull(loanId, "loanId");
+      Objects.requireNonNull(userId, "userId");
+      Objects.requireNonNull(mediaId, "mediaId");
+      Objects.requireNonNull(date, "date");
+      Objects.requireNonNull(dueDate, "dueDate");
+    }
+  }
+
+  /**
+   * A loan was closed.
+   *
+   * @param loanId ID of the returned loan
+   * @param userId borrowing user
+   * @param mediaId returned media item
+   * @param date return date
+   * @param fine fine charged for late return, zero if on time
+   */
+  record Returned(String loanId, String userId, String mediaId, LocalDate date, BigDecimal fine)
+      implements CirculationEvent {
+    public Returned {
+      Objects.requireNonNull(loanId, "loanId");
+      Objects.requireNonNull(userId, "userId");
+      Objects.requireNonNull(mediaId, "mediaId");
+      Objects.requireNonNull(date, "date");
+      Objects.requireNonNull(fine, "fine");
+    }
+  }
+
+  /**
+   * A user paid (part of) their outstanding fines.
+   *
+   * @param userId paying user
+   * @param date payment date
+   * @param amount amount paid, always positive
+   */
+  record FinePaid(String userId, LocalDate date, BigDecimal amount) implements CirculationEvent {
+    public FinePaid {
+      Objects.requireNonNull(userId, "userId");
+      Objects.requireNonNull(date, "date");
+      Objects.requireNonNull(amount, "amount");
+    }
+  }
+}
@@ -0,0 +1,254 @@
+package com.library.circulation;
+
+import com.library.domain.Loan;
+import com.library.domain.User;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Append-only log of circulation events with incrementally maintained projections.
+ *
+ * <p>Every appended event is folded into the live {@link CirculationState}, so availability,
+ * active-loan and balance lookups are single map reads. Every {@code snapshotInterval} events
+ * a copy of the state is kept; rebuilding the state as of any sequence number replays at most
+ * {@code snapshotInterval} events on top of the nearest snapshot instead of the whole log.
+ * Only the latest {@code retainedSnapshots} copies are kept; states older than those are
+ * replayed from the oldest retained event.</p>
+ *
+ * <p>The log holds at most about {@code retainedEvents} events: once it grows past that, the
+ * events before the oldest snapshot that keeps it within the limit are dropped and that
+ * snapshot becomes the replay base. States and history before the base are no longer
+ * available. {@link #reset} starts the log over from stored records, e.g. after a restore.</p>
+ *
+ * <p>Appends are serialised; projection reads are lock-free.</p>
+ */
+public class CirculationLog {
+  /** Default number of events between two snapshots. */
+  public static final int DEFAULT_SNAPSHOT_INTERVAL = 1_000;
+  /** Default number of snapshots kept besides the replay base. */
+  public static final int DEFAULT_RETAINED_SNAPSHOTS = 16;
+  /** Default number of events kept before older ones are dropped. */
+  public static final int DEFAULT_RETAINED_EVENTS = 100_000;
+
+  /**
+   * A logged event together with its position in the log.
+   *
+   * @param sequence 1-based, gap-free sequence number
+   * @param event the event
+   */
+  public record Entry(long sequence, CirculationEvent event) {
+  }
+
+  private final int snapshotInterval;
+  private final int retainedSnapshots;
+  private final int retainedEvents;
+  /** Events after the replay base, i.e. after {@code snapshots.firstKey()}. */
+  private final List<Entry> entries = new ArrayList<>();
+  private final TreeMap<Long, CirculationState> snapshots = new TreeMap<>();
+  private volatile CirculationState current = new CirculationState();
+
+  public CirculationLog() {
+    this(DEFAULT_SNAPSHOT_INTERVAL);
+  }
+
+  /**
+   * @param snapshotInterval number of events between two snapshots, must be positive
+   */
+  public CirculationLog(int snapshotInterval) {
+    this(snapshotInterval, DEFAULT_RETAINED_SNAPSHOTS);
+  }
+
+  /**
+   * @param snapshotInterval number of events between two snapshots, must be positive
+   * @param retainedSnapshots number of latest snapshots to keep, must be positive
+   */
+  public CirculationLog(int snapshotInterval, int retainedSnapshots) {
+    this(snapshotInterval, retainedSnapshots,
+        Math.max(DEFAULT_RETAINED_EVENTS, snapshotInterval));
+  }
+
+  /**
+   * @param snapshotInterval number of events between two snapshots, must be positive
+   * @param retainedSnapshots number of latest snapshots to keep, must be positive
+   * @param retainedEvents number of events to keep, at least {@code snapshotInterval}
+   */
+  public CirculationLog(int snapshotInterval, int retainedSnapshots, int retainedEvents) {
+    if (snapshotInterval <= 0) {
+      throw new IllegalArgumentException("snapshotInterval must be positive");
+    }
+    if (retainedSnapshots <= 0) {
+      throw new IllegalArgumentException("retainedSnapshots must be positive");
+    }
+    if (retainedEvents < snapshotInterval) {
+      throw new IllegalArgumentException("retainedEvents must be at least snapshotInterval");
+    }
+    this.snapshotInterval = snapshotInterval;
+    this.retainedSnapshots = retainedSnapshots;
+    this.retainedEvents = retainedEvents;
+    snapshots.put(0L, new CirculationState());
+  }
+
+  /**
+   * Appends an event and updates the projections.
+   *
+   * @param event event to record
+   * @return the logged entry
+   */
+  public synchronized Entry append(CirculationEvent event) {
+    Entry entry = new Entry(current.getSequence() + 1, event);
+    entries.add(entry);
+    current.apply(entry.sequence(), event);
+    if (entry.sequence() % snapshotInterval == 0) {
+      snapshots.put(entry.sequence(), current.copy());
+      trim();
+    }
+    return entry;
+  }
+
+  /** Drops events and snapshots beyond the retention limits. */
+  private void trim() {
+    long last = current.getSequence();
+    while (last - snapshots.firstKey() > retainedEvents) {
+      // The next snapshot becomes the replay base; the events up to it are no longer needed.
+      long base = snapshots.higherKey(snapshots.firstKey());
+      entries.subList(0, (int) (base - snapshots.firstKey())).clear();
+      snapshots.headMap(base).clear();
+    }
+    // The replay base is kept for states older than the retained snapshots.
+    while (snapshots.size() > retainedSnapshots + 1) {
+      snapshots.remove(snapshots.higherKey(snapshots.firstKey()));
+    }
+  }
+
+  /**
+   * Starts the log over from stored records, for when the repositories were filled without
+   * going through the services, such as a snapshot restore or a startup preload. Open loans
+   * and positive fine balances become the new replay base; earlier events and snapshots are
+   * dropped. Sequence numbers carry on from the last appended event.
+   *
+   * @param loans stored loans; returned ones are skipped
+   * @param users stored users
+   */
+  public synchronized void reset(Collection<Loan> loans, Collection<User> users) {
+    CirculationState baseline = new CirculationState();
+    baseline.seed(current.getSequence(), loans, users);
+    entries.clear();
+    snapshots.clear();
+    snapshots.put(baseline.getSequence(), baseline);
+    current = baseline.copy();
+  }
+
+  /** @return the live projections, updated on every append */
+  public CirculationState projections() {
+    return current;
+  }
+
+  /**
+   * @param mediaId media item to check
+   * @return number of copies of the item currently on loan
+   */
+  public int copiesOnLoan(String mediaId) {
+    return current.copiesOnLoan(mediaId);
+  }
+
+  /** @return sequence number of the last appended event, 0 if the log is empty */
+  public long lastSequence() {
+    return current.getSequence();
+  }
+
+  /**
+   * Rebuilds the projections as they were right after the given event.
+   *
+   * @param sequence sequence number to rebuild up to, clamped to the log length
+   * @return a detached state; later appends do not affect it
+   * @throws IllegalArgumentException if the events up to {@code sequence} were dropped
+   */
+  public synchronized CirculationState stateAt(long sequence) {
+    long base = snapshots.firstKey();
+    long target = Math.min(Math.max(sequence, 0), current.getSequence());
+    if (target < base) {
+      throw new IllegalArgumentException(
+          "Events up to " + base + " are no longer retained: " + sequence);
+    }
+    Map.Entry<Long, CirculationState> snapshot = snapshots.floorEntry(target);
+    CirculationState state = snapshot.getValue().copy();
+    for (long seq = snapshot.getKey() + 1; seq <= target; seq++) {
+      state.apply(seq, entries.get((int) (seq - base - 1)).event());
+    }
+    return state;
+  }
+
+  /**
+   * Discards the live projections and rebuilds them from the latest snapshot and the events
+   * after it. Useful after restoring a log or to verify the incremental views.
+   *
+   * @return the rebuilt live state
+   */
+  public synchronized CirculationState rebuildProjections() {
+    current = stateAt(current.getSequence());
+    return current;
+  }
+
+  /**
+   * @param fromSequence first sequence number to include
+   * @return retained entries with sequence number {@code >= fromSequence}, in order
+   */
+  public synchronized List<Entry> entriesSince(long fromSequence) {
+    long base = snapshots.firstKey();
+    int from = (int) Math.min(Math.max(fromSequence - base - 1, 0), entries.size());
+    return List.copyOf(entries.subList(from, entries.size()));
+  }
+
+  /**
+   * @param userId user to look up
+   * @return the user's retained circulation history, oldest first
+   */
+  public List<Entry> historyForUser(String userId) {
+    return filter(entry -> entry.event().userId().equals(userId));
+  }
+
+  /**
+   * @param mediaId media item to look up
+   * @return retained borrow, renewal and return events for the item, oldest first
+   */
+  public List<Entry> historyForMedia(String mediaId) {
+    return filter(entry -> mediaIdOf(entry.event()).equals(mediaId));
+  }
+
+  /** @return number of snapshots currently retained, including the replay base */
+  public synchronized int snapshotCount() {
+    return snapshots.size();
+  }
+
+  /** @return number of events retained in the log */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  private synchronized List<Entry> filter(Predicate<Entry> predicate) {
+    List<Entry> matches = new ArrayList<>();
+    for (Entry entry : entries) {
+      if (predicate.test(entry)) {
+        matches.add(entry);
+      }
+    }
+    return matches;
+  }
+
+  private static String mediaIdOf(CirculationEvent event) {
+    if (event instanceof CirculationEvent.Borrowed borrowed) {
+      return borrowed.mediaId();
+    }
+    if (event instanceof CirculationEvent.Renewed renewed) {
+      return renewed.mediaId();
+    }
+    if (event instanceof CirculationEvent.Returned returned) {
+      return returned.mediaId();
+    }
+    return "";
+  }
+}
@@ -0,0 +1,173 @@
+package com.library.circulation;
+
+import com.library.domain.Loan;
+import com.library.domain.User;
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Materialized views over the circulation events applied so far.
+ *
+ * <p>The views are updated incrementally, one event at a time, and are backed by concurrent
+ * maps so readers never block the single writer. Instances are only mutated through
+ * {@link #apply(long, CirculationEvent)} and {@link #seed}, which the owning {@link CirculationLog} serialises.</p>
+ */
+public class CirculationState {
+
+  /** mediaId -> IDs of the open loans on the title (one per copy out). */
+  private final Map<String, Set<String>> activeLoansByMedia = new ConcurrentHashMap<>();
+
+  /** userId -> IDs of the user's open loans. */
+  private final Map<String, Set<String>> activeLoansByUser = new ConcurrentHashMap<>();
+
+  /** userId -> outstanding fine balance, only present while non-zero. */
+  private final Map<String, BigDecimal> balances = new ConcurrentHashMap<>();
+
+  private final AtomicInteger activeLoanCount = new AtomicInteger();
+  private long sequence;
+
+  CirculationState() {
+  }
+
+  /**
+   * Folds one event into the views.
+   *
+   * @param sequence log sequence number of the event
+   * @param event event to apply
+   */
+  void apply(long sequence, CirculationEvent event) {
+    if (event instanceof CirculationEvent.Borrowed borrowed) {
+      add(activeLoansByMedia, borrowed.mediaId(), borrowed.loanId());
+      if (add(activeLoansByUser, borrowed.userId(), borrowed.loanId())) {
+        activeLoanCount.incrementAndGet();
+      }
+    } else if (event instanceof CirculationEvent.Returned returned) {
+      remove(activeLoansByMedia, returned.mediaId(), returned.loanId());
+      if (remove(activeLoansByUser, returned.userId(), returned.loanId())) {
+        activeLoanCount.decrementAndGet();
+      }
+      adjustBalance(returned.userId(), returned.fine());
+    } else if (event instanceof CirculationEvent.FinePaid paid) {
+      adjustBalance(paid.userId(), paid.amount().negate());
+    }
+    this.sequence = sequence;
+  }
+
+  /**
+   * Fills empty views from stored records instead of events.
+   *
+   * @param sequence sequence number the views stand at
+   * @param loans stored loans; returned ones are skipped
+   * @param users stored users
+   */
+  void seed(long sequence, Collection<Loan> loans, Collection<User> users) {
+    for (Loan loan : loans) {
+      if (!loan.isReturned()) {
+        add(activeLoansByMedia, loan.getMediaId(), loan.getId());
+        if (add(activeLoansByUser, loan.getUserId(), loan.getId())) {
+          activeLoanCount.incrementAndGet();
+        }
+      }
+    }
+    for (User user : users) {
+      adjustBalance(user.getId(), user.getFineBalance());
+    }
+    this.sequence = sequence;
+  }
+
+  private static boolean add(Map<String, Set<String>> index, String key, String loanId) {
+    return index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(loanId);
+  }
+
+  private static boolean remove(Map<String, Set<String>> index, String key, String loanId) {
+    boolean[] removed = new boolean[1];
+    index.computeIfPresent(key, (k, loans) -> {
+      removed[0] = loans.remove(loanId);
+      return loans.isEmpty() ? null : loans;
+    });
+    return removed[0];
+  }
+
+  private void adjustBalance(String userId, BigDecimal delta) {
+    if (delta.signum() == 0) {
+      return;
+    }
+    balances.compute(userId, (id, current) -> {
+      BigDecimal updated = current == null ? delta : current.add(delta);
+      return updated.signum() <= 0 ? null : updated;
+    });
+  }
+
+  /**
+   * Creates an independent copy of these views, used for snapshots.
+   *
+   * @return a deep copy
+   */
+  CirculationState copy() {
+    CirculationState copy = new CirculationState();
+    copyIndex(activeLoansByMedia, copy.activeLoansByMedia);
+    copyIndex(activeLoansByUser, copy.activeLoansByUser);
+    copy.activeLoanCount.set(activeLoanCount.get());
+    copy.balances.putAll(balances);
+    copy.sequence = sequence;
+    return copy;
+  }
+
+  private static void copyIndex(Map<String, Set<String>> from, Map<String, Set<String>> to) {
+    from.forEach((key, loans) -> {
+      Set<String> loansCopy = ConcurrentHashMap.newKeySet();
+      loansCopy.addAll(loans);
+      to.put(key, loansCopy);
+    });
+  }
+
+  /** @return sequence number of the last event folded into these views, 0 if none */
+  public long getSequence() {
+    return sequence;
+  }
+
+  /**
+   * @param mediaId media item to check
+   * @return number of copies of the item currently on loan
+   */
+  public int copiesOnLoan(String mediaId) {
+    Set<String> loans = activeLoansByMedia.get(mediaId);
+    return loans == null ? 0 : loans.size();
+  }
+
+  /**
+   * @param mediaId media item to look up
+   * @return read-only view of the open loan IDs on the item
+   */
+  public Set<String> activeLoansForMedia(String mediaId) {
+    Set<String> loans = activeLoansByMedia.get(mediaId);
+    return loans == null ? Set.of() : Collections.unmodifiableSet(loans);
+  }
+
+  /**
+   * @param userId user to look up
+   * @return read-only view of the user's open loan IDs
+   */
+  public Set<String> activeLoans(String userId) {
+    Set<String> loans = activeLoansByUser.get(userId);
+    return loans == null ? Set.of() : Collections.unmodifiableSet(loans);
+  }
+
+  /**
+   * @param userId user to look up
+   * @return outstanding fine balance, zero if none
+   */
+  public BigDecimal balance(String userId) {
+    return balances.getOrDefault(userId, BigDecimal.ZERO);
+  }
+
+  /** @return number of open loans across all users */
+  public int activeLoanCount() {
+    return activeLoanCount.get();
+  }
+}
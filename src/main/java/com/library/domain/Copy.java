@@ -0,0 +1,95 @@
+package com.library.domain;
+
+import java.util.Objects;
+
+/**
+ * A single physical copy of a {@link Media} title.
+ *
+ * <p>Copies are numbered from 1 within their title and carry the barcode printed on the item,
+ * which is what the circulation desk scans.</p>
+ */
+public class Copy {
+
+  /** Barcode printed on the copy; unique across the whole collection. */
+  private final String barcode;
+
+  /** ID of the title this copy belongs to. */
+  private final String mediaId;
+
+  /** 1-based number of this copy within its title. */
+  private final int copyNumber;
+
+  /**
+   * Creates a copy record.
+   *
+   * @param barcode unique barcode
+   * @param mediaId ID of the owning title
+   * @param copyNumber 1-based copy number within the title
+   */
+  public Copy(String barcode, String mediaId, int copyNumber) {
+    if (copyNumber < 1) {
+      throw new IllegalArgumentException("copyNumber must be at least 1");
+    }
+    this.barcode = Objects.requireNonNull(barcode, "barcode");
+    this.mediaId = Objects.requireNonNull(mediaId, "mediaId");
+    this.copyNumber = copyNumber;
+  }
+
+  /**
+   * Builds the default barcode for a copy, e.g. {@code B1-003}.
+   *
+   * @param mediaId ID of the owning title
+   * @param copyNumber 1-based copy number
+   * @return the barcode
+   */
+  public static String barcodeFor(String mediaId, int copyNumber) {
+    return String.format("%s-%03d", mediaId, copyNumber);
+  }
+
+  /**
+   * Reads the copy number back from a barcode built by {@link #barcodeFor}.
+   *
+   * @param mediaId ID of the owning title
+   * @param barcode barcode to read
+   * @return the copy number, or 0 if the barcode is not a default barcode of the title
+   */
+  public static int copyNumberOf(String mediaId, String barcode) {
+    String prefix = mediaId + "-";
+    if (barcode == null || !barcode.startsWith(prefix)) {
+      return 0;
+    }
+    try {
+      int copyNumber = Integer.parseInt(barcode.substring(prefix.length()));
+      return barcodeFor(mediaId, copyNumber).equals(barcode) ? copyNumber : 0;
+    } catch (NumberFormatException ex) {
+      return 0;
+    }
+  }
+
+  public String getBarcode() {
+    return barcode;
+  }
+
+  public String getMediaId() {
+    return mediaId;
+  }
+
+  public int getCopyNumber() {
+    return copyNumber;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Copy copy && barcode.equals(copy.barcode);
+  }
+
+  @Override
+  public int hashCode() {
+    return barcode.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return barcode;
+  }
+}
@@ -0,0 +1,133 @@
+package com.library.domain;
+
+import java.util.Arrays;
+
+/**
+ * Compact availability bitmap for the copies of one title.
+ *
+ * <p>Bit {@code n - 1} is set while copy {@code n} is on the shelf. A second-level summary
+ * word records which 64-bit words still contain a set bit, so finding any available copy
+ * touches at most two words for titles with up to 4096 copies, and checking or reserving a
+ * specific copy is a single bit operation. All methods are thread-safe.</p>
+ */
+public class CopyAvailability {
+
+  private long[] words = new long[1];
+  private long[] summary = new long[1];
+  private int totalCopies;
+  private int availableCopies;
+
+  /**
+   * Registers one more copy, initially available.
+   *
+   * @return the new copy's 1-based number
+   */
+  public synchronized int addCopy() {
+    int index = totalCopies++;
+    ensureCapacity(index);
+    set(index);
+    availableCopies++;
+    return index + 1;
+  }
+
+  /** @return number of copies registered for the title */
+  public synchronized int totalCopies() {
+    return totalCopies;
+  }
+
+  /** @return number of copies currently available */
+  public synchronized int availableCopies() {
+    return availableCopies;
+  }
+
+  /** @return true if at least one copy is available */
+  public synchronized boolean anyAvailable() {
+    return availableCopies > 0;
+  }
+
+  /**
+   * @param copyNumber 1-based copy number
+   * @return true if that copy is registered and available
+   */
+  public synchronized boolean isAvailable(int copyNumber) {
+    int index = copyNumber - 1;
+    return index >= 0 && index < totalCopies && (words[index >>> 6] & (1L << index)) != 0;
+  }
+
+  /**
+   * Reserves a specific copy.
+   *
+   * @param copyNumber 1-based copy number
+   * @return true if the copy was available and is now reserved
+   */
+  public synchronized boolean reserve(int copyNumber) {
+    if (!isAvailable(copyNumber)) {
+      return false;
+    }
+    clear(copyNumber - 1);
+    availableCopies--;
+    return true;
+  }
+
+  /**
+   * Reserves the lowest-numbered available copy.
+   *
+   * @return the reserved copy's number, or 0 if none is available
+   */
+  public synchronized int reserveAny() {
+    if (availableCopies == 0) {
+      return 0;
+    }
+    for (int s = 0; s < summary.length; s++) {
+      if (summary[s] != 0) {
+        int word = (s << 6) + Long.numberOfTrailingZeros(summary[s]);
+        int index = (word << 6) + Long.numberOfTrailingZeros(words[word]);
+        clear(index);
+        availableCopies--;
+        return index + 1;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Puts a reserved copy back on the shelf. Releasing an available copy has no effect.
+   *
+   * @param copyNumber 1-based copy number
+   */
+  public synchronized void release(int copyNumber) {
+    int index = copyNumber - 1;
+    if (index < 0 || index >= totalCopies) {
+      throw new IllegalArgumentException("Unknown copy number: " + copyNumber);
+    }
+    if ((words[index >>> 6] & (1L << index)) == 0) {
+      set(index);
+      availableCopies++;
+    }
+  }
+
+  private void set(int index) {
+    int word = index >>> 6;
+    words[word] |= 1L << index;
+    summary[word >>> 6] |= 1L << word;
+  }
+
+  private void clear(int index) {
+    int word = index >>> 6;
+    words[word] &= ~(1L << index);
+    if (words[word] == 0) {
+      summary[word >>> 6] &= ~(1L << word);
+    }
+  }
+
+  private void ensureCapacity(int index) {
+    int word = index >>> 6;
+    if (word >= words.length) {
+      words = Arrays.copyOf(words, Math.max(words.length * 2, word + 1));
+      int summaryWords = (words.length + 63) >>> 6;
+      if (summaryWords > summary.length) {
+        summary = Arrays.copyOf(summary, summaryWords);
+      }
+    }
+  }
+}
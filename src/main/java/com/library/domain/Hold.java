@@ -0,0 +1,105 @@
+package com.library.domain;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * A user's reservation of a title that is currently out on loan.
+ *
+ * <p>Holds queue up per title in the order they were placed. When a copy comes back it is set
+ * aside for the oldest waiting hold, which then becomes {@link HoldStatus#READY} until its
+ * pickup deadline. Status changes are made by the hold service under the hold's monitor.</p>
+ */
+public class Hold {
+
+  private final String id;
+  private final String userId;
+  private final String mediaId;
+  private final LocalDate placedOn;
+
+  private HoldStatus status = HoldStatus.WAITING;
+
+  /** Barcode of the copy set aside, or null if copies are not tracked or not yet allocated. */
+  private String copyBarcode;
+
+  /** Last day the set-aside copy can be picked up; null while waiting. */
+  private LocalDate pickupDeadline;
+
+  /**
+   * Creates a waiting hold.
+   *
+   * @param id unique hold ID
+   * @param userId ID of the user placing the hold
+   * @param mediaId ID of the reserved title
+   * @param placedOn date the hold was placed
+   */
+  public Hold(String id, String userId, String mediaId, LocalDate placedOn) {
+    this.id = Objects.requireNonNull(id, "id");
+    this.userId = Objects.requireNonNull(userId, "userId");
+    this.mediaId = Objects.requireNonNull(mediaId, "mediaId");
+    this.placedOn = Objects.requireNonNull(placedOn, "placedOn");
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public String getUserId() {
+    return userId;
+  }
+
+  public String getMediaId() {
+    return mediaId;
+  }
+
+  public LocalDate getPlacedOn() {
+    return placedOn;
+  }
+
+  public synchronized HoldStatus getStatus() {
+    return status;
+  }
+
+  public synchronized String getCopyBarcode() {
+    return copyBarcode;
+  }
+
+  public synchronized LocalDate getPickupDeadline() {
+    return pickupDeadline;
+  }
+
+  /**
+   * Sets a copy aside for this hold if it is still waiting.
+   *
+   * @param copyBarcode barcode of the set-aside copy, may be null
+   * @param pickupDeadline last pickup day
+   * @return true if the hold was waiting and is now ready
+   */
+  public synchronized boolean markReady(String copyBarcode, LocalDate pickupDeadline) {
+    if (status != HoldStatus.WAITING) {
+      return false;
+    }
+    this.status = HoldStatus.READY;
+    this.copyBarcode = copyBarcode;
+    this.pickupDeadline = Objects.requireNonNull(pickupDeadline, "pickupDeadline");
+    return true;
+  }
+
+  /**
+   * Moves the hold from {@code expected} to {@code next}.
+   *
+   * @return true if the hold was in the expected state
+   */
+  public synchronized boolean transition(HoldStatus expected, HoldStatus next) {
+    if (status != expected) {
+      return false;
+    }
+    status = next;
+    return true;
+  }
+
+  /** @return true while the hold is waiting or ready */
+  public synchronized boolean isActive() {
+    return status == HoldStatus.WAITING || status == HoldStatus.READY;
+  }
+}
@@ -0,0 +1,17 @@
+package com.library.domain;
+
+/**
+ * Lifecycle of a {@link Hold}.
+ */
+public enum HoldStatus {
+  /** Waiting in the title's queue for a copy. */
+  WAITING,
+  /** A copy has been set aside and awaits pickup. */
+  READY,
+  /** The user borrowed the set-aside copy. */
+  FULFILLED,
+  /** The copy was not picked up in time. */
+  EXPIRED,
+  /** Withdrawn by the user. */
+  CANCELLED
+}
@@ -25,11 +25,17 @@ public class Loan {
   /** The date when the media item was checked out. */
   private final LocalDate checkoutDate;
 
-  /** The due date by which the item must be returned. */
-  private final LocalDate dueDate;
+  /** The due date by which the item must be returned; moved forward by renewals. */
+  private volatile LocalDate dueDate;
+
+  /** Number of times this loan has been renewed. */
+  private volatile int renewalCount;
+
+  /** Barcode of the physical copy handed out, or null if copies are not tracked. */
+  private final String copyBarcode;
 
   /** The actual return date, or null if not yet returned. */
-  private LocalDate returnedDate;
+  private volatile LocalDate returnedDate;
 
   /**
    * Creates a new loan record.
@@ -41,13 +47,62 @@ public class Loan {
    * @param dueDate date when the item should be returned
    */
   public Loan(String id, String userId, String mediaId, LocalDate checkoutDate, LocalDate dueDate) {
+    this(id, userId, mediaId, null, checkoutDate, dueDate);
+  }
+
+  /**
+   * Creates a new loan record for a specific physical copy.
+   *
+   * @param id unique loan ID
+   * @param userId ID of the borrowing user
+   * @param mediaId ID of the borrowed media
+   * @param copyBarcode barcode of the copy handed out, may be null
+   * @param checkoutDate date when the item was borrowed
+   * @param dueDate date when the item should be returned
+   */
+  public Loan(
+      String id,
+      String userId,
+      String mediaId,
+      String copyBarcode,
+      LocalDate checkoutDate,
+      LocalDate dueDate) {
     this.id = Objects.requireNonNull(id, "id");
     this.userId = Objects.requireNonNull(userId, "userId");
     this.mediaId = Objects.requireNonNull(mediaId, "mediaId");
+    this.copyBarcode = copyBarcode;
     this.checkoutDate = Objects.requireNonNull(checkoutDate, "checkoutDate");
     this.dueDate = Objects.requireNonNull(dueDate, "dueDate");
   }
 
+  /**
+   * Recreates a loan from stored fields, e.g. when reading loan history back from storage.
+   *
+   * @param id unique loan ID
+   * @param userId ID of the borrowing user
+   * @param mediaId ID of the borrowed media
+   * @param copyBarcode barcode of the copy handed out, may be null
+   * @param checkoutDate date when the item was borrowed
+   * @param dueDate current due date
+   * @param renewalCount number of renewals so far
+   * @param returnedDate return date, or null if still on loan
+   * @return the restored loan
+   */
+  public static Loan restore(
+      String id,
+      String userId,
+      String mediaId,
+      String copyBarcode,
+      LocalDate checkoutDate,
+      LocalDate dueDate,
+      int renewalCount,
+      LocalDate returnedDate) {
+    Loan loan = new Loan(id, userId, mediaId, copyBarcode, checkoutDate, dueDate);
+    loan.renewalCount = renewalCount;
+    loan.returnedDate = returnedDate;
+    return loan;
+  }
+
   public String getId() {
     return id;
   }
@@ -60,6 +115,13 @@ public class Loan {
     return mediaId;
   }
 
+  /**
+   * @return barcode of the copy handed out, or null if the loan is not tied to a copy
+   */
+  public String getCopyBarcode() {
+    return copyBarcode;
+  }
+
   public LocalDate getCheckoutDate() {
     return checkoutDate;
   }
@@ -68,6 +130,31 @@ public class Loan {
     return dueDate;
   }
 
+  /**
+   * @return how many times the loan has been renewed
+   */
+  public int getRenewalCount() {
+    return renewalCount;
+  }
+
+  /**
+   * Extends the loan to a new due date and counts the renewal.
+   *
+   * @param newDueDate the new due date; must be after the current one
+   * @throws IllegalStateException if the loan has already been returned
+   */
+  public synchronized void renew(LocalDate newDueDate) {
+    Objects.requireNonNull(newDueDate, "newDueDate");
+    if (isReturned()) {
+      throw new IllegalStateException("Returned loans cannot be renewed");
+    }
+    if (!newDueDate.isAfter(dueDate)) {
+      throw new IllegalArgumentException("New due date must be after " + dueDate);
+    }
+    this.dueDate = newDueDate;
+    this.renewalCount++;
+  }
+
   public LocalDate getReturnedDate() {
     return returnedDate;
   }
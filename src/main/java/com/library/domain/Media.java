@@ -49,7 +49,7 @@ public abstract class Media {
   /**
    * @return number of available copies of this media item.
    */
-  public int getQuantity() {
+  public synchronized int getQuantity() {
     return quantity;
   }
 
@@ -60,7 +60,7 @@ public abstract class Media {
    *
    * @param quantity new quantity (negative values are treated as zero)
    */
-  public void setQuantity(int quantity) {
+  public synchronized void setQuantity(int quantity) {
     if (quantity < 0) {
       quantity = 0;
     }
@@ -69,7 +69,7 @@ public abstract class Media {
   }
 
   /** @return true if the item is available to borrow */
-  public boolean isAvailable() {
+  public synchronized boolean isAvailable() {
     return available;
   }
 
@@ -79,7 +79,7 @@ public abstract class Media {
    * <p>If at least one copy is available, the quantity is decreased by one. When the quantity
    * reaches zero, {@link #isAvailable()} will start returning {@code false}.</p>
    */
-  public void markUnavailable() {
+  public synchronized void markUnavailable() {
     if (quantity > 0) {
       quantity--;
     }
@@ -93,7 +93,7 @@ public abstract class Media {
    *
    * <p>The quantity is increased by one and availability is updated accordingly.</p>
    */
-  public void markAvailable() {
+  public synchronized void markAvailable() {
     quantity++;
     if (quantity > 0) {
       available = true;
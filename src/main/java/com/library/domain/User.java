@@ -3,10 +3,10 @@ package com.library.domain;
 import java.io.Serializable;
 import java.math.BigDecimal;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents both administrators and members in the library system.
@@ -24,8 +24,9 @@ public class User implements Serializable {
     // Fine balance in NIS
     private BigDecimal fineBalance = BigDecimal.ZERO;
 
-    // Active loans stored as loan IDs (loan objects stored elsewhere)
-    private final Set<String> activeLoanIds = new HashSet<>();
+    // Active loans stored as loan IDs (loan objects stored elsewhere); concurrent borrows and
+    // returns of different titles update it at the same time.
+    private final Set<String> activeLoanIds = ConcurrentHashMap.newKeySet();
 
 
     /**
@@ -60,7 +61,7 @@ public class User implements Serializable {
         return password;
     }
 
-    public BigDecimal getFineBalance() {
+    public synchronized BigDecimal getFineBalance() {
         return fineBalance;
     }
 
@@ -90,13 +91,13 @@ public class User implements Serializable {
     }
 
 
-    public void addFine(BigDecimal amount) {
+    public synchronized void addFine(BigDecimal amount) {
         if (amount.signum() > 0) {
             fineBalance = fineBalance.add(amount);
         }
     }
 
-    public void payFine(BigDecimal amount) {
+    public synchronized void payFine(BigDecimal amount) {
         if (amount.signum() > 0) {
             fineBalance = fineBalance.subtract(amount);
             if (fineBalance.signum() < 0) {
@@ -105,7 +106,7 @@ public class User implements Serializable {
         }
     }
 
-    public boolean hasOutstandingFines() {
+    public synchronized boolean hasOutstandingFines() {
         return fineBalance.signum() > 0;
     }
 
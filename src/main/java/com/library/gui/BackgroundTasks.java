@@ -0,0 +1,166 @@
+package com.library.gui;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * Runs repository and service calls off the event dispatch thread and hands the results back
+ * to it.
+ *
+ * <p>Work runs on a small pool of daemon threads; success and failure callbacks always run on
+ * the EDT, and never for a task that was cancelled in the meantime, so a slow query can
+ * not overwrite the results of a newer one. {@link Latest} slots give "only the most recent
+ * request counts" semantics for inputs such as search fields, and {@link #debounce(int,
+ * Runnable)} coalesces bursts of keystrokes into one request.</p>
+ */
+public class BackgroundTasks implements AutoCloseable {
+
+  private static final int DEFAULT_THREADS = 4;
+
+  private final ExecutorService executor;
+  private final Executor callbackExecutor;
+
+  /** Creates a pool of daemon worker threads delivering results via the EDT. */
+  public BackgroundTasks() {
+    this(DEFAULT_THREADS);
+  }
+
+  /**
+   * Creates a pool of daemon worker threads delivering results via the EDT.
+   *
+   * @param threads number of worker threads
+   */
+  public BackgroundTasks(int threads) {
+    this(Executors.newFixedThreadPool(threads, daemonThreads()), SwingUtilities::invokeLater);
+  }
+
+  /**
+   * @param executor runs the work
+   * @param callbackExecutor runs the callbacks; the EDT in the application
+   */
+  BackgroundTasks(ExecutorService executor, Executor callbackExecutor) {
+    this.executor = executor;
+    this.callbackExecutor = callbackExecutor;
+  }
+
+  /**
+   * Runs {@code work} in the background.
+   *
+   * @param work the data access to perform
+   * @param onSuccess receives the result on the EDT unless the task was cancelled
+   * @param onFailure receives the exception on the EDT unless the task was cancelled
+   * @param <T> result type
+   * @return handle for cancelling the task
+   */
+  public <T> Task submit(
+      Callable<T> work, Consumer<? super T> onSuccess, Consumer<? super Exception> onFailure) {
+    Task task = new Task();
+    task.future = executor.submit(() -> {
+      if (task.isCancelled()) {
+        return;
+      }
+      try {
+        T result = work.call();
+        callbackExecutor.execute(() -> {
+          if (!task.isCancelled()) {
+            onSuccess.accept(result);
+          }
+        });
+      } catch (Exception ex) {
+        callbackExecutor.execute(() -> {
+          if (!task.isCancelled()) {
+            onFailure.accept(ex);
+          }
+        });
+      }
+    });
+    return task;
+  }
+
+  /** @return a new slot in which each submitted task cancels the one before it */
+  public Latest latest() {
+    return new Latest();
+  }
+
+  /**
+   * Wraps an action so that it only runs once calls have stopped for {@code delayMillis};
+   * every call restarts the wait. Must be called on the EDT.
+   *
+   * @param delayMillis quiet period before the action runs
+   * @param action action to run on the EDT
+   * @return the debounced action
+   */
+  public static Runnable debounce(int delayMillis, Runnable action) {
+    Timer timer = new Timer(delayMillis, e -> action.run());
+    timer.setRepeats(false);
+    return timer::restart;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private static ThreadFactory daemonThreads() {
+    AtomicInteger count = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, "library-gui-io-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  /** Handle of a submitted task. */
+  public static final class Task {
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+    private volatile Future<?> future;
+
+    /** Drops the task's result and interrupts it if it is still running. */
+    public void cancel() {
+      cancelled.set(true);
+      Future<?> running = future;
+      if (running != null) {
+        running.cancel(true);
+      }
+    }
+
+    /** @return true once {@link #cancel()} has been called */
+    public boolean isCancelled() {
+      return cancelled.get();
+    }
+  }
+
+  /** A slot holding at most one live task; used from the EDT. */
+  public final class Latest {
+    private Task current;
+
+    /**
+     * Cancels the previous task of this slot and submits a new one.
+     *
+     * @see BackgroundTasks#submit(Callable, Consumer, Consumer)
+     */
+    public <T> Task submit(
+        Callable<T> work, Consumer<? super T> onSuccess, Consumer<? super Exception> onFailure) {
+      cancel();
+      current = BackgroundTasks.this.submit(work, onSuccess, onFailure);
+      return current;
+    }
+
+    /** Cancels the slot's task, if any. */
+    public void cancel() {
+      if (current != null) {
+        current.cancel();
+        current = null;
+      }
+    }
+  }
+}
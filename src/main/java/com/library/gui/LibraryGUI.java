@@ -8,13 +8,21 @@ import com.library.domain.MediaType;
 import com.library.domain.Loan;
 import com.library.service.LibraryException;
 import com.library.service.BorrowService;
+import com.library.service.CatalogService;
 import com.library.repository.LoanRepository;
 import com.library.repository.MediaRepository;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
+import com.library.search.IncrementalSearch;
 import com.library.system.LibraryEnvironment;
 import com.library.support.DateProvider;
+import com.library.support.IdGenerator;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.*;
 import javax.swing.ListSelectionModel;
 import java.awt.*;
@@ -24,14 +32,30 @@ import java.text.NumberFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class LibraryGUI {
+    /** Rows fetched per page by the media tables. */
+    private static final int SEARCH_PAGE_SIZE = 100;
+
+    /** Pages each media table keeps in memory. */
+    private static final int CACHED_PAGES = 8;
+
+    /** Quiet period after the last keystroke before a search field re-runs its query. */
+    private static final int SEARCH_DEBOUNCE_MILLIS = 250;
+
+    /** Most rows shown while the user is still typing; Enter lists every match. */
+    private static final int LIVE_RESULT_CAP = 200;
+
     private final LibraryEnvironment environment;
+    /** Runs repository and service calls off the event dispatch thread. */
+    private final BackgroundTasks tasks;
     private JFrame frame;
     private JPanel currentPanel;
     private JTextField usernameField;
@@ -45,6 +69,7 @@ public class LibraryGUI {
 
     public LibraryGUI(LibraryEnvironment environment) {
         this.environment = environment;
+        this.tasks = new BackgroundTasks(environment.getConfig().guiThreads());
         initialize();
     }
     /**
@@ -279,39 +304,38 @@ public class LibraryGUI {
             return;
         }
 
-        try {
-            // Authenticate the user
-            User user = environment.getAuthService().login(username, new String(password));
-
-            // Clear the password field for security
-            passwordField.setText("");
-
-            // Show success message
-            JOptionPane.showMessageDialog(frame,
-                "Login successful! Welcome, " + user.getName() + ".",
-                "Login Successful",
-                JOptionPane.INFORMATION_MESSAGE);
-
-            // Show main dashboard with user info
-            showMainDashboard(user.getName(), user.isAdmin());
-
-        } catch (LibraryException ex) {
-            // Clear the password field on failed login
-            passwordField.setText("");
+        // Password hashing is deliberately slow, so authenticate off the EDT.
+        tasks.submit(
+            () -> environment.getAuthService().login(username, new String(password)),
+            user -> {
+                // Clear the password field for security
+                passwordField.setText("");
 
-            JOptionPane.showMessageDialog(frame,
-                "Invalid username or password. Please try again.",
-                "Login Failed",
-                JOptionPane.ERROR_MESSAGE);
-        } catch (Exception ex) {
-            // Clear the password field on error
-            passwordField.setText("");
+                // Show success message
+                JOptionPane.showMessageDialog(frame,
+                    "Login successful! Welcome, " + user.getName() + ".",
+                    "Login Successful",
+                    JOptionPane.INFORMATION_MESSAGE);
 
-            JOptionPane.showMessageDialog(frame,
-                "An error occurred: " + ex.getMessage(),
-                "Error",
-                JOptionPane.ERROR_MESSAGE);
-        }
+                // Show main dashboard with user info
+                showMainDashboard(user.getName(), user.isAdmin());
+            },
+            ex -> {
+                // Clear the password field on failed login or error
+                passwordField.setText("");
+
+                if (ex instanceof LibraryException) {
+                    JOptionPane.showMessageDialog(frame,
+                        "Invalid username or password. Please try again.",
+                        "Login Failed",
+                        JOptionPane.ERROR_MESSAGE);
+                } else {
+                    JOptionPane.showMessageDialog(frame,
+                        "An error occurred: " + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            });
     }
     
     /**
@@ -377,9 +401,7 @@ public class LibraryGUI {
         });
         
         JButton viewReportsBtn = createDashboardButton("View Reports", "📊");
-        viewReportsBtn.addActionListener(e -> {
-            JOptionPane.showMessageDialog(frame, "View Reports functionality coming soon!");
-        });
+        viewReportsBtn.addActionListener(e -> showMetricsDialog());
         
         JButton manageLoansBtn = createDashboardButton("Manage Loans", "📚");
         manageLoansBtn.addActionListener(e -> {
@@ -413,6 +435,54 @@ public class LibraryGUI {
         frame.repaint();
     }
     
+    /**
+     * Displays a snapshot of the service and repository metrics, with an option to save
+     * the snapshot as a text dump.
+     */
+    private void showMetricsDialog() {
+        JTextArea textArea = new JTextArea(environment.getMetricsRegistry().render());
+        textArea.setEditable(false);
+        textArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JButton refreshButton = new JButton("Refresh");
+        refreshButton.addActionListener(e ->
+            textArea.setText(environment.getMetricsRegistry().render()));
+
+        JButton saveButton = new JButton("Save Dump...");
+        saveButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new java.io.File("metrics.txt"));
+            if (chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION) {
+                return;
+            }
+            try {
+                environment.getMetricsRegistry().dumpTo(chooser.getSelectedFile().toPath());
+                JOptionPane.showMessageDialog(frame,
+                    "Metrics written to " + chooser.getSelectedFile().getAbsolutePath(),
+                    "Metrics Saved",
+                    JOptionPane.INFORMATION_MESSAGE);
+            } catch (Exception ex) {
+                JOptionPane.showMessageDialog(frame,
+                    "Error saving metrics: " + ex.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+            }
+        });
+
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttonPanel.add(refreshButton);
+        buttonPanel.add(saveButton);
+
+        JDialog dialog = new JDialog(frame, "System Metrics", true);
+        dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
+        dialog.setLayout(new BorderLayout());
+        dialog.add(new JScrollPane(textArea), BorderLayout.CENTER);
+        dialog.add(buttonPanel, BorderLayout.SOUTH);
+        dialog.setSize(820, 520);
+        dialog.setLocationRelativeTo(frame);
+        dialog.setVisible(true);
+    }
+
     private void showAddMediaDialog() {
         JDialog dialog = new JDialog(frame, "Add New Media", true);
         dialog.setLayout(new BorderLayout());
@@ -498,44 +568,51 @@ public class LibraryGUI {
                 return;
             }
             
-         // Replace the TODO section in showAddMediaDialog() with this code:
-            try {
-                if (type.equals("Book")) {
-                    // Create a new book with the provided ISBN
-                    Book book = new Book(
-                        UUID.randomUUID().toString(), // Internal unique ID
-                        title,
-                        creator, // This is the author for books
-                        isbn     // Using the ISBN from the input field
-                    );
-                    environment.getMediaRepository().save(book);
-                } else {
-                    // For CDs, we don't need ISBN
-                    CD cd = new CD(
-                        UUID.randomUUID().toString(), // Internal unique ID
-                        title,
-                        creator  // This is the artist for CDs
-                    );
-                    environment.getMediaRepository().save(cd);
-                }
-
-                JOptionPane.showMessageDialog(dialog, 
-                    "Media added successfully!", 
-                    "Success", 
-                    JOptionPane.INFORMATION_MESSAGE);
-                dialog.dispose();
-
-                // Refresh the admin dashboard to show the new item
-                if (currentPanel != null) {
-                    showAdminDashboard(environment.getAuthService().getCurrentUser().get().getUsername());
-                }
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(dialog, 
-                    "Error adding media: " + ex.getMessage(), 
-                    "Error", 
-                    JOptionPane.ERROR_MESSAGE);
-                ex.printStackTrace(); // This will help us see any errors in the console
+            Media media;
+            if (type.equals("Book")) {
+                // Create a new book with the provided ISBN
+                media = new Book(
+                    IdGenerator.newId(), // Internal unique ID
+                    title,
+                    creator, // This is the author for books
+                    isbn     // Using the ISBN from the input field
+                );
+            } else {
+                // For CDs, we don't need ISBN
+                media = new CD(
+                    IdGenerator.newId(), // Internal unique ID
+                    title,
+                    creator  // This is the artist for CDs
+                );
             }
+
+            // Saving updates the search indexes, so it runs off the EDT.
+            addButton.setEnabled(false);
+            tasks.submit(
+                () -> {
+                    environment.getMediaRepository().save(media);
+                    return media;
+                },
+                saved -> {
+                    JOptionPane.showMessageDialog(dialog, 
+                        "Media added successfully!", 
+                        "Success", 
+                        JOptionPane.INFORMATION_MESSAGE);
+                    dialog.dispose();
+
+                    // Refresh the admin dashboard to show the new item
+                    if (currentPanel != null) {
+                        showAdminDashboard(environment.getAuthService().getCurrentUser().get().getUsername());
+                    }
+                },
+                ex -> {
+                    addButton.setEnabled(true);
+                    JOptionPane.showMessageDialog(dialog, 
+                        "Error adding media: " + ex.getMessage(), 
+                        "Error", 
+                        JOptionPane.ERROR_MESSAGE);
+                    ex.printStackTrace(); // This will help us see any errors in the console
+                });
         });
         
         buttonPanel.add(cancelButton);
@@ -703,24 +780,8 @@ public class LibraryGUI {
             String[] columnNames = {"Title", "Type", "Borrowed On", "Due Date", "Status"};
             DefaultTableModel model = new DefaultTableModel(columnNames, 0);
             
-            // Get user's loans
-            List<Loan> userLoans = environment.getLoanRepository().findActiveByUser(currentUser.getId());
-            for (Loan loan : userLoans) {
-                Optional<Media> mediaOpt = environment.getMediaRepository().findById(loan.getMediaId());
-                if (mediaOpt.isPresent()) {
-                    Media media = mediaOpt.get();
-                    LocalDate today = environment.getDateProvider().today();
-                    String status = loan.isOverdue(today) ? "Overdue" : "On Loan";
-                    
-                    model.addRow(new Object[]{
-                        media.getTitle(),
-                        media instanceof Book ? "Book" : "CD",
-                        loan.getCheckoutDate().toString(),
-                        loan.getDueDate().toString(),
-                        status
-                    });
-                }
-            }
+            // Get user's loans; the table fills in once they have been read.
+            loadLoansInto(model, currentUser.getId(), media -> media instanceof Book ? "Book" : "CD");
             
             JTable loansTable = new JTable(model);
             JScrollPane scrollPane = new JScrollPane(loansTable);
@@ -747,6 +808,46 @@ public class LibraryGUI {
             );
         }
     }
+    /**
+     * Reads a user's active loans in the background and appends one row per loan to
+     * {@code model} on the EDT: title, type, checkout date, due date and status.
+     *
+     * @param model table to fill
+     * @param userId owner of the loans
+     * @param typeLabel how the type column names an item
+     */
+    private void loadLoansInto(DefaultTableModel model, String userId,
+                               Function<Media, String> typeLabel) {
+        tasks.submit(
+            () -> {
+                LocalDate today = environment.getDateProvider().today();
+                List<Object[]> rows = new ArrayList<>();
+                for (Loan loan : environment.getLoanRepository().findActiveByUser(userId)) {
+                    Optional<Media> mediaOpt = environment.getMediaRepository().findById(loan.getMediaId());
+                    if (mediaOpt.isEmpty()) {
+                        continue;
+                    }
+                    Media media = mediaOpt.get();
+                    String status = loan.isOverdue(today) ? "Overdue" : "On Loan";
+                    rows.add(new Object[]{
+                        media.getTitle(),
+                        typeLabel.apply(media),
+                        loan.getCheckoutDate().toString(),
+                        loan.getDueDate().toString(),
+                        status
+                    });
+                }
+                return rows;
+            },
+            rows -> rows.forEach(model::addRow),
+            ex -> JOptionPane.showMessageDialog(
+                frame,
+                "Error loading loans: " + ex.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE
+            ));
+    }
+
     /**
      * Displays a searchable list of available media items that the user can borrow.
      * Allows filtering by type and keyword, and processes the borrowing action.
@@ -768,6 +869,8 @@ public class LibraryGUI {
         JPanel searchBar = new JPanel(new BorderLayout(5, 5));
         JTextField searchField = new JTextField(20);
         JComboBox<String> typeFilter = new JComboBox<>(new String[]{"All", "Books", "CDs"});
+        TypeCountRenderer typeCounts = new TypeCountRenderer(typeFilter, true);
+        typeFilter.setRenderer(typeCounts);
         JButton searchButton = new JButton("Search");
 
         searchBar.add(new JLabel("Search:"), BorderLayout.WEST);
@@ -783,12 +886,11 @@ public class LibraryGUI {
         // TABLE MODEL
         // -------------------------------
         String[] columnNames = {"Title", "Type", "Author/Artist", "Availability", "Action"};
-        DefaultTableModel model = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 4; // Only Borrow button
-            }
-        };
+        // Only the Borrow button column is editable.
+        PagedMediaTableModel model = new PagedMediaTableModel(
+            columnNames, LibraryGUI::borrowCell, 4, SEARCH_PAGE_SIZE, CACHED_PAGES);
+        model.setBackgroundTasks(tasks);
+        BackgroundTasks.Latest searchSlot = tasks.latest();
 
         JTable mediaTable = new JTable(model);
         JScrollPane scrollPane = new JScrollPane(mediaTable);
@@ -812,11 +914,7 @@ public class LibraryGUI {
                         button.setForeground(UIManager.getColor("Button.foreground"));
                     }
                     // Informational tooltip: remaining copies, without changing layout.
-                    Map<String, Integer> qtyMap =
-                        (Map<String, Integer>) table.getClientProperty("quantityByTitle");
-                    String mediaTitle = (String) table.getValueAt(row, 0);
-                    int qty = qtyMap != null && qtyMap.get(mediaTitle) != null ? qtyMap.get(mediaTitle) : 0;
-                    button.setToolTipText("Available copies: " + qty);
+                    button.setToolTipText("Available copies: " + quantityAt(model, table, row));
                     return button;
                 }
                 return super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
@@ -829,69 +927,49 @@ public class LibraryGUI {
                                                          boolean isSelected, int row, int column) {
                 JButton button = new JButton("Borrow");
                 button.addActionListener(e -> {
-                    try {
-                        // End editing before mutating the table model to avoid index issues.
-                        fireEditingStopped();
-
-                        String mediaTitle = (String) model.getValueAt(row, 0);
-
-                        User currentUser = environment.getAuthService().getCurrentUser()
-                            .orElseThrow(() -> new LibraryException("User not logged in"));
+                    // End editing before mutating the table model to avoid index issues.
+                    fireEditingStopped();
 
-                        Media media = environment.getMediaRepository().findAll().stream()
-                            .filter(m -> m.getTitle().equals(mediaTitle))
-                            .findFirst()
-                            .orElseThrow(() -> new LibraryException("Media not found"));
-
-                        if (!media.isAvailable()) {
-                            throw new LibraryException("This item is not currently available");
-                        }
-
-                        String loanId = UUID.randomUUID().toString();
-                        LocalDate checkoutDate = LocalDate.now();
-                        LocalDate dueDate = checkoutDate.plusDays(28);
-
-                        Loan loan = new Loan(
-                            loanId,
-                            currentUser.getId(),
-                            media.getId(),
-                            checkoutDate,
-                            dueDate
-                        );
-
-                        environment.getLoanRepository().save(loan);
-                        media.markUnavailable(); // decreases quantity and updates availability
-                        environment.getMediaRepository().save(media); // persist updated quantity
-                        currentUser.addLoan(loanId);
-                        environment.getAuthService().updateCurrentUser(currentUser);
-
-                        // Refresh the table so that availability is recalculated based on quantity.
-                        // This keeps the same UI but ensures items disappear only when no copies remain.
-                        ((DefaultTableModel) table.getModel()).setRowCount(0);
-                        ((Runnable) table.getClientProperty("loadFilteredMedia")).run();
-
-                        JOptionPane.showMessageDialog(
-                            frame,
-                            "Successfully borrowed: " + mediaTitle + "\nDue Date: " + dueDate,
-                            "Borrow Successful",
-                            JOptionPane.INFORMATION_MESSAGE
-                        );
-
-                    } catch (Exception ex) {
-                        JOptionPane.showMessageDialog(
+                    // The row carries the item itself, so the borrow is keyed by its ID.
+                    Media clicked = model.getMediaAt(table.convertRowIndexToModel(row));
+                    if (clicked == null) {
+                        return; // Page still loading.
+                    }
+                    String mediaTitle = clicked.getTitle();
+
+                    tasks.submit(
+                        () -> {
+                            User currentUser = environment.getAuthService().getCurrentUser()
+                                .orElseThrow(() -> new LibraryException("User not logged in"));
+
+                            // BorrowService applies the loan rules, holds, copies and the log.
+                            Loan loan = environment.getBorrowService()
+                                .borrow(currentUser.getId(), clicked.getId());
+                            currentUser.addLoan(loan.getId());
+                            environment.getAuthService().updateCurrentUser(currentUser);
+                            return loan.getDueDate();
+                        },
+                        dueDate -> {
+                            // Refresh the table so that availability is recalculated based on quantity.
+                            // This keeps the same UI but ensures items disappear only when no copies remain.
+                            ((Runnable) table.getClientProperty("loadFilteredMedia")).run();
+
+                            JOptionPane.showMessageDialog(
+                                frame,
+                                "Successfully borrowed: " + mediaTitle + "\nDue Date: " + dueDate,
+                                "Borrow Successful",
+                                JOptionPane.INFORMATION_MESSAGE
+                            );
+                        },
+                        ex -> JOptionPane.showMessageDialog(
                             frame,
                             "Error borrowing media: " + ex.getMessage(),
                             "Borrow Failed",
                             JOptionPane.ERROR_MESSAGE
-                        );
-                    }
+                        ));
                 });
                 // Keep tooltip in editor as well (no UI changes).
-                Map<String, Integer> qtyMap =
-                    (Map<String, Integer>) table.getClientProperty("quantityByTitle");
-                String mediaTitle = (String) table.getValueAt(row, 0);
-                int qty = qtyMap != null && qtyMap.get(mediaTitle) != null ? qtyMap.get(mediaTitle) : 0;
-                button.setToolTipText("Available copies: " + qty);
+                button.setToolTipText("Available copies: " + quantityAt(model, table, row));
                 return button;
             }
 
@@ -904,62 +982,26 @@ public class LibraryGUI {
         // -------------------------------
         // FILTERED LOADER FUNCTION
         // -------------------------------
+        // While typing, each keystroke narrows the previous keystroke's matches; a full
+        // search (Enter, filter change, after a borrow) starts the narrowing afresh.
+        IncrementalSearch session = environment.getCatalogService().incrementalSearch();
         Runnable loadFilteredMedia = () -> {
-            model.setRowCount(0);
-
-            String searchTerm = searchField.getText().trim().toLowerCase();
+            session.reset();
+            // Borrowing changes the available counts, so they are re-read with every load.
+            typeCounts.refresh();
+            String searchTerm = searchField.getText().trim();
             String typeChoice = (String) typeFilter.getSelectedItem();
 
-            try {
-                Collection<Media> allMedia = environment.getMediaRepository().findAll();
-                Map<String, Integer> qtyMap = new HashMap<>();
-
-                for (Media media : allMedia) {
-
-                    if (!media.isAvailable()) continue;
-
-                    // TYPE FILTER
-                    if (!typeChoice.equals("All")) {
-                        if (typeChoice.equals("Books") && media.getType() != MediaType.BOOK) continue;
-                        if (typeChoice.equals("CDs") && media.getType() != MediaType.CD) continue;
-                    }
-
-                    // SEARCH FILTER
-                    String searchable = (
-                        media.getTitle() + " " +
-                        (media instanceof Book ? ((Book) media).getAuthor() : "") + " " +
-                        (media instanceof CD ? ((CD) media).getArtist() : "")
-                    ).toLowerCase();
-
-                    if (!searchable.contains(searchTerm)) continue;
-
-                    String creator = "";
-                    if (media instanceof Book) creator = ((Book) media).getAuthor();
-                    else if (media instanceof CD) creator = ((CD) media).getArtist();
-
-                    qtyMap.put(media.getTitle(), media.getQuantity());
-
-                    String availabilityText = "Available (" + media.getQuantity() + ")";
-
-                    model.addRow(new Object[]{
-                        media.getTitle(),
-                        media.getType().toString(),
-                        creator,
-                        availabilityText,
-                        "Borrow"
-                    });
-                }
+            // Type and availability come from the facet index instead of a catalog scan.
+            Map<Facet, String> selection = facetSelection(typeChoice);
+            selection.put(Facet.AVAILABILITY, Facet.AVAILABLE);
+            showResults(searchSlot, model, searchTerm, selection, false);
+        };
 
-                // Expose quantities for tooltips without altering the table layout.
-                mediaTable.putClientProperty("quantityByTitle", qtyMap);
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(
-                    frame,
-                    "Error loading media: " + ex.getMessage(),
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE
-                );
-            }
+        Runnable liveSearch = () -> {
+            Map<Facet, String> selection = facetSelection((String) typeFilter.getSelectedItem());
+            selection.put(Facet.AVAILABILITY, Facet.AVAILABLE);
+            showLiveResults(searchSlot, model, session, searchField.getText().trim(), selection, false);
         };
 
         // Make the loader accessible from the cell editor without changing the UI structure.
@@ -979,12 +1021,234 @@ public class LibraryGUI {
         dialog.getContentPane().add(borrowPanel);
         dialog.setSize(750, 520);
         dialog.setLocationRelativeTo(frame);
+        searchAsYouType(dialog, searchField, searchSlot, liveSearch);
 
         loadFilteredMedia.run(); 
 
         dialog.setVisible(true);
     }
 
+    private static Map<Facet, String> facetSelection(String typeFilter) {
+        Map<Facet, String> selection = new EnumMap<>(Facet.class);
+        if ("Books".equals(typeFilter)) {
+            selection.put(Facet.TYPE, MediaType.BOOK.name());
+        } else if ("CDs".equals(typeFilter)) {
+            selection.put(Facet.TYPE, MediaType.CD.name());
+        }
+        return selection;
+    }
+
+    /**
+     * Shows the number of matching items next to each type in a type filter. The counts are
+     * read from the maintained facet counts in the background on {@link #refresh()} and
+     * rendered from that snapshot, so painting the list never queries the catalog on the EDT.
+     */
+    @SuppressWarnings("serial") // Swing renderers are never serialised here.
+    private class TypeCountRenderer extends DefaultListCellRenderer {
+        private final JComboBox<String> filter;
+        private final boolean availableOnly;
+        private final BackgroundTasks.Latest slot = tasks.latest();
+        private Map<String, Long> counts = Map.of();
+
+        TypeCountRenderer(JComboBox<String> filter, boolean availableOnly) {
+            this.filter = filter;
+            this.availableOnly = availableOnly;
+        }
+
+        /** Re-reads the counts of every type off the EDT and repaints the filter. */
+        void refresh() {
+            List<String> types = new ArrayList<>();
+            for (int i = 0; i < filter.getItemCount(); i++) {
+                types.add(filter.getItemAt(i));
+            }
+            CatalogService catalog = environment.getCatalogService();
+            slot.submit(
+                () -> {
+                    Map<String, Long> fresh = new HashMap<>();
+                    for (String type : types) {
+                        Map<Facet, String> selection = facetSelection(type);
+                        if (availableOnly) {
+                            selection.put(Facet.AVAILABILITY, Facet.AVAILABLE);
+                        }
+                        fresh.put(type, catalog.countByFacets(selection));
+                    }
+                    return fresh;
+                },
+                fresh -> {
+                    counts = fresh;
+                    filter.repaint();
+                },
+                // Without counts the filter still works; show the plain type names.
+                ex -> {
+                    counts = Map.of();
+                    filter.repaint();
+                });
+        }
+
+        @Override
+        public Component getListCellRendererComponent(
+                JList<?> list, Object value, int index, boolean isSelected, boolean hasFocus) {
+            super.getListCellRendererComponent(list, value, index, isSelected, hasFocus);
+            Long count = counts.get(value);
+            setText(count == null ? String.valueOf(value) : value + " (" + count + ")");
+            return this;
+        }
+    }
+
+    /**
+     * Points a paged table model at the media matching a search term and facet selection, in
+     * title order. Without search text the row count comes from the facet counters; with it,
+     * only the first page is loaded and the model's row count grows as the user scrolls, so
+     * the search is never run to its end just to size the table. Rows themselves are only
+     * fetched as the table shows them.
+     *
+     * <p>The first load runs in the background under {@code slot}, so a newer search from the
+     * same dialog cancels it; the model is switched over on the EDT once it is done.</p>
+     */
+    private void showResults(BackgroundTasks.Latest slot, PagedMediaTableModel model, String term,
+                             Map<Facet, String> selection, boolean fuzzyFallback) {
+        CatalogService catalog = environment.getCatalogService();
+        Predicate<Media> filter = media -> selection.entrySet().stream()
+            .allMatch(entry -> entry.getKey().valueOf(media).equals(entry.getValue()));
+        slot.submit(
+            () -> {
+                PagedMediaTableModel.PageLoader titles =
+                    (cursor, limit) -> catalog.searchPage(term, cursor, limit, MediaSort.TITLE);
+                PagedMediaTableModel.PageLoader pages =
+                    selection.isEmpty() ? titles : PagedMediaTableModel.filtered(titles, filter);
+                if (term.isBlank()) {
+                    long count = catalog.countByFacets(selection);
+                    return new Results(pages, (int) Math.min(count, Integer.MAX_VALUE), null);
+                }
+                Page<Media> firstPage = pages.load(null, SEARCH_PAGE_SIZE);
+                if (firstPage.items().isEmpty() && fuzzyFallback) {
+                    // Nothing contains the text as typed; fall back to typo-tolerant matches.
+                    List<Media> suggestions =
+                        catalog.searchFuzzy(term).stream().filter(filter).toList();
+                    return new Results(
+                        PagedMediaTableModel.ofList(suggestions), suggestions.size(), null);
+                }
+                return new Results(pages, -1, firstPage);
+            },
+            results -> {
+                if (results.firstPage() != null) {
+                    model.setSource(results.pages(), results.firstPage());
+                } else {
+                    model.setSource(results.pages(), results.rowCount());
+                }
+            },
+            ex -> JOptionPane.showMessageDialog(
+                frame,
+                "Error loading media: " + ex.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE
+            ));
+    }
+
+    /**
+     * Shows a capped preview of the matches while the user types. The session narrows the
+     * previous keystroke's matches when the text grows, so most keystrokes never touch the
+     * catalog. Without search text this is the same as {@link #showResults}.
+     */
+    private void showLiveResults(BackgroundTasks.Latest slot, PagedMediaTableModel model,
+                                 IncrementalSearch session, String term,
+                                 Map<Facet, String> selection, boolean fuzzyFallback) {
+        if (term.isBlank()) {
+            showResults(slot, model, term, selection, fuzzyFallback);
+            return;
+        }
+        CatalogService catalog = environment.getCatalogService();
+        Predicate<Media> filter = media -> selection.entrySet().stream()
+            .allMatch(entry -> entry.getKey().valueOf(media).equals(entry.getValue()));
+        slot.submit(
+            () -> {
+                List<Media> items = session.search(term, filter, LIVE_RESULT_CAP).items();
+                if (items.isEmpty() && fuzzyFallback) {
+                    items = catalog.searchFuzzy(term).stream().filter(filter).toList();
+                }
+                return items;
+            },
+            items -> model.setSource(PagedMediaTableModel.ofList(items), items.size()),
+            ex -> JOptionPane.showMessageDialog(
+                frame,
+                "Error loading media: " + ex.getMessage(),
+                "Error",
+                JOptionPane.ERROR_MESSAGE
+            ));
+    }
+
+    /**
+     * Source computed in the background by {@link #showResults}: either its exact row count,
+     * or its first page when the size is left open.
+     */
+    private record Results(PagedMediaTableModel.PageLoader pages, int rowCount,
+                           Page<Media> firstPage) {}
+
+    /**
+     * Runs {@code search} once the user pauses typing in {@code field}, and cancels any
+     * outstanding work when the dialog closes.
+     */
+    private static void searchAsYouType(JDialog dialog, JTextField field,
+                                        BackgroundTasks.Latest slot, Runnable search) {
+        Runnable debounced = BackgroundTasks.debounce(SEARCH_DEBOUNCE_MILLIS, search);
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                debounced.run();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                debounced.run();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                debounced.run();
+            }
+        });
+        dialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                slot.cancel();
+            }
+        });
+    }
+
+    private static int quantityAt(PagedMediaTableModel model, JTable table, int row) {
+        Media media = model.getMediaAt(table.convertRowIndexToModel(row));
+        return media == null ? 0 : media.getQuantity();
+    }
+
+    private static String creatorOf(Media media) {
+        if (media instanceof Book) {
+            return ((Book) media).getAuthor();
+        } else if (media instanceof CD) {
+            return ((CD) media).getArtist();
+        }
+        return "";
+    }
+
+    private static Object borrowCell(Media media, int column) {
+        switch (column) {
+            case 0: return media.getTitle();
+            case 1: return media.getType().toString();
+            case 2: return creatorOf(media);
+            case 3: return "Available (" + media.getQuantity() + ")";
+            default: return "Borrow";
+        }
+    }
+
+    private static Object searchCell(Media media, int column) {
+        switch (column) {
+            case 0: return media.getTitle();
+            case 1: return media.getType().toString();
+            case 2: return creatorOf(media);
+            case 3: return media.isAvailable() ? "Available" : "Borrowed";
+            default: return media.isAvailable() ? "Borrow" : "N/A";
+        }
+    }
+
     /**
      * Displays the media search interface, allowing users to look up books and CDs.
      * Supports keyword matching and filtering by media type.
@@ -1000,72 +1264,33 @@ public class LibraryGUI {
         JTextField searchField = new JTextField(30);
         JButton searchButton = new JButton("Search");
         JComboBox<String> searchType = new JComboBox<>(new String[]{"All", "Books", "CDs"});
+        TypeCountRenderer typeCounts = new TypeCountRenderer(searchType, false);
+        searchType.setRenderer(typeCounts);
         
         // Create results table
         String[] columnNames = {"Title", "Type", "Author/Artist", "Status", "Action"};
-        DefaultTableModel model = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return column == 4; // Only the action column is editable
-            }
-        };
+        // Only the action column is editable.
+        PagedMediaTableModel model = new PagedMediaTableModel(
+            columnNames, LibraryGUI::searchCell, 4, SEARCH_PAGE_SIZE, CACHED_PAGES);
+        model.setBackgroundTasks(tasks);
+        BackgroundTasks.Latest searchSlot = tasks.latest();
         JTable resultsTable = new JTable(model);
         JScrollPane scrollPane = new JScrollPane(resultsTable);
         
-        // Method to update the table based on search criteria
+        // While typing, each keystroke narrows the previous keystroke's matches; a full
+        // search (Enter, filter change) starts the narrowing afresh.
+        IncrementalSearch session = environment.getCatalogService().incrementalSearch();
+        // Rows are fetched page by page as they scroll into view.
         Runnable updateTable = () -> {
-            String searchTerm = searchField.getText().trim().toLowerCase();
+            session.reset();
+            String searchTerm = searchField.getText().trim();
             String typeFilter = (String) searchType.getSelectedItem();
-            
-            // Clear existing rows
-            model.setRowCount(0);
-            
-            try {
-                List<Media> searchResults;
-                if (searchTerm.isEmpty()) {
-                    searchResults = new ArrayList<>(environment.getMediaRepository().findAll());
-                } else {
-                    searchResults = environment.getMediaRepository().search(searchTerm);
-                }
-                
-                for (Media media : searchResults) {
-                    // Apply type filter
-                    if (!"All".equals(typeFilter)) {
-                        if (typeFilter.equals("Books") && media.getType() != MediaType.BOOK) {
-                            continue;
-                        }
-                        if (typeFilter.equals("CDs") && media.getType() != MediaType.CD) {
-                            continue;
-                        }
-                    }
-                    
-                    String creator = "";
-                    if (media instanceof Book) {
-                        creator = ((Book) media).getAuthor();
-                    } else if (media instanceof CD) {
-                        creator = ((CD) media).getArtist();
-                    }
-                    
-                    model.addRow(new Object[]{
-                        media.getTitle(),
-                        media.getType().toString(),
-                        creator,
-                        media.isAvailable() ? "Available" : "Borrowed",
-                        media.isAvailable() ? "Borrow" : "N/A"
-                    });
-                }
-                
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(
-                    frame,
-                    "Error loading media: " + ex.getMessage(),
-                    "Error",
-                    JOptionPane.ERROR_MESSAGE
-                );
-                ex.printStackTrace();
-            }
+            showResults(searchSlot, model, searchTerm, facetSelection(typeFilter), true);
         };
-        
+
+        Runnable liveSearch = () -> showLiveResults(searchSlot, model, session,
+            searchField.getText().trim(), facetSelection((String) searchType.getSelectedItem()), true);
+
         searchButton.addActionListener(e -> updateTable.run());
         
         searchField.addActionListener(e -> updateTable.run());
@@ -1088,7 +1313,9 @@ public class LibraryGUI {
         dialog.getContentPane().add(searchPanel);
         dialog.pack();
         dialog.setLocationRelativeTo(frame);
+        searchAsYouType(dialog, searchField, searchSlot, liveSearch);
         
+        typeCounts.refresh();
         updateTable.run();
         
         dialog.setVisible(true);
@@ -1164,8 +1391,8 @@ public class LibraryGUI {
                     }
                     
                     
-                    BigDecimal newFineAmount = currentFine.subtract(paymentAmount);
-                    currentUser.setFineAmount(newFineAmount);
+                    // FineService deducts the payment and logs it for the circulation projections.
+                    environment.getFineService().payFine(currentUser.getId(), paymentAmount);
                     
                     JOptionPane.showMessageDialog(
                         frame,
@@ -1436,9 +1663,10 @@ public class LibraryGUI {
                 }
             };
 
-            // Populate table with loan data
+            // Populate table with loan data; loanIds holds the loan behind each row.
             MediaRepository mediaRepo = environment.getMediaRepository();
             DateProvider dateProvider = environment.getDateProvider();
+            List<String> loanIds = new ArrayList<>();
 
             for (Loan loan : activeLoans) {
                 Optional<Media> mediaOpt = mediaRepo.findById(loan.getMediaId());
@@ -1448,6 +1676,7 @@ public class LibraryGUI {
                 String mediaType = media instanceof Book ? "Book" : "CD";
                 String status = loan.isOverdue(dateProvider.today()) ? "Overdue" : "On Time";
 
+                loanIds.add(loan.getId());
                 model.addRow(new Object[]{
                     media.getTitle(),
                     mediaType,
@@ -1466,7 +1695,7 @@ public class LibraryGUI {
             // Set up the button column
             TableColumn buttonColumn = table.getColumnModel().getColumn(5);
             buttonColumn.setCellRenderer(new ButtonRenderer());
-            buttonColumn.setCellEditor(new ButtonEditor(new JCheckBox(), table));
+            buttonColumn.setCellEditor(new ButtonEditor(new JCheckBox(), table, loanIds));
 
             // Configure column widths
             table.getColumnModel().getColumn(0).setPreferredWidth(200); // Title
@@ -1482,8 +1711,15 @@ public class LibraryGUI {
             titleLabel.setFont(new Font("Segoe UI", Font.BOLD, 14));
             titleLabel.setBorder(BorderFactory.createEmptyBorder(0, 0, 10, 0));
 
+            // Returns every listed loan in one call.
+            JButton returnAllButton = new JButton("Return All");
+            returnAllButton.addActionListener(e -> returnMedia(List.copyOf(loanIds), "All items"));
+            JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+            buttonPanel.add(returnAllButton);
+
             mainPanel.add(titleLabel, BorderLayout.NORTH);
             mainPanel.add(scrollPane, BorderLayout.CENTER);
+            mainPanel.add(buttonPanel, BorderLayout.SOUTH);
 
             // Show the dialog
             JDialog dialog = new JDialog(frame, "Return Media", true);
@@ -1528,11 +1764,13 @@ public class LibraryGUI {
 
         private final JButton button;
         private final JTable table;
+        private final List<String> loanIds;
         private int currentRow = -1;
         private String label;
 
-        public ButtonEditor(JCheckBox checkBox, JTable table) {
+        public ButtonEditor(JCheckBox checkBox, JTable table, List<String> loanIds) {
             this.table = table;
+            this.loanIds = loanIds;
 
             button = new JButton();
             button.setOpaque(true);
@@ -1547,11 +1785,10 @@ public class LibraryGUI {
 
                 if (currentRow < 0) return; // prevent crash
 
-                String mediaTitle = (String) table.getModel().getValueAt(currentRow, 0);
-
-                returnMedia(mediaTitle);
+                int modelRow = table.convertRowIndexToModel(currentRow);
+                String mediaTitle = (String) table.getModel().getValueAt(modelRow, 0);
 
-                ((AbstractTableModel) table.getModel()).fireTableDataChanged();
+                returnMedia(List.of(loanIds.get(modelRow)), "\"" + mediaTitle + "\"");
             });
         }
 
@@ -1697,72 +1934,60 @@ public class LibraryGUI {
 
             JScrollPane scrollPane = new JScrollPane(usersTable);
 
-            // ------------------------- FIXED: define loadUsers ---------------------------
+            // Users and their loan status are read in the background; a newer search
+            // cancels an older one that has not finished.
+            BackgroundTasks.Latest usersSlot = tasks.latest();
             Runnable loadUsers = () -> {
-                model.setRowCount(0); // clear table
-
-                Collection<User> users = environment.getUserRepository().findAll();
-
-                for (User u : users) {
-                    String status;
-                    if (u.getRole() == UserRole.ADMIN) {
-                        status = "Admin";
-                    } else if (!environment.getLoanRepository().findActiveByUser(u.getId()).isEmpty()) {
-                        status = "Has Active Loans";
-                    } else if (u.hasOutstandingFines()) {
-                        status = "Has Unpaid Fines";
-                    } else {
-                        status = "Can Unregister";
-                    }
-
-                    model.addRow(new Object[]{
-                        u.getUsername(),
-                        u.getName(),
-                        u.getRole().toString(),
-                        status,
-                        "Details",
-                        "Unregister"
-                    });
-                }
-            };
-
-            // ------------------------- FIXED: define loadAllInto ---------------------------
-            Runnable loadAllInto = () -> {
-                model.setRowCount(0);
                 String term = searchField.getText().trim().toLowerCase();
 
-                Collection<User> users = environment.getUserRepository().findAll();
-
-                for (User u : users) {
-                    if (u.getUsername().toLowerCase().contains(term) ||
-                        u.getName().toLowerCase().contains(term)) {
-
-                        String status;
-                        if (u.getRole() == UserRole.ADMIN) {
-                            status = "Admin";
-                        } else if (!environment.getLoanRepository().findActiveByUser(u.getId()).isEmpty()) {
-                            status = "Has Active Loans";
-                        } else if (u.hasOutstandingFines()) {
-                            status = "Has Unpaid Fines";
-                        } else {
-                            status = "Can Unregister";
+                usersSlot.submit(
+                    () -> {
+                        List<Object[]> rows = new ArrayList<>();
+                        Collection<User> users = environment.getUserRepository().findAll();
+
+                        for (User u : users) {
+                            if (!u.getUsername().toLowerCase().contains(term) &&
+                                !u.getName().toLowerCase().contains(term)) {
+                                continue;
+                            }
+
+                            String status;
+                            if (u.getRole() == UserRole.ADMIN) {
+                                status = "Admin";
+                            } else if (!environment.getLoanRepository().findActiveByUser(u.getId()).isEmpty()) {
+                                status = "Has Active Loans";
+                            } else if (u.hasOutstandingFines()) {
+                                status = "Has Unpaid Fines";
+                            } else {
+                                status = "Can Unregister";
+                            }
+
+                            rows.add(new Object[]{
+                                u.getUsername(),
+                                u.getName(),
+                                u.getRole().toString(),
+                                status,
+                                "Details",
+                                "Unregister"
+                            });
                         }
-
-                        model.addRow(new Object[]{
-                            u.getUsername(),
-                            u.getName(),
-                            u.getRole().toString(),
-                            status,
-                            "Details",
-                            "Unregister"
-                        });
-                    }
-                }
+                        return rows;
+                    },
+                    rows -> {
+                        model.setRowCount(0); // clear table
+                        rows.forEach(model::addRow);
+                    },
+                    ex -> JOptionPane.showMessageDialog(
+                        frame,
+                        "Error loading users: " + ex.getMessage(),
+                        "Error",
+                        JOptionPane.ERROR_MESSAGE
+                    ));
             };
 
             // Add action listeners
-            searchButton.addActionListener(e -> loadAllInto.run());
-            searchField.addActionListener(e -> loadAllInto.run());
+            searchButton.addActionListener(e -> loadUsers.run());
+            searchField.addActionListener(e -> loadUsers.run());
 
             // Add components to panel
             mainPanel.add(searchPanel, BorderLayout.NORTH);
@@ -1772,6 +1997,7 @@ public class LibraryGUI {
             JDialog dialog = new JDialog(frame, "Manage Users", true);
             dialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
             dialog.getContentPane().add(mainPanel);
+            searchAsYouType(dialog, searchField, usersSlot, loadUsers);
 
             loadUsers.run();  // initial load
 
@@ -1892,23 +2118,7 @@ public class LibraryGUI {
             String[] cols = {"Title", "Type", "Borrowed On", "Due Date", "Status"};
             DefaultTableModel model = new DefaultTableModel(cols, 0);
 
-            List<Loan> loans = environment.getLoanRepository().findActiveByUser(user.getId());
-            for (Loan loan : loans) {
-                Optional<Media> mediaOpt = environment.getMediaRepository().findById(loan.getMediaId());
-                if (mediaOpt.isEmpty()) {
-                    continue;
-                }
-                Media media = mediaOpt.get();
-                LocalDate today = environment.getDateProvider().today();
-                String status = loan.isOverdue(today) ? "Overdue" : "On Loan";
-                model.addRow(new Object[]{
-                    media.getTitle(),
-                    media.getType().name(),
-                    loan.getCheckoutDate().toString(),
-                    loan.getDueDate().toString(),
-                    status
-                });
-            }
+            loadLoansInto(model, user.getId(), media -> media.getType().name());
 
             JTable table = new JTable(model);
             JScrollPane scrollPane = new JScrollPane(table);
@@ -1935,76 +2145,52 @@ public class LibraryGUI {
     }
     
     /**
-     * Processes the return of a borrowed media item.
+     * Processes the return of borrowed media items in the background.
      * Updates the loan status, media availability, and applies fines when overdue.
      *
-     * @param mediaTitle the title of the media item being returned
+     * @param loanIds the loans being returned
+     * @param description what is being returned, for the confirmation message
      */
-    private void returnMedia(String mediaTitle) {
-        try {
-            // Get current user ID
-            String currentUserId = environment.getAuthService().getCurrentUser()
-                .orElseThrow(() -> new LibraryException("User not logged in"))
-                .getId();
-
-            // Find the loan for this media title
-            LoanRepository loanRepo = environment.getLoanRepository();
-            List<Loan> userLoans = loanRepo.findActiveByUser(currentUserId);
-            MediaRepository mediaRepo = environment.getMediaRepository();
-
-            Optional<Loan> matchingLoan = userLoans.stream()
-                .filter(loan -> {
-                    Optional<Media> mediaOpt = mediaRepo.findById(loan.getMediaId());
-                    return mediaOpt.isPresent() && mediaOpt.get().getTitle().equals(mediaTitle);
-                })
-                .findFirst();
-
-            if (!matchingLoan.isPresent()) {
-                throw new LibraryException("No active loan found for: " + mediaTitle);
-            }
-
-            Loan loan = matchingLoan.get();
-
-            // Process return
-            BorrowService borrowService = environment.getBorrowService();
-            BigDecimal fine = borrowService.returnMedia(loan.getId());
-
-            // Show success message
-            String message = "\"" + mediaTitle + "\" returned successfully";
-            if (fine.signum() > 0) {
-                message += ".\nA fine of $" + fine + " has been added to your account.";
-            }
+    private void returnMedia(List<String> loanIds, String description) {
+        tasks.submit(
+            () -> environment.getBorrowService().returnAll(loanIds),
+            fine -> {
+                // Show success message
+                String message = description + " returned successfully";
+                if (fine.signum() > 0) {
+                    message += ".\nA fine of $" + fine + " has been added to your account.";
+                }
 
-            JOptionPane.showMessageDialog(
-                frame,
-                message,
-                "Return Successful",
-                JOptionPane.INFORMATION_MESSAGE
-            );
+                JOptionPane.showMessageDialog(
+                    frame,
+                    message,
+                    "Return Successful",
+                    JOptionPane.INFORMATION_MESSAGE
+                );
 
-            // Close the current dialog and show an updated one
-            Window[] windows = Window.getWindows();
-            for (Window window : windows) {
-                if (window.isShowing() && window instanceof JDialog) {
-                    JDialog dialog = (JDialog) window;
-                    if ("Return Media".equals(dialog.getTitle())) {
-                        dialog.dispose();
-                        break;
+                // Close the current dialog and show an updated one
+                Window[] windows = Window.getWindows();
+                for (Window window : windows) {
+                    if (window.isShowing() && window instanceof JDialog) {
+                        JDialog dialog = (JDialog) window;
+                        if ("Return Media".equals(dialog.getTitle())) {
+                            dialog.dispose();
+                            break;
+                        }
                     }
                 }
-            }
-
-            // Show updated list
-            showReturnMediaPanel();
 
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(
-                frame,
-                "Error returning item: " + ex.getMessage(),
-                "Return Failed",
-                JOptionPane.ERROR_MESSAGE
-            );
-        }
+                // Show updated list
+                showReturnMediaPanel();
+            },
+            ex -> {
+                ex.printStackTrace();
+                JOptionPane.showMessageDialog(
+                    frame,
+                    "Error returning item: " + ex.getMessage(),
+                    "Return Failed",
+                    JOptionPane.ERROR_MESSAGE
+                );
+            });
     }
 }
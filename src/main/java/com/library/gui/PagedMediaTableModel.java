@@ -0,0 +1,362 @@
+package com.library.gui;
+
+import com.library.domain.Media;
+import com.library.repository.Page;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table model that reads media rows page by page from a cursor-paginated source.
+ *
+ * <p>Rows are only fetched when the table asks for them, i.e. when they scroll into view. The
+ * row count is either supplied up front (e.g. from facet counters), so the scroll bar covers
+ * the full result from the start, or open-ended: the model then announces one page beyond
+ * the rows it has seen, and settles on the exact count once the source ends. At most
+ * {@code maxCachedPages} pages are kept; the least recently used page is dropped when another
+ * is loaded.</p>
+ *
+ * <p>Only cursors are remembered for the whole result: the start of every page that has been
+ * loaded, and of every {@value #STRIDE_PAGES}th page passed on the way. Reaching an unseen
+ * page skips forward from the nearest known cursor in stride-sized loads whose items are
+ * discarded, so a jump across {@code n} pages costs about {@code n / STRIDE_PAGES} loads rather
+ * than {@code n}, and returning to a page seen before costs a single page load.</p>
+ *
+ * <p>Given a {@link BackgroundTasks}, missing pages are fetched off the event dispatch thread:
+ * their rows read as {@value #LOADING} until the page arrives, and pages requested for an
+ * earlier source are dropped. Without one, pages are fetched synchronously.</p>
+ *
+ * <p>Like every Swing model this class is meant to be used from the event dispatch
+ * thread.</p>
+ */
+@SuppressWarnings("serial") // Swing models are never serialised here.
+public class PagedMediaTableModel extends AbstractTableModel {
+
+  /** Loads up to {@code limit} items starting after {@code cursor} (null for the start). */
+  @FunctionalInterface
+  public interface PageLoader {
+    Page<Media> load(String cursor, int limit);
+  }
+
+  /** Placeholder shown in the first column of rows whose page is still loading. */
+  public static final String LOADING = "Loading\u2026";
+
+  /** Pages skipped per load when seeking forward; their start cursors are kept. */
+  static final int STRIDE_PAGES = 32;
+
+  private final String[] columnNames;
+  private final BiFunction<Media, Integer, Object> cells;
+  private final int editableColumn;
+  private final int pageSize;
+  private final int maxCachedPages;
+
+  private PageLoader loader = (cursor, limit) -> new Page<>(List.of(), null);
+  private int rowCount;
+  /** False while the source has not been read to its end and the row count is a guess. */
+  private boolean exactCount = true;
+  /** Known cursors by the page they start; page 0 always starts at null. */
+  private final TreeMap<Integer, String> pageCursors = new TreeMap<>();
+  private final Map<Integer, List<Media>> pages;
+  private final Set<Integer> pending = new HashSet<>();
+  private BackgroundTasks tasks;
+  private int generation;
+
+  /**
+   * @param columnNames column headers
+   * @param cells value of a column for an item: {@code (media, column) -> value}
+   * @param editableColumn index of the one editable (action) column, or -1 for none
+   * @param pageSize rows fetched per page
+   * @param maxCachedPages pages kept in memory at once
+   */
+  public PagedMediaTableModel(
+      String[] columnNames,
+      BiFunction<Media, Integer, Object> cells,
+      int editableColumn,
+      int pageSize,
+      int maxCachedPages) {
+    this.columnNames = columnNames.clone();
+    this.cells = cells;
+    this.editableColumn = editableColumn;
+    this.pageSize = pageSize;
+    this.maxCachedPages = maxCachedPages;
+    this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, List<Media>> eldest) {
+        return size() > PagedMediaTableModel.this.maxCachedPages;
+      }
+    };
+    pageCursors.put(0, null);
+  }
+
+  /**
+   * Fetches missing pages in the background from now on.
+   *
+   * @param tasks background executor, or null to load synchronously
+   */
+  public void setBackgroundTasks(BackgroundTasks tasks) {
+    this.tasks = tasks;
+  }
+
+  /**
+   * Switches the model to a new result and tells the table to redraw.
+   *
+   * @param loader source of the rows
+   * @param rowCount number of rows the source will produce
+   */
+  public void setSource(PageLoader loader, int rowCount) {
+    reset(loader);
+    this.rowCount = rowCount;
+    fireTableDataChanged();
+  }
+
+  /**
+   * Switches the model to a new result of unknown size, given its first page, and tells the
+   * table to redraw. The row count grows by a page whenever the last known page is loaded and
+   * the source has more.
+   *
+   * @param loader source of the rows
+   * @param firstPage the source's first page of this model's page size, already loaded
+   */
+  public void setSource(PageLoader loader, Page<Media> firstPage) {
+    reset(loader);
+    exactCount = false;
+    rowCount = 0;
+    pages.put(0, firstPage.items());
+    pageCursors.put(1, firstPage.nextCursor());
+    if (firstPage.nextCursor() == null) {
+      updateRowCount(firstPage.items().size(), true);
+    } else {
+      updateRowCount(2 * pageSize, false);
+    }
+    fireTableDataChanged();
+  }
+
+  private void reset(PageLoader loader) {
+    this.loader = loader;
+    exactCount = true;
+    pageCursors.clear();
+    pageCursors.put(0, null);
+    pages.clear();
+    pending.clear();
+    generation++;
+  }
+
+  /**
+   * Returns the item shown in a row, loading its page if needed.
+   *
+   * @param row model row index
+   * @return the item, or null if its page is still loading or the source produced fewer rows
+   *     than announced
+   */
+  public Media getMediaAt(int row) {
+    int pageIndex = row / pageSize;
+    List<Media> page = page(pageIndex);
+    int offset = row % pageSize;
+    return page != null && offset < page.size() ? page.get(offset) : null;
+  }
+
+  /**
+   * @param row model row index
+   * @return true if the row's page has been requested but has not arrived yet
+   */
+  public boolean isLoading(int row) {
+    return pending.contains(row / pageSize);
+  }
+
+  /** @return number of pages currently held in memory */
+  int cachedPageCount() {
+    return pages.size();
+  }
+
+  @Override
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  @Override
+  public int getColumnCount() {
+    return columnNames.length;
+  }
+
+  @Override
+  public String getColumnName(int column) {
+    return columnNames[column];
+  }
+
+  @Override
+  public boolean isCellEditable(int row, int column) {
+    return column == editableColumn;
+  }
+
+  @Override
+  public Object getValueAt(int row, int column) {
+    Media media = getMediaAt(row);
+    if (media == null) {
+      return column == 0 && isLoading(row) ? LOADING : "";
+    }
+    return cells.apply(media, column);
+  }
+
+  private List<Media> page(int pageIndex) {
+    List<Media> cached = pages.get(pageIndex);
+    if (cached != null) {
+      return cached;
+    }
+    Map.Entry<Integer, String> known = pageCursors.floorEntry(pageIndex);
+    int from = known.getKey();
+    String cursor = known.getValue();
+    PageLoader source = loader;
+    if (tasks == null) {
+      return store(pageIndex, walk(source, pageSize, from, cursor, pageIndex));
+    }
+    if (pending.add(pageIndex)) {
+      int requestedFor = generation;
+      tasks.submit(
+          () -> walk(source, pageSize, from, cursor, pageIndex),
+          walked -> {
+            if (requestedFor == generation) {
+              pending.remove(pageIndex);
+              store(pageIndex, walked);
+              int first = pageIndex * pageSize;
+              int last = Math.min(rowCount, first + pageSize) - 1;
+              if (first <= last) {
+                fireTableRowsUpdated(first, last);
+              }
+            }
+          },
+          ex -> {
+            if (requestedFor == generation) {
+              // Forget the request so the page is retried when next painted.
+              pending.remove(pageIndex);
+            }
+          });
+    }
+    return null;
+  }
+
+  /**
+   * Loads page {@code to}, starting from page {@code from} whose start is known. The pages in
+   * between are skipped in loads of up to {@value #STRIDE_PAGES} pages whose items are
+   * discarded; a load of {@code n} pages ends where {@code n} single-page loads would, so only
+   * the cursors at the stride boundaries are kept. Does not touch model state, so it can run
+   * on any thread.
+   */
+  private static Walked walk(PageLoader source, int pageSize, int from, String cursor, int to) {
+    Map<Integer, String> cursors = new LinkedHashMap<>();
+    int page = from;
+    while (page < to) {
+      if (page > 0 && cursor == null) {
+        // The source ended before this page, at a boundary seen earlier.
+        return new Walked(cursors, List.of(), null, -1);
+      }
+      int skip = Math.min(STRIDE_PAGES - Math.floorMod(page, STRIDE_PAGES), to - page);
+      Page<Media> skipped = source.load(cursor, skip * pageSize);
+      cursor = skipped.nextCursor();
+      if (cursor == null) {
+        return new Walked(cursors, List.of(), null, page * pageSize + skipped.items().size());
+      }
+      page += skip;
+      cursors.put(page, cursor);
+    }
+    if (to > 0 && cursor == null) {
+      return new Walked(cursors, List.of(), null, -1);
+    }
+    Page<Media> loaded = source.load(cursor, pageSize);
+    cursors.put(to + 1, loaded.nextCursor());
+    int end = loaded.nextCursor() == null ? to * pageSize + loaded.items().size() : -1;
+    return new Walked(cursors, loaded.items(), loaded.nextCursor(), end);
+  }
+
+  private List<Media> store(int pageIndex, Walked walked) {
+    walked.cursors().forEach((page, cursor) -> {
+      // Stride boundaries, and the page after the loaded one.
+      if (page % STRIDE_PAGES == 0 || page == pageIndex + 1) {
+        pageCursors.putIfAbsent(page, cursor);
+      }
+    });
+    pages.put(pageIndex, walked.items());
+    if (walked.end() >= 0) {
+      updateRowCount(walked.end(), true);
+    } else if (walked.next() != null) {
+      updateRowCount((pageIndex + 2) * pageSize, false);
+    }
+    return walked.items();
+  }
+
+  /**
+   * Adjusts an open-ended row count: grows it to {@code count}, or settles on {@code count}
+   * once the end of the source is known. A count supplied with the source is left alone.
+   */
+  private void updateRowCount(int count, boolean exact) {
+    if (exactCount) {
+      return;
+    }
+    exactCount = exact;
+    int previous = rowCount;
+    rowCount = exact ? count : Math.max(previous, count);
+    if (rowCount > previous) {
+      fireTableRowsInserted(previous, rowCount - 1);
+    } else if (rowCount < previous) {
+      fireTableRowsDeleted(rowCount, previous - 1);
+    }
+  }
+
+  /**
+   * Result of {@link #walk}.
+   *
+   * @param cursors cursors found on the way, by the page they start
+   * @param items the requested page, empty if the source ended before it
+   * @param next cursor after the requested page, or null if the source ends there
+   * @param end number of rows in the whole source if the walk reached its end, otherwise -1
+   */
+  private record Walked(Map<Integer, String> cursors, List<Media> items, String next, int end) {}
+
+  /**
+   * Adapts a source so that only items passing a filter are returned, while still filling
+   * whole pages. Each underlying page is requested for exactly the number of rows still
+   * missing and consumed completely, so its cursor stays a valid place to continue from.
+   *
+   * @param source unfiltered source
+   * @param filter items to keep
+   * @return the filtered source
+   */
+  public static PageLoader filtered(PageLoader source, Predicate<Media> filter) {
+    return (cursor, limit) -> {
+      List<Media> items = new ArrayList<>(limit);
+      String next = cursor;
+      do {
+        Page<Media> page = source.load(next, limit - items.size());
+        for (Media media : page.items()) {
+          if (filter.test(media)) {
+            items.add(media);
+          }
+        }
+        next = page.nextCursor();
+      } while (items.size() < limit && next != null);
+      return new Page<>(items, next);
+    };
+  }
+
+  /**
+   * Serves an already materialised list, e.g. a short list of fuzzy suggestions, through the
+   * same paging interface.
+   *
+   * @param items the rows
+   * @return a source whose cursors are row offsets
+   */
+  public static PageLoader ofList(List<Media> items) {
+    List<Media> rows = List.copyOf(items);
+    return (cursor, limit) -> {
+      int from = cursor == null ? 0 : Integer.parseInt(cursor);
+      int to = Math.min(rows.size(), from + limit);
+      return new Page<>(rows.subList(from, to), to < rows.size() ? String.valueOf(to) : null);
+    };
+  }
+}
@@ -0,0 +1,131 @@
+package com.library.gui;
+
+import com.library.system.LibraryConfig;
+import com.library.system.LibraryEnvironment;
+import java.awt.GraphicsEnvironment;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+
+/**
+ * Measures the cold start of a kiosk: the time from JVM start until the login screen is on
+ * display.
+ *
+ * <p>Each run is one fresh JVM, since that is what a kiosk session pays for. The time is split
+ * into JVM startup (until {@code main} is entered), {@link LibraryEnvironment#bootstrap} and
+ * building and painting the login screen; class-data sharing shortens all three, as each of
+ * them mostly loads classes.
+ * Without a display only the first two phases are measured. The JVM exits once the
+ * measurement is printed, so the same run can also record the classes an AppCDS archive
+ * should hold ({@code -XX:ArchiveClassesAtExit}); the {@code kiosk} Maven profile does both.</p>
+ *
+ * <p>Optional {@code key=value} arguments: {@code label} names the run in the output and
+ * {@code results} is a CSV file each run is appended to, for tracking boot time over time.
+ * The environment is configured as usual, e.g. {@code -Dlibrary.storage=memory}.</p>
+ *
+ * <pre>
+ * java -XX:SharedArchiveFile=target/library-kiosk.jsa -cp target/libraryManagementSystem.jar \
+ *     com.library.gui.StartupBenchmark label=appcds results=target/startup-benchmark.csv
+ * </pre>
+ */
+public final class StartupBenchmark {
+
+  /** Phase durations of one start, in milliseconds; -1 for a login screen not measured. */
+  public record Measurement(long jvmMillis, long bootstrapMillis, long loginScreenMillis) {
+
+    /** @return time from JVM start until the last measured phase ended */
+    public long totalMillis() {
+      return jvmMillis + bootstrapMillis + Math.max(0, loginScreenMillis);
+    }
+
+    /** @return the measurement as one CSV row: label, total and the three phases */
+    public String toCsv(String label) {
+      return String.join(",", label, String.valueOf(totalMillis()), String.valueOf(jvmMillis),
+          String.valueOf(bootstrapMillis), String.valueOf(loginScreenMillis));
+    }
+  }
+
+  static final String CSV_HEADER = "label,total_ms,jvm_ms,bootstrap_ms,login_screen_ms";
+
+  private StartupBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    long mainEntered = System.currentTimeMillis();
+    String label = "default";
+    Path results = null;
+    for (String arg : args) {
+      String[] parts = arg.split("=", 2);
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Expected key=value but got: " + arg);
+      }
+      switch (parts[0].trim()) {
+        case "label" -> label = parts[1].trim();
+        case "results" -> results = Paths.get(parts[1].trim());
+        default -> throw new IllegalArgumentException("Unknown option: " + parts[0]);
+      }
+    }
+
+    Measurement measurement = measure(
+        LibraryConfig.load(), mainEntered, !GraphicsEnvironment.isHeadless());
+    System.out.printf(
+        "Startup [%s]: %d ms to login screen (JVM %d ms, bootstrap %d ms, login screen %s)%n",
+        label, measurement.totalMillis(), measurement.jvmMillis(), measurement.bootstrapMillis(),
+        measurement.loginScreenMillis() < 0
+            ? "not measured without a display" : measurement.loginScreenMillis() + " ms");
+    if (results != null) {
+      append(results, measurement.toCsv(label));
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Boots the environment and, if asked to, shows the login screen.
+   *
+   * @param config environment configuration
+   * @param mainEntered wall-clock time at which {@code main} was entered
+   * @param showLoginScreen whether to build and paint the login screen
+   * @return the phase durations
+   */
+  static Measurement measure(LibraryConfig config, long mainEntered, boolean showLoginScreen)
+      throws InterruptedException, InvocationTargetException {
+    long start = System.nanoTime();
+    LibraryEnvironment environment = LibraryEnvironment.bootstrap(config);
+    long bootstrapMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+    long loginScreenMillis = -1;
+    if (showLoginScreen) {
+      start = System.nanoTime();
+      SwingUtilities.invokeAndWait(() -> new LibraryGUI(environment));
+      // The first paint is queued behind the frame becoming visible; wait for it too.
+      SwingUtilities.invokeAndWait(() -> { });
+      loginScreenMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+    // Read last: the management classes are not part of a kiosk start. The JVM records its
+    // own start time, which is more precise than the process start time the OS reports.
+    long jvmMillis = mainEntered - ManagementFactory.getRuntimeMXBean().getStartTime();
+    return new Measurement(jvmMillis, bootstrapMillis, loginScreenMillis);
+  }
+
+  private static void append(Path results, String row) {
+    try {
+      if (!Files.exists(results)) {
+        Files.writeString(results, "timestamp," + CSV_HEADER + System.lineSeparator(),
+            StandardCharsets.UTF_8);
+      }
+      Files.writeString(results, Instant.now() + "," + row + System.lineSeparator(),
+          StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not write " + results, ex);
+    }
+  }
+}
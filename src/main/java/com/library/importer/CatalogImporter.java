@@ -0,0 +1,138 @@
+package com.library.importer;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+import com.library.domain.MediaType;
+import com.library.repository.MediaRepository;
+import com.library.support.IdGenerator;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Loads a catalog feed into a {@link MediaRepository} in bulk.
+ *
+ * <p>The feed is read as a stream in chunks of {@value #CHUNK_SIZE} records. Each chunk is
+ * validated in parallel; the results are then walked in feed order, so deduplication by ISBN
+ * keeps the first occurrence no matter how the work was split. Books whose ISBN is already
+ * in the catalog, or earlier in the feed, are skipped; ISBN-10 and ISBN-13 spellings of the
+ * same number count as one. Everything accepted is committed with a single
+ * {@link MediaRepository#saveAll} call at the end, so file-backed storage is written once
+ * rather than once per record, and a feed that fails to parse halfway leaves the catalog
+ * untouched.</p>
+ */
+public class CatalogImporter {
+
+  /** Most rejection messages kept in an {@link ImportReport}. */
+  public static final int MAX_ERRORS = 100;
+
+  /** Records validated together; progress is reported after each chunk. */
+  static final int CHUNK_SIZE = 8_192;
+
+  /** Receives progress while an import runs. */
+  @FunctionalInterface
+  public interface Progress {
+    /** Ignores progress. */
+    Progress NONE = (read, accepted, committed) -> { };
+
+    /**
+     * @param read records read so far
+     * @param accepted records accepted so far
+     * @param committed true once, after the accepted records have been saved
+     */
+    void update(int read, int accepted, boolean committed);
+  }
+
+  private final MediaRepository mediaRepository;
+
+  public CatalogImporter(MediaRepository mediaRepository) {
+    this.mediaRepository = mediaRepository;
+  }
+
+  /**
+   * Validates, deduplicates and saves the records of a feed.
+   *
+   * @param records the feed, e.g. from {@link FeedFormat#records}; consumed and closed
+   * @param progress progress listener, called on the importing thread
+   * @return counts of imported, duplicate and rejected records
+   */
+  public ImportReport importFeed(Stream<ImportRecord> records, Progress progress) {
+    Set<String> isbns = new HashSet<>();
+    for (Media media : mediaRepository.findAll()) {
+      if (media instanceof Book book) {
+        String isbn = Isbn.normalize(book.getIsbn());
+        isbns.add(isbn != null ? isbn : book.getIsbn());
+      }
+    }
+
+    List<Media> accepted = new ArrayList<>();
+    List<String> errors = new ArrayList<>();
+    int read = 0;
+    int duplicates = 0;
+    int rejected = 0;
+    try (records) {
+      Iterator<ImportRecord> feed = records.iterator();
+      List<ImportRecord> chunk = new ArrayList<>(CHUNK_SIZE);
+      while (feed.hasNext()) {
+        chunk.clear();
+        while (chunk.size() < CHUNK_SIZE && feed.hasNext()) {
+          chunk.add(feed.next());
+        }
+        read += chunk.size();
+        List<Validated> results = chunk.parallelStream().map(CatalogImporter::validate).toList();
+        for (Validated result : results) {
+          if (result.error() != null) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) {
+              errors.add(result.error());
+            }
+          } else if (result.isbn() != null && !isbns.add(result.isbn())) {
+            duplicates++;
+          } else {
+            accepted.add(result.media());
+          }
+        }
+        progress.update(read, accepted.size(), false);
+      }
+    }
+
+    mediaRepository.saveAll(accepted);
+    progress.update(read, accepted.size(), true);
+    return new ImportReport(read, accepted.size(), duplicates, rejected, List.copyOf(errors));
+  }
+
+  private static Validated validate(ImportRecord record) {
+    String problem = null;
+    String isbn = null;
+    if (record.type() == null) {
+      problem = "unknown media type";
+    } else if (record.title() == null || record.title().isBlank()) {
+      problem = "missing title";
+    } else if (record.creator() == null || record.creator().isBlank()) {
+      problem = record.type() == MediaType.BOOK ? "missing author" : "missing artist";
+    } else if (record.quantity() < 1) {
+      problem = "quantity must be a positive number";
+    } else if (record.type() == MediaType.BOOK) {
+      isbn = Isbn.normalize(record.isbn());
+      if (isbn == null) {
+        problem = "invalid ISBN '" + record.isbn() + "'";
+      }
+    }
+    if (problem != null) {
+      return new Validated(null, null, record.position() + ": " + problem);
+    }
+
+    Media media = record.type() == MediaType.BOOK
+        ? new Book(IdGenerator.newId(), record.title().trim(), record.creator().trim(), isbn)
+        : new CD(IdGenerator.newId(), record.title().trim(), record.creator().trim());
+    media.setQuantity(record.quantity());
+    return new Validated(media, isbn, null);
+  }
+
+  /** A record after validation: the item to save, or why it was rejected. */
+  private record Validated(Media media, String isbn, String error) {}
+}
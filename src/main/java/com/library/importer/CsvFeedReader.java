@@ -0,0 +1,214 @@
+package com.library.importer;
+
+import com.library.domain.MediaType;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming reader for CSV catalog feeds.
+ *
+ * <p>The first row names the columns: {@code type}, {@code title}, {@code creator} (or
+ * {@code author} / {@code artist}), {@code isbn} and optionally {@code quantity}, in any order;
+ * other columns are ignored. Types are {@code book} or {@code cd}. Fields follow RFC 4180:
+ * they may be quoted, and quoted fields may contain commas, doubled quotes and line breaks.</p>
+ *
+ * <p>Records are parsed one at a time as the stream is consumed, so a feed of any size is
+ * read in constant memory.</p>
+ */
+public final class CsvFeedReader {
+
+  private CsvFeedReader() {}
+
+  /**
+   * @param reader the feed; closed when the returned stream is closed
+   * @return the feed's records, in file order
+   * @throws IllegalArgumentException if the header lacks a title column or is malformed
+   * @throws UncheckedIOException if the feed cannot be read; in both cases {@code reader} is
+   *     closed before the exception is thrown
+   */
+  public static Stream<ImportRecord> records(Reader reader) {
+    Rows rows;
+    Map<String, Integer> columns;
+    try {
+      // Reading the header can fail on a malformed or unreadable first row.
+      rows = new Rows(new BufferedReader(reader));
+      columns = rows.hasNext() ? header(rows.next()) : Map.of();
+      if (!columns.containsKey("title")) {
+        throw new IllegalArgumentException("CSV feed needs a header row with a title column");
+      }
+    } catch (RuntimeException ex) {
+      try {
+        close(reader);
+      } catch (UncheckedIOException closeFailure) {
+        ex.addSuppressed(closeFailure);
+      }
+      throw ex;
+    }
+    Iterator<ImportRecord> records = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return rows.hasNext();
+      }
+
+      @Override
+      public ImportRecord next() {
+        List<String> fields = rows.next();
+        return toRecord("line " + rows.startLine, fields, columns);
+      }
+    };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(() -> close(reader));
+  }
+
+  private static Map<String, Integer> header(List<String> names) {
+    Map<String, Integer> columns = new HashMap<>();
+    for (int i = 0; i < names.size(); i++) {
+      String name = names.get(i).trim().toLowerCase(Locale.ROOT);
+      switch (name) {
+        case "author", "artist" -> columns.putIfAbsent("creator", i);
+        case "copies" -> columns.putIfAbsent("quantity", i);
+        default -> columns.putIfAbsent(name, i);
+      }
+    }
+    return columns;
+  }
+
+  private static ImportRecord toRecord(
+      String position, List<String> fields, Map<String, Integer> columns) {
+    String type = field(fields, columns, "type").toLowerCase(Locale.ROOT);
+    MediaType mediaType = switch (type) {
+      case "book" -> MediaType.BOOK;
+      case "cd" -> MediaType.CD;
+      default -> null;
+    };
+    String quantity = field(fields, columns, "quantity");
+    int copies;
+    try {
+      copies = quantity.isEmpty() ? 1 : Integer.parseInt(quantity);
+    } catch (NumberFormatException ex) {
+      copies = 0; // rejected by validation
+    }
+    return new ImportRecord(
+        position,
+        mediaType,
+        field(fields, columns, "title"),
+        field(fields, columns, "creator"),
+        field(fields, columns, "isbn"),
+        copies);
+  }
+
+  private static String field(List<String> fields, Map<String, Integer> columns, String name) {
+    Integer index = columns.get(name);
+    return index == null || index >= fields.size() ? "" : fields.get(index).trim();
+  }
+
+  private static void close(Reader reader) {
+    try {
+      reader.close();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /** Splits the input into rows of fields, reading one row ahead. */
+  private static final class Rows implements Iterator<List<String>> {
+    private final BufferedReader in;
+    private int line;
+    private int startLine;
+    private List<String> next;
+    private int nextStartLine;
+
+    private Rows(BufferedReader in) {
+      this.in = in;
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public List<String> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      List<String> row = next;
+      startLine = nextStartLine;
+      advance();
+      return row;
+    }
+
+    private void advance() {
+      try {
+        do {
+          nextStartLine = line + 1;
+          next = readRow();
+        } while (next != null && next.size() == 1 && next.get(0).isBlank());
+      } catch (IOException ex) {
+        throw new UncheckedIOException(ex);
+      }
+    }
+
+    /** @return the fields of the next row, or null at the end of the input */
+    private List<String> readRow() throws IOException {
+      int c = in.read();
+      if (c == -1) {
+        return null;
+      }
+      List<String> fields = new ArrayList<>();
+      StringBuilder field = new StringBuilder();
+      boolean quoted = false;
+      while (true) {
+        if (quoted) {
+          if (c == -1) {
+            throw new IllegalArgumentException("Unterminated quoted field at line " + nextStartLine);
+          }
+          if (c == '"') {
+            in.mark(1);
+            int following = in.read();
+            if (following == '"') {
+              field.append('"');
+            } else {
+              quoted = false;
+              in.reset();
+            }
+          } else {
+            if (c == '\n') {
+              line++;
+            }
+            field.append((char) c);
+          }
+        } else if (c == '"' && field.length() == 0) {
+          quoted = true;
+        } else if (c == ',') {
+          fields.add(field.toString());
+          field.setLength(0);
+        } else if (c == '\n' || c == -1) {
+          line++;
+          break;
+        } else if (c != '\r') {
+          field.append((char) c);
+        }
+        c = in.read();
+      }
+      fields.add(field.toString());
+      return fields;
+    }
+  }
+}
@@ -0,0 +1,43 @@
+package com.library.importer;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/** File formats a catalog feed can be imported from. */
+public enum FeedFormat {
+  /** Comma-separated values with a header row, see {@link CsvFeedReader}. */
+  CSV {
+    @Override
+    public Stream<ImportRecord> records(InputStream in) {
+      return CsvFeedReader.records(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+  },
+  /** MARC 21 in ISO 2709 transmission format, see {@link MarcFeedReader}. */
+  MARC21 {
+    @Override
+    public Stream<ImportRecord> records(InputStream in) {
+      return MarcFeedReader.records(in);
+    }
+  };
+
+  /**
+   * Opens a streaming reader over a feed.
+   *
+   * @param in the feed; closed when the returned stream is closed
+   * @return the feed's records, in feed order
+   */
+  public abstract Stream<ImportRecord> records(InputStream in);
+
+  /**
+   * @param file feed file
+   * @return {@link #MARC21} for {@code .mrc} and {@code .marc} files, otherwise {@link #CSV}
+   */
+  public static FeedFormat forFile(Path file) {
+    String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+    return name.endsWith(".mrc") || name.endsWith(".marc") ? MARC21 : CSV;
+  }
+}
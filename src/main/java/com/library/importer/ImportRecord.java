@@ -0,0 +1,16 @@
+package com.library.importer;
+
+import com.library.domain.MediaType;
+
+/**
+ * One catalog entry as read from a feed, before validation.
+ *
+ * @param position where the entry came from, e.g. "line 12", for error messages
+ * @param type media type, or null if the feed did not give a recognisable one
+ * @param title title as given
+ * @param creator author or artist as given
+ * @param isbn ISBN as given, empty for CDs
+ * @param quantity number of copies; feeds without a count give 1
+ */
+public record ImportRecord(
+    String position, MediaType type, String title, String creator, String isbn, int quantity) {}
@@ -0,0 +1,15 @@
+package com.library.importer;
+
+import java.util.List;
+
+/**
+ * Outcome of a catalog import.
+ *
+ * @param read records read from the feed
+ * @param imported items saved to the catalog
+ * @param duplicates records skipped because their ISBN was already in the catalog or earlier
+ *     in the feed
+ * @param rejected records skipped because they failed validation
+ * @param errors messages for the first rejected records, at most {@link CatalogImporter#MAX_ERRORS}
+ */
+public record ImportReport(int read, int imported, int duplicates, int rejected, List<String> errors) {}
@@ -0,0 +1,60 @@
+package com.library.importer;
+
+/**
+ * ISBN checks for imports. Both ISBN-10 and ISBN-13 are accepted and reduced to the
+ * 13-digit form, so the two spellings of one edition are recognised as duplicates.
+ */
+final class Isbn {
+
+  private Isbn() {}
+
+  /**
+   * @param raw ISBN as written, with or without hyphens and spaces
+   * @return the 13-digit ISBN, or null if {@code raw} is not a valid ISBN
+   */
+  static String normalize(String raw) {
+    if (raw == null) {
+      return null;
+    }
+    StringBuilder digits = new StringBuilder(13);
+    for (int i = 0; i < raw.length(); i++) {
+      char c = raw.charAt(i);
+      if (c >= '0' && c <= '9' || (c == 'X' || c == 'x') && digits.length() == 9) {
+        digits.append(Character.toUpperCase(c));
+      } else if (c != '-' && c != ' ') {
+        return null;
+      }
+    }
+    if (digits.length() == 10) {
+      return isValid10(digits) ? to13(digits) : null;
+    }
+    if (digits.length() == 13 && digits.indexOf("X") < 0) {
+      return checkDigit13(digits) == digits.charAt(12) - '0' ? digits.toString() : null;
+    }
+    return null;
+  }
+
+  private static boolean isValid10(CharSequence digits) {
+    int sum = 0;
+    for (int i = 0; i < 10; i++) {
+      char c = digits.charAt(i);
+      int value = c == 'X' ? 10 : c - '0';
+      sum += value * (10 - i);
+    }
+    return sum % 11 == 0;
+  }
+
+  private static String to13(CharSequence isbn10) {
+    StringBuilder isbn13 = new StringBuilder("978").append(isbn10, 0, 9);
+    return isbn13.append(checkDigit13(isbn13)).toString();
+  }
+
+  /** Check digit over the first 12 digits. */
+  private static int checkDigit13(CharSequence digits) {
+    int sum = 0;
+    for (int i = 0; i < 12; i++) {
+      sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+    }
+    return (10 - sum % 10) % 10;
+  }
+}
@@ -0,0 +1,227 @@
+package com.library.importer;
+
+import com.library.domain.MediaType;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Streaming reader for MARC 21 bibliographic records in ISO 2709 transmission format, the
+ * format vendors deliver {@code .mrc} files in.
+ *
+ * <p>Only the fields the catalog keeps are read: title from 245 $a and $b, author or artist
+ * from 100, 110 or the first 700 $a, and ISBN from the first 020 $a. Records whose leader
+ * marks them as sound recordings (type {@code i} or {@code j}) become CDs, everything else
+ * books. Field data is decoded as UTF-8; records in MARC-8 encoding are read as far as they
+ * are ASCII.</p>
+ */
+public final class MarcFeedReader {
+
+  private static final int LEADER_LENGTH = 24;
+  private static final int DIRECTORY_ENTRY_LENGTH = 12;
+  private static final byte FIELD_TERMINATOR = 0x1E;
+  private static final byte SUBFIELD_DELIMITER = 0x1F;
+
+  private MarcFeedReader() {}
+
+  /**
+   * @param in the feed; closed when the returned stream is closed
+   * @return the feed's records, in file order
+   * @throws IllegalArgumentException if a record is malformed
+   * @throws UncheckedIOException if the feed cannot be read; if the first record fails,
+   *     {@code in} is closed before the exception is thrown
+   */
+  public static Stream<ImportRecord> records(InputStream in) {
+    InputStream buffered = new BufferedInputStream(in);
+    byte[] first;
+    try {
+      // The first record is read ahead before the stream and its close handler exist.
+      first = read(buffered);
+    } catch (RuntimeException ex) {
+      try {
+        close(buffered);
+      } catch (UncheckedIOException closeFailure) {
+        ex.addSuppressed(closeFailure);
+      }
+      throw ex;
+    }
+    Iterator<ImportRecord> records = new Iterator<>() {
+      private int count;
+      private byte[] next = first;
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public ImportRecord next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+        byte[] record = next;
+        next = read(buffered);
+        return parse("record " + ++count, record);
+      }
+    };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(() -> close(buffered));
+  }
+
+  private static byte[] read(InputStream in) {
+    try {
+      return readRecord(in);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  private static void close(InputStream in) {
+    try {
+      in.close();
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  /** @return the next record including its leader, or null at the end of the feed */
+  private static byte[] readRecord(InputStream in) throws IOException {
+    int first = in.read();
+    // Skip line breaks some tools put between records.
+    while (first == '\n' || first == '\r') {
+      first = in.read();
+    }
+    if (first == -1) {
+      return null;
+    }
+    byte[] length = new byte[5];
+    length[0] = (byte) first;
+    if (in.readNBytes(length, 1, 4) != 4) {
+      throw new IllegalArgumentException("Truncated MARC record");
+    }
+    int recordLength = number(length, 0, 5);
+    if (recordLength < LEADER_LENGTH + 1) {
+      throw new IllegalArgumentException("Malformed MARC record length");
+    }
+    byte[] record = new byte[recordLength];
+    System.arraycopy(length, 0, record, 0, 5);
+    if (in.readNBytes(record, 5, recordLength - 5) != recordLength - 5) {
+      throw new IllegalArgumentException("Truncated MARC record");
+    }
+    return record;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the leader, the directory or a field points past the
+   *     end of the record
+   */
+  static ImportRecord parse(String position, byte[] record) {
+    if (record.length < LEADER_LENGTH) {
+      throw new IllegalArgumentException("Malformed MARC " + position + ": truncated leader");
+    }
+    char recordType = (char) record[6];
+    int baseAddress = number(record, 12, 5);
+    if (baseAddress < LEADER_LENGTH || baseAddress > record.length) {
+      throw new IllegalArgumentException(
+          "Malformed MARC " + position + ": base address " + baseAddress
+              + " outside the record");
+    }
+    String title = "";
+    String subtitle = "";
+    String mainCreator = "";
+    String addedCreator = "";
+    String isbn = "";
+    for (int entry = LEADER_LENGTH;
+        entry + DIRECTORY_ENTRY_LENGTH <= baseAddress && record[entry] != FIELD_TERMINATOR;
+        entry += DIRECTORY_ENTRY_LENGTH) {
+      String tag = new String(record, entry, 3, StandardCharsets.US_ASCII);
+      int length = number(record, entry + 3, 4);
+      int start = baseAddress + number(record, entry + 7, 5);
+      if (start + length > record.length) {
+        throw new IllegalArgumentException(
+            "Malformed MARC " + position + ": field " + tag + " runs past the end of the record");
+      }
+      switch (tag) {
+        case "245" -> {
+          title = subfield(record, start, length, 'a');
+          subtitle = subfield(record, start, length, 'b');
+        }
+        case "100", "110" -> {
+          if (mainCreator.isEmpty()) {
+            mainCreator = subfield(record, start, length, 'a');
+          }
+        }
+        case "700" -> {
+          if (addedCreator.isEmpty()) {
+            addedCreator = subfield(record, start, length, 'a');
+          }
+        }
+        case "020" -> {
+          if (isbn.isEmpty()) {
+            // "0261103571 (pbk.)": the ISBN is the first word.
+            isbn = subfield(record, start, length, 'a').split(" ", 2)[0];
+          }
+        }
+        default -> { }
+      }
+    }
+    if (!subtitle.isEmpty()) {
+      title = trimPunctuation(title) + ": " + subtitle;
+    }
+    MediaType type = recordType == 'i' || recordType == 'j' ? MediaType.CD : MediaType.BOOK;
+    return new ImportRecord(
+        position,
+        type,
+        trimPunctuation(title),
+        trimPunctuation(mainCreator.isEmpty() ? addedCreator : mainCreator),
+        isbn,
+        1);
+  }
+
+  /** @return the first occurrence of a subfield in a data field, or "" */
+  private static String subfield(byte[] record, int start, int length, char code) {
+    int end = Math.min(record.length, start + length);
+    for (int i = start; i < end - 1; i++) {
+      if (record[i] == SUBFIELD_DELIMITER && record[i + 1] == code) {
+        int from = i + 2;
+        int to = from;
+        while (to < end && record[to] != SUBFIELD_DELIMITER && record[to] != FIELD_TERMINATOR) {
+          to++;
+        }
+        return new String(record, from, to - from, StandardCharsets.UTF_8).trim();
+      }
+    }
+    return "";
+  }
+
+  /** Drops the ISBD punctuation cataloguers end fields with, e.g. "The hobbit /". */
+  private static String trimPunctuation(String value) {
+    int end = value.length();
+    while (end > 0 && " /:;,.=".indexOf(value.charAt(end - 1)) >= 0) {
+      end--;
+    }
+    return value.substring(0, end);
+  }
+
+  private static int number(byte[] bytes, int offset, int length) {
+    int value = 0;
+    for (int i = offset; i < offset + length; i++) {
+      int digit = bytes[i] - '0';
+      if (digit < 0 || digit > 9) {
+        throw new IllegalArgumentException("Malformed MARC record: expected digits in leader");
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  }
+}
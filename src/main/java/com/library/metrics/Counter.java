@@ -0,0 +1,45 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter backed by a {@link LongAdder}.
+ *
+ * <p>Increments are lock-free and contend only under very heavy parallel use, which makes the
+ * counter cheap enough to leave enabled on every hot path.</p>
+ */
+public final class Counter {
+
+  private final String name;
+  private final LongAdder value = new LongAdder();
+
+  Counter(String name) {
+    this.name = name;
+  }
+
+  /** @return the metric name */
+  public String getName() {
+    return name;
+  }
+
+  /** Adds one to the counter. */
+  public void increment() {
+    value.increment();
+  }
+
+  /**
+   * Adds the given amount to the counter.
+   *
+   * @param amount amount to add; negative values are ignored
+   */
+  public void increment(long amount) {
+    if (amount > 0) {
+      value.add(amount);
+    }
+  }
+
+  /** @return the current count */
+  public long count() {
+    return value.sum();
+  }
+}
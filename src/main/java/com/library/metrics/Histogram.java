@@ -0,0 +1,99 @@
+package com.library.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free distribution of non-negative long values.
+ *
+ * <p>Values are recorded into power-of-two buckets, so percentiles are approximate (within a
+ * factor of two) but recording never allocates or blocks. Count, sum and maximum are exact.</p>
+ */
+public final class Histogram {
+
+  private static final int BUCKETS = 64;
+
+  private final String name;
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final AtomicLong max = new AtomicLong();
+
+  Histogram(String name) {
+    this.name = name;
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /** @return the metric name */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Records a single value.
+   *
+   * @param value the observed value; negative values are recorded as zero
+   */
+  public void record(long value) {
+    long v = Math.max(0, value);
+    buckets[bucketFor(v)].increment();
+    count.increment();
+    sum.add(v);
+    if (v > max.get()) {
+      max.accumulateAndGet(v, Math::max);
+    }
+  }
+
+  /** @return number of recorded values */
+  public long count() {
+    return count.sum();
+  }
+
+  /** @return sum of all recorded values */
+  public long sum() {
+    return sum.sum();
+  }
+
+  /** @return largest recorded value, or zero if nothing was recorded */
+  public long max() {
+    return max.get();
+  }
+
+  /** @return arithmetic mean of recorded values, or zero if nothing was recorded */
+  public double mean() {
+    long n = count();
+    return n == 0 ? 0 : (double) sum() / n;
+  }
+
+  /**
+   * Returns an upper bound for the given percentile.
+   *
+   * @param percentile value between 0 and 100
+   * @return the upper bound of the bucket containing the percentile, capped at {@link #max()}
+   */
+  public long percentile(double percentile) {
+    long total = count();
+    if (total == 0) {
+      return 0;
+    }
+    long threshold = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets[i].sum();
+      if (seen >= threshold) {
+        return Math.min(upperBound(i), max());
+      }
+    }
+    return max();
+  }
+
+  private static int bucketFor(long value) {
+    return value == 0 ? 0 : 64 - Long.numberOfLeadingZeros(value) - 1;
+  }
+
+  private static long upperBound(int bucket) {
+    return bucket >= 62 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1;
+  }
+}
@@ -0,0 +1,147 @@
+package com.library.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Central registry for counters, timers, histograms and gauges.
+ *
+ * <p>Metrics are created on first use and then shared, so services typically look up their
+ * metrics once in the constructor and keep the references in fields. All metric types are
+ * lock-free; reading a snapshot never blocks writers.</p>
+ */
+public class MetricsRegistry {
+
+  private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the counter with the given name, creating it if necessary.
+   *
+   * @param name metric name, e.g. {@code borrow.loans.created}
+   * @return the shared counter
+   */
+  public Counter counter(String name) {
+    return counters.computeIfAbsent(name, Counter::new);
+  }
+
+  /**
+   * Returns the timer with the given name, creating it if necessary.
+   *
+   * @param name metric name, e.g. {@code catalog.search}
+   * @return the shared timer
+   */
+  public Timer timer(String name) {
+    return timers.computeIfAbsent(name, Timer::new);
+  }
+
+  /**
+   * Returns the histogram with the given name, creating it if necessary.
+   *
+   * @param name metric name, e.g. {@code catalog.search.results}
+   * @return the shared histogram
+   */
+  public Histogram histogram(String name) {
+    return histograms.computeIfAbsent(name, Histogram::new);
+  }
+
+  /**
+   * Registers a gauge whose value is read from the supplier whenever a snapshot is taken.
+   * Registering the same name again replaces the previous supplier.
+   *
+   * @param name metric name, e.g. {@code cache.media.hits}
+   * @param value supplier of the current value; must be cheap and thread-safe
+   */
+  public void gauge(String name, LongSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /** @return current gauge values keyed by name, in name order */
+  public Map<String, Long> getGauges() {
+    Map<String, Long> values = new TreeMap<>();
+    gauges.forEach((name, supplier) -> values.put(name, supplier.getAsLong()));
+    return values;
+  }
+
+  /** @return all counters keyed by name, in name order */
+  public Map<String, Counter> getCounters() {
+    return new TreeMap<>(counters);
+  }
+
+  /** @return all timers keyed by name, in name order */
+  public Map<String, Timer> getTimers() {
+    return new TreeMap<>(timers);
+  }
+
+  /** @return all histograms keyed by name, in name order */
+  public Map<String, Histogram> getHistograms() {
+    return new TreeMap<>(histograms);
+  }
+
+  /**
+   * Renders the current values of every metric as a plain-text table.
+   *
+   * @return a human-readable snapshot
+   */
+  public String render() {
+    StringBuilder out = new StringBuilder();
+    out.append("=== Metrics snapshot ").append(LocalDateTime.now()).append(" ===\n");
+
+    out.append("\nTimers (ms)\n");
+    out.append(String.format("%-36s %10s %10s %10s %10s %10s%n",
+        "name", "count", "mean", "p50", "p99", "max"));
+    getTimers().forEach((name, timer) -> out.append(String.format(
+        "%-36s %10d %10.3f %10.3f %10.3f %10.3f%n",
+        name,
+        timer.count(),
+        timer.meanNanos() / 1_000_000.0,
+        timer.percentileNanos(50) / 1_000_000.0,
+        timer.percentileNanos(99) / 1_000_000.0,
+        timer.maxNanos() / 1_000_000.0)));
+
+    out.append("\nCounters\n");
+    getCounters().forEach((name, counter) ->
+        out.append(String.format("%-36s %10d%n", name, counter.count())));
+
+    out.append("\nGauges\n");
+    getGauges().forEach((name, value) ->
+        out.append(String.format("%-36s %10d%n", name, value)));
+
+    out.append("\nHistograms\n");
+    out.append(String.format("%-36s %10s %10s %10s %10s %10s%n",
+        "name", "count", "mean", "p50", "p99", "max"));
+    getHistograms().forEach((name, histogram) -> out.append(String.format(
+        "%-36s %10d %10.1f %10d %10d %10d%n",
+        name,
+        histogram.count(),
+        histogram.mean(),
+        histogram.percentile(50),
+        histogram.percentile(99),
+        histogram.max())));
+    return out.toString();
+  }
+
+  /**
+   * Writes {@link #render()} to a text file, replacing any existing content.
+   *
+   * @param file target file
+   * @throws IOException if the file cannot be written
+   */
+  public void dumpTo(Path file) throws IOException {
+    Path parent = file.toAbsolutePath().getParent();
+    if (parent != null) {
+      Files.createDirectories(parent);
+    }
+    Files.writeString(file, render(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,89 @@
+package com.library.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records how long an operation takes.
+ *
+ * <p>Callers capture {@link #start()} and pass it back to {@link #stop(long)} from a
+ * {@code finally} block, which keeps the hot path free of lambdas and allocations:</p>
+ *
+ * <pre>
+ * long start = timer.start();
+ * try {
+ *   ...
+ * } finally {
+ *   timer.stop(start);
+ * }
+ * </pre>
+ */
+public final class Timer {
+
+  private final String name;
+  private final Histogram nanos;
+
+  Timer(String name) {
+    this.name = name;
+    this.nanos = new Histogram(name);
+  }
+
+  /** @return the metric name */
+  public String getName() {
+    return name;
+  }
+
+  /** @return a start token to hand back to {@link #stop(long)} */
+  public long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Records the time elapsed since the given start token.
+   *
+   * @param start value previously returned by {@link #start()}
+   * @return the elapsed time in nanoseconds
+   */
+  public long stop(long start) {
+    long elapsed = System.nanoTime() - start;
+    nanos.record(elapsed);
+    return elapsed;
+  }
+
+  /**
+   * Records an externally measured duration.
+   *
+   * @param amount the duration
+   * @param unit unit of {@code amount}
+   */
+  public void record(long amount, TimeUnit unit) {
+    nanos.record(unit.toNanos(amount));
+  }
+
+  /** @return number of recorded calls */
+  public long count() {
+    return nanos.count();
+  }
+
+  /** @return total recorded time in nanoseconds */
+  public long totalNanos() {
+    return nanos.sum();
+  }
+
+  /** @return mean recorded time in nanoseconds */
+  public double meanNanos() {
+    return nanos.mean();
+  }
+
+  /** @return longest recorded time in nanoseconds */
+  public long maxNanos() {
+    return nanos.max();
+  }
+
+  /**
+   * @param percentile value between 0 and 100
+   * @return approximate latency for the percentile in nanoseconds
+   */
+  public long percentileNanos(double percentile) {
+    return nanos.percentile(percentile);
+  }
+}
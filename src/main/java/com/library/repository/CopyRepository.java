@@ -0,0 +1,16 @@
+package com.library.repository;
+
+import com.library.domain.Copy;
+import java.util.List;
+import java.util.Optional;
+
+public interface CopyRepository {
+  void save(Copy copy);
+
+  Optional<Copy> findByBarcode(String barcode);
+
+  /** @return copies of the title ordered by copy number */
+  List<Copy> findByMedia(String mediaId);
+
+  void deleteByMedia(String mediaId);
+}
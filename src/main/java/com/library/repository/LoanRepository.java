@@ -1,6 +1,7 @@
 package com.library.repository;
 
 import com.library.domain.Loan;
+import java.time.LocalDate;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -14,8 +15,43 @@ public interface LoanRepository {
 
   Optional<Loan> findActiveByMedia(String mediaId);
 
+  /** @return loans not yet returned whose due date is before the given date */
+  List<Loan> findActiveDueBefore(LocalDate date);
+
+  /** @return the user's returned loans, oldest first */
+  List<Loan> findHistoryByUser(String userId);
+
+  /** @return every loan, including any moved to an archive */
   Collection<Loan> findAll();
 
+  /**
+   * Loans this repository keeps itself: {@link #findAll()} without any moved to an archive,
+   * which keeps them in its own files. Snapshots hold these only.
+   *
+   * @return open and unarchived returned loans
+   */
+  default Collection<Loan> findAllUnarchived() {
+    return findAll();
+  }
+
+  /**
+   * Saves loans read back from a snapshot. Loans this repository has archived since the
+   * snapshot was taken are skipped, so they do not come back as duplicates of the archived
+   * copies.
+   *
+   * @param loans loans to save
+   */
+  default void restoreAll(Collection<Loan> loans) {
+    loans.forEach(this::save);
+  }
+
+  /**
+   * Removes a loan. Archived loans are immutable: if the loan has been moved to an archive,
+   * the archived copy is left behind and is still returned by {@link #findById(String)},
+   * {@link #findHistoryByUser(String)} and {@link #findAll()}.
+   *
+   * @param id loan to remove
+   */
   void delete(String id);
 }
 
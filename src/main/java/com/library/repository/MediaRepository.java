@@ -1,18 +1,82 @@
 package com.library.repository;
 
 import com.library.domain.Media;
+import com.library.search.Facet;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface MediaRepository {
   void save(Media media);
 
+  /**
+   * Saves many items as one batch, e.g. a catalog import. Storage that rewrites files on
+   * every save writes them once for the whole batch.
+   *
+   * @param items items to add or replace
+   */
+  void saveAll(Collection<? extends Media> items);
+
   Optional<Media> findById(String id);
 
   Collection<Media> findAll();
 
   List<Media> search(String query);
+
+  /**
+   * Typo-tolerant search over title and author or artist words.
+   *
+   * @param query raw query text
+   * @param maxDistance maximum edits allowed per query word
+   * @param limit maximum number of results
+   * @return closest matches first
+   */
+  List<Media> searchFuzzy(String query, int maxDistance, int limit);
+
+  /**
+   * One page of {@link #search(String)} results in a stable order.
+   *
+   * @param query search text; blank matches everything
+   * @param cursor {@link Page#nextCursor()} of the previous page, or null for the first page
+   * @param limit maximum number of items on the page
+   * @param sort result order; must be the same for every page of one query
+   * @return the page
+   * @throws IllegalArgumentException if {@code limit} is not positive, or the cursor is
+   *     malformed or from another sort order
+   */
+  Page<Media> searchPage(String query, String cursor, int limit, MediaSort sort);
+
+  /**
+   * Lazily evaluated {@link #search(String)}: matches are produced as the stream is consumed,
+   * so callers that stop early never look at the rest of the catalog.
+   *
+   * @param query search text; blank matches everything
+   * @return matching items
+   */
+  Stream<Media> streamSearch(String query);
+
+  /**
+   * @param selection required value per facet; facets not in the map are unrestricted
+   * @return number of items matching every selected value
+   */
+  long countByFacets(Map<Facet, String> selection);
+
+  /**
+   * Breaks the items matching a selection down by the values of one facet.
+   *
+   * @param facet facet to break down
+   * @param selection values of the other facets
+   * @return non-zero counts keyed by facet value, in value order
+   */
+  Map<String, Long> facetCounts(Facet facet, Map<Facet, String> selection);
+
+  /**
+   * @param selection required value per facet
+   * @return the items matching every selected value
+   */
+  List<Media> findByFacets(Map<Facet, String> selection);
   
   void delete(String id);
 
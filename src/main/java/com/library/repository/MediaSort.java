@@ -0,0 +1,111 @@
+package com.library.repository;
+
+import com.library.domain.Media;
+import com.library.search.MediaSearchKey;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+/**
+ * Orderings supported by {@link MediaRepository#searchPage(String, String, int, MediaSort)}.
+ *
+ * <p>Each ordering maps an item to a unique, stable sort key. Cursors are the key of the last
+ * item on a page, so the next page starts strictly after it no matter what was added or
+ * removed in between, and no offset has to be skipped over.</p>
+ */
+public enum MediaSort {
+  /** By folded title, ties broken by ID. */
+  TITLE {
+    @Override
+    public String key(MediaSearchKey key) {
+      return key.title() + '\u0000' + key.media().getId();
+    }
+  },
+  /** By ID; IDs are time-ordered, so this is roughly the order items were added. */
+  ID {
+    @Override
+    public String key(MediaSearchKey key) {
+      return key.media().getId();
+    }
+  };
+
+  /**
+   * @param key search key of an item
+   * @return the item's sort key under this ordering
+   */
+  public abstract String key(MediaSearchKey key);
+
+  /**
+   * Reads one page from keys already sorted by this ordering: seeks past the cursor, then
+   * collects matches until the page is full.
+   *
+   * @param ordering search keys keyed by {@link #key(MediaSearchKey)}
+   * @param query search text; blank matches everything
+   * @param cursor cursor of the previous page, or null for the first page
+   * @param limit maximum number of items on the page
+   * @return the page
+   * @throws IllegalArgumentException if {@code limit} is not positive or the cursor is invalid
+   */
+  public Page<Media> page(
+      NavigableMap<String, MediaSearchKey> ordering, String query, String cursor, int limit) {
+    if (limit <= 0) {
+      throw new IllegalArgumentException("limit must be positive: " + limit);
+    }
+    String after = decodeCursor(cursor);
+    Map<String, MediaSearchKey> remaining =
+        after == null ? ordering : ordering.tailMap(after, false);
+    String needle = query == null || query.isBlank() ? null : MediaSearchKey.fold(query);
+    List<Media> items = new ArrayList<>(Math.min(limit, 256));
+    String lastKey = null;
+    for (Map.Entry<String, MediaSearchKey> entry : remaining.entrySet()) {
+      if (needle != null && !entry.getValue().matches(needle)) {
+        continue;
+      }
+      if (items.size() >= limit) {
+        return new Page<>(items, encodeCursor(lastKey));
+      }
+      items.add(entry.getValue().media());
+      lastKey = entry.getKey();
+    }
+    return new Page<>(items, null);
+  }
+
+  /**
+   * Wraps a sort key into an opaque cursor bound to this ordering.
+   *
+   * @param sortKey key of the last item on a page
+   * @return the cursor
+   */
+  public String encodeCursor(String sortKey) {
+    String payload = name() + ':' + sortKey;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Unwraps a cursor produced by {@link #encodeCursor(String)}.
+   *
+   * @param cursor cursor from a previous page, or null for the first page
+   * @return the sort key to continue after, or null for the first page
+   * @throws IllegalArgumentException if the cursor is malformed or belongs to another ordering
+   */
+  public String decodeCursor(String cursor) {
+    if (cursor == null || cursor.isEmpty()) {
+      return null;
+    }
+    String payload;
+    try {
+      payload = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+    }
+    String prefix = name() + ':';
+    if (!payload.startsWith(prefix)) {
+      throw new IllegalArgumentException("Cursor does not belong to sort order " + this);
+    }
+    return payload.substring(prefix.length());
+  }
+}
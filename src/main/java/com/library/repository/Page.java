@@ -0,0 +1,22 @@
+package com.library.repository;
+
+import java.util.List;
+
+/**
+ * One page of a cursor-paginated query.
+ *
+ * @param items the items on this page, in the requested order
+ * @param nextCursor opaque cursor to pass back for the following page, or null on the last page
+ * @param <T> item type
+ */
+public record Page<T>(List<T> items, String nextCursor) {
+
+  public Page {
+    items = List.copyOf(items);
+  }
+
+  /** @return true if another page follows */
+  public boolean hasNext() {
+    return nextCursor != null;
+  }
+}
@@ -7,6 +7,14 @@ import java.util.Optional;
 public interface UserRepository {
   void save(User user);
 
+  /**
+   * Saves many users as one batch, e.g. when restoring a snapshot. Storage that rewrites its
+   * file on every save writes it once for the whole batch.
+   *
+   * @param users users to add or replace
+   */
+  void saveAll(Collection<User> users);
+
   Optional<User> findById(String id);
 
   Optional<User> findByUsername(String username);
@@ -0,0 +1,482 @@
+package com.library.repository.archive;
+
+import com.library.domain.Loan;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for returned loans: one directory of compressed, write-once partition files
+ * per month of return.
+ *
+ * <p>Archiving a batch writes one new partition per month it touches, named
+ * {@code loans-<yyyy>-<mm>-<seq>.gz}; a later batch for the same month gets the next
+ * sequence number instead of rewriting the file. Each file starts with the IDs of the users
+ * whose loans it holds, followed by the loans themselves. Only those user tables are kept in
+ * memory, as a map from user to partitions, so a user's history reads just the partitions
+ * that mention the user. Lookups by loan ID and {@link #view()} read partitions from disk.</p>
+ *
+ * <p>Archiving is two steps, so the caller can make the move from its own store atomic:
+ * {@link #write} puts the files on disk, {@link #publish} makes them visible to queries.</p>
+ *
+ * <p>Thread-safe: queries share a read lock, {@link #publish} takes the write lock.</p>
+ */
+public class LoanArchive {
+
+  private static final byte[] MAGIC = "LMSLOANS".getBytes(StandardCharsets.US_ASCII);
+  private static final int FORMAT_VERSION = 1;
+  private static final Pattern FILE_NAME = Pattern.compile("loans-(\\d{4})-(\\d{2})-(\\d{3,})\\.gz");
+
+  private final Path directory;
+  private final Timer writeTimer;
+  private final Timer readTimer;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  /** Published partitions; a partition's position is its number in {@link #byUser}. */
+  private final List<Partition> partitions = new ArrayList<>();
+  private final Map<String, BitSet> byUser = new HashMap<>();
+  private final Map<YearMonth, Integer> lastSequence = new HashMap<>();
+  private long loans;
+
+  /** A partition file: the loans returned in one month, archived in one batch. */
+  public record Partition(YearMonth month, int sequence, Path file, int loans) {}
+
+  /** A written partition and the users it holds, until it is published. */
+  public record Written(Partition partition, List<String> userIds) {}
+
+  /**
+   * Opens the archive in a directory, creating the directory if needed. Existing partitions
+   * are registered by reading their user tables.
+   *
+   * @param directory directory of the partition files
+   * @throws UncheckedIOException if the directory or a partition cannot be read
+   * @throws IllegalArgumentException if a partition is damaged
+   */
+  public LoanArchive(Path directory) {
+    this(directory, new MetricsRegistry());
+  }
+
+  public LoanArchive(Path directory, MetricsRegistry metrics) {
+    this.directory = directory;
+    this.writeTimer = metrics.timer("loans.archive.write");
+    this.readTimer = metrics.timer("loans.archive.read");
+    List<Written> existing = new ArrayList<>();
+    try {
+      Files.createDirectories(directory);
+      try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+        for (Path file : files) {
+          Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+          if (name.matches()) {
+            existing.add(readHeader(file));
+          } else if (file.getFileName().toString().endsWith(".tmp")) {
+            // Left behind by an interrupted write; never published.
+            Files.deleteIfExists(file);
+          }
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not open loan archive " + directory, ex);
+    }
+    existing.sort(Comparator.comparing((Written w) -> w.partition().month())
+        .thenComparingInt(w -> w.partition().sequence()));
+    publish(existing);
+  }
+
+  /**
+   * Writes returned loans to new partition files, one per month of return. The partitions
+   * are not visible to queries until they are passed to {@link #publish}. If any file fails,
+   * the ones already written by this call are deleted again.
+   *
+   * @param returned returned loans to archive
+   * @return the written partitions, oldest month first
+   * @throws IllegalArgumentException if a loan is not returned
+   * @throws UncheckedIOException if a file cannot be written
+   */
+  public List<Written> write(Collection<Loan> returned) {
+    Map<YearMonth, List<Loan>> byMonth = new TreeMap<>();
+    for (Loan loan : returned) {
+      if (!loan.isReturned()) {
+        throw new IllegalArgumentException("Only returned loans can be archived: " + loan.getId());
+      }
+      byMonth.computeIfAbsent(YearMonth.from(loan.getReturnedDate()), m -> new ArrayList<>())
+          .add(loan);
+    }
+    long start = writeTimer.start();
+    List<Written> written = new ArrayList<>();
+    try {
+      for (Map.Entry<YearMonth, List<Loan>> month : byMonth.entrySet()) {
+        written.add(writePartition(month.getKey(), nextSequence(month.getKey(), written),
+            month.getValue()));
+      }
+      return written;
+    } catch (IOException | RuntimeException ex) {
+      for (Written partition : written) {
+        try {
+          Files.deleteIfExists(partition.partition().file());
+        } catch (IOException suppressed) {
+          ex.addSuppressed(suppressed);
+        }
+      }
+      throw ex instanceof IOException io
+          ? new UncheckedIOException("Could not write loan archive " + directory, io)
+          : (RuntimeException) ex;
+    } finally {
+      writeTimer.stop(start);
+    }
+  }
+
+  /**
+   * Makes written partitions visible to queries.
+   *
+   * @param written partitions from {@link #write}
+   */
+  public void publish(List<Written> written) {
+    lock.writeLock().lock();
+    try {
+      for (Written partition : written) {
+        int number = partitions.size();
+        partitions.add(partition.partition());
+        for (String userId : partition.userIds()) {
+          byUser.computeIfAbsent(userId, id -> new BitSet()).set(number);
+        }
+        lastSequence.merge(
+            partition.partition().month(), partition.partition().sequence(), Math::max);
+        loans += partition.partition().loans();
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param userId user to look up
+   * @return the user's archived loans, by month of return, oldest first
+   * @throws UncheckedIOException if a partition cannot be read
+   */
+  public List<Loan> findByUser(String userId) {
+    List<Partition> selected = new ArrayList<>();
+    lock.readLock().lock();
+    try {
+      BitSet numbers = byUser.get(userId);
+      if (numbers == null) {
+        return new ArrayList<>();
+      }
+      numbers.stream().forEach(number -> selected.add(partitions.get(number)));
+    } finally {
+      lock.readLock().unlock();
+    }
+    selected.sort(Comparator.comparing(Partition::month).thenComparingInt(Partition::sequence));
+    List<Loan> result = new ArrayList<>();
+    for (Partition partition : selected) {
+      for (Loan loan : read(partition)) {
+        if (loan.getUserId().equals(userId)) {
+          result.add(loan);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Looks a loan up by ID. The archive has no ID index, so this reads partitions, newest
+   * first, until it finds the loan; it is meant for the rare lookup of an old loan.
+   *
+   * @param loanId loan to look up
+   * @return the archived loan, if present
+   * @throws UncheckedIOException if a partition cannot be read
+   */
+  public Optional<Loan> findById(String loanId) {
+    List<Partition> snapshot = partitions();
+    for (int i = snapshot.size() - 1; i >= 0; i--) {
+      for (Loan loan : read(snapshot.get(i))) {
+        if (loan.getId().equals(loanId)) {
+          return Optional.of(loan);
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  /**
+   * Finds which of the given loans are already archived. Only the partitions of the months
+   * the loans were returned in are read, each once.
+   *
+   * @param loans loans to check; open loans are never archived
+   * @return IDs of the loans found in the archive
+   * @throws UncheckedIOException if a partition cannot be read
+   */
+  public Set<String> archivedIds(Collection<Loan> loans) {
+    Map<YearMonth, Set<String>> byMonth = new HashMap<>();
+    for (Loan loan : loans) {
+      if (loan.getReturnedDate() != null) {
+        byMonth.computeIfAbsent(YearMonth.from(loan.getReturnedDate()), month -> new HashSet<>())
+            .add(loan.getId());
+      }
+    }
+    Set<String> archived = new HashSet<>();
+    if (byMonth.isEmpty()) {
+      return archived;
+    }
+    for (Partition partition : partitions()) {
+      Set<String> candidates = byMonth.get(partition.month());
+      if (candidates != null) {
+        for (Loan loan : read(partition)) {
+          if (candidates.contains(loan.getId())) {
+            archived.add(loan.getId());
+          }
+        }
+      }
+    }
+    return archived;
+  }
+
+  /**
+   * Returns a read-only view over the partitions published at the time of the call. Partitions
+   * are read one at a time while iterating.
+   *
+   * @return a collection view of the archived loans
+   */
+  public Collection<Loan> view() {
+    List<Partition> snapshot;
+    long size;
+    lock.readLock().lock();
+    try {
+      snapshot = List.copyOf(partitions);
+      size = loans;
+    } finally {
+      lock.readLock().unlock();
+    }
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Loan> iterator() {
+        return snapshot.stream().flatMap(partition -> read(partition).stream()).iterator();
+      }
+
+      @Override
+      public Stream<Loan> stream() {
+        return snapshot.stream().flatMap(partition -> read(partition).stream());
+      }
+
+      @Override
+      public int size() {
+        return (int) Math.min(size, Integer.MAX_VALUE);
+      }
+    };
+  }
+
+  /** @return published partitions, in the order they were published */
+  public List<Partition> partitions() {
+    lock.readLock().lock();
+    try {
+      return List.copyOf(partitions);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** @return number of archived loans */
+  public long size() {
+    lock.readLock().lock();
+    try {
+      return loans;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private int nextSequence(YearMonth month, List<Written> pending) {
+    int last;
+    lock.readLock().lock();
+    try {
+      last = lastSequence.getOrDefault(month, 0);
+    } finally {
+      lock.readLock().unlock();
+    }
+    for (Written written : pending) {
+      if (written.partition().month().equals(month)) {
+        last = Math.max(last, written.partition().sequence());
+      }
+    }
+    // Skip numbers taken by files written but never published, e.g. by a failed batch.
+    int next = last + 1;
+    while (Files.exists(fileFor(month, next))) {
+      next++;
+    }
+    return next;
+  }
+
+  private Path fileFor(YearMonth month, int sequence) {
+    return directory.resolve(String.format(
+        "loans-%04d-%02d-%03d.gz", month.getYear(), month.getMonthValue(), sequence));
+  }
+
+  private Written writePartition(YearMonth month, int sequence, List<Loan> monthLoans)
+      throws IOException {
+    List<Loan> sorted = new ArrayList<>(monthLoans);
+    sorted.sort(Comparator.comparing(Loan::getReturnedDate));
+    Map<String, Integer> userIndex = new LinkedHashMap<>();
+    for (Loan loan : sorted) {
+      userIndex.putIfAbsent(loan.getUserId(), userIndex.size());
+    }
+
+    Path file = fileFor(month, sequence);
+    Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (OutputStream raw = Files.newOutputStream(temp);
+         DataOutputStream out = new DataOutputStream(
+             new BufferedOutputStream(new GZIPOutputStream(raw, 1 << 16), 1 << 16))) {
+      out.write(MAGIC);
+      out.writeByte(FORMAT_VERSION);
+      out.writeInt(month.getYear());
+      out.writeByte(month.getMonthValue());
+      out.writeInt(sorted.size());
+      out.writeInt(userIndex.size());
+      for (String userId : userIndex.keySet()) {
+        out.writeUTF(userId);
+      }
+      for (Loan loan : sorted) {
+        out.writeInt(userIndex.get(loan.getUserId()));
+        out.writeUTF(loan.getId());
+        out.writeUTF(loan.getMediaId());
+        out.writeBoolean(loan.getCopyBarcode() != null);
+        if (loan.getCopyBarcode() != null) {
+          out.writeUTF(loan.getCopyBarcode());
+        }
+        out.writeInt((int) loan.getCheckoutDate().toEpochDay());
+        out.writeInt((int) loan.getDueDate().toEpochDay());
+        out.writeInt((int) loan.getReturnedDate().toEpochDay());
+        out.writeByte(Math.min(loan.getRenewalCount(), Byte.MAX_VALUE));
+      }
+    } catch (IOException | RuntimeException ex) {
+      Files.deleteIfExists(temp);
+      throw ex;
+    }
+    Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    return new Written(new Partition(month, sequence, file, sorted.size()),
+        List.copyOf(userIndex.keySet()));
+  }
+
+  private static Written readHeader(Path file) throws IOException {
+    Matcher name = FILE_NAME.matcher(file.getFileName().toString());
+    if (!name.matches()) {
+      throw new IllegalArgumentException("Not a loan archive partition: " + file);
+    }
+    try (DataInputStream in = open(file)) {
+      Header header = readHeader(in, file);
+      YearMonth month = YearMonth.of(Integer.parseInt(name.group(1)),
+          Integer.parseInt(name.group(2)));
+      if (!month.equals(header.month())) {
+        throw damaged(file);
+      }
+      return new Written(
+          new Partition(month, Integer.parseInt(name.group(3)), file, header.loans()),
+          header.userIds());
+    }
+  }
+
+  private List<Loan> read(Partition partition) {
+    long start = readTimer.start();
+    try (DataInputStream in = open(partition.file())) {
+      Header header = readHeader(in, partition.file());
+      List<Loan> result = new ArrayList<>(header.loans());
+      for (int i = 0; i < header.loans(); i++) {
+        int user = in.readInt();
+        if (user < 0 || user >= header.userIds().size()) {
+          throw damaged(partition.file());
+        }
+        String loanId = in.readUTF();
+        String mediaId = in.readUTF();
+        String copy = in.readBoolean() ? in.readUTF() : null;
+        LocalDate checkout = LocalDate.ofEpochDay(in.readInt());
+        LocalDate due = LocalDate.ofEpochDay(in.readInt());
+        LocalDate returned = LocalDate.ofEpochDay(in.readInt());
+        int renewals = in.readByte();
+        result.add(Loan.restore(loanId, header.userIds().get(user), mediaId, copy, checkout, due,
+            renewals, returned));
+      }
+      return result;
+    } catch (EOFException ex) {
+      throw damaged(partition.file());
+    } catch (IOException ex) {
+      throw new UncheckedIOException("Could not read loan archive " + partition.file(), ex);
+    } finally {
+      readTimer.stop(start);
+    }
+  }
+
+  private static DataInputStream open(Path file) throws IOException {
+    InputStream raw = Files.newInputStream(file);
+    try {
+      return new DataInputStream(
+          new BufferedInputStream(new GZIPInputStream(raw, 1 << 16), 1 << 16));
+    } catch (IOException ex) {
+      raw.close();
+      throw ex;
+    }
+  }
+
+  private static Header readHeader(DataInputStream in, Path file) throws IOException {
+    try {
+      byte[] magic = new byte[MAGIC.length];
+      in.readFully(magic);
+      if (!Arrays.equals(magic, MAGIC) || in.readUnsignedByte() != FORMAT_VERSION) {
+        throw damaged(file);
+      }
+      int year = in.readInt();
+      int monthValue = in.readUnsignedByte();
+      int count = in.readInt();
+      int userCount = in.readInt();
+      if (monthValue < 1 || monthValue > 12 || count < 0 || userCount < 0) {
+        throw damaged(file);
+      }
+      List<String> userIds = new ArrayList<>(userCount);
+      for (int i = 0; i < userCount; i++) {
+        userIds.add(in.readUTF());
+      }
+      return new Header(YearMonth.of(year, monthValue), count, userIds);
+    } catch (EOFException ex) {
+      throw damaged(file);
+    }
+  }
+
+  private static IllegalArgumentException damaged(Path file) {
+    return new IllegalArgumentException("Damaged loan archive partition: " + file);
+  }
+
+  private record Header(YearMonth month, int loans, List<String> userIds) {}
+}
@@ -0,0 +1,105 @@
+package com.library.repository.cache;
+
+import com.library.domain.Media;
+import com.library.repository.MediaRepository;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of any {@link MediaRepository}.
+ *
+ * <p>{@link #findById(String)} is answered from the cache when possible and populates it on a
+ * miss. Writes go to the backing repository first and then refresh (on {@code save}) or drop
+ * (on {@code delete}) the cached entry, so readers never observe a value older than the last
+ * write made through this decorator. Listing and searching are passed straight through.</p>
+ */
+public class CachingMediaRepository implements MediaRepository {
+
+  private final MediaRepository delegate;
+  private final SegmentedLruCache<String, Media> byId;
+
+  public CachingMediaRepository(MediaRepository delegate, SegmentedLruCache<String, Media> byId) {
+    this.delegate = delegate;
+    this.byId = byId;
+  }
+
+  @Override
+  public void save(Media media) {
+    delegate.save(media);
+    byId.put(media.getId(), media);
+  }
+
+  @Override
+  public void saveAll(Collection<? extends Media> items) {
+    delegate.saveAll(items);
+    items.forEach(media -> byId.put(media.getId(), media));
+  }
+
+  @Override
+  public Optional<Media> findById(String id) {
+    Media cached = byId.get(id);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    Optional<Media> loaded = delegate.findById(id);
+    loaded.ifPresent(media -> byId.put(id, media));
+    return loaded;
+  }
+
+  @Override
+  public Collection<Media> findAll() {
+    return delegate.findAll();
+  }
+
+  @Override
+  public List<Media> search(String query) {
+    return delegate.search(query);
+  }
+
+  @Override
+  public List<Media> searchFuzzy(String query, int maxDistance, int limit) {
+    return delegate.searchFuzzy(query, maxDistance, limit);
+  }
+
+  @Override
+  public Page<Media> searchPage(String query, String cursor, int limit, MediaSort sort) {
+    return delegate.searchPage(query, cursor, limit, sort);
+  }
+
+  @Override
+  public Stream<Media> streamSearch(String query) {
+    return delegate.streamSearch(query);
+  }
+
+  @Override
+  public long countByFacets(Map<Facet, String> selection) {
+    return delegate.countByFacets(selection);
+  }
+
+  @Override
+  public Map<String, Long> facetCounts(Facet facet, Map<Facet, String> selection) {
+    return delegate.facetCounts(facet, selection);
+  }
+
+  @Override
+  public List<Media> findByFacets(Map<Facet, String> selection) {
+    return delegate.findByFacets(selection);
+  }
+
+  @Override
+  public void delete(String id) {
+    delegate.delete(id);
+    byId.invalidate(id);
+  }
+
+  /** @return hit/miss statistics for the id cache */
+  public SegmentedLruCache.CacheStats stats() {
+    return byId.stats();
+  }
+}
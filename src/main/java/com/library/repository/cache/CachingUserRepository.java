@@ -0,0 +1,99 @@
+package com.library.repository.cache;
+
+import com.library.domain.User;
+import com.library.repository.UserRepository;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Read-through cache in front of any {@link UserRepository}.
+ *
+ * <p>Users are cached by id. Username lookups go through a second, small cache that maps a
+ * username to an id, so both access paths share a single cached {@link User} instance. Writes go
+ * to the backing repository first and then refresh or drop the cached entries.</p>
+ */
+public class CachingUserRepository implements UserRepository {
+
+  private final UserRepository delegate;
+  private final SegmentedLruCache<String, User> byId;
+  private final SegmentedLruCache<String, String> idByUsername;
+
+  public CachingUserRepository(
+      UserRepository delegate,
+      SegmentedLruCache<String, User> byId,
+      SegmentedLruCache<String, String> idByUsername) {
+    this.delegate = delegate;
+    this.byId = byId;
+    this.idByUsername = idByUsername;
+  }
+
+  @Override
+  public void save(User user) {
+    delegate.save(user);
+    byId.put(user.getId(), user);
+    idByUsername.put(user.getUsername(), user.getId());
+  }
+
+  @Override
+  public void saveAll(Collection<User> users) {
+    delegate.saveAll(users);
+    for (User user : users) {
+      byId.put(user.getId(), user);
+      idByUsername.put(user.getUsername(), user.getId());
+    }
+  }
+
+  @Override
+  public Optional<User> findById(String id) {
+    User cached = byId.get(id);
+    if (cached != null) {
+      return Optional.of(cached);
+    }
+    Optional<User> loaded = delegate.findById(id);
+    loaded.ifPresent(this::remember);
+    return loaded;
+  }
+
+  @Override
+  public Optional<User> findByUsername(String username) {
+    String id = idByUsername.get(username);
+    if (id != null) {
+      User cached = byId.get(id);
+      if (cached != null && cached.getUsername().equals(username)) {
+        return Optional.of(cached);
+      }
+    }
+    Optional<User> loaded = delegate.findByUsername(username);
+    if (loaded.isPresent()) {
+      remember(loaded.get());
+    } else {
+      idByUsername.invalidate(username);
+    }
+    return loaded;
+  }
+
+  @Override
+  public Collection<User> findAll() {
+    return delegate.findAll();
+  }
+
+  @Override
+  public void delete(String id) {
+    User cached = byId.get(id);
+    delegate.delete(id);
+    byId.invalidate(id);
+    if (cached != null) {
+      idByUsername.invalidate(cached.getUsername());
+    }
+  }
+
+  /** @return hit/miss statistics for the id cache */
+  public SegmentedLruCache.CacheStats stats() {
+    return byId.stats();
+  }
+
+  private void remember(User user) {
+    byId.put(user.getId(), user);
+    idByUsername.put(user.getUsername(), user.getId());
+  }
+}
@@ -0,0 +1,187 @@
+package com.library.repository.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache with segmented-LRU eviction and an optional time-to-live.
+ *
+ * <p>New entries enter a small <em>probation</em> segment. An entry that is read again while on
+ * probation is promoted to the <em>protected</em> segment, which holds roughly 80% of the
+ * capacity. When the protected segment overflows its least recently used entry is demoted back to
+ * probation, and when probation overflows its least recently used entry is evicted. One-off
+ * lookups (for example a full catalog listing touching every item once) therefore cannot flush
+ * the hot set of frequently used items.</p>
+ *
+ * <p>All operations are O(1) and guarded by the cache's monitor; the critical sections only
+ * touch two linked hash maps, so contention stays low compared to the I/O being avoided.</p>
+ *
+ * @param <K> key type
+ * @param <V> value type
+ */
+public class SegmentedLruCache<K, V> {
+
+  private final int probationCapacity;
+  private final int protectedCapacity;
+  private final long ttlNanos;
+  private final LongSupplier nanoClock;
+
+  private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>(16, 0.75f, true);
+  private final LinkedHashMap<K, Entry<V>> protectedSegment =
+      new LinkedHashMap<>(16, 0.75f, true);
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder expirations = new LongAdder();
+
+  /**
+   * Creates a cache using the system clock.
+   *
+   * @param maximumSize maximum number of entries, at least 1
+   * @param timeToLive how long an entry stays valid after it was written; {@code null} or zero
+   *     disables time-based expiry
+   */
+  public SegmentedLruCache(int maximumSize, Duration timeToLive) {
+    this(maximumSize, timeToLive, System::nanoTime);
+  }
+
+  /**
+   * Creates a cache with an explicit clock, mainly for tests.
+   *
+   * @param maximumSize maximum number of entries, at least 1
+   * @param timeToLive entry lifetime; {@code null} or zero disables expiry
+   * @param nanoClock source of monotonic nanosecond timestamps
+   */
+  public SegmentedLruCache(int maximumSize, Duration timeToLive, LongSupplier nanoClock) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("maximumSize must be at least 1");
+    }
+    this.protectedCapacity = maximumSize == 1 ? 0 : (int) (maximumSize * 0.8);
+    this.probationCapacity = maximumSize - protectedCapacity;
+    this.ttlNanos = timeToLive == null ? 0 : timeToLive.toNanos();
+    this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+  }
+
+  /**
+   * Returns the cached value, or {@code null} when absent or expired.
+   *
+   * @param key the key to look up
+   * @return the value or {@code null}
+   */
+  public synchronized V get(K key) {
+    Entry<V> entry = protectedSegment.get(key);
+    if (entry == null) {
+      entry = probation.get(key);
+      if (entry != null && !isExpired(entry)) {
+        // Second touch: promote to the protected segment.
+        probation.remove(key);
+        protectedSegment.put(key, entry);
+        demoteOverflow();
+      }
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    if (isExpired(entry)) {
+      probation.remove(key);
+      protectedSegment.remove(key);
+      expirations.increment();
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return entry.value;
+  }
+
+  /**
+   * Inserts or replaces a value.
+   *
+   * @param key the key
+   * @param value the value, must not be null
+   */
+  public synchronized void put(K key, V value) {
+    Objects.requireNonNull(value, "value");
+    Entry<V> entry = new Entry<>(value, nanoClock.getAsLong());
+    if (protectedSegment.containsKey(key)) {
+      protectedSegment.put(key, entry);
+      return;
+    }
+    probation.put(key, entry);
+    evictOverflow();
+  }
+
+  /**
+   * Removes a key from the cache.
+   *
+   * @param key the key to remove
+   */
+  public synchronized void invalidate(K key) {
+    probation.remove(key);
+    protectedSegment.remove(key);
+  }
+
+  /** Removes every entry; statistics are kept. */
+  public synchronized void invalidateAll() {
+    probation.clear();
+    protectedSegment.clear();
+  }
+
+  /** @return number of entries currently held, including not yet purged expired ones */
+  public synchronized int size() {
+    return probation.size() + protectedSegment.size();
+  }
+
+  /** @return a point-in-time copy of the hit, miss and eviction counters */
+  public CacheStats stats() {
+    return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+  }
+
+  private void demoteOverflow() {
+    while (protectedSegment.size() > protectedCapacity) {
+      Iterator<Map.Entry<K, Entry<V>>> eldest = protectedSegment.entrySet().iterator();
+      Map.Entry<K, Entry<V>> demoted = eldest.next();
+      eldest.remove();
+      probation.put(demoted.getKey(), demoted.getValue());
+    }
+    evictOverflow();
+  }
+
+  private void evictOverflow() {
+    while (probation.size() > probationCapacity) {
+      Iterator<K> eldest = probation.keySet().iterator();
+      eldest.next();
+      eldest.remove();
+      evictions.increment();
+    }
+  }
+
+  private boolean isExpired(Entry<V> entry) {
+    return ttlNanos > 0 && nanoClock.getAsLong() - entry.writtenAt >= ttlNanos;
+  }
+
+  private record Entry<V>(V value, long writtenAt) {}
+
+  /**
+   * Snapshot of cache statistics.
+   *
+   * @param hits lookups answered from the cache
+   * @param misses lookups that had to go to the backing repository
+   * @param evictions entries dropped because the cache was full
+   * @param expirations entries dropped because their time-to-live elapsed
+   */
+  public record CacheStats(long hits, long misses, long evictions, long expirations) {
+
+    /** @return fraction of lookups served from the cache, between 0 and 1 */
+    public double hitRate() {
+      long total = hits + misses;
+      return total == 0 ? 0 : (double) hits / total;
+    }
+  }
+}
@@ -4,7 +4,16 @@ import com.library.domain.Book;
 import com.library.domain.CD;
 import com.library.domain.Media;
 import com.library.domain.MediaType;
+import com.library.metrics.Histogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
 import com.library.repository.MediaRepository;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
+import com.library.search.FacetIndex;
+import com.library.search.FuzzyIndex;
+import com.library.search.MediaSearchKey;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -12,8 +21,14 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 /**
  * Simple file-based implementation of {@link MediaRepository}.
@@ -34,19 +49,34 @@ import java.util.Optional;
  * </pre>
  *
  * <p>This is intentionally simple and not optimized – it rewrites the whole file on each save.
+ * Searches reuse the items and {@link MediaSearchKey}s parsed on the previous read until either
+ * file changes, so repeated queries neither re-read the files nor re-fold every item; the items
+ * they return are therefore shared between searches, and changes must go through save.
  */
 public class FileMediaRepository implements MediaRepository {
 
   private final Path booksFile;
   private final Path cdsFile;
+  private final Timer readTimer;
+  private final Timer writeTimer;
+  private final Histogram recordsRead;
+  /** Search keys of the items last read or written, with the file state they came from. */
+  private volatile ParsedKeys parsedKeys;
 
   public FileMediaRepository() {
     this(Paths.get("data", "books.txt"));
   }
 
   public FileMediaRepository(Path booksFile) {
+    this(booksFile, new MetricsRegistry());
+  }
+
+  public FileMediaRepository(Path booksFile, MetricsRegistry metrics) {
     this.booksFile = booksFile;
     this.cdsFile = booksFile.getParent().resolve("cds.txt");
+    this.readTimer = metrics.timer("repository.media.file.read");
+    this.writeTimer = metrics.timer("repository.media.file.write");
+    this.recordsRead = metrics.histogram("repository.media.file.records");
   }
 
   @Override
@@ -58,6 +88,15 @@ public class FileMediaRepository implements MediaRepository {
     writeAll(all);
   }
 
+  @Override
+  public synchronized void saveAll(Collection<? extends Media> items) {
+    // One read and one write for the whole batch instead of one of each per item.
+    Map<String, Media> all = new LinkedHashMap<>();
+    findAll().forEach(media -> all.put(media.getId(), media));
+    items.forEach(media -> all.put(media.getId(), media));
+    writeAll(new ArrayList<>(all.values()));
+  }
+
   @Override
   public Optional<Media> findById(String id) {
     return findAll().stream().filter(m -> m.getId().equals(id)).findFirst();
@@ -65,10 +104,16 @@ public class FileMediaRepository implements MediaRepository {
 
   @Override
   public Collection<Media> findAll() {
-    List<Media> result = new ArrayList<>();
-    result.addAll(readBooks());
-    result.addAll(readCds());
-    return result;
+    long start = readTimer.start();
+    try {
+      List<Media> result = new ArrayList<>();
+      result.addAll(readBooks());
+      result.addAll(readCds());
+      recordsRead.record(result.size());
+      return result;
+    } finally {
+      readTimer.stop(start);
+    }
   }
 
   @Override
@@ -76,33 +121,110 @@ public class FileMediaRepository implements MediaRepository {
       if (query == null || query.isBlank()) {
           return new ArrayList<>(findAll());
       }
-      String needle = query.toLowerCase();
+      String needle = MediaSearchKey.fold(query);
       List<Media> matches = new ArrayList<>();
-      for (Media media : findAll()) {
-          // Search by title for all media types
-          if (media.getTitle().toLowerCase().contains(needle)) {
-              matches.add(media);
-              continue;
-          }
-          
-          // For books, search by author and ISBN
-          if (media.getType() == MediaType.BOOK && media instanceof Book book) {
-              if (book.getAuthor().toLowerCase().contains(needle) || 
-                  book.getIsbn().toLowerCase().contains(needle)) {
-                  matches.add(media);
-              }
-          } 
-          // For CDs, search by artist
-          else if (media.getType() == MediaType.CD && media instanceof CD cd) {
-              if (cd.getArtist().toLowerCase().contains(needle)) {
-                  matches.add(media);
-              }
+      for (MediaSearchKey key : searchKeys()) {
+          // Title for all media types, author and ISBN for books, artist for CDs.
+          if (key.matches(needle)) {
+              matches.add(key.media());
           }
       }
       return matches;
   }
 
+  @Override
+  public List<Media> searchFuzzy(String query, int maxDistance, int limit) {
+    // The files are the source of truth and are re-read per call, so the index is too.
+    FuzzyIndex index = new FuzzyIndex();
+    Map<String, Media> byId = new HashMap<>();
+    for (Media media : findAll()) {
+      index.index(media);
+      byId.put(media.getId(), media);
+    }
+    return index.search(query, maxDistance, limit).stream().map(byId::get).toList();
+  }
+
+  @Override
+  public Page<Media> searchPage(String query, String cursor, int limit, MediaSort sort) {
+    // The files are read in full anyway; sort once per call and continue after the cursor.
+    TreeMap<String, MediaSearchKey> ordering = new TreeMap<>();
+    for (MediaSearchKey key : searchKeys()) {
+      ordering.put(sort.key(key), key);
+    }
+    return sort.page(ordering, query, cursor, limit);
+  }
+
+  @Override
+  public long countByFacets(Map<Facet, String> selection) {
+    return facetIndex(findAll()).count(selection);
+  }
+
+  @Override
+  public Map<String, Long> facetCounts(Facet facet, Map<Facet, String> selection) {
+    return facetIndex(findAll()).counts(facet, selection);
+  }
+
+  @Override
+  public List<Media> findByFacets(Map<Facet, String> selection) {
+    Map<String, Media> byId = new HashMap<>();
+    findAll().forEach(media -> byId.put(media.getId(), media));
+    return facetIndex(byId.values()).ids(selection).stream().map(byId::get).toList();
+  }
+
+  private static FacetIndex facetIndex(Collection<Media> all) {
+    // Like the other queries here, counts reflect the files as they are right now.
+    FacetIndex index = new FacetIndex();
+    all.forEach(index::index);
+    return index;
+  }
+
+  @Override
+  public Stream<Media> streamSearch(String query) {
+    if (query == null || query.isBlank()) {
+      return findAll().stream();
+    }
+    String needle = MediaSearchKey.fold(query);
+    return searchKeys().stream().filter(key -> key.matches(needle)).map(MediaSearchKey::media);
+  }
+
+  /**
+   * Search keys of the items currently in the files, parsed again only when a file changed.
+   */
+  private List<MediaSearchKey> searchKeys() {
+    FileState state = FileState.of(booksFile, cdsFile);
+    ParsedKeys parsed = parsedKeys;
+    if (parsed != null && parsed.state().equals(state)) {
+      return parsed.keys();
+    }
+    List<MediaSearchKey> keys = findAll().stream().map(MediaSearchKey::of).toList();
+    parsedKeys = new ParsedKeys(state, keys);
+    return keys;
+  }
+
+  /** Size and modification time of both files, to detect changes made outside this instance. */
+  private record FileState(long booksSize, long booksModified, long cdsSize, long cdsModified) {
+
+    static FileState of(Path books, Path cds) {
+      try {
+        return new FileState(size(books), modified(books), size(cds), modified(cds));
+      } catch (IOException e) {
+        throw new RuntimeException("Failed to read media file attributes: " + books, e);
+      }
+    }
+
+    private static long size(Path file) throws IOException {
+      return Files.exists(file) ? Files.size(file) : -1;
+    }
+
+    private static long modified(Path file) throws IOException {
+      return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : -1;
+    }
+  }
+
+  private record ParsedKeys(FileState state, List<MediaSearchKey> keys) {}
+
   private void writeAll(List<Media> all) {
+    long start = writeTimer.start();
     try {
       Files.createDirectories(booksFile.getParent());
       List<String> bookLines = new ArrayList<>();
@@ -133,9 +255,13 @@ public class FileMediaRepository implements MediaRepository {
       }
       Files.write(booksFile, bookLines, StandardCharsets.UTF_8);
       Files.write(cdsFile, cdLines, StandardCharsets.UTF_8);
+      // Dropped rather than rebuilt, as writes may come faster than searches.
+      parsedKeys = null;
     } catch (IOException e) {
       throw new RuntimeException(
           "Failed to write media files: " + booksFile + " and " + cdsFile, e);
+    } finally {
+      writeTimer.stop(start);
     }
   }
 
@@ -147,78 +273,78 @@ public class FileMediaRepository implements MediaRepository {
   }
 
   private List<Media> readBooks() {
+    return readLines(booksFile, "books", FileMediaRepository::parseBook);
+  }
+
+  private List<Media> readCds() {
+    return readLines(cdsFile, "CDs", FileMediaRepository::parseCd);
+  }
+
+  private static List<Media> readLines(
+      Path file, String description, Function<String, Media> parser) {
     List<Media> result = new ArrayList<>();
-    if (!Files.exists(booksFile)) {
+    if (!Files.exists(file)) {
       return result;
     }
     try {
-      List<String> lines = Files.readAllLines(booksFile, StandardCharsets.UTF_8);
-      for (String line : lines) {
-        if (line.isBlank() || line.startsWith("#")) {
-          continue;
-        }
-        String[] parts = line.split(";");
-        // Expect: id;title;author;isbn;quantity
-        if (parts.length < 4) {
-          continue;
-        }
-        String id = parts[0];
-        String title = parts[1];
-        String author = parts[2];
-        String isbn = parts[3];
-        int quantity = 1;
-        if (parts.length >= 5) {
-          try {
-            quantity = Integer.parseInt(parts[4]);
-          } catch (NumberFormatException ignored) {
-            quantity = 1;
-          }
+      for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+        Media media = parser.apply(line);
+        if (media != null) {
+          result.add(media);
         }
-        Book book = new Book(id, title, author, isbn);
-        book.setQuantity(quantity);
-        result.add(book);
       }
     } catch (IOException e) {
-      throw new RuntimeException("Failed to read books file: " + booksFile, e);
+      throw new RuntimeException("Failed to read " + description + " file: " + file, e);
     }
     return result;
   }
 
-  private List<Media> readCds() {
-    List<Media> result = new ArrayList<>();
-    if (!Files.exists(cdsFile)) {
-      return result;
+  /**
+   * Parses one line of the books file.
+   *
+   * @param line {@code id;title;author;isbn;quantity}
+   * @return the book, or null for blank, comment and malformed lines
+   */
+  public static Book parseBook(String line) {
+    if (line.isBlank() || line.startsWith("#")) {
+      return null;
+    }
+    String[] parts = line.split(";");
+    // Expect: id;title;author;isbn;quantity
+    if (parts.length < 4) {
+      return null;
+    }
+    Book book = new Book(parts[0], parts[1], parts[2], parts[3]);
+    book.setQuantity(parts.length >= 5 ? quantity(parts[4]) : 1);
+    return book;
+  }
+
+  /**
+   * Parses one line of the CDs file.
+   *
+   * @param line {@code id;title;artist;quantity}
+   * @return the CD, or null for blank, comment and malformed lines
+   */
+  public static CD parseCd(String line) {
+    if (line.isBlank() || line.startsWith("#")) {
+      return null;
+    }
+    String[] parts = line.split(";");
+    // Expect: id;title;artist;quantity
+    if (parts.length < 3) {
+      return null;
     }
+    CD cd = new CD(parts[0], parts[1], parts[2]);
+    cd.setQuantity(parts.length >= 4 ? quantity(parts[3]) : 1);
+    return cd;
+  }
+
+  private static int quantity(String value) {
     try {
-      List<String> lines = Files.readAllLines(cdsFile, StandardCharsets.UTF_8);
-      for (String line : lines) {
-        if (line.isBlank() || line.startsWith("#")) {
-          continue;
-        }
-        String[] parts = line.split(";");
-        // Expect: id;title;artist;quantity
-        if (parts.length < 3) {
-          continue;
-        }
-        String id = parts[0];
-        String title = parts[1];
-        String artist = parts[2];
-        int quantity = 1;
-        if (parts.length >= 4) {
-          try {
-            quantity = Integer.parseInt(parts[3]);
-          } catch (NumberFormatException ignored) {
-            quantity = 1;
-          }
-        }
-        CD cd = new CD(id, title, artist);
-        cd.setQuantity(quantity);
-        result.add(cd);
-      }
-    } catch (IOException e) {
-      throw new RuntimeException("Failed to read CDs file: " + cdsFile, e);
+      return Integer.parseInt(value);
+    } catch (NumberFormatException ignored) {
+      return 1;
     }
-    return result;
   }
 
   @Override
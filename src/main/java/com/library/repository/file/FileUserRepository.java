@@ -2,6 +2,9 @@ package com.library.repository.file;
 
 import com.library.domain.User;
 import com.library.domain.UserRole;
+import com.library.metrics.Histogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
 import com.library.repository.UserRepository;
 import java.io.IOException;
 import java.math.BigDecimal;
@@ -31,13 +34,23 @@ import java.util.Optional;
 public class FileUserRepository implements UserRepository {
 
   private final Path usersFile;
+  private final Timer readTimer;
+  private final Timer writeTimer;
+  private final Histogram recordsRead;
 
   public FileUserRepository() {
     this(Paths.get("data", "users.txt"));
   }
 
   public FileUserRepository(Path usersFile) {
+    this(usersFile, new MetricsRegistry());
+  }
+
+  public FileUserRepository(Path usersFile, MetricsRegistry metrics) {
     this.usersFile = usersFile;
+    this.readTimer = metrics.timer("repository.user.file.read");
+    this.writeTimer = metrics.timer("repository.user.file.write");
+    this.recordsRead = metrics.histogram("repository.user.file.records");
   }
 
   @Override
@@ -50,6 +63,15 @@ public class FileUserRepository implements UserRepository {
     writeAll(byId.values());
   }
 
+  @Override
+  public synchronized void saveAll(Collection<User> users) {
+    Map<String, User> byId = new HashMap<>();
+    Map<String, User> byUsername = new HashMap<>();
+    loadAllInto(byId, byUsername);
+    users.forEach(user -> byId.put(user.getId(), user));
+    writeAll(byId.values());
+  }
+
   @Override
   public Optional<User> findById(String id) {
     Map<String, User> byId = new HashMap<>();
@@ -92,46 +114,64 @@ public class FileUserRepository implements UserRepository {
     if (!Files.exists(usersFile)) {
       return;
     }
+    long start = readTimer.start();
     try {
       List<String> lines = Files.readAllLines(usersFile, StandardCharsets.UTF_8);
       for (String line : lines) {
-        if (line.isBlank() || line.startsWith("#")) {
-          continue;
-        }
-        String[] parts = line.split(";");
-        // id;username;name;role;password;fineBalance
-        if (parts.length < 6) {
-          continue;
+        User user = parseUser(line);
+        if (user != null) {
+          byId.put(user.getId(), user);
+          byUsername.put(user.getUsername(), user);
         }
-        String id = parts[0];
-        String username = parts[1];
-        String name = parts[2];
-        UserRole role = UserRole.valueOf(parts[3]);
-        String password = parts[4];
-        BigDecimal fineBalance = new BigDecimal(parts[5]);
-
-        // Simple migration logic: older files may have stored the username as the password.
-        // If we detect that situation, we switch to sensible defaults so login works
-        // without the user having to manually edit the file.
-        if (role == UserRole.ADMIN && "admin".equals(password)) {
-          password = "admin123";
-        } else if (role == UserRole.MEMBER && username.equals(password)) {
-          password = "123";
-        }
-
-        User user = new User(id, username, name, role, password);
-        if (fineBalance.signum() > 0) {
-          user.addFine(fineBalance);
-        }
-        byId.put(id, user);
-        byUsername.put(username, user);
       }
     } catch (IOException e) {
       throw new RuntimeException("Failed to read users file: " + usersFile, e);
+    } finally {
+      recordsRead.record(byId.size());
+      readTimer.stop(start);
+    }
+  }
+
+  /**
+   * Parses one line of the users file.
+   *
+   * @param line {@code id;username;name;role;password;fineBalance}
+   * @return the user, or null for blank, comment and malformed lines
+   */
+  public static User parseUser(String line) {
+    if (line.isBlank() || line.startsWith("#")) {
+      return null;
+    }
+    String[] parts = line.split(";");
+    // id;username;name;role;password;fineBalance
+    if (parts.length < 6) {
+      return null;
+    }
+    String id = parts[0];
+    String username = parts[1];
+    String name = parts[2];
+    UserRole role = UserRole.valueOf(parts[3]);
+    String password = parts[4];
+    BigDecimal fineBalance = new BigDecimal(parts[5]);
+
+    // Simple migration logic: older files may have stored the username as the password.
+    // If we detect that situation, we switch to sensible defaults so login works
+    // without the user having to manually edit the file.
+    if (role == UserRole.ADMIN && "admin".equals(password)) {
+      password = "admin123";
+    } else if (role == UserRole.MEMBER && username.equals(password)) {
+      password = "123";
+    }
+
+    User user = new User(id, username, name, role, password);
+    if (fineBalance.signum() > 0) {
+      user.addFine(fineBalance);
     }
+    return user;
   }
 
   private void writeAll(Collection<User> users) {
+    long start = writeTimer.start();
     try {
       Files.createDirectories(usersFile.getParent());
       List<String> lines = new ArrayList<>();
@@ -153,6 +193,8 @@ public class FileUserRepository implements UserRepository {
       Files.write(usersFile, lines, StandardCharsets.UTF_8);
     } catch (IOException e) {
       throw new RuntimeException("Failed to write users file: " + usersFile, e);
+    } finally {
+      writeTimer.stop(start);
     }
   }
 
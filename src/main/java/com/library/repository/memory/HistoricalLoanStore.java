@@ -0,0 +1,553 @@
+package com.library.repository.memory;
+
+import com.library.domain.Loan;
+import com.library.support.DenseIndex;
+import com.library.support.IdDictionary;
+import java.time.LocalDate;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Column-oriented, primitive-backed storage for returned loans.
+ *
+ * <p>One row per loan, spread over parallel arrays: user, media and copy IDs are dictionary
+ * codes in {@code int} columns, dates are epoch days in {@code int} columns, and UUID-shaped
+ * loan IDs are two {@code long}s (other loan IDs go through a dictionary). A row costs about
+ * 50 bytes including the ID hash table and the per-user and per-media row lists, instead of
+ * several hundred for a {@link Loan} with its strings and dates. {@code Loan} objects are only
+ * materialised for the rows a query returns.</p>
+ *
+ * <p>Reads run concurrently under a read lock; appends and removals take the write lock.
+ * {@link #removeAll} compacts the columns into new arrays, so views taken earlier keep
+ * reading the rows they started with.</p>
+ */
+public class HistoricalLoanStore {
+  private static final int NO_COPY = -1;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final IdDictionary ids;
+  private final IdDictionary otherLoanIds = new IdDictionary();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private long[] idHigh = new long[INITIAL_CAPACITY];
+  private long[] idLow = new long[INITIAL_CAPACITY];
+  private int[] users = new int[INITIAL_CAPACITY];
+  private int[] media = new int[INITIAL_CAPACITY];
+  private int[] copies = new int[INITIAL_CAPACITY];
+  private int[] checkoutDays = new int[INITIAL_CAPACITY];
+  private int[] dueDays = new int[INITIAL_CAPACITY];
+  private int[] returnedDays = new int[INITIAL_CAPACITY];
+  private byte[] renewals = new byte[INITIAL_CAPACITY];
+  /** Rows whose loan ID is a code of {@link #otherLoanIds} held in {@link #idLow}. */
+  private BitSet dictionaryIds = new BitSet();
+  private BitSet deleted = new BitSet();
+
+  /** Open-addressing table of row + 1 keyed by loan ID; 0 marks an empty slot. */
+  private int[] rowTable = new int[INITIAL_CAPACITY * 2];
+  private DenseIndex<IntList> rowsByUser = new DenseIndex<>();
+  private DenseIndex<IntList> rowsByMedia = new DenseIndex<>();
+  private final List<IntList> rowLists = new ArrayList<>();
+  private int rows;
+  private int liveRows;
+
+  /**
+   * @param ids dictionary for user, media and copy IDs; may be shared with other stores
+   */
+  public HistoricalLoanStore(IdDictionary ids) {
+    this.ids = ids;
+  }
+
+  /**
+   * Stores a returned loan, replacing the row of an earlier loan with the same ID.
+   *
+   * @param loan a returned loan
+   */
+  public void append(Loan loan) {
+    if (!loan.isReturned()) {
+      throw new IllegalArgumentException("Only returned loans belong in the history");
+    }
+    lock.writeLock().lock();
+    try {
+      LoanKey key = LoanKey.of(loan.getId(), otherLoanIds, true);
+      int row = findRow(key);
+      if (row >= 0) {
+        // Re-saved loan: keep its row and list entries, refresh the mutable fields.
+        writeFields(row, loan);
+        if (deleted.get(row)) {
+          deleted.clear(row);
+          liveRows++;
+        }
+        return;
+      }
+      row = rows;
+      ensureCapacity(row + 1);
+      idHigh[row] = key.high;
+      idLow[row] = key.low;
+      dictionaryIds.set(row, key.dictionary);
+      users[row] = ids.encode(loan.getUserId());
+      media[row] = ids.encode(loan.getMediaId());
+      writeFields(row, loan);
+      rowsByUser.computeIfAbsent(users[row], this::newRowList).add(row);
+      rowsByMedia.computeIfAbsent(media[row], this::newRowList).add(row);
+      // Before counting the row, so a rehash on growth does not place it as well.
+      insertIntoTable(key, row);
+      rows++;
+      liveRows++;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param loanId loan to look up
+   * @return the stored loan as a fresh {@link Loan}, if present
+   */
+  public Optional<Loan> findById(String loanId) {
+    lock.readLock().lock();
+    try {
+      LoanKey key = LoanKey.of(loanId, otherLoanIds, false);
+      int row = key == null ? -1 : findRow(key);
+      return row < 0 || deleted.get(row) ? Optional.empty() : Optional.of(materialize(row));
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * @param userId user to look up
+   * @return the user's returned loans in the order they were stored
+   */
+  public List<Loan> findByUser(String userId) {
+    return findByCode(rowsByUser, ids.lookup(userId));
+  }
+
+  /**
+   * @param mediaId media item to look up
+   * @return the item's returned loans in the order they were stored
+   */
+  public List<Loan> findByMedia(String mediaId) {
+    return findByCode(rowsByMedia, ids.lookup(mediaId));
+  }
+
+  /**
+   * Removes a loan from the history.
+   *
+   * @param loanId loan to remove
+   * @return true if the loan was present
+   */
+  public boolean remove(String loanId) {
+    lock.writeLock().lock();
+    try {
+      LoanKey key = LoanKey.of(loanId, otherLoanIds, false);
+      int row = key == null ? -1 : findRow(key);
+      if (row < 0 || deleted.get(row)) {
+        return false;
+      }
+      deleted.set(row);
+      liveRows--;
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param cutoff first return date to keep
+   * @return stored loans returned before {@code cutoff}, in the order they were stored
+   */
+  public List<Loan> findReturnedBefore(LocalDate cutoff) {
+    int cutoffDay = (int) cutoff.toEpochDay();
+    lock.readLock().lock();
+    try {
+      List<Loan> loans = new ArrayList<>();
+      for (int row = deleted.nextClearBit(0); row < rows; row = deleted.nextClearBit(row + 1)) {
+        if (returnedDays[row] < cutoffDay) {
+          loans.add(materialize(row));
+        }
+      }
+      return loans;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Removes loans and compacts the columns, so the memory of removed rows, unlike after
+   * {@link #remove}, is given back.
+   *
+   * @param loanIds loans to remove; unknown IDs are ignored
+   * @return number of loans removed
+   */
+  public int removeAll(Collection<String> loanIds) {
+    lock.writeLock().lock();
+    try {
+      int removed = 0;
+      for (String loanId : loanIds) {
+        LoanKey key = LoanKey.of(loanId, otherLoanIds, false);
+        int row = key == null ? -1 : findRow(key);
+        if (row >= 0 && !deleted.get(row)) {
+          deleted.set(row);
+          liveRows--;
+          removed++;
+        }
+      }
+      if (removed > 0) {
+        compactLocked();
+      }
+      return removed;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** @return number of stored loans */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return liveRows;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** @return approximate heap used by the columns and indexes, excluding the dictionaries */
+  public long estimatedBytes() {
+    lock.readLock().lock();
+    try {
+      long perRowCapacity = 8L + 8 + 4 * 6 + 1;
+      long listBytes = 0;
+      for (IntList list : rowLists) {
+        listBytes += 4L * list.values.length;
+      }
+      return perRowCapacity * users.length + 4L * rowTable.length + listBytes;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a read-only view over the rows stored at the time of the call. Loans are
+   * materialised one at a time while iterating, so the view itself is cheap.
+   *
+   * @return a collection view of the stored loans
+   */
+  public Collection<Loan> view() {
+    Columns columns;
+    BitSet removed;
+    int limit;
+    int size;
+    lock.readLock().lock();
+    try {
+      // Compaction swaps in new arrays rather than moving rows, so these stay as they are.
+      columns = columns();
+      removed = (BitSet) deleted.clone();
+      limit = rows;
+      size = liveRows;
+    } finally {
+      lock.readLock().unlock();
+    }
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Loan> iterator() {
+        return new Iterator<>() {
+          private int next = Math.min(removed.nextClearBit(0), limit);
+
+          @Override
+          public boolean hasNext() {
+            return next < limit;
+          }
+
+          @Override
+          public Loan next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Loan loan;
+            lock.readLock().lock();
+            try {
+              loan = columns.materialize(next);
+            } finally {
+              lock.readLock().unlock();
+            }
+            next = Math.min(removed.nextClearBit(next + 1), limit);
+            return loan;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Copies the live rows into new arrays and rebuilds the ID table and row lists. The old
+   * arrays are left as they were for views still reading them.
+   */
+  private void compactLocked() {
+    int capacity = Math.max(INITIAL_CAPACITY, liveRows + liveRows / 2);
+    long[] newIdHigh = new long[capacity];
+    long[] newIdLow = new long[capacity];
+    int[] newUsers = new int[capacity];
+    int[] newMedia = new int[capacity];
+    int[] newCopies = new int[capacity];
+    int[] newCheckoutDays = new int[capacity];
+    int[] newDueDays = new int[capacity];
+    int[] newReturnedDays = new int[capacity];
+    byte[] newRenewals = new byte[capacity];
+    BitSet newDictionaryIds = new BitSet();
+    int kept = 0;
+    for (int row = deleted.nextClearBit(0); row < rows; row = deleted.nextClearBit(row + 1)) {
+      newIdHigh[kept] = idHigh[row];
+      newIdLow[kept] = idLow[row];
+      newUsers[kept] = users[row];
+      newMedia[kept] = media[row];
+      newCopies[kept] = copies[row];
+      newCheckoutDays[kept] = checkoutDays[row];
+      newDueDays[kept] = dueDays[row];
+      newReturnedDays[kept] = returnedDays[row];
+      newRenewals[kept] = renewals[row];
+      newDictionaryIds.set(kept, dictionaryIds.get(row));
+      kept++;
+    }
+    idHigh = newIdHigh;
+    idLow = newIdLow;
+    users = newUsers;
+    media = newMedia;
+    copies = newCopies;
+    checkoutDays = newCheckoutDays;
+    dueDays = newDueDays;
+    returnedDays = newReturnedDays;
+    renewals = newRenewals;
+    dictionaryIds = newDictionaryIds;
+    deleted = new BitSet();
+    rows = kept;
+    liveRows = kept;
+
+    int tableCapacity = INITIAL_CAPACITY * 2;
+    while (tableCapacity < kept * 2) {
+      tableCapacity <<= 1;
+    }
+    rehash(tableCapacity);
+    rowsByUser = new DenseIndex<>();
+    rowsByMedia = new DenseIndex<>();
+    rowLists.clear();
+    for (int row = 0; row < rows; row++) {
+      rowsByUser.computeIfAbsent(users[row], this::newRowList).add(row);
+      rowsByMedia.computeIfAbsent(media[row], this::newRowList).add(row);
+    }
+  }
+
+  private IntList newRowList(int code) {
+    IntList list = new IntList();
+    rowLists.add(list);
+    return list;
+  }
+
+  private List<Loan> findByCode(DenseIndex<IntList> index, int code) {
+    lock.readLock().lock();
+    try {
+      IntList rowList = index.get(code);
+      if (rowList == null) {
+        return new ArrayList<>();
+      }
+      List<Loan> loans = new ArrayList<>(rowList.size);
+      for (int i = 0; i < rowList.size; i++) {
+        int row = rowList.values[i];
+        if (!deleted.get(row)) {
+          loans.add(materialize(row));
+        }
+      }
+      return loans;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void writeFields(int row, Loan loan) {
+    copies[row] = loan.getCopyBarcode() == null ? NO_COPY : ids.encode(loan.getCopyBarcode());
+    checkoutDays[row] = (int) loan.getCheckoutDate().toEpochDay();
+    dueDays[row] = (int) loan.getDueDate().toEpochDay();
+    returnedDays[row] = (int) loan.getReturnedDate().toEpochDay();
+    renewals[row] = (byte) Math.min(loan.getRenewalCount(), Byte.MAX_VALUE);
+  }
+
+  private Loan materialize(int row) {
+    return columns().materialize(row);
+  }
+
+  private Columns columns() {
+    return new Columns(ids, otherLoanIds, idHigh, idLow, dictionaryIds, users, media, copies,
+        checkoutDays, dueDays, returnedDays, renewals);
+  }
+
+  private int findRow(LoanKey key) {
+    int mask = rowTable.length - 1;
+    for (int slot = key.hash() & mask; ; slot = (slot + 1) & mask) {
+      int entry = rowTable[slot];
+      if (entry == 0) {
+        return -1;
+      }
+      int row = entry - 1;
+      if (idHigh[row] == key.high && idLow[row] == key.low
+          && dictionaryIds.get(row) == key.dictionary) {
+        return row;
+      }
+    }
+  }
+
+  /** Adds a row that is not yet counted in {@link #rows} to the ID table. */
+  private void insertIntoTable(LoanKey key, int row) {
+    if ((rows + 1) * 2 > rowTable.length) {
+      rehash(rowTable.length * 2);
+    }
+    int mask = rowTable.length - 1;
+    int slot = key.hash() & mask;
+    while (rowTable[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    rowTable[slot] = row + 1;
+  }
+
+  /** @return number of occupied ID table slots, one per stored row */
+  int tableEntries() {
+    lock.readLock().lock();
+    try {
+      int entries = 0;
+      for (int entry : rowTable) {
+        if (entry != 0) {
+          entries++;
+        }
+      }
+      return entries;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void rehash(int capacity) {
+    int[] table = new int[capacity];
+    int mask = capacity - 1;
+    for (int row = 0; row < rows; row++) {
+      int slot = LoanKey.hash(idHigh[row], idLow[row]) & mask;
+      while (table[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      table[slot] = row + 1;
+    }
+    rowTable = table;
+  }
+
+  private void ensureCapacity(int required) {
+    if (required <= users.length) {
+      return;
+    }
+    int capacity = Math.max(required, users.length * 2);
+    idHigh = Arrays.copyOf(idHigh, capacity);
+    idLow = Arrays.copyOf(idLow, capacity);
+    users = Arrays.copyOf(users, capacity);
+    media = Arrays.copyOf(media, capacity);
+    copies = Arrays.copyOf(copies, capacity);
+    checkoutDays = Arrays.copyOf(checkoutDays, capacity);
+    dueDays = Arrays.copyOf(dueDays, capacity);
+    returnedDays = Arrays.copyOf(returnedDays, capacity);
+    renewals = Arrays.copyOf(renewals, capacity);
+  }
+
+  /** The column arrays at one point in time; rows are materialised from these. */
+  private record Columns(
+      IdDictionary ids,
+      IdDictionary otherLoanIds,
+      long[] idHigh,
+      long[] idLow,
+      BitSet dictionaryIds,
+      int[] users,
+      int[] media,
+      int[] copies,
+      int[] checkoutDays,
+      int[] dueDays,
+      int[] returnedDays,
+      byte[] renewals) {
+
+    Loan materialize(int row) {
+      String loanId = dictionaryIds.get(row)
+          ? otherLoanIds.decode((int) idLow[row])
+          : new UUID(idHigh[row], idLow[row]).toString();
+      return Loan.restore(
+          loanId,
+          ids.decode(users[row]),
+          ids.decode(media[row]),
+          copies[row] == NO_COPY ? null : ids.decode(copies[row]),
+          LocalDate.ofEpochDay(checkoutDays[row]),
+          LocalDate.ofEpochDay(dueDays[row]),
+          renewals[row],
+          LocalDate.ofEpochDay(returnedDays[row]));
+    }
+  }
+
+  /** A loan ID as stored: a UUID's two halves, or a dictionary code in {@code low}. */
+  private record LoanKey(long high, long low, boolean dictionary) {
+
+    /**
+     * @param assign whether to assign a dictionary code to unknown non-UUID IDs
+     * @return the key, or null if the ID is unknown and {@code assign} is false
+     */
+    static LoanKey of(String loanId, IdDictionary dictionary, boolean assign) {
+      UUID uuid = parseCanonicalUuid(loanId);
+      if (uuid != null) {
+        return new LoanKey(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), false);
+      }
+      int code = assign ? dictionary.encode(loanId) : dictionary.lookup(loanId);
+      return code == IdDictionary.ABSENT ? null : new LoanKey(0, code, true);
+    }
+
+    int hash() {
+      return hash(high, low);
+    }
+
+    static int hash(long high, long low) {
+      long h = high * 0x9E3779B97F4A7C15L ^ low;
+      h ^= h >>> 33;
+      h *= 0xC2B2AE3D27D4EB4FL;
+      return (int) (h ^ (h >>> 29));
+    }
+
+    private static UUID parseCanonicalUuid(String value) {
+      if (value.length() != 36 || value.charAt(8) != '-' || value.charAt(13) != '-') {
+        return null;
+      }
+      try {
+        UUID uuid = UUID.fromString(value);
+        // Only IDs that round-trip exactly can be stored as two longs.
+        return uuid.toString().equals(value) ? uuid : null;
+      } catch (IllegalArgumentException ex) {
+        return null;
+      }
+    }
+  }
+
+  /** Growable list of row numbers. */
+  private static final class IntList {
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package com.library.repository.memory;
+
+import com.library.domain.Copy;
+import com.library.repository.CopyRepository;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory copy storage indexed both by barcode and by owning title.
+ */
+public class InMemoryCopyRepository implements CopyRepository {
+  private final Map<String, Copy> copiesByBarcode = new ConcurrentHashMap<>();
+  private final Map<String, List<Copy>> copiesByMedia = new ConcurrentHashMap<>();
+
+  @Override
+  public void save(Copy copy) {
+    Copy previous = copiesByBarcode.put(copy.getBarcode(), copy);
+    copiesByMedia.compute(copy.getMediaId(), (mediaId, copies) -> {
+      List<Copy> updated = copies == null ? new ArrayList<>() : new ArrayList<>(copies);
+      if (previous != null) {
+        updated.remove(previous);
+      }
+      updated.add(copy);
+      updated.sort(Comparator.comparingInt(Copy::getCopyNumber));
+      return List.copyOf(updated);
+    });
+  }
+
+  @Override
+  public Optional<Copy> findByBarcode(String barcode) {
+    return Optional.ofNullable(copiesByBarcode.get(barcode));
+  }
+
+  @Override
+  public List<Copy> findByMedia(String mediaId) {
+    return copiesByMedia.getOrDefault(mediaId, List.of());
+  }
+
+  @Override
+  public void deleteByMedia(String mediaId) {
+    List<Copy> removed = copiesByMedia.remove(mediaId);
+    if (removed != null) {
+      removed.forEach(copy -> copiesByBarcode.remove(copy.getBarcode()));
+    }
+  }
+}
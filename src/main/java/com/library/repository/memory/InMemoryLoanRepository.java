@@ -2,52 +2,372 @@ package com.library.repository.memory;
 
 import com.library.domain.Loan;
 import com.library.repository.LoanRepository;
+import com.library.repository.archive.LoanArchive;
+import com.library.support.DateProvider;
+import com.library.support.DenseIndex;
+import com.library.support.IdDictionary;
+import java.time.LocalDate;
+import java.util.AbstractCollection;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
+/**
+ * In-memory loan storage with secondary indexes for open loans.
+ *
+ * <p>Only open loans are kept as {@link Loan} objects. Saving a returned loan moves it into a
+ * {@link HistoricalLoanStore}, which keeps the history in compact primitive columns;
+ * {@link #findAll()} and {@link #findHistoryByUser(String)} read from both.</p>
+ *
+ * <p>With a {@link LoanArchive} set, history is tiered: once a day, when {@link #archiveDue()}
+ * is run from a background schedule, loans returned longer ago than the configured age move
+ * from the history into the archive's monthly partitions on disk, so memory holds only open
+ * and recent loans. Saves never write archive files. The history queries above, and
+ * {@link #findById(String)}, also read the archive; archived loans are immutable and
+ * {@link #delete(String)} leaves them in place. Snapshots leave the archive out: see
+ * {@link #findAllUnarchived()} and {@link #restoreAll(Collection)}.</p>
+ *
+ * <p>Open loans are indexed by user, by media and by due date. {@link #save(Loan)} re-indexes
+ * a loan atomically with respect to other writers of the same loan, so saving a renewed loan
+ * moves it to its new due date. Loans can also be marked returned without being saved again;
+ * readers therefore check {@link Loan#isReturned()} and the actual due date, and prune entries
+ * they find stale.</p>
+ */
 public class InMemoryLoanRepository implements LoanRepository {
+  private static final Logger LOG = Logger.getLogger(InMemoryLoanRepository.class.getName());
+
   private final Map<String, Loan> loans = new ConcurrentHashMap<>();
+  /** User and media IDs are dictionary-encoded so these indexes are plain array slots. */
+  private final IdDictionary ids;
+  private final DenseIndex<Set<String>> openByUser = new DenseIndex<>();
+  private final DenseIndex<Set<String>> openByMedia = new DenseIndex<>();
+  private final ConcurrentSkipListMap<LocalDate, Set<String>> openByDueDate =
+      new ConcurrentSkipListMap<>();
+  /** loanId -> due date the loan is currently indexed under. */
+  private final Map<String, LocalDate> indexedDueDates = new ConcurrentHashMap<>();
+  private final HistoricalLoanStore history;
+  /** Shared by reads of the history tiers; exclusive while loans move into the archive. */
+  private final ReadWriteLock tiers = new ReentrantReadWriteLock();
+  private final ReentrantLock tiering = new ReentrantLock();
+  private final AtomicLong lastTieringDay = new AtomicLong(Long.MIN_VALUE);
+  private volatile LoanArchive archive;
+  private volatile DateProvider dateProvider;
+  private volatile int archiveAfterDays;
+
+  public InMemoryLoanRepository() {
+    this(new IdDictionary());
+  }
+
+  /**
+   * @param ids dictionary used to encode user, media and copy IDs; may be shared
+   */
+  public InMemoryLoanRepository(IdDictionary ids) {
+    this.ids = ids;
+    this.history = new HistoricalLoanStore(ids);
+  }
 
   @Override
   public void save(Loan loan) {
-    loans.put(loan.getId(), loan);
+    loans.compute(loan.getId(), (id, previous) -> {
+      if (previous != null) {
+        unindex(previous);
+      }
+      if (loan.isReturned()) {
+        history.append(loan);
+        return null;
+      }
+      index(loan);
+      return loan;
+    });
+  }
+
+  /**
+   * Enables tiering of the loan history into an archive.
+   *
+   * @param archive archive that returned loans move into
+   * @param dateProvider source of today's date
+   * @param archiveAfterDays days after its return that a loan moves into the archive
+   */
+  public void setArchive(LoanArchive archive, DateProvider dateProvider, int archiveAfterDays) {
+    if (archiveAfterDays < 0) {
+      throw new IllegalArgumentException("archiveAfterDays must not be negative");
+    }
+    this.dateProvider = dateProvider;
+    this.archiveAfterDays = archiveAfterDays;
+    this.archive = archive;
+  }
+
+  /**
+   * Moves loans returned before a date from the history into the archive. The partitions are
+   * written first; queries then see the loans move in one step.
+   *
+   * @param cutoff loans returned on or after this date stay in memory
+   * @return number of loans archived; 0 without an archive
+   * @throws java.io.UncheckedIOException if the archive cannot be written; nothing is moved
+   */
+  public int archiveReturnedBefore(LocalDate cutoff) {
+    LoanArchive target = archive;
+    if (target == null) {
+      return 0;
+    }
+    tiering.lock();
+    try {
+      List<Loan> returned = history.findReturnedBefore(cutoff);
+      if (returned.isEmpty()) {
+        return 0;
+      }
+      List<LoanArchive.Written> written = target.write(returned);
+      List<String> loanIds = returned.stream().map(Loan::getId).toList();
+      tiers.writeLock().lock();
+      try {
+        target.publish(written);
+        history.removeAll(loanIds);
+      } finally {
+        tiers.writeLock().unlock();
+      }
+      return returned.size();
+    } finally {
+      tiering.unlock();
+    }
+  }
+
+  /**
+   * Runs the daily tiering, unless it already ran today: loans returned longer ago than the
+   * configured age move into the archive. Meant to be called from a background schedule;
+   * failures are logged and tiering is tried again the next day.
+   *
+   * @return number of loans archived; 0 without an archive or if tiering already ran today
+   */
+  public int archiveDue() {
+    if (archive == null) {
+      return 0;
+    }
+    LocalDate today = dateProvider.today();
+    long last = lastTieringDay.get();
+    if (last == today.toEpochDay() || !lastTieringDay.compareAndSet(last, today.toEpochDay())) {
+      return 0;
+    }
+    try {
+      int archived = archiveReturnedBefore(today.minusDays(archiveAfterDays));
+      if (archived > 0) {
+        LOG.info("Archived " + archived + " returned loans");
+      }
+      return archived;
+    } catch (RuntimeException ex) {
+      // The loans stay in memory and are tried again tomorrow.
+      LOG.log(Level.WARNING, "Could not archive returned loans", ex);
+      return 0;
+    }
   }
 
   @Override
   public Optional<Loan> findById(String id) {
-    return Optional.ofNullable(loans.get(id));
+    Loan loan = loans.get(id);
+    if (loan != null) {
+      return Optional.of(loan);
+    }
+    tiers.readLock().lock();
+    try {
+      Optional<Loan> returned = history.findById(id);
+      LoanArchive cold = archive;
+      return returned.isPresent() || cold == null ? returned : cold.findById(id);
+    } finally {
+      tiers.readLock().unlock();
+    }
   }
 
   @Override
   public List<Loan> findActiveByUser(String userId) {
-    List<Loan> active = new ArrayList<>();
-    for (Loan loan : loans.values()) {
-      if (loan.getUserId().equals(userId) && !loan.isReturned()) {
-        active.add(loan);
+    return openLoans(openByUser.get(ids.lookup(userId)));
+  }
+
+  @Override
+  public Optional<Loan> findActiveByMedia(String mediaId) {
+    return openLoans(openByMedia.get(ids.lookup(mediaId))).stream().findFirst();
+  }
+
+  @Override
+  public List<Loan> findActiveDueBefore(LocalDate date) {
+    List<Loan> due = new ArrayList<>();
+    for (Set<String> ids : openByDueDate.headMap(date).values()) {
+      for (String id : ids) {
+        Loan loan = loans.get(id);
+        if (loan != null && !loan.isReturned() && loan.getDueDate().isBefore(date)) {
+          due.add(loan);
+        }
       }
     }
-    return active;
+    return due;
   }
 
   @Override
-  public Optional<Loan> findActiveByMedia(String mediaId) {
-    return loans.values().stream()
-        .filter(loan -> loan.getMediaId().equals(mediaId) && !loan.isReturned())
-        .findFirst();
+  public List<Loan> findHistoryByUser(String userId) {
+    tiers.readLock().lock();
+    try {
+      LoanArchive cold = archive;
+      if (cold == null) {
+        return history.findByUser(userId);
+      }
+      // Archived loans were all returned before the ones still in memory.
+      List<Loan> all = cold.findByUser(userId);
+      all.addAll(history.findByUser(userId));
+      return all;
+    } finally {
+      tiers.readLock().unlock();
+    }
   }
 
+  /**
+   * Returns open loans followed by lazily materialised views of the history and the archive.
+   */
   @Override
   public Collection<Loan> findAll() {
-    return List.copyOf(loans.values());
+    List<Loan> open = List.copyOf(loans.values());
+    Collection<Loan> returned;
+    Collection<Loan> archived;
+    tiers.readLock().lock();
+    try {
+      returned = history.view();
+      LoanArchive cold = archive;
+      archived = cold == null ? List.of() : cold.view();
+    } finally {
+      tiers.readLock().unlock();
+    }
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Loan> iterator() {
+        return Stream.of(open.stream(), returned.stream(), archived.stream())
+            .flatMap(loans -> loans)
+            .iterator();
+      }
+
+      @Override
+      public int size() {
+        return open.size() + returned.size() + archived.size();
+      }
+    };
+  }
+
+  /** Returns open loans followed by a lazily materialised view of the in-memory history. */
+  @Override
+  public Collection<Loan> findAllUnarchived() {
+    List<Loan> open = List.copyOf(loans.values());
+    Collection<Loan> returned;
+    tiers.readLock().lock();
+    try {
+      returned = history.view();
+    } finally {
+      tiers.readLock().unlock();
+    }
+    return new AbstractCollection<>() {
+      @Override
+      public Iterator<Loan> iterator() {
+        return Stream.concat(open.stream(), returned.stream()).iterator();
+      }
+
+      @Override
+      public int size() {
+        return open.size() + returned.size();
+      }
+    };
+  }
+
+  /**
+   * Saves the loans, skipping those already archived. Only the archive partitions of the
+   * months the restored loans were returned in are read, each once.
+   */
+  @Override
+  public void restoreAll(Collection<Loan> restored) {
+    LoanArchive cold = archive;
+    Set<String> archived = cold == null ? Set.of() : cold.archivedIds(restored);
+    for (Loan loan : restored) {
+      if (!archived.contains(loan.getId())) {
+        save(loan);
+      }
+    }
   }
 
   @Override
   public void delete(String id) {
-      loans.remove(id);
+    boolean[] open = new boolean[1];
+    loans.computeIfPresent(id, (key, loan) -> {
+      unindex(loan);
+      open[0] = true;
+      return null;
+    });
+    if (!open[0]) {
+      history.remove(id);
+    }
+  }
+
+  /** @return the archive returned loans move into, or null if tiering is off */
+  public LoanArchive getArchive() {
+    return archive;
   }
 
-}
\ No newline at end of file
+  /** @return the store holding returned loans */
+  public HistoricalLoanStore getHistory() {
+    return history;
+  }
+
+  private List<Loan> openLoans(Set<String> loanIds) {
+    if (loanIds == null) {
+      return new ArrayList<>();
+    }
+    List<Loan> open = new ArrayList<>(loanIds.size());
+    for (Iterator<String> it = loanIds.iterator(); it.hasNext(); ) {
+      Loan loan = loans.get(it.next());
+      if (loan == null || loan.isReturned()) {
+        // Returned without a save; a returned loan never reopens, so pruning is safe.
+        it.remove();
+      } else {
+        open.add(loan);
+      }
+    }
+    return open;
+  }
+
+  private void index(Loan loan) {
+    openSet(openByUser, loan.getUserId()).add(loan.getId());
+    openSet(openByMedia, loan.getMediaId()).add(loan.getId());
+    add(openByDueDate, loan.getDueDate(), loan.getId());
+    indexedDueDates.put(loan.getId(), loan.getDueDate());
+  }
+
+  private void unindex(Loan loan) {
+    openSet(openByUser, loan.getUserId()).remove(loan.getId());
+    openSet(openByMedia, loan.getMediaId()).remove(loan.getId());
+    LocalDate dueDate = indexedDueDates.remove(loan.getId());
+    if (dueDate != null) {
+      remove(openByDueDate, dueDate, loan.getId());
+    }
+  }
+
+  private Set<String> openSet(DenseIndex<Set<String>> index, String id) {
+    return index.computeIfAbsent(ids.encode(id), code -> ConcurrentHashMap.newKeySet());
+  }
+
+  private static <K> void add(Map<K, Set<String>> index, K key, String loanId) {
+    index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(loanId);
+  }
+
+  private static <K> void remove(Map<K, Set<String>> index, K key, String loanId) {
+    index.computeIfPresent(key, (k, ids) -> {
+      ids.remove(loanId);
+      return ids.isEmpty() ? null : ids;
+    });
+  }
+}
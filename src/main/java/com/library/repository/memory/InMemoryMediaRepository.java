@@ -1,24 +1,254 @@
 package com.library.repository.memory;
 
-import com.library.domain.Book;
 import com.library.domain.Media;
 import com.library.repository.MediaRepository;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
+import com.library.search.FacetIndex;
+import com.library.search.FuzzyIndex;
+import com.library.search.MediaSearchKey;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
 
 /**
  * Simple in-memory storage for demo purposes.
+ *
+ * <p>Search fields are folded once per save into a {@link MediaSearchKey}, so queries scan
+ * prepared keys instead of lower-casing every title, author and ISBN per query. Fuzzy queries
+ * go through a {@link FuzzyIndex} kept up to date on every save and delete.</p>
+ *
+ * <p>Keys are also kept in one sorted map per {@link MediaSort}, so a page starts with a
+ * {@code tailMap} seek to its cursor and stops after {@code limit} matches instead of copying
+ * and sorting the catalog per request. Facet counts come from a {@link FacetIndex} that is
+ * updated on each save, so saving an item after borrowing its last copy moves it to the
+ * "on loan" buckets.</p>
+ *
+ * <p>{@link #load} fills the repository at startup: lookups by ID work at once while the
+ * indexes above are built concurrently in the background. Writes during the build never wait
+ * for it: they go to the ID map at once and are replayed into the indexes when it ends.</p>
+ *
+ * <p>Writes to different items run in parallel; writes to the same item are serialised by a
+ * striped lock so its index entries stay consistent. Only the start and the end of a build
+ * wait for running writes.</p>
  */
 public class InMemoryMediaRepository implements MediaRepository {
+  private static final Logger LOG = Logger.getLogger(InMemoryMediaRepository.class.getName());
+
   private final Map<String, Media> mediaStore = new ConcurrentHashMap<>();
+  private final Map<String, MediaSearchKey> searchKeys = new ConcurrentHashMap<>();
+  private final Map<MediaSort, NavigableMap<String, MediaSearchKey>> orderings =
+      new EnumMap<>(MediaSort.class);
+  private volatile FuzzyIndex fuzzyIndex = new FuzzyIndex();
+  private volatile FacetIndex facetIndex = new FacetIndex();
+  /** Completes once the search indexes hold everything stored; see {@link #load}. */
+  private volatile CompletableFuture<Void> indexed = CompletableFuture.completedFuture(null);
+  /**
+   * Writes hold the read lock, so they run in parallel; starting and ending a build takes the
+   * write lock, so {@link #building} never changes under a running write.
+   */
+  private final ReadWriteLock buildLock = new ReentrantReadWriteLock();
+  /** True while {@link #load} builds the indexes. */
+  private volatile boolean building;
+  /** IDs written during the build, to re-index once it ends. */
+  private final Set<String> writtenDuringBuild = ConcurrentHashMap.newKeySet();
+  /** Striped locks serialising writes to the same item. */
+  private final Object[] itemLocks = new Object[64];
+
+  public InMemoryMediaRepository() {
+    for (MediaSort sort : MediaSort.values()) {
+      orderings.put(sort, new ConcurrentSkipListMap<>());
+    }
+    for (int i = 0; i < itemLocks.length; i++) {
+      itemLocks[i] = new Object();
+    }
+  }
 
   @Override
   public void save(Media media) {
+    buildLock.readLock().lock();
+    try {
+      if (building) {
+        deferIndexing(media);
+        return;
+      }
+      store(MediaSearchKey.of(media));
+    } finally {
+      buildLock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void saveAll(Collection<? extends Media> items) {
+    // Folding the search fields is the expensive part and needs no lock, so do it up front.
+    List<MediaSearchKey> keys = items.parallelStream().map(MediaSearchKey::of).toList();
+    buildLock.readLock().lock();
+    try {
+      if (building) {
+        items.forEach(this::deferIndexing);
+        return;
+      }
+      keys.forEach(this::store);
+    } finally {
+      buildLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Fills an empty repository at startup, e.g. with millions of items read from disk.
+   *
+   * <p>Items can be found by ID, and {@link #findAll} sees them all, as soon as this returns.
+   * The search keys, the sorted orderings, the fuzzy index and the facet counts are built
+   * afterwards on {@code pool}, as separate tasks that each split their work further. Search,
+   * paging and facet queries wait until all of them are done. Writes do not: they update the
+   * ID map at once and their IDs are re-indexed from the stored items when the build ends. If
+   * a task fails, the indexes are rebuilt from the stored items one by one, leaving out items
+   * that cannot be indexed. A repository that already holds items falls back to
+   * {@link #saveAll}.</p>
+   *
+   * @param items items to add
+   * @param pool pool the indexes are built on
+   * @return completes when search is ready, exceptionally if even the rebuild failed
+   */
+  public CompletableFuture<Void> load(Collection<? extends Media> items, ForkJoinPool pool) {
+    buildLock.writeLock().lock();
+    try {
+      if (!building && mediaStore.isEmpty()) {
+        return startBuild(List.copyOf(items), pool);
+      }
+    } finally {
+      buildLock.writeLock().unlock();
+    }
+    saveAll(items);
+    return indexed;
+  }
+
+  /** Stores the batch and starts the index build; called with the build lock held. */
+  private CompletableFuture<Void> startBuild(List<Media> batch, ForkJoinPool pool) {
+    building = true;
+    pool.submit(() -> batch.parallelStream().forEach(m -> mediaStore.put(m.getId(), m)))
+        .join();
+
+    CompletableFuture<List<MediaSearchKey>> keys = CompletableFuture.supplyAsync(
+        () -> batch.parallelStream().map(MediaSearchKey::of).toList(), pool);
+    List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    tasks.add(keys.thenAcceptAsync(all -> all.parallelStream()
+        .forEach(key -> searchKeys.put(key.media().getId(), key)), pool));
+    orderings.forEach((sort, ordering) -> tasks.add(keys.thenAcceptAsync(all -> all
+        .parallelStream()
+        .forEach(key -> ordering.put(sort.key(key), key)), pool)));
+    tasks.add(CompletableFuture.runAsync(() -> fuzzyIndex.indexAll(batch), pool));
+    tasks.add(CompletableFuture.runAsync(() -> facetIndex.indexAll(batch), pool));
+    indexed = CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new))
+        .exceptionallyComposeAsync(ex -> {
+          LOG.log(Level.WARNING, "Building the search indexes failed; rebuilding", ex);
+          return CompletableFuture.runAsync(this::rebuildIndexes, pool);
+        }, pool)
+        .whenComplete((done, ex) -> replayWritesDuringBuild());
+    return indexed;
+  }
+
+  private void deferIndexing(Media media) {
+    mediaStore.put(media.getId(), media);
+    writtenDuringBuild.add(media.getId());
+  }
+
+  /** Re-indexes every stored item from scratch, skipping items that fail to index. */
+  private void rebuildIndexes() {
+    searchKeys.clear();
+    orderings.values().forEach(Map::clear);
+    fuzzyIndex = new FuzzyIndex();
+    facetIndex = new FacetIndex();
+    int skipped = 0;
+    for (Media media : mediaStore.values()) {
+      try {
+        store(MediaSearchKey.of(media));
+      } catch (RuntimeException ex) {
+        skipped++;
+        LOG.log(Level.WARNING, "Could not index media " + media.getId(), ex);
+      }
+    }
+    if (skipped > 0) {
+      LOG.warning("Search indexes rebuilt without " + skipped + " media");
+    }
+  }
+
+  /** Ends the build: brings the indexes up to date with writes made while it ran. */
+  private void replayWritesDuringBuild() {
+    buildLock.writeLock().lock();
+    try {
+      for (String id : writtenDuringBuild) {
+        try {
+          synchronized (itemLock(id)) {
+            Media media = mediaStore.get(id);
+            if (media == null) {
+              unindex(id);
+            } else {
+              store(MediaSearchKey.of(media));
+            }
+          }
+        } catch (RuntimeException ex) {
+          LOG.log(Level.WARNING, "Could not index media " + id, ex);
+        }
+      }
+      writtenDuringBuild.clear();
+      building = false;
+    } finally {
+      buildLock.writeLock().unlock();
+    }
+  }
+
+  private Object itemLock(String id) {
+    return itemLocks[Math.floorMod(id.hashCode(), itemLocks.length)];
+  }
+
+  /** @return true once every item loaded through {@link #load} is searchable */
+  public boolean isSearchReady() {
+    CompletableFuture<Void> current = indexed;
+    return current.isDone() && !current.isCompletedExceptionally();
+  }
+
+  private void awaitIndexes() {
+    indexed.join();
+  }
+
+  private void store(MediaSearchKey key) {
+    synchronized (itemLock(key.media().getId())) {
+      storeLocked(key);
+    }
+  }
+
+  private void storeLocked(MediaSearchKey key) {
+    Media media = key.media();
     mediaStore.put(media.getId(), media);
+    MediaSearchKey previous = searchKeys.put(media.getId(), key);
+    facetIndex.index(media);
+    if (key.sameFields(previous) && previous.media() == media) {
+      // Only counts changed, e.g. a copy was borrowed; text indexes are still correct.
+      return;
+    }
+    orderings.forEach((sort, ordering) -> {
+      if (previous != null) {
+        ordering.remove(sort.key(previous));
+      }
+      ordering.put(sort.key(key), key);
+    });
+    fuzzyIndex.index(media);
   }
 
   @Override
@@ -36,25 +266,96 @@ public class InMemoryMediaRepository implements MediaRepository {
     if (query == null || query.isBlank()) {
       return new ArrayList<>(mediaStore.values());
     }
-    String needle = query.toLowerCase();
+    awaitIndexes();
+    String needle = MediaSearchKey.fold(query);
     List<Media> matches = new ArrayList<>();
-    for (Media media : mediaStore.values()) {
-      if (media.getTitle().toLowerCase().contains(needle)) {
+    for (MediaSearchKey key : searchKeys.values()) {
+      if (key.matches(needle)) {
+        matches.add(key.media());
+      }
+    }
+    return matches;
+  }
+
+  @Override
+  public List<Media> searchFuzzy(String query, int maxDistance, int limit) {
+    awaitIndexes();
+    List<Media> matches = new ArrayList<>();
+    for (String id : fuzzyIndex.search(query, maxDistance, limit)) {
+      Media media = mediaStore.get(id);
+      if (media != null) {
         matches.add(media);
-        continue;
       }
-      if (media instanceof Book book) {
-        if (book.getAuthor().toLowerCase().contains(needle)
-            || book.getIsbn().toLowerCase().contains(needle)) {
-          matches.add(media);
-        }
+    }
+    return matches;
+  }
+
+  @Override
+  public Page<Media> searchPage(String query, String cursor, int limit, MediaSort sort) {
+    awaitIndexes();
+    return sort.page(orderings.get(sort), query, cursor, limit);
+  }
+
+  @Override
+  public Stream<Media> streamSearch(String query) {
+    awaitIndexes();
+    Stream<MediaSearchKey> keys = orderings.get(MediaSort.ID).values().stream();
+    if (query != null && !query.isBlank()) {
+      String needle = MediaSearchKey.fold(query);
+      keys = keys.filter(key -> key.matches(needle));
+    }
+    return keys.map(MediaSearchKey::media);
+  }
+
+  @Override
+  public long countByFacets(Map<Facet, String> selection) {
+    awaitIndexes();
+    return facetIndex.count(selection);
+  }
+
+  @Override
+  public Map<String, Long> facetCounts(Facet facet, Map<Facet, String> selection) {
+    awaitIndexes();
+    return facetIndex.counts(facet, selection);
+  }
+
+  @Override
+  public List<Media> findByFacets(Map<Facet, String> selection) {
+    awaitIndexes();
+    List<Media> matches = new ArrayList<>();
+    for (String id : facetIndex.ids(selection)) {
+      Media media = mediaStore.get(id);
+      if (media != null) {
+        matches.add(media);
       }
     }
     return matches;
   }
+
   @Override
   public void delete(String id) {
-      mediaStore.remove(id);
+    buildLock.readLock().lock();
+    try {
+      synchronized (itemLock(id)) {
+        mediaStore.remove(id);
+        if (building) {
+          writtenDuringBuild.add(id);
+          return;
+        }
+        unindex(id);
+      }
+    } finally {
+      buildLock.readLock().unlock();
+    }
+  }
+
+  private void unindex(String id) {
+    MediaSearchKey previous = searchKeys.remove(id);
+    if (previous != null) {
+      orderings.forEach((sort, ordering) -> ordering.remove(sort.key(previous)));
+    }
+    fuzzyIndex.remove(id);
+    facetIndex.remove(id);
   }
 
 }
@@ -17,6 +17,11 @@ public class InMemoryUserRepository implements UserRepository {
     byUsername.put(user.getUsername(), user);
   }
 
+  @Override
+  public void saveAll(Collection<User> users) {
+    users.forEach(this::save);
+  }
+
   @Override
   public Optional<User> findById(String id) {
     return Optional.ofNullable(byId.get(id));
@@ -0,0 +1,174 @@
+package com.library.repository.timing;
+
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Shared bookkeeping for the timing repository decorators.
+ *
+ * <p>Every call is recorded as a timer named {@code repository.<name>.<method>}, which gives
+ * call counts and latency percentiles. Calls returning collections, optionals or streams also
+ * record the result size in a histogram named {@code repository.<name>.<method>.size}. Calls slower
+ * than the configured threshold are logged together with their arguments.</p>
+ */
+public class RepositoryCallRecorder {
+
+  private static final Logger LOG = Logger.getLogger(RepositoryCallRecorder.class.getName());
+
+  private final MetricsRegistry metrics;
+  private final String repositoryName;
+  private final long slowThresholdNanos;
+
+  /**
+   * Creates a recorder for one repository.
+   *
+   * @param metrics registry receiving the timers and histograms
+   * @param repositoryName short name used in metric names, e.g. {@code media}
+   * @param slowThresholdMillis calls taking at least this long are logged; zero or negative
+   *     disables slow-call logging
+   */
+  public RepositoryCallRecorder(
+      MetricsRegistry metrics, String repositoryName, long slowThresholdMillis) {
+    this.metrics = metrics;
+    this.repositoryName = repositoryName;
+    this.slowThresholdNanos =
+        slowThresholdMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis) : 0;
+  }
+
+  /**
+   * Runs and records a call that returns a value.
+   *
+   * @param method repository method name
+   * @param call the delegated call
+   * @param args call arguments, only formatted when the call turns out to be slow
+   * @param <T> result type
+   * @return the delegate's result
+   */
+  public <T> T record(String method, Supplier<T> call, Object... args) {
+    Timer timer = metrics.timer(metricName(method));
+    long start = timer.start();
+    T result = null;
+    try {
+      result = call.get();
+      return result;
+    } finally {
+      long elapsed = timer.stop(start);
+      int size = sizeOf(result);
+      if (size >= 0) {
+        metrics.histogram(metricName(method) + ".size").record(size);
+      }
+      reportIfSlow(method, elapsed, args);
+    }
+  }
+
+  /**
+   * Records a call that returns a lazy stream. The timer runs until the stream is exhausted or
+   * closed, whichever comes first, so it covers producing the elements rather than only
+   * creating the stream; the size histogram records the elements actually consumed. A stream
+   * abandoned before either is not recorded.
+   *
+   * @param method repository method name
+   * @param call the delegated call
+   * @param args call arguments, only formatted when the call turns out to be slow
+   * @param <T> element type
+   * @return a sequential stream over the delegate's elements
+   */
+  public <T> Stream<T> recordStream(String method, Supplier<Stream<T>> call, Object... args) {
+    Timer timer = metrics.timer(metricName(method));
+    long start = timer.start();
+    Stream<T> source;
+    try {
+      source = call.get();
+    } catch (RuntimeException ex) {
+      reportIfSlow(method, timer.stop(start), args);
+      throw ex;
+    }
+    Iterator<T> elements = source.iterator();
+    AtomicBoolean finished = new AtomicBoolean();
+    int[] consumed = new int[1];
+    Runnable finish = () -> {
+      if (finished.compareAndSet(false, true)) {
+        long elapsed = timer.stop(start);
+        metrics.histogram(metricName(method) + ".size").record(consumed[0]);
+        reportIfSlow(method, elapsed, args);
+      }
+    };
+    Iterator<T> recorded = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        boolean more = elements.hasNext();
+        if (!more) {
+          finish.run();
+        }
+        return more;
+      }
+
+      @Override
+      public T next() {
+        T element = elements.next();
+        consumed[0]++;
+        return element;
+      }
+    };
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(recorded, Spliterator.ORDERED), false)
+        .onClose(finish)
+        .onClose(source::close);
+  }
+
+  /**
+   * Runs and records a call that returns nothing.
+   *
+   * @param method repository method name
+   * @param call the delegated call
+   * @param args call arguments, only formatted when the call turns out to be slow
+   */
+  public void recordVoid(String method, Runnable call, Object... args) {
+    Timer timer = metrics.timer(metricName(method));
+    long start = timer.start();
+    try {
+      call.run();
+    } finally {
+      reportIfSlow(method, timer.stop(start), args);
+    }
+  }
+
+  private void reportIfSlow(String method, long elapsedNanos, Object[] args) {
+    if (slowThresholdNanos == 0 || elapsedNanos < slowThresholdNanos) {
+      return;
+    }
+    metrics.counter(metricName(method) + ".slow").increment();
+    if (LOG.isLoggable(Level.WARNING)) {
+      LOG.warning(String.format("Slow repository call %s.%s%s took %.1f ms",
+          repositoryName, method, Arrays.deepToString(args),
+          elapsedNanos / 1_000_000.0));
+    }
+  }
+
+  private String metricName(String method) {
+    return "repository." + repositoryName + "." + method;
+  }
+
+  private static int sizeOf(Object result) {
+    if (result instanceof Collection<?> collection) {
+      return collection.size();
+    }
+    if (result instanceof Optional<?> optional) {
+      return optional.isPresent() ? 1 : 0;
+    }
+    return -1;
+  }
+}
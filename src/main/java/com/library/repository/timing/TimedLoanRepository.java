@@ -0,0 +1,74 @@
+package com.library.repository.timing;
+
+import com.library.domain.Loan;
+import com.library.repository.LoanRepository;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * {@link LoanRepository} decorator that records per-method latency, call counts and result
+ * sizes, and logs slow calls.
+ */
+public class TimedLoanRepository implements LoanRepository {
+
+  private final LoanRepository delegate;
+  private final RepositoryCallRecorder recorder;
+
+  public TimedLoanRepository(LoanRepository delegate, RepositoryCallRecorder recorder) {
+    this.delegate = delegate;
+    this.recorder = recorder;
+  }
+
+  @Override
+  public void save(Loan loan) {
+    recorder.recordVoid("save", () -> delegate.save(loan), loan.getId());
+  }
+
+  @Override
+  public Optional<Loan> findById(String id) {
+    return recorder.record("findById", () -> delegate.findById(id), id);
+  }
+
+  @Override
+  public List<Loan> findActiveByUser(String userId) {
+    return recorder.record("findActiveByUser", () -> delegate.findActiveByUser(userId), userId);
+  }
+
+  @Override
+  public Optional<Loan> findActiveByMedia(String mediaId) {
+    return recorder.record(
+        "findActiveByMedia", () -> delegate.findActiveByMedia(mediaId), mediaId);
+  }
+
+  @Override
+  public List<Loan> findActiveDueBefore(LocalDate date) {
+    return recorder.record("findActiveDueBefore", () -> delegate.findActiveDueBefore(date), date);
+  }
+
+  @Override
+  public List<Loan> findHistoryByUser(String userId) {
+    return recorder.record("findHistoryByUser", () -> delegate.findHistoryByUser(userId), userId);
+  }
+
+  @Override
+  public Collection<Loan> findAll() {
+    return recorder.record("findAll", delegate::findAll);
+  }
+
+  @Override
+  public Collection<Loan> findAllUnarchived() {
+    return recorder.record("findAllUnarchived", delegate::findAllUnarchived);
+  }
+
+  @Override
+  public void restoreAll(Collection<Loan> loans) {
+    recorder.recordVoid("restoreAll", () -> delegate.restoreAll(loans), loans.size());
+  }
+
+  @Override
+  public void delete(String id) {
+    recorder.recordVoid("delete", () -> delegate.delete(id), id);
+  }
+}
@@ -0,0 +1,89 @@
+package com.library.repository.timing;
+
+import com.library.domain.Media;
+import com.library.repository.MediaRepository;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * {@link MediaRepository} decorator that records per-method latency, call counts and result
+ * sizes, and logs slow calls.
+ */
+public class TimedMediaRepository implements MediaRepository {
+
+  private final MediaRepository delegate;
+  private final RepositoryCallRecorder recorder;
+
+  public TimedMediaRepository(MediaRepository delegate, RepositoryCallRecorder recorder) {
+    this.delegate = delegate;
+    this.recorder = recorder;
+  }
+
+  @Override
+  public void save(Media media) {
+    recorder.recordVoid("save", () -> delegate.save(media), media.getId());
+  }
+
+  @Override
+  public void saveAll(Collection<? extends Media> items) {
+    recorder.recordVoid("saveAll", () -> delegate.saveAll(items), items.size());
+  }
+
+  @Override
+  public Optional<Media> findById(String id) {
+    return recorder.record("findById", () -> delegate.findById(id), id);
+  }
+
+  @Override
+  public Collection<Media> findAll() {
+    return recorder.record("findAll", delegate::findAll);
+  }
+
+  @Override
+  public List<Media> search(String query) {
+    return recorder.record("search", () -> delegate.search(query), query);
+  }
+
+  @Override
+  public List<Media> searchFuzzy(String query, int maxDistance, int limit) {
+    return recorder.record(
+        "searchFuzzy", () -> delegate.searchFuzzy(query, maxDistance, limit), query);
+  }
+
+  @Override
+  public Page<Media> searchPage(String query, String cursor, int limit, MediaSort sort) {
+    return recorder.record(
+        "searchPage", () -> delegate.searchPage(query, cursor, limit, sort), query);
+  }
+
+  @Override
+  public Stream<Media> streamSearch(String query) {
+    return recorder.recordStream("streamSearch", () -> delegate.streamSearch(query), query);
+  }
+
+  @Override
+  public long countByFacets(Map<Facet, String> selection) {
+    return recorder.record("countByFacets", () -> delegate.countByFacets(selection));
+  }
+
+  @Override
+  public Map<String, Long> facetCounts(Facet facet, Map<Facet, String> selection) {
+    return recorder.record("facetCounts", () -> delegate.facetCounts(facet, selection));
+  }
+
+  @Override
+  public List<Media> findByFacets(Map<Facet, String> selection) {
+    return recorder.record("findByFacets", () -> delegate.findByFacets(selection));
+  }
+
+  @Override
+  public void delete(String id) {
+    recorder.recordVoid("delete", () -> delegate.delete(id), id);
+  }
+}
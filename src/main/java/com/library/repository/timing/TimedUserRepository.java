@@ -0,0 +1,51 @@
+package com.library.repository.timing;
+
+import com.library.domain.User;
+import com.library.repository.UserRepository;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * {@link UserRepository} decorator that records per-method latency, call counts and result
+ * sizes, and logs slow calls.
+ */
+public class TimedUserRepository implements UserRepository {
+
+  private final UserRepository delegate;
+  private final RepositoryCallRecorder recorder;
+
+  public TimedUserRepository(UserRepository delegate, RepositoryCallRecorder recorder) {
+    this.delegate = delegate;
+    this.recorder = recorder;
+  }
+
+  @Override
+  public void save(User user) {
+    recorder.recordVoid("save", () -> delegate.save(user), user.getId());
+  }
+
+  @Override
+  public void saveAll(Collection<User> users) {
+    recorder.recordVoid("saveAll", () -> delegate.saveAll(users), users.size());
+  }
+
+  @Override
+  public Optional<User> findById(String id) {
+    return recorder.record("findById", () -> delegate.findById(id), id);
+  }
+
+  @Override
+  public Optional<User> findByUsername(String username) {
+    return recorder.record("findByUsername", () -> delegate.findByUsername(username), username);
+  }
+
+  @Override
+  public Collection<User> findAll() {
+    return recorder.record("findAll", delegate::findAll);
+  }
+
+  @Override
+  public void delete(String id) {
+    recorder.recordVoid("delete", () -> delegate.delete(id), id);
+  }
+}
@@ -0,0 +1,70 @@
+package com.library.search;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+
+/**
+ * Dimensions the catalog can be browsed by.
+ *
+ * <p>Each facet maps an item to exactly one value, so an item always contributes to one bucket
+ * per facet.</p>
+ */
+public enum Facet {
+  /** {@link com.library.domain.MediaType} name, e.g. {@code BOOK}. */
+  TYPE {
+    @Override
+    public String valueOf(Media media) {
+      return media.getType().name();
+    }
+  },
+  /** Author of a book or artist of a CD, as written; empty if unknown. */
+  CREATOR {
+    @Override
+    public String valueOf(Media media) {
+      String creator = null;
+      if (media instanceof Book book) {
+        creator = book.getAuthor();
+      } else if (media instanceof CD cd) {
+        creator = cd.getArtist();
+      }
+      return creator == null ? "" : creator.trim();
+    }
+  },
+  /** {@link #AVAILABLE} or {@link #ON_LOAN}. */
+  AVAILABILITY {
+    @Override
+    public String valueOf(Media media) {
+      return media.isAvailable() ? AVAILABLE : ON_LOAN;
+    }
+  },
+  /** First letter of the folded title in upper case, or {@code #} for digits and symbols. */
+  LETTER {
+    @Override
+    public String valueOf(Media media) {
+      String title = TextNormalizer.normalize(media.getTitle() == null ? "" : media.getTitle());
+      for (int i = 0; i < title.length(); i++) {
+        char c = title.charAt(i);
+        if (Character.isLetter(c)) {
+          return String.valueOf(Character.toUpperCase(c));
+        }
+        if (!Character.isWhitespace(c)) {
+          break;
+        }
+      }
+      return "#";
+    }
+  };
+
+  /** {@link #AVAILABILITY} value of items with a copy on the shelf. */
+  public static final String AVAILABLE = "available";
+
+  /** {@link #AVAILABILITY} value of items with every copy out. */
+  public static final String ON_LOAN = "on loan";
+
+  /**
+   * @param media item to classify
+   * @return the item's value for this facet, never null
+   */
+  public abstract String valueOf(Media media);
+}
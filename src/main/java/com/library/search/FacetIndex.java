@@ -0,0 +1,243 @@
+package com.library.search;
+
+import com.library.domain.Media;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facet counts for the catalog, kept up to date item by item.
+ *
+ * <p>For every item the index increments one counter per subset of {@link Facet}s: with four
+ * facets that is sixteen cells such as (BOOK, Tolkien, available, *) or (*, *, on loan, *).
+ * Any conjunction of facet values is then a single counter lookup, and the counts for one
+ * facet under a selection cost one lookup per value of that facet. Re-indexing an item whose
+ * values changed, e.g. because its last copy was borrowed, moves it out of its old cells and
+ * into the new ones, so no query ever scans the catalog.</p>
+ *
+ * <p>Thread-safe: lookups share a read lock, index updates take the write lock.</p>
+ */
+public final class FacetIndex {
+
+  private static final Facet[] FACETS = Facet.values();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, String[]> valuesById = new HashMap<>();
+  private final Map<Cell, Integer> counts = new HashMap<>();
+  private final Map<Facet, Map<String, Set<String>>> postings = new EnumMap<>(Facet.class);
+
+  public FacetIndex() {
+    for (Facet facet : FACETS) {
+      postings.put(facet, new HashMap<>());
+    }
+  }
+
+  /**
+   * Indexes an item, or moves it to its new buckets if it was indexed before.
+   *
+   * @param media item to index
+   */
+  public void index(Media media) {
+    String[] values = valuesOf(media);
+    lock.writeLock().lock();
+    try {
+      indexLocked(media.getId(), values);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Indexes many items at once, e.g. a catalog loaded at startup. Facet values are computed in
+   * parallel and the counters updated under a single write lock.
+   *
+   * @param items items to index
+   */
+  public void indexAll(Collection<? extends Media> items) {
+    List<Map.Entry<String, String[]>> indexed = items.parallelStream()
+        .map(media -> Map.entry(media.getId(), valuesOf(media)))
+        .toList();
+    lock.writeLock().lock();
+    try {
+      for (Map.Entry<String, String[]> entry : indexed) {
+        indexLocked(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private static String[] valuesOf(Media media) {
+    String[] values = new String[FACETS.length];
+    for (Facet facet : FACETS) {
+      values[facet.ordinal()] = facet.valueOf(media);
+    }
+    return values;
+  }
+
+  private void indexLocked(String mediaId, String[] values) {
+    String[] previous = valuesById.put(mediaId, values);
+    if (Arrays.equals(previous, values)) {
+      return;
+    }
+    if (previous != null) {
+      move(mediaId, previous, -1);
+    }
+    move(mediaId, values, 1);
+  }
+
+  /**
+   * Removes an item from every bucket.
+   *
+   * @param mediaId ID of the item
+   */
+  public void remove(String mediaId) {
+    lock.writeLock().lock();
+    try {
+      String[] previous = valuesById.remove(mediaId);
+      if (previous != null) {
+        move(mediaId, previous, -1);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * @param selection required value per facet; facets not in the map are unrestricted
+   * @return number of items matching every selected value
+   */
+  public long count(Map<Facet, String> selection) {
+    lock.readLock().lock();
+    try {
+      return counts.getOrDefault(Cell.of(selection), 0);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Counts per value of one facet among the items matching a selection, e.g. the number of
+   * available books per author.
+   *
+   * @param facet facet to break down
+   * @param selection values of the other facets; a value for {@code facet} itself is ignored
+   * @return non-zero counts keyed by facet value, in value order
+   */
+  public Map<String, Long> counts(Facet facet, Map<Facet, String> selection) {
+    lock.readLock().lock();
+    try {
+      Map<Facet, String> drill = new EnumMap<>(Facet.class);
+      drill.putAll(selection);
+      Map<String, Long> result = new TreeMap<>();
+      for (String value : postings.get(facet).keySet()) {
+        drill.put(facet, value);
+        int count = counts.getOrDefault(Cell.of(drill), 0);
+        if (count > 0) {
+          result.put(value, (long) count);
+        }
+      }
+      return result;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Lists the items matching a selection by walking the smallest selected bucket.
+   *
+   * @param selection required value per facet
+   * @return IDs of the matching items, in no particular order
+   */
+  public List<String> ids(Map<Facet, String> selection) {
+    lock.readLock().lock();
+    try {
+      Set<String> smallest = null;
+      for (Map.Entry<Facet, String> entry : selection.entrySet()) {
+        Set<String> bucket = postings.get(entry.getKey()).getOrDefault(entry.getValue(), Set.of());
+        if (smallest == null || bucket.size() < smallest.size()) {
+          smallest = bucket;
+        }
+      }
+      Iterable<String> candidates = smallest == null ? valuesById.keySet() : smallest;
+      List<String> ids = new ArrayList<>();
+      for (String id : candidates) {
+        if (matches(valuesById.get(id), selection)) {
+          ids.add(id);
+        }
+      }
+      return ids;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private static boolean matches(String[] values, Map<Facet, String> selection) {
+    for (Map.Entry<Facet, String> entry : selection.entrySet()) {
+      if (!values[entry.getKey().ordinal()].equals(entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void move(String mediaId, String[] values, int delta) {
+    for (int mask = 0; mask < 1 << FACETS.length; mask++) {
+      String[] cell = new String[FACETS.length];
+      for (int f = 0; f < FACETS.length; f++) {
+        if ((mask & (1 << f)) != 0) {
+          cell[f] = values[f];
+        }
+      }
+      counts.merge(new Cell(cell), delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+    for (Facet facet : FACETS) {
+      Map<String, Set<String>> byValue = postings.get(facet);
+      String value = values[facet.ordinal()];
+      if (delta > 0) {
+        byValue.computeIfAbsent(value, v -> new HashSet<>()).add(mediaId);
+      } else {
+        Set<String> ids = byValue.get(value);
+        if (ids != null && ids.remove(mediaId) && ids.isEmpty()) {
+          byValue.remove(value);
+        }
+      }
+    }
+  }
+
+  /** One counter: a value per facet, null where the facet is unrestricted. */
+  private static final class Cell {
+    private final String[] values;
+    private final int hash;
+
+    private Cell(String[] values) {
+      this.values = values;
+      this.hash = Arrays.hashCode(values);
+    }
+
+    private static Cell of(Map<Facet, String> selection) {
+      String[] values = new String[FACETS.length];
+      selection.forEach((facet, value) -> values[facet.ordinal()] = value);
+      return new Cell(values);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Cell cell && Arrays.equals(values, cell.values);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -0,0 +1,217 @@
+package com.library.search;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo-tolerant index over the words of media titles and authors or artists.
+ *
+ * <p>Words are folded with {@link TextNormalizer} and kept in a {@link TermTrie} together with
+ * a postings map from word to media IDs. A query is split the same way; every query word
+ * must match some indexed word of an item within the allowed number of edits, and items are
+ * ranked by the sum of their best distances. The allowed distance also shrinks with word
+ * length, so "it" never matches "at" while "tolkein" still finds "tolkien".</p>
+ *
+ * <p>Thread-safe: lookups share a read lock, index updates take the write lock.</p>
+ */
+public final class FuzzyIndex {
+
+  /** Upper bound on dictionary words considered per query word. */
+  static final int TERMS_PER_QUERY_WORD = 64;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Set<String>> postings = new HashMap<>();
+  private final Map<String, Set<String>> wordsByMedia = new HashMap<>();
+  private final TermTrie terms = new TermTrie();
+
+  /**
+   * Indexes an item, replacing whatever was indexed for its ID before.
+   *
+   * @param media item to index
+   */
+  public void index(Media media) {
+    Set<String> words = wordsOf(media);
+    lock.writeLock().lock();
+    try {
+      indexLocked(media.getId(), words);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Indexes many items at once, e.g. a catalog loaded at startup. Words are split in parallel
+   * and inserted under a single write lock.
+   *
+   * @param items items to index
+   */
+  public void indexAll(Collection<? extends Media> items) {
+    List<Map.Entry<String, Set<String>>> indexed = items.parallelStream()
+        .map(media -> Map.entry(media.getId(), wordsOf(media)))
+        .toList();
+    lock.writeLock().lock();
+    try {
+      for (Map.Entry<String, Set<String>> entry : indexed) {
+        indexLocked(entry.getKey(), entry.getValue());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void indexLocked(String mediaId, Set<String> words) {
+    unindexLocked(mediaId);
+    for (String word : words) {
+      postings.computeIfAbsent(word, w -> new HashSet<>()).add(mediaId);
+      terms.add(word);
+    }
+    wordsByMedia.put(mediaId, words);
+  }
+
+  /**
+   * Removes an item from the index.
+   *
+   * @param mediaId ID of the item
+   */
+  public void remove(String mediaId) {
+    lock.writeLock().lock();
+    try {
+      unindexLocked(mediaId);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Finds items whose words are close to every word of the query.
+   *
+   * @param query raw query text
+   * @param maxDistance maximum edits allowed per word
+   * @param limit maximum number of IDs to return
+   * @return matching media IDs, best match first
+   */
+  public List<String> search(String query, int maxDistance, int limit) {
+    List<String> queryWords = words(query);
+    if (queryWords.isEmpty() || limit <= 0) {
+      return List.of();
+    }
+    lock.readLock().lock();
+    try {
+      Map<String, Integer> scores = null;
+      for (String word : queryWords) {
+        Map<String, Integer> best = new HashMap<>();
+        int allowed = Math.min(Math.max(maxDistance, 0), allowedEdits(word));
+        for (TermTrie.Match match : terms.search(word, allowed, TERMS_PER_QUERY_WORD)) {
+          for (String id : postings.getOrDefault(match.term(), Set.of())) {
+            best.merge(id, match.distance(), Math::min);
+          }
+        }
+        if (scores == null) {
+          scores = best;
+        } else {
+          Map<String, Integer> previous = scores;
+          scores = new HashMap<>();
+          for (Map.Entry<String, Integer> entry : best.entrySet()) {
+            Integer sum = previous.get(entry.getKey());
+            if (sum != null) {
+              scores.put(entry.getKey(), sum + entry.getValue());
+            }
+          }
+        }
+        if (scores.isEmpty()) {
+          return List.of();
+        }
+      }
+      return scores.entrySet().stream()
+          .sorted(Map.Entry.<String, Integer>comparingByValue()
+              .thenComparing(Map.Entry.comparingByKey()))
+          .limit(limit)
+          .map(Map.Entry::getKey)
+          .toList();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** @return number of distinct words currently indexed */
+  public int termCount() {
+    lock.readLock().lock();
+    try {
+      return postings.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Edits tolerated for a word of the given length: none for one or two letters, one up to
+   * five letters, two beyond that.
+   *
+   * @param word folded query word
+   * @return allowed edit distance
+   */
+  static int allowedEdits(String word) {
+    int length = word.length();
+    if (length <= 2) {
+      return 0;
+    }
+    return length <= 5 ? 1 : 2;
+  }
+
+  /**
+   * Splits text into folded words on anything that is not a letter or digit.
+   *
+   * @param text raw text, may be null
+   * @return the words, in order, without duplicates
+   */
+  static List<String> words(String text) {
+    String folded = TextNormalizer.normalize(text == null ? "" : text);
+    Set<String> words = new LinkedHashSet<>();
+    int start = -1;
+    for (int i = 0; i <= folded.length(); i++) {
+      boolean wordChar = i < folded.length() && Character.isLetterOrDigit(folded.charAt(i));
+      if (wordChar && start < 0) {
+        start = i;
+      } else if (!wordChar && start >= 0) {
+        words.add(folded.substring(start, i));
+        start = -1;
+      }
+    }
+    return new ArrayList<>(words);
+  }
+
+  private static Set<String> wordsOf(Media media) {
+    Set<String> words = new HashSet<>(words(media.getTitle()));
+    if (media instanceof Book book) {
+      words.addAll(words(book.getAuthor()));
+    } else if (media instanceof CD cd) {
+      words.addAll(words(cd.getArtist()));
+    }
+    return words;
+  }
+
+  private void unindexLocked(String mediaId) {
+    Set<String> previous = wordsByMedia.remove(mediaId);
+    if (previous == null) {
+      return;
+    }
+    for (String word : previous) {
+      Set<String> ids = postings.get(word);
+      if (ids != null && ids.remove(mediaId) && ids.isEmpty()) {
+        postings.remove(word);
+        terms.remove(word);
+      }
+    }
+  }
+}
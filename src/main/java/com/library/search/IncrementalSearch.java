@@ -0,0 +1,125 @@
+package com.library.search;
+
+import com.library.domain.Media;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Search-as-you-type session for one input field.
+ *
+ * <p>Each query remembers the keys of everything it matched, as long as that is at most
+ * {@code refineLimit} items. Matching is by substring, so when the next query contains the
+ * previous one (the usual case while typing, e.g. "tol" then "tolk") its matches are a subset
+ * of the previous ones, and they are found by re-testing only the remembered keys instead of
+ * asking the catalog again. Any other query, or one following a query with too many matches
+ * to remember, goes back to the source.</p>
+ *
+ * <p>Results are capped, since a live preview never needs more than a screenful. The session
+ * is thread-safe, so it can be queried from a background task.</p>
+ */
+public final class IncrementalSearch {
+
+  /** Capped matches of one query. */
+  public record Result(List<Media> items, boolean truncated, boolean refined) {}
+
+  private final Function<String, Stream<Media>> source;
+  private final int refineLimit;
+
+  private String previousNeedle;
+  private List<MediaSearchKey> previousMatches;
+
+  /**
+   * @param source full search over the catalog, in display order
+   * @param refineLimit most matches remembered for refining the next query
+   */
+  public IncrementalSearch(Function<String, Stream<Media>> source, int refineLimit) {
+    this.source = source;
+    this.refineLimit = refineLimit;
+  }
+
+  /**
+   * Runs a query, refining the previous query's matches when possible.
+   *
+   * @param query raw query text
+   * @param filter further condition on the items returned, e.g. a facet selection
+   * @param cap maximum number of items returned
+   * @return the first {@code cap} matching items passing the filter
+   * @throws IllegalArgumentException if cap is negative
+   */
+  public synchronized Result search(String query, Predicate<Media> filter, int cap) {
+    if (cap < 0) {
+      throw new IllegalArgumentException("cap must not be negative");
+    }
+    String needle = query == null ? "" : MediaSearchKey.fold(query);
+    if (previousMatches != null && needle.contains(previousNeedle)) {
+      List<MediaSearchKey> matches = new ArrayList<>();
+      for (MediaSearchKey key : previousMatches) {
+        if (key.matches(needle)) {
+          matches.add(key);
+        }
+      }
+      remember(needle, matches);
+      return refined(matches, filter, cap);
+    }
+
+    // Read the source once, both to remember the matches and to fill the result, and stop
+    // as soon as neither needs more items.
+    List<MediaSearchKey> matches = new ArrayList<>();
+    List<Media> items = new ArrayList<>();
+    boolean complete = true;
+    boolean truncated = false;
+    try (Stream<Media> stream = source.apply(query == null ? "" : query)) {
+      Iterator<Media> iterator = stream.iterator();
+      while (iterator.hasNext()) {
+        if (matches.size() > refineLimit) {
+          complete = false;
+          if (truncated) {
+            break;
+          }
+        }
+        Media media = iterator.next();
+        if (complete) {
+          matches.add(MediaSearchKey.of(media));
+        }
+        if (filter.test(media)) {
+          if (items.size() < cap) {
+            items.add(media);
+          } else {
+            truncated = true;
+          }
+        }
+      }
+    }
+    remember(needle, complete && matches.size() <= refineLimit ? matches : null);
+    return new Result(List.copyOf(items), truncated, false);
+  }
+
+  /** Forgets the previous query so the next one reads the source, e.g. after the catalog changed. */
+  public synchronized void reset() {
+    remember(null, null);
+  }
+
+  private void remember(String needle, List<MediaSearchKey> matches) {
+    previousNeedle = matches == null ? null : needle;
+    previousMatches = matches;
+  }
+
+  private static Result refined(List<MediaSearchKey> matches, Predicate<Media> filter, int cap) {
+    List<Media> items = new ArrayList<>();
+    boolean truncated = false;
+    for (MediaSearchKey key : matches) {
+      if (filter.test(key.media())) {
+        if (items.size() == cap) {
+          truncated = true;
+          break;
+        }
+        items.add(key.media());
+      }
+    }
+    return new Result(List.copyOf(items), truncated, true);
+  }
+}
@@ -0,0 +1,108 @@
+package com.library.search;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+
+/**
+ * Pre-folded search fields of one media item.
+ *
+ * <p>Keys are normalised with {@link TextNormalizer} once when the item is saved, so a query
+ * only folds its own text and then scans the stored keys with
+ * {@link #containsFolded(String, String)}, which allocates nothing.</p>
+ */
+public final class MediaSearchKey {
+
+  private final Media media;
+  private final String title;
+  private final String creator;
+  private final String isbn;
+
+  private MediaSearchKey(Media media, String title, String creator, String isbn) {
+    this.media = media;
+    this.title = title;
+    this.creator = creator;
+    this.isbn = isbn;
+  }
+
+  /**
+   * Builds the key for a media item: title, author or artist, and ISBN.
+   *
+   * @param media item to index
+   * @return its search key
+   */
+  public static MediaSearchKey of(Media media) {
+    String creator = "";
+    String isbn = "";
+    if (media instanceof Book book) {
+      creator = book.getAuthor();
+      isbn = book.getIsbn();
+    } else if (media instanceof CD cd) {
+      creator = cd.getArtist();
+    }
+    return new MediaSearchKey(media, fold(media.getTitle()), fold(creator), fold(isbn));
+  }
+
+  /**
+   * Folds text the same way keys are folded; apply once per query.
+   *
+   * @param text raw text
+   * @return folded text, see {@link TextNormalizer}
+   */
+  public static String fold(String text) {
+    return TextNormalizer.normalize(text);
+  }
+
+  /** @return the indexed item */
+  public Media media() {
+    return media;
+  }
+
+  /**
+   * @param other another key, may be null
+   * @return true if both keys hold the same folded title, creator and ISBN
+   */
+  public boolean sameFields(MediaSearchKey other) {
+    return other != null
+        && title.equals(other.title)
+        && creator.equals(other.creator)
+        && isbn.equals(other.isbn);
+  }
+
+  /** @return the folded title */
+  public String title() {
+    return title;
+  }
+
+  /**
+   * @param foldedNeedle query text already passed through {@link #fold(String)}
+   * @return true if the title, creator or ISBN contains the query
+   */
+  public boolean matches(String foldedNeedle) {
+    return containsFolded(title, foldedNeedle)
+        || containsFolded(creator, foldedNeedle)
+        || containsFolded(isbn, foldedNeedle);
+  }
+
+  /**
+   * Substring test over two folded strings without creating any objects.
+   *
+   * @param haystack folded text to search in
+   * @param needle folded text to look for
+   * @return true if {@code haystack} contains {@code needle}
+   */
+  public static boolean containsFolded(String haystack, String needle) {
+    int last = haystack.length() - needle.length();
+    if (needle.isEmpty()) {
+      return true;
+    }
+    char first = needle.charAt(0);
+    for (int i = 0; i <= last; i++) {
+      if (haystack.charAt(i) == first
+          && haystack.regionMatches(i + 1, needle, 1, needle.length() - 1)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,234 @@
+package com.library.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Term dictionary laid out as a trie, searched by running a Levenshtein automaton over it.
+ *
+ * <p>A lookup walks the trie depth first and carries one row of the edit-distance table per
+ * level: the row for a node is derived from its parent's row and the node's character, so
+ * terms sharing a prefix share that work. As soon as every entry in a row exceeds the edit
+ * bound, no term below the node can match and the whole subtree is skipped; within a row
+ * only the diagonal band of {@code 2 * bound + 1} cells is evaluated. With a bound of
+ * one or two edits a lookup therefore touches only the few paths that stay close to the
+ * query, independent of dictionary size.</p>
+ *
+ * <p>Nodes are stored in parallel primitive arrays (first child, next sibling, edge
+ * character, terminal flag) rather than as objects, which keeps a million-term dictionary
+ * to a few tens of megabytes. Not thread-safe.</p>
+ */
+public final class TermTrie {
+
+  /** A dictionary term found by {@link #search(String, int, int)}. */
+  public record Match(String term, int distance) {}
+
+  private static final int NONE = -1;
+  private static final int ROOT = 0;
+
+  private int[] firstChild = new int[64];
+  private int[] nextSibling = new int[64];
+  private char[] label = new char[64];
+  private boolean[] terminal = new boolean[64];
+  private int nodeCount;
+  private int size;
+
+  public TermTrie() {
+    newNode('\0');
+  }
+
+  /**
+   * Adds a term; adding a term that is already present has no effect.
+   *
+   * @param term term to add, already normalised
+   * @return true if the term was new
+   */
+  public boolean add(String term) {
+    int node = ROOT;
+    for (int i = 0; i < term.length(); i++) {
+      char c = term.charAt(i);
+      int child = child(node, c);
+      if (child == NONE) {
+        child = newNode(c);
+        nextSibling[child] = firstChild[node];
+        firstChild[node] = child;
+      }
+      node = child;
+    }
+    if (terminal[node]) {
+      return false;
+    }
+    terminal[node] = true;
+    size++;
+    return true;
+  }
+
+  /**
+   * Removes a term. Its nodes stay in place for reuse, so removal never restructures the trie.
+   *
+   * @param term term to remove
+   * @return true if the term was present
+   */
+  public boolean remove(String term) {
+    int node = ROOT;
+    for (int i = 0; i < term.length() && node != NONE; i++) {
+      node = child(node, term.charAt(i));
+    }
+    if (node == NONE || !terminal[node]) {
+      return false;
+    }
+    terminal[node] = false;
+    size--;
+    return true;
+  }
+
+  /** @return number of distinct terms */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Finds terms within {@code maxDistance} edits of {@code query}, nearest first.
+   *
+   * <p>Once {@code limit} terms at distance {@code <= k} have been found, the walk tightens its
+   * bound to {@code k}, so broad queries cannot keep collecting matches that would be cut off
+   * anyway.</p>
+   *
+   * @param query normalised query term
+   * @param maxDistance maximum number of edits
+   * @param limit maximum number of terms to return
+   * @return matching terms ordered by distance, then alphabetically
+   */
+  public List<Match> search(String query, int maxDistance, int limit) {
+    if (limit <= 0 || maxDistance < 0 || size == 0) {
+      return List.of();
+    }
+    Walk walk = new Walk(query, maxDistance, limit);
+    int[] rootRow = walk.row(0);
+    for (int j = 0; j < rootRow.length; j++) {
+      rootRow[j] = j;
+    }
+    if (terminal[ROOT] && query.length() <= maxDistance) {
+      walk.found("", query.length());
+    }
+    for (int child = firstChild[ROOT]; child != NONE; child = nextSibling[child]) {
+      walk.visit(child, 1);
+    }
+    int bound = walk.bound;
+    return walk.matches.stream()
+        .filter(match -> match.distance() <= bound)
+        .sorted(Comparator.comparingInt(Match::distance).thenComparing(Match::term))
+        .limit(limit)
+        .toList();
+  }
+
+  private int child(int node, char c) {
+    for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+      if (label[child] == c) {
+        return child;
+      }
+    }
+    return NONE;
+  }
+
+  private int newNode(char c) {
+    if (nodeCount == label.length) {
+      int capacity = nodeCount * 2;
+      firstChild = Arrays.copyOf(firstChild, capacity);
+      nextSibling = Arrays.copyOf(nextSibling, capacity);
+      label = Arrays.copyOf(label, capacity);
+      terminal = Arrays.copyOf(terminal, capacity);
+    }
+    int node = nodeCount++;
+    firstChild[node] = NONE;
+    nextSibling[node] = NONE;
+    label[node] = c;
+    return node;
+  }
+
+  /** State of one lookup: the query, one distance row per depth and the current path. */
+  private final class Walk {
+    private final String query;
+    private final int limit;
+    private final int[] perDistance;
+    private final List<Match> matches = new ArrayList<>();
+    private int[][] rows = new int[16][];
+    private char[] path = new char[16];
+    private int bound;
+
+    private Walk(String query, int maxDistance, int limit) {
+      this.query = query;
+      this.limit = limit;
+      this.bound = maxDistance;
+      this.perDistance = new int[maxDistance + 1];
+    }
+
+    private int[] row(int depth) {
+      if (depth >= rows.length) {
+        rows = Arrays.copyOf(rows, rows.length * 2);
+        path = Arrays.copyOf(path, path.length * 2);
+      }
+      if (rows[depth] == null) {
+        rows[depth] = new int[query.length() + 1];
+      }
+      return rows[depth];
+    }
+
+    private void visit(int node, int depth) {
+      char c = label[node];
+      int[] previous = row(depth - 1);
+      int[] current = row(depth);
+      path[depth - 1] = c;
+      // Only the diagonal band within the bound can hold small values; cells next to the band
+      // are marked as over the bound so the next row reads them correctly.
+      int last = query.length();
+      int from = Math.max(1, depth - bound);
+      int to = Math.min(last, depth + bound);
+      if (from > to) {
+        return;
+      }
+      int over = bound + 1;
+      current[0] = depth;
+      if (from > 1) {
+        current[from - 1] = over;
+      }
+      int rowMin = from == 1 ? depth : over;
+      for (int j = from; j <= to; j++) {
+        int cost = query.charAt(j - 1) == c ? 0 : 1;
+        int value = Math.min(previous[j - 1] + cost, Math.min(previous[j], current[j - 1]) + 1);
+        current[j] = value;
+        if (value < rowMin) {
+          rowMin = value;
+        }
+      }
+      if (to < last) {
+        current[to + 1] = over;
+      }
+      int distance = to == last ? current[last] : over;
+      if (terminal[node] && distance <= bound) {
+        found(new String(path, 0, depth), distance);
+      }
+      if (rowMin > bound) {
+        return;
+      }
+      for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+        visit(child, depth + 1);
+      }
+    }
+
+    private void found(String term, int distance) {
+      matches.add(new Match(term, distance));
+      perDistance[distance]++;
+      int count = 0;
+      for (int d = 0; d < bound; d++) {
+        count += perDistance[d];
+        if (count >= limit) {
+          bound = d;
+          return;
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package com.library.search;
+
+import java.text.Normalizer;
+
+/**
+ * Locale-independent normalisation of catalog and query text for matching.
+ *
+ * <p>The pipeline is: NFKD decomposition (which also unfolds ligatures, full-width forms and
+ * Arabic presentation forms); removal of combining marks, so Latin accents, Arabic harakat
+ * and hamza carriers, and Hebrew niqqud disappear; folding of Arabic and Hebrew letter
+ * variants (alef forms, alef maksura, teh marbuta, Persian yeh and kaf, Hebrew final forms,
+ * tatweel); mapping of non-ASCII decimal digits to ASCII; and case folding that does not
+ * depend on the default locale. Pure ASCII input takes a fast path with the same result.</p>
+ *
+ * <p>Apply it once when indexing and once per query, never per comparison.</p>
+ */
+public final class TextNormalizer {
+
+  private static final int ARABIC_TATWEEL = 0x0640;
+
+  private TextNormalizer() {
+  }
+
+  /**
+   * @param text raw text
+   * @return normalised text; equal for strings that should match each other
+   */
+  public static String normalize(String text) {
+    if (isAscii(text)) {
+      return asciiLowerCase(text);
+    }
+    String decomposed = Normalizer.normalize(text, Normalizer.Form.NFKD);
+    StringBuilder out = new StringBuilder(decomposed.length());
+    for (int i = 0; i < decomposed.length(); ) {
+      int codePoint = decomposed.codePointAt(i);
+      i += Character.charCount(codePoint);
+      if (isMark(codePoint) || codePoint == ARABIC_TATWEEL) {
+        continue;
+      }
+      out.appendCodePoint(foldCase(foldDigit(foldLetterVariant(codePoint))));
+    }
+    return out.toString();
+  }
+
+  private static boolean isMark(int codePoint) {
+    int type = Character.getType(codePoint);
+    return type == Character.NON_SPACING_MARK
+        || type == Character.COMBINING_SPACING_MARK
+        || type == Character.ENCLOSING_MARK;
+  }
+
+  private static int foldLetterVariant(int codePoint) {
+    return switch (codePoint) {
+      // Arabic: alef wasla -> alef; alef maksura and Persian yeh -> yeh; teh marbuta -> heh;
+      // Persian kaf -> kaf. Hamza-carrying alef/waw/yeh lose the hamza as a combining mark.
+      case 0x0671 -> 0x0627;
+      case 0x0649, 0x06CC -> 0x064A;
+      case 0x0629 -> 0x0647;
+      case 0x06A9 -> 0x0643;
+      // Hebrew final forms -> regular forms.
+      case 0x05DA -> 0x05DB;
+      case 0x05DD -> 0x05DE;
+      case 0x05DF -> 0x05E0;
+      case 0x05E3 -> 0x05E4;
+      case 0x05E5 -> 0x05E6;
+      default -> codePoint;
+    };
+  }
+
+  private static int foldDigit(int codePoint) {
+    if (codePoint > 0x7F && Character.getType(codePoint) == Character.DECIMAL_DIGIT_NUMBER) {
+      return '0' + Character.digit(codePoint, 10);
+    }
+    return codePoint;
+  }
+
+  private static int foldCase(int codePoint) {
+    // Upper then lower maps variants such as final sigma onto one form.
+    return Character.toLowerCase(Character.toUpperCase(codePoint));
+  }
+
+  private static boolean isAscii(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) > 0x7F) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String asciiLowerCase(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c >= 'A' && c <= 'Z') {
+        char[] chars = text.toCharArray();
+        for (int j = i; j < chars.length; j++) {
+          if (chars[j] >= 'A' && chars[j] <= 'Z') {
+            chars[j] += 'a' - 'A';
+          }
+        }
+        return new String(chars);
+      }
+    }
+    return text;
+  }
+}
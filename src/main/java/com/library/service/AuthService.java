@@ -3,12 +3,12 @@ package com.library.service;
 import com.library.domain.User;
 import com.library.domain.UserRole;
 import com.library.repository.UserRepository;
+import com.library.support.IdGenerator;
 import java.util.List;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * Handles authentication concerns (US1.1/US1.2).
@@ -70,7 +70,7 @@ public class AuthService {
 
 	    // Create and save new user
 	    User newUser = new User(
-	    	    UUID.randomUUID().toString(), 
+	    	    IdGenerator.newId(), 
 	    	    username.trim(), 
 	    	    name.trim(), 
 	    	    UserRole.MEMBER,
@@ -1,31 +1,65 @@
 package com.library.service;
 
+import com.library.circulation.CirculationEvent;
+import com.library.circulation.CirculationLog;
+import com.library.circulation.CirculationState;
+import com.library.domain.Copy;
+import com.library.domain.Hold;
 import com.library.domain.Loan;
 import com.library.domain.Media;
 import com.library.domain.MediaType;
 import com.library.domain.User;
 import com.library.domain.FineStrategyFactory;
+import com.library.metrics.Counter;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
 import com.library.repository.LoanRepository;
 import com.library.repository.MediaRepository;
 import com.library.repository.UserRepository;
+import com.library.snapshot.SnapshotGate;
 import com.library.support.DateProvider;
+import com.library.support.IdGenerator;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
-import java.util.UUID;
+import java.util.function.Supplier;
 
 /**
  * Handles the lifecycle of borrowing and returning media.
+ *
+ * <p>Every successful borrow and return is also appended to the {@link CirculationLog}, which
+ * provides the audit history and the circulation projections.</p>
  */
 public class BorrowService {
   private static final int BOOK_LOAN_DAYS = 28;
   private static final int CD_LOAN_DAYS = 7;
+  /** Maximum number of times a single loan can be renewed. */
+  static final int MAX_RENEWALS = 2;
 
   private final LoanRepository loanRepository;
   private final MediaRepository mediaRepository;
   private final UserRepository userRepository;
   private final DateProvider dateProvider;
   private final FineStrategyFactory fineStrategyFactory;
+  private final CirculationLog circulationLog;
+  private final InventoryService inventoryService;
+  private final HoldService holdService;
+  private final SnapshotGate snapshotGate;
+  private final Timer borrowTimer;
+  private final Timer returnTimer;
+  private final Timer renewTimer;
+  private final Counter loansRenewed;
+  private final Counter renewalsRejected;
+  private final Counter loansCreated;
+  private final Counter borrowsRejected;
+  private final Counter finesCharged;
+  /**
+   * Striped locks serializing borrows and returns of the same title, so the availability
+   * check and the quantity update are one step under concurrent desks.
+   */
+  private final Object[] titleLocks = new Object[64];
 
   public BorrowService(
       LoanRepository loanRepository,
@@ -33,14 +67,129 @@ public class BorrowService {
       UserRepository userRepository,
       DateProvider dateProvider,
       FineStrategyFactory fineStrategyFactory) {
+    this(loanRepository, mediaRepository, userRepository, dateProvider, fineStrategyFactory,
+        new MetricsRegistry());
+  }
+
+  public BorrowService(
+      LoanRepository loanRepository,
+      MediaRepository mediaRepository,
+      UserRepository userRepository,
+      DateProvider dateProvider,
+      FineStrategyFactory fineStrategyFactory,
+      MetricsRegistry metrics) {
+    this(loanRepository, mediaRepository, userRepository, dateProvider, fineStrategyFactory,
+        metrics, new CirculationLog());
+  }
+
+  public BorrowService(
+      LoanRepository loanRepository,
+      MediaRepository mediaRepository,
+      UserRepository userRepository,
+      DateProvider dateProvider,
+      FineStrategyFactory fineStrategyFactory,
+      MetricsRegistry metrics,
+      CirculationLog circulationLog) {
+    this(loanRepository, mediaRepository, userRepository, dateProvider, fineStrategyFactory,
+        metrics, circulationLog, null, null);
+  }
+
+  /**
+   * @param inventoryService copy inventory, or null to disable copy tracking; with it, loans
+   *     are tied to a physical copy and copies are released again on return, while titles
+   *     without registered copies keep the quantity-only behaviour
+   * @param holdService hold queues, or null to disable holds; with it, returned copies are set
+   *     aside for the next waiting hold, and a user with a ready hold borrows that copy
+   */
+  public BorrowService(
+      LoanRepository loanRepository,
+      MediaRepository mediaRepository,
+      UserRepository userRepository,
+      DateProvider dateProvider,
+      FineStrategyFactory fineStrategyFactory,
+      MetricsRegistry metrics,
+      CirculationLog circulationLog,
+      InventoryService inventoryService,
+      HoldService holdService) {
+    this(loanRepository, mediaRepository, userRepository, dateProvider, fineStrategyFactory,
+        metrics, circulationLog, inventoryService, holdService, new SnapshotGate());
+  }
+
+  /**
+   * @param snapshotGate gate shared with the snapshot exporter; every borrow, return and
+   *     renewal runs as one {@link SnapshotGate#change} and reports the records it modifies,
+   *     so snapshots never capture one half-applied
+   */
+  public BorrowService(
+      LoanRepository loanRepository,
+      MediaRepository mediaRepository,
+      UserRepository userRepository,
+      DateProvider dateProvider,
+      FineStrategyFactory fineStrategyFactory,
+      MetricsRegistry metrics,
+      CirculationLog circulationLog,
+      InventoryService inventoryService,
+      HoldService holdService,
+      SnapshotGate snapshotGate) {
     this.loanRepository = loanRepository;
     this.mediaRepository = mediaRepository;
     this.userRepository = userRepository;
     this.dateProvider = dateProvider;
     this.fineStrategyFactory = fineStrategyFactory;
+    this.circulationLog = circulationLog;
+    this.inventoryService = inventoryService;
+    this.holdService = holdService;
+    this.snapshotGate = snapshotGate;
+    this.borrowTimer = metrics.timer("borrow.borrow");
+    this.returnTimer = metrics.timer("borrow.return");
+    this.renewTimer = metrics.timer("borrow.renew");
+    this.loansRenewed = metrics.counter("borrow.renewed");
+    this.renewalsRejected = metrics.counter("borrow.renew.rejected");
+    this.loansCreated = metrics.counter("borrow.loans.created");
+    this.borrowsRejected = metrics.counter("borrow.rejected");
+    this.finesCharged = metrics.counter("borrow.fines.charged");
+    for (int i = 0; i < titleLocks.length; i++) {
+      titleLocks[i] = new Object();
+    }
   }
 
   public Loan borrow(String userId, String mediaId) {
+    return timedBorrow(userId, mediaId, null);
+  }
+
+  /**
+   * Lends the copy with the given barcode, as scanned at the desk.
+   *
+   * @param userId borrowing user
+   * @param barcode barcode of the copy being checked out
+   * @return the new loan
+   */
+  public Loan borrowByBarcode(String userId, String barcode) {
+    if (inventoryService == null) {
+      throw new LibraryException("Copy tracking is not enabled");
+    }
+    Copy copy =
+        inventoryService
+            .findByBarcode(barcode)
+            .orElseThrow(() -> new LibraryException("Unknown copy barcode: " + barcode));
+    return timedBorrow(userId, copy.getMediaId(), copy);
+  }
+
+  private Loan timedBorrow(String userId, String mediaId, Copy requestedCopy) {
+    long start = borrowTimer.start();
+    try {
+      Loan loan = gated(() -> doBorrow(userId, mediaId, requestedCopy));
+      loansCreated.increment();
+      return loan;
+    } catch (LibraryException ex) {
+      borrowsRejected.increment();
+      throw ex;
+    } finally {
+      borrowTimer.stop(start);
+    }
+  }
+
+  private Loan doBorrow(String userId, String mediaId, Copy requestedCopy) {
     User user =
         userRepository
             .findById(userId)
@@ -51,67 +200,289 @@ public class BorrowService {
             .orElseThrow(() -> new LibraryException("Media not found: " + mediaId));
 
     ensureBorrowAllowed(user);
-    if (!media.isAvailable()) {
-      throw new LibraryException("Media already loaned out");
+    synchronized (titleLock(media.getId())) {
+      return lend(user, media, requestedCopy);
+    }
+  }
+
+  private Loan lend(User user, Media media, Copy requestedCopy) {
+    Hold hold = claimHold(user.getId(), media.getId(), requestedCopy);
+    String copyBarcode;
+    if (hold != null) {
+      // The set-aside copy never went back on the shelf.
+      copyBarcode = hold.getCopyBarcode();
+    } else {
+      if (!media.isAvailable()) {
+        throw new LibraryException("Media already loaned out");
+      }
+      copyBarcode = reserveCopy(media.getId(), requestedCopy);
     }
 
     LocalDate checkoutDate = dateProvider.today();
-    int duration = media.getType() == MediaType.BOOK ? BOOK_LOAN_DAYS : CD_LOAN_DAYS;
+    int duration = loanDays(media.getType());
     Loan loan =
         new Loan(
-            UUID.randomUUID().toString(), user.getId(), media.getId(), checkoutDate,
-            checkoutDate.plusDays(duration));
+            IdGenerator.newId(), user.getId(), media.getId(), copyBarcode,
+            checkoutDate, checkoutDate.plusDays(duration));
 
+    snapshotGate.created(loan);
+    snapshotGate.touch(media, user);
     loanRepository.save(loan);
-    media.markUnavailable();
+    if (hold == null) {
+      media.markUnavailable();
+      // Saved so availability-derived state (facet counts, files) sees the change.
+      mediaRepository.save(media);
+    }
     user.addLoan(loan.getId());
+    circulationLog.append(new CirculationEvent.Borrowed(
+        loan.getId(), user.getId(), media.getId(), checkoutDate, loan.getDueDate()));
     return loan;
   }
 
   public BigDecimal returnMedia(String loanId) {
+    long start = returnTimer.start();
+    try {
+      return gated(() -> doReturn(loanId));
+    } finally {
+      returnTimer.stop(start);
+    }
+  }
+
+  /**
+   * Returns several loans at once, e.g. everything a member brings back to the desk.
+   *
+   * <p>Loans are returned in order, each with a keyed lookup; if one fails, the loans before
+   * it stay returned and the exception is rethrown.</p>
+   *
+   * @param loanIds loans to return
+   * @return total fine charged for the returned loans
+   */
+  public BigDecimal returnAll(Collection<String> loanIds) {
+    BigDecimal total = BigDecimal.ZERO;
+    for (String loanId : loanIds) {
+      total = total.add(returnMedia(loanId));
+    }
+    return total;
+  }
+
+  private BigDecimal doReturn(String loanId) {
 	    Loan loan = loanRepository.findById(loanId)
 	        .orElseThrow(() -> new LibraryException("Loan not found: " + loanId));
 
-	    if (loan.isReturned()) {
-	        return BigDecimal.ZERO;
+	    synchronized (titleLock(loan.getMediaId())) {
+	        // Re-checked under the title lock, so concurrent returns charge the fine once.
+	        return loan.isReturned() ? BigDecimal.ZERO : closeLoan(loan);
 	    }
+	}
+
+	private BigDecimal closeLoan(Loan loan) {
 
 	    LocalDate today = dateProvider.today();
 
 	    // ✔ FIX: calculate overdue BEFORE marking returned
 	    long overdueDays = loan.daysOverdue(today);
 
-	    loan.markReturned(today);
-
+	    // Everything the return needs is looked up first, so a failure leaves the loan open.
 	    Media media = mediaRepository.findById(loan.getMediaId())
 	        .orElseThrow(() -> new LibraryException("Media not found: " + loan.getMediaId()));
-	    media.markAvailable();
-
 	    User user = userRepository.findById(loan.getUserId())
 	        .orElseThrow(() -> new LibraryException("User not found: " + loan.getUserId()));
+	    Copy copy = returnedCopy(loan);
+
+	    snapshotGate.touch(loan);
+	    loan.markReturned(today);
+	    loanRepository.save(loan);
+
+	    // The copy goes to the next waiting hold, or back on the shelf.
+	    if (holdService == null || !holdService.allocate(media.getId(), loan.getCopyBarcode())) {
+	        if (copy != null) {
+	            inventoryService.release(copy.getBarcode());
+	        }
+	        snapshotGate.touch(media);
+	        media.markAvailable();
+	        mediaRepository.save(media);
+	    }
+
+	    snapshotGate.touch(user);
 	    user.closeLoan(loan.getId());
 
 	    BigDecimal fine =
 	        fineStrategyFactory.forType(media.getType()).calculateFine(overdueDays);
 
 	    user.addFine(fine);
+	    if (fine.signum() > 0) {
+	        finesCharged.increment();
+	    }
+	    circulationLog.append(new CirculationEvent.Returned(
+	        loan.getId(), user.getId(), media.getId(), today, fine));
 
 	    return fine;
 	}
 
 
+  /**
+   * @return the tracked copy the loan was lent under, or null if it has none
+   * @throws LibraryException if the loan's barcode is not a registered copy
+   */
+  private Copy returnedCopy(Loan loan) {
+    if (loan.getCopyBarcode() == null || inventoryService == null) {
+      return null;
+    }
+    return inventoryService
+        .findByBarcode(loan.getCopyBarcode())
+        .orElseThrow(() -> new LibraryException("Unknown copy barcode: " + loan.getCopyBarcode()));
+  }
+
+  /**
+   * Extends a loan by another loan period from its current due date.
+   *
+   * <p>Every eligibility check is a direct lookup: the loan by ID, its renewal count and due
+   * date, and the title's waiting-hold counter.</p>
+   *
+   * @param loanId loan to renew
+   * @return the renewed loan
+   * @throws LibraryException if the loan is returned, overdue, at the renewal limit, or
+   *     other users are waiting for the title
+   */
+  public Loan renew(String loanId) {
+    long start = renewTimer.start();
+    try {
+      return gated(() -> {
+        Loan loan = loanRepository.findById(loanId)
+            .orElseThrow(() -> new LibraryException("Loan not found: " + loanId));
+        // Under the title lock no return or hold lands between the checks and the renewal.
+        synchronized (titleLock(loan.getMediaId())) {
+          String rejection = renewalRejection(loan, dateProvider.today());
+          if (rejection != null) {
+            renewalsRejected.increment();
+            throw new LibraryException(rejection);
+          }
+          doRenew(loan);
+          return loan;
+        }
+      });
+    } finally {
+      renewTimer.stop(start);
+    }
+  }
+
+  /**
+   * Renews every open loan of the user that is eligible; ineligible loans are left as they are.
+   *
+   * @param userId user whose loans to renew
+   * @return the loans that were renewed
+   */
+  public List<Loan> renewAll(String userId) {
+    long start = renewTimer.start();
+    try {
+      return gated(() -> {
+        LocalDate today = dateProvider.today();
+        List<Loan> renewed = new ArrayList<>();
+        for (Loan loan : loanRepository.findActiveByUser(userId)) {
+          synchronized (titleLock(loan.getMediaId())) {
+            if (renewalRejection(loan, today) == null) {
+              doRenew(loan);
+              renewed.add(loan);
+            } else {
+              renewalsRejected.increment();
+            }
+          }
+        }
+        return renewed;
+      });
+    } finally {
+      renewTimer.stop(start);
+    }
+  }
+
+  private Object titleLock(String mediaId) {
+    return titleLocks[Math.floorMod(mediaId.hashCode(), titleLocks.length)];
+  }
+
+  private <T> T gated(Supplier<T> change) {
+    return snapshotGate.change(change);
+  }
+
+  private String renewalRejection(Loan loan, LocalDate today) {
+    if (loan.isReturned()) {
+      return "Loan already returned";
+    }
+    if (loan.isOverdue(today)) {
+      return "Overdue loans cannot be renewed";
+    }
+    if (loan.getRenewalCount() >= MAX_RENEWALS) {
+      return "Renewal limit of " + MAX_RENEWALS + " reached";
+    }
+    if (holdService != null && holdService.waitingCount(loan.getMediaId()) > 0) {
+      return "Other users are waiting for this media";
+    }
+    return null;
+  }
+
+  private void doRenew(Loan loan) {
+    Media media = mediaRepository.findById(loan.getMediaId())
+        .orElseThrow(() -> new LibraryException("Media not found: " + loan.getMediaId()));
+    snapshotGate.touch(loan);
+    loan.renew(loan.getDueDate().plusDays(loanDays(media.getType())));
+    // Re-saving moves the loan to its new slot in the due-date index.
+    loanRepository.save(loan);
+    loansRenewed.increment();
+    circulationLog.append(new CirculationEvent.Renewed(
+        loan.getId(), loan.getUserId(), loan.getMediaId(), dateProvider.today(),
+        loan.getDueDate()));
+  }
+
+  private static int loanDays(MediaType type) {
+    return type == MediaType.BOOK ? BOOK_LOAN_DAYS : CD_LOAN_DAYS;
+  }
+
+  private Hold claimHold(String userId, String mediaId, Copy requestedCopy) {
+    if (holdService == null) {
+      return null;
+    }
+    String barcode = requestedCopy == null ? null : requestedCopy.getBarcode();
+    return holdService.claimReady(userId, mediaId, barcode).orElse(null);
+  }
+
+  /**
+   * Takes the requested copy, or any free copy of the title, off the shelf.
+   *
+   * @return barcode of the reserved copy, or null if the title has no tracked copies
+   */
+  private String reserveCopy(String mediaId, Copy requestedCopy) {
+    if (inventoryService == null || !inventoryService.isTracked(mediaId)) {
+      return null;
+    }
+    if (requestedCopy != null) {
+      if (!inventoryService.reserve(requestedCopy)) {
+        throw new LibraryException("Copy already loaned out: " + requestedCopy.getBarcode());
+      }
+      return requestedCopy.getBarcode();
+    }
+    return inventoryService
+        .reserveAny(mediaId)
+        .map(Copy::getBarcode)
+        .orElseThrow(() -> new LibraryException("Media already loaned out"));
+  }
+
+  /** @return the log this service appends circulation events to */
+  public CirculationLog getCirculationLog() {
+    return circulationLog;
+  }
+
   private void ensureBorrowAllowed(User user) {
-    if (user.hasOutstandingFines()) {
+    // Balance and open loans come from the log's projections, which every change updates.
+    CirculationState projections = circulationLog.projections();
+    if (projections.balance(user.getId()).signum() > 0) {
       throw new LibraryException("Outstanding fines must be paid first");
     }
-    List<Loan> activeLoans = loanRepository.findActiveByUser(user.getId());
     LocalDate today = dateProvider.today();
-    boolean hasOverdue =
-        activeLoans.stream().anyMatch(loan -> loan.isOverdue(today));
-    if (hasOverdue) {
-      throw new LibraryException("User has overdue loans");
+    for (String loanId : projections.activeLoans(user.getId())) {
+      boolean overdue =
+          loanRepository.findById(loanId).map(loan -> loan.isOverdue(today)).orElse(false);
+      if (overdue) {
+        throw new LibraryException("User has overdue loans");
+      }
     }
   }
 }
-
-
@@ -3,25 +3,74 @@ package com.library.service;
 import com.library.domain.Book;
 import com.library.domain.Media;
 import com.library.domain.MediaType;
+import com.library.importer.CatalogImporter;
+import com.library.importer.FeedFormat;
+import com.library.importer.ImportReport;
+import com.library.metrics.Histogram;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
 import com.library.repository.MediaRepository;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
+import com.library.search.IncrementalSearch;
+import com.library.support.IdGenerator;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Provides CRUD-style operations for media.
  */
 public class CatalogService {
+
+  /** Default edit bound per query word for {@link #searchFuzzy(String)}. */
+  public static final int FUZZY_MAX_DISTANCE = 2;
+
+  /** Default result cap for {@link #searchFuzzy(String)}. */
+  public static final int FUZZY_LIMIT = 20;
+
+  /** Most matches a search-as-you-type session remembers for refining the next keystroke. */
+  public static final int INCREMENTAL_REFINE_LIMIT = 5_000;
+
+  /** Page size used when an incremental search reads the catalog in title order. */
+  private static final int INCREMENTAL_PAGE_SIZE = 200;
+
   private final MediaRepository mediaRepository;
   private final AuthService authService;
+  private final Timer searchTimer;
+  private final Histogram searchResults;
+  private final Timer listByTypeTimer;
+  private final Timer fuzzySearchTimer;
+  private final Timer searchPageTimer;
+  private final Timer facetsTimer;
+  private final Timer importTimer;
 
   public CatalogService(MediaRepository mediaRepository, AuthService authService) {
+    this(mediaRepository, authService, new MetricsRegistry());
+  }
+
+  public CatalogService(
+      MediaRepository mediaRepository, AuthService authService, MetricsRegistry metrics) {
     this.mediaRepository = mediaRepository;
     this.authService = authService;
+    this.searchTimer = metrics.timer("catalog.search");
+    this.searchResults = metrics.histogram("catalog.search.results");
+    this.listByTypeTimer = metrics.timer("catalog.listByType");
+    this.fuzzySearchTimer = metrics.timer("catalog.searchFuzzy");
+    this.searchPageTimer = metrics.timer("catalog.searchPage");
+    this.facetsTimer = metrics.timer("catalog.facets");
+    this.importTimer = metrics.timer("catalog.import");
   }
 
   public Book addBook(String title, String author, String isbn) {
     authService.requireAdmin();
-    Book book = new Book(UUID.randomUUID().toString(), title, author, isbn);
+    Book book = new Book(IdGenerator.newId(), title, author, isbn);
     mediaRepository.save(book);
     return book;
   }
@@ -29,17 +78,179 @@ public class CatalogService {
   public Media addCd(String title, String artist) {
     authService.requireAdmin();
     com.library.domain.CD cd =
-        new com.library.domain.CD(UUID.randomUUID().toString(), title, artist);
+        new com.library.domain.CD(IdGenerator.newId(), title, artist);
     mediaRepository.save(cd);
     return cd;
   }
 
+  /**
+   * Bulk-loads a vendor feed: records are validated in parallel, books already in the catalog
+   * are skipped by ISBN, and everything accepted is saved in one batch.
+   *
+   * @param feed the feed; closed when the import finishes
+   * @param format feed format
+   * @param progress receives progress after each chunk of records
+   * @return what was imported, skipped and rejected
+   */
+  public ImportReport importCatalog(
+      InputStream feed, FeedFormat format, CatalogImporter.Progress progress) {
+    authService.requireAdmin();
+    long start = importTimer.start();
+    try {
+      return new CatalogImporter(mediaRepository).importFeed(format.records(feed), progress);
+    } catch (IllegalArgumentException | UncheckedIOException ex) {
+      throw new LibraryException("Could not import feed: " + ex.getMessage());
+    } finally {
+      importTimer.stop(start);
+    }
+  }
+
   public List<Media> search(String term) {
-    return mediaRepository.search(term);
+    long start = searchTimer.start();
+    try {
+      List<Media> results = mediaRepository.search(term);
+      searchResults.record(results.size());
+      return results;
+    } finally {
+      searchTimer.stop(start);
+    }
+  }
+
+  /**
+   * One page of search results; pass the page's {@link Page#nextCursor()} back to get the next.
+   *
+   * @param term search text; blank matches everything
+   * @param cursor cursor of the previous page, or null for the first page
+   * @param limit maximum number of items on the page
+   * @param sort result order; keep it the same for every page of one search
+   * @return the page
+   */
+  public Page<Media> searchPage(String term, String cursor, int limit, MediaSort sort) {
+    long start = searchPageTimer.start();
+    try {
+      Page<Media> page = mediaRepository.searchPage(term, cursor, limit, sort);
+      searchResults.record(page.items().size());
+      return page;
+    } finally {
+      searchPageTimer.stop(start);
+    }
+  }
+
+  /**
+   * Search results produced lazily as the stream is consumed.
+   *
+   * @param term search text; blank matches everything
+   * @return matching items
+   */
+  public Stream<Media> streamSearch(String term) {
+    return mediaRepository.streamSearch(term);
+  }
+
+  /**
+   * Typo-tolerant search with the default edit bound and result cap, e.g. "Tolkein" finds
+   * books by Tolkien.
+   *
+   * @param term raw query text
+   * @return closest matches first
+   */
+  public List<Media> searchFuzzy(String term) {
+    return searchFuzzy(term, FUZZY_MAX_DISTANCE, FUZZY_LIMIT);
+  }
+
+  /**
+   * Typo-tolerant search.
+   *
+   * @param term raw query text
+   * @param maxDistance maximum edits allowed per query word
+   * @param limit maximum number of results
+   * @return closest matches first
+   */
+  public List<Media> searchFuzzy(String term, int maxDistance, int limit) {
+    long start = fuzzySearchTimer.start();
+    try {
+      return mediaRepository.searchFuzzy(term, maxDistance, limit);
+    } finally {
+      fuzzySearchTimer.stop(start);
+    }
+  }
+
+  /**
+   * Starts a search-as-you-type session: typing more of a query narrows the previous results
+   * instead of searching the whole catalog again.
+   *
+   * @return a new session, reading the catalog in title order
+   */
+  public IncrementalSearch incrementalSearch() {
+    return new IncrementalSearch(this::streamByTitle, INCREMENTAL_REFINE_LIMIT);
+  }
+
+  /** Search results in title order, fetched a page at a time as the stream is consumed. */
+  private Stream<Media> streamByTitle(String term) {
+    return Stream.iterate(
+            searchPage(term, null, INCREMENTAL_PAGE_SIZE, MediaSort.TITLE),
+            Objects::nonNull,
+            page -> page.hasNext()
+                ? searchPage(term, page.nextCursor(), INCREMENTAL_PAGE_SIZE, MediaSort.TITLE)
+                : null)
+        .flatMap(page -> page.items().stream());
   }
 
   public List<Media> listByType(MediaType type) {
-    return mediaRepository.findAll().stream().filter(media -> media.getType() == type).toList();
+    long start = listByTypeTimer.start();
+    try {
+      Map<Facet, String> selection = new EnumMap<>(Facet.class);
+      selection.put(Facet.TYPE, type.name());
+      return mediaRepository.findByFacets(selection);
+    } finally {
+      listByTypeTimer.stop(start);
+    }
+  }
+
+  /**
+   * Number of items matching a facet selection, e.g. available books by Tolkien.
+   *
+   * @param selection required value per facet; an empty map counts the whole catalog
+   * @return the count, read from maintained counters
+   */
+  public long countByFacets(Map<Facet, String> selection) {
+    long start = facetsTimer.start();
+    try {
+      return mediaRepository.countByFacets(selection);
+    } finally {
+      facetsTimer.stop(start);
+    }
+  }
+
+  /**
+   * Counts per value of one facet within a selection, for drilling down.
+   *
+   * @param facet facet to break down
+   * @param selection values already chosen for other facets
+   * @return non-zero counts keyed by facet value, in value order
+   */
+  public Map<String, Long> facetCounts(Facet facet, Map<Facet, String> selection) {
+    long start = facetsTimer.start();
+    try {
+      return mediaRepository.facetCounts(facet, selection);
+    } finally {
+      facetsTimer.stop(start);
+    }
+  }
+
+  /**
+   * @param selection required value per facet
+   * @return the matching items, by title
+   */
+  public List<Media> browse(Map<Facet, String> selection) {
+    long start = facetsTimer.start();
+    try {
+      return mediaRepository.findByFacets(selection).stream()
+          .sorted(Comparator.comparing(
+              Media::getTitle, Comparator.nullsFirst(String.CASE_INSENSITIVE_ORDER)))
+          .toList();
+    } finally {
+      facetsTimer.stop(start);
+    }
   }
 }
 
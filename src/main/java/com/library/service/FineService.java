@@ -1,13 +1,19 @@
 package com.library.service;
 
+import com.library.circulation.CirculationEvent;
+import com.library.circulation.CirculationLog;
 import com.library.domain.Loan;
 import com.library.domain.Media;
 import com.library.domain.OverdueReport;
 import com.library.domain.User;
 import com.library.domain.FineStrategyFactory;
+import com.library.metrics.Counter;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
 import com.library.repository.LoanRepository;
 import com.library.repository.MediaRepository;
 import com.library.repository.UserRepository;
+import com.library.snapshot.SnapshotGate;
 import com.library.support.DateProvider;
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -23,6 +29,16 @@ public class FineService {
   private final MediaRepository mediaRepository;
   private final DateProvider dateProvider;
   private final FineStrategyFactory fineStrategyFactory;
+  private final CirculationLog circulationLog;
+  private final Timer payFineTimer;
+  private final Timer overdueReportTimer;
+  private final Counter paymentsAccepted;
+  private final SnapshotGate snapshotGate;
+  /**
+   * Striped locks serializing payments of the same user, so the balance check and the
+   * deduction are one step.
+   */
+  private final Object[] userLocks = new Object[64];
 
   public FineService(
       UserRepository userRepository,
@@ -30,14 +46,73 @@ public class FineService {
       MediaRepository mediaRepository,
       DateProvider dateProvider,
       FineStrategyFactory fineStrategyFactory) {
+    this(userRepository, loanRepository, mediaRepository, dateProvider, fineStrategyFactory,
+        new MetricsRegistry());
+  }
+
+  public FineService(
+      UserRepository userRepository,
+      LoanRepository loanRepository,
+      MediaRepository mediaRepository,
+      DateProvider dateProvider,
+      FineStrategyFactory fineStrategyFactory,
+      MetricsRegistry metrics) {
+    this(userRepository, loanRepository, mediaRepository, dateProvider, fineStrategyFactory,
+        metrics, new CirculationLog());
+  }
+
+  public FineService(
+      UserRepository userRepository,
+      LoanRepository loanRepository,
+      MediaRepository mediaRepository,
+      DateProvider dateProvider,
+      FineStrategyFactory fineStrategyFactory,
+      MetricsRegistry metrics,
+      CirculationLog circulationLog) {
+    this(userRepository, loanRepository, mediaRepository, dateProvider, fineStrategyFactory,
+        metrics, circulationLog, new SnapshotGate());
+  }
+
+  /**
+   * @param snapshotGate gate shared with the snapshot exporter; every payment runs as a
+   *     {@link SnapshotGate#change}
+   */
+  public FineService(
+      UserRepository userRepository,
+      LoanRepository loanRepository,
+      MediaRepository mediaRepository,
+      DateProvider dateProvider,
+      FineStrategyFactory fineStrategyFactory,
+      MetricsRegistry metrics,
+      CirculationLog circulationLog,
+      SnapshotGate snapshotGate) {
     this.userRepository = userRepository;
     this.loanRepository = loanRepository;
     this.mediaRepository = mediaRepository;
     this.dateProvider = dateProvider;
     this.fineStrategyFactory = fineStrategyFactory;
+    this.circulationLog = circulationLog;
+    this.snapshotGate = snapshotGate;
+    this.payFineTimer = metrics.timer("fine.payFine");
+    this.overdueReportTimer = metrics.timer("fine.overdueReport");
+    this.paymentsAccepted = metrics.counter("fine.payments");
+    for (int i = 0; i < userLocks.length; i++) {
+      userLocks[i] = new Object();
+    }
   }
 
   public BigDecimal payFine(String userId, BigDecimal amount) {
+    long start = payFineTimer.start();
+    try {
+      BigDecimal remaining = snapshotGate.change(() -> doPayFine(userId, amount));
+      paymentsAccepted.increment();
+      return remaining;
+    } finally {
+      payFineTimer.stop(start);
+    }
+  }
+
+  private BigDecimal doPayFine(String userId, BigDecimal amount) {
     if (amount == null || amount.signum() <= 0) {
       throw new LibraryException("Payment must be positive");
     }
@@ -46,23 +121,43 @@ public class FineService {
             .findById(userId)
             .orElseThrow(() -> new LibraryException("User not found: " + userId));
 
-    if (!user.hasOutstandingFines()) {
-      throw new LibraryException("No outstanding fines to pay");
-    }
+    synchronized (userLock(userId)) {
+      // The balance comes from the log's projections, which every charge and payment updates.
+      BigDecimal currentBalance = circulationLog.projections().balance(userId);
+      if (currentBalance.signum() <= 0) {
+        throw new LibraryException("No outstanding fines to pay");
+      }
+      if (amount.compareTo(currentBalance) > 0) {
+        throw new LibraryException(
+            "Payment exceeds outstanding fine of " + currentBalance);
+      }
 
-    BigDecimal currentBalance = user.getFineBalance();
-    if (amount.compareTo(currentBalance) > 0) {
-      throw new LibraryException(
-          "Payment exceeds outstanding fine of " + currentBalance);
+      snapshotGate.touch(user);
+      BigDecimal before = user.getFineBalance();
+      user.payFine(amount);
+      // The user never goes below zero; log what was actually deducted.
+      BigDecimal paid = before.subtract(user.getFineBalance());
+      // Persist updated balance so subsequent operations see the change.
+      userRepository.save(user);
+      circulationLog.append(new CirculationEvent.FinePaid(userId, dateProvider.today(), paid));
+      return user.getFineBalance();
     }
+  }
 
-    user.payFine(amount);
-    // Persist updated balance so subsequent operations see the change.
-    userRepository.save(user);
-    return user.getFineBalance();
+  private Object userLock(String userId) {
+    return userLocks[Math.floorMod(userId.hashCode(), userLocks.length)];
   }
 
   public OverdueReport generateOverdueReport(String userId) {
+    long start = overdueReportTimer.start();
+    try {
+      return doGenerateOverdueReport(userId);
+    } finally {
+      overdueReportTimer.stop(start);
+    }
+  }
+
+  private OverdueReport doGenerateOverdueReport(String userId) {
     userRepository
         .findById(userId)
         .orElseThrow(() -> new LibraryException("User not found: " + userId));
@@ -0,0 +1,262 @@
+package com.library.service;
+
+import com.library.domain.Hold;
+import com.library.domain.HoldStatus;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.metrics.Counter;
+import com.library.metrics.MetricsRegistry;
+import com.library.notification.ReminderObserver;
+import com.library.repository.MediaRepository;
+import com.library.repository.UserRepository;
+import com.library.support.DateProvider;
+import com.library.support.DayTimerWheel;
+import com.library.support.IdGenerator;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-title FIFO hold queues with allocation on return and pickup expiry.
+ *
+ * <p>Each title has its own lock-free queue, so placing and allocating holds on different
+ * titles never contend, and even a popular title only pays a CAS per enqueue. Cancelled holds
+ * stay in the queue and are skipped when it is polled. Pickup deadlines are tracked on a
+ * {@link DayTimerWheel}; expiry work is proportional to the holds that actually expire.</p>
+ */
+public class HoldService {
+  /** Days a set-aside copy waits on the hold shelf. */
+  static final int PICKUP_DAYS = 3;
+  private static final int WHEEL_SLOTS = 64;
+
+  private final UserRepository userRepository;
+  private final MediaRepository mediaRepository;
+  private final DateProvider dateProvider;
+  private final InventoryService inventoryService;
+  private final Map<String, Queue<Hold>> queuesByMedia = new ConcurrentHashMap<>();
+  private final Map<String, AtomicInteger> waitingByMedia = new ConcurrentHashMap<>();
+  private final Map<String, Hold> activeHolds = new ConcurrentHashMap<>();
+  private final Map<String, Hold> activeByUserAndMedia = new ConcurrentHashMap<>();
+  private final DayTimerWheel<Hold> expiryWheel;
+  private final List<ReminderObserver> observers = new CopyOnWriteArrayList<>();
+  private final Counter holdsPlaced;
+  private final Counter holdsAllocated;
+  private final Counter holdsFulfilled;
+  private final Counter holdsExpired;
+
+  public HoldService(
+      UserRepository userRepository,
+      MediaRepository mediaRepository,
+      DateProvider dateProvider,
+      InventoryService inventoryService) {
+    this(userRepository, mediaRepository, dateProvider, inventoryService, new MetricsRegistry());
+  }
+
+  /**
+   * @param inventoryService copy inventory used to release set-aside copies, may be null
+   */
+  public HoldService(
+      UserRepository userRepository,
+      MediaRepository mediaRepository,
+      DateProvider dateProvider,
+      InventoryService inventoryService,
+      MetricsRegistry metrics) {
+    this.userRepository = userRepository;
+    this.mediaRepository = mediaRepository;
+    this.dateProvider = dateProvider;
+    this.inventoryService = inventoryService;
+    this.expiryWheel = new DayTimerWheel<>(WHEEL_SLOTS, dateProvider.today());
+    this.holdsPlaced = metrics.counter("hold.placed");
+    this.holdsAllocated = metrics.counter("hold.allocated");
+    this.holdsFulfilled = metrics.counter("hold.fulfilled");
+    this.holdsExpired = metrics.counter("hold.expired");
+  }
+
+  /** Registers an observer told when a hold becomes ready for pickup. */
+  public void register(ReminderObserver observer) {
+    observers.add(observer);
+  }
+
+  public void remove(ReminderObserver observer) {
+    observers.remove(observer);
+  }
+
+  /**
+   * Joins the back of the title's hold queue.
+   *
+   * @param userId user placing the hold
+   * @param mediaId title to reserve; must currently be unavailable
+   * @return the waiting hold
+   */
+  public Hold placeHold(String userId, String mediaId) {
+    expireUnclaimedHolds();
+    userRepository
+        .findById(userId)
+        .orElseThrow(() -> new LibraryException("User not found: " + userId));
+    Media media =
+        mediaRepository
+            .findById(mediaId)
+            .orElseThrow(() -> new LibraryException("Media not found: " + mediaId));
+    if (media.isAvailable()) {
+      throw new LibraryException("Media is available, borrow it instead");
+    }
+    Hold hold = new Hold(IdGenerator.newId(), userId, mediaId, dateProvider.today());
+    if (activeByUserAndMedia.putIfAbsent(key(userId, mediaId), hold) != null) {
+      throw new LibraryException("Hold already placed for this media");
+    }
+    activeHolds.put(hold.getId(), hold);
+    waitingByMedia.computeIfAbsent(mediaId, id -> new AtomicInteger()).incrementAndGet();
+    queuesByMedia.computeIfAbsent(mediaId, id -> new ConcurrentLinkedQueue<>()).offer(hold);
+    holdsPlaced.increment();
+    return hold;
+  }
+
+  /**
+   * Withdraws a hold. A copy already set aside goes to the next waiting hold or back on the
+   * shelf.
+   *
+   * @param holdId hold to cancel
+   */
+  public void cancelHold(String holdId) {
+    Hold hold = activeHolds.get(holdId);
+    if (hold == null) {
+      throw new LibraryException("Hold not found: " + holdId);
+    }
+    if (hold.transition(HoldStatus.WAITING, HoldStatus.CANCELLED)) {
+      waitingByMedia.get(hold.getMediaId()).decrementAndGet();
+      close(hold);
+    } else if (hold.transition(HoldStatus.READY, HoldStatus.CANCELLED)) {
+      close(hold);
+      passOn(hold.getMediaId(), hold.getCopyBarcode());
+    }
+  }
+
+  /**
+   * Sets a returned copy aside for the oldest waiting hold on the title.
+   *
+   * @param mediaId title of the returned copy
+   * @param copyBarcode barcode of the returned copy, may be null
+   * @return true if a hold took the copy; false if it should go back on the shelf
+   */
+  public boolean allocate(String mediaId, String copyBarcode) {
+    Queue<Hold> queue = queuesByMedia.get(mediaId);
+    if (queue == null) {
+      return false;
+    }
+    LocalDate deadline = dateProvider.today().plusDays(PICKUP_DAYS);
+    Hold hold;
+    while ((hold = queue.poll()) != null) {
+      if (hold.markReady(copyBarcode, deadline)) {
+        waitingByMedia.get(mediaId).decrementAndGet();
+        expiryWheel.schedule(deadline.plusDays(1), hold);
+        holdsAllocated.increment();
+        notifyReady(hold);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Fulfils the user's ready hold on the title, if there is one.
+   *
+   * @param userId borrowing user
+   * @param mediaId title being borrowed
+   * @param copyBarcode scanned copy that must be the set-aside one, or null for any
+   * @return the fulfilled hold, whose copy the caller now lends out
+   */
+  public Optional<Hold> claimReady(String userId, String mediaId, String copyBarcode) {
+    expireUnclaimedHolds();
+    Hold hold = activeByUserAndMedia.get(key(userId, mediaId));
+    if (hold == null
+        || (copyBarcode != null && !copyBarcode.equals(hold.getCopyBarcode()))
+        || !hold.transition(HoldStatus.READY, HoldStatus.FULFILLED)) {
+      return Optional.empty();
+    }
+    close(hold);
+    holdsFulfilled.increment();
+    return Optional.of(hold);
+  }
+
+  /**
+   * Expires ready holds whose pickup deadline has passed and passes their copies on.
+   *
+   * @return number of holds expired
+   */
+  public int expireUnclaimedHolds() {
+    int expired = 0;
+    for (Hold hold : expiryWheel.advanceTo(dateProvider.today())) {
+      if (hold.transition(HoldStatus.READY, HoldStatus.EXPIRED)) {
+        close(hold);
+        holdsExpired.increment();
+        passOn(hold.getMediaId(), hold.getCopyBarcode());
+        expired++;
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * @param mediaId title to look up
+   * @return number of holds still waiting for a copy
+   */
+  public int waitingCount(String mediaId) {
+    AtomicInteger count = waitingByMedia.get(mediaId);
+    return count == null ? 0 : count.get();
+  }
+
+  /**
+   * @param userId user to look up
+   * @return the user's waiting and ready holds
+   */
+  public List<Hold> activeHoldsForUser(String userId) {
+    List<Hold> holds = new ArrayList<>();
+    for (Hold hold : activeHolds.values()) {
+      if (hold.getUserId().equals(userId) && hold.isActive()) {
+        holds.add(hold);
+      }
+    }
+    return holds;
+  }
+
+  private void passOn(String mediaId, String copyBarcode) {
+    if (allocate(mediaId, copyBarcode)) {
+      return;
+    }
+    mediaRepository.findById(mediaId).ifPresent(media -> {
+      media.markAvailable();
+      mediaRepository.save(media);
+    });
+    if (copyBarcode != null && inventoryService != null) {
+      inventoryService.release(copyBarcode);
+    }
+  }
+
+  private void close(Hold hold) {
+    activeHolds.remove(hold.getId());
+    activeByUserAndMedia.remove(key(hold.getUserId(), hold.getMediaId()), hold);
+  }
+
+  private void notifyReady(Hold hold) {
+    if (observers.isEmpty()) {
+      return;
+    }
+    Optional<User> user = userRepository.findById(hold.getUserId());
+    String title =
+        mediaRepository.findById(hold.getMediaId()).map(Media::getTitle).orElse(hold.getMediaId());
+    String message = "Your hold on \"%s\" is ready for pickup until %s."
+        .formatted(title, hold.getPickupDeadline());
+    user.ifPresent(u -> observers.forEach(observer -> observer.notify(u, message)));
+  }
+
+  private static String key(String userId, String mediaId) {
+    return userId + '\u0000' + mediaId;
+  }
+}
@@ -0,0 +1,228 @@
+package com.library.service;
+
+import com.library.domain.Copy;
+import com.library.domain.CopyAvailability;
+import com.library.domain.Media;
+import com.library.repository.CopyRepository;
+import com.library.repository.MediaRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the physical copies of each title and which of them are on the shelf.
+ *
+ * <p>Copy entities live in the {@link CopyRepository}; availability is kept in one
+ * {@link CopyAvailability} bitmap per title, so "is any copy free", "reserve copy N" and
+ * barcode lookups never scan the catalog. The title's {@link Media#getQuantity() quantity}
+ * is kept equal to the number of available copies.</p>
+ */
+public class InventoryService {
+  private final CopyRepository copyRepository;
+  private final MediaRepository mediaRepository;
+  private final Map<String, CopyAvailability> availabilityByMedia = new ConcurrentHashMap<>();
+
+  public InventoryService(CopyRepository copyRepository, MediaRepository mediaRepository) {
+    this.copyRepository = copyRepository;
+    this.mediaRepository = mediaRepository;
+  }
+
+  /**
+   * Registers copies for a title that is not tracked yet, one per unit of its current
+   * quantity. Titles that already have copies are left untouched.
+   *
+   * @param media title loaded from storage
+   */
+  public void trackExisting(Media media) {
+    trackExisting(media, List.of());
+  }
+
+  /**
+   * Registers copies for a title that is not tracked yet: the copies out on open loans, under
+   * the barcodes they were lent with, and one copy on the shelf per unit of its current
+   * quantity. Copy numbers below the highest one on loan that are neither on loan nor needed
+   * for the quantity, e.g. a copy that was set aside for a hold, are registered off the
+   * shelf. Titles that already have copies are left untouched.
+   *
+   * @param media title loaded from storage
+   * @param loanedBarcodes barcodes of the title's copies on open loans; barcodes that are not
+   *     default barcodes of the title are ignored
+   */
+  public void trackExisting(Media media, Collection<String> loanedBarcodes) {
+    if (availabilityByMedia.containsKey(media.getId())) {
+      return;
+    }
+    Set<Integer> onLoan = new HashSet<>();
+    for (String barcode : loanedBarcodes) {
+      int copyNumber = Copy.copyNumberOf(media.getId(), barcode);
+      if (copyNumber > 0) {
+        onLoan.add(copyNumber);
+      }
+    }
+    int highestOnLoan = onLoan.stream().mapToInt(Integer::intValue).max().orElse(0);
+    CopyAvailability availability = availabilityFor(media.getId());
+    synchronized (availability) {
+      if (availability.totalCopies() == 0) {
+        int onShelf = 0;
+        for (int copyNumber = 1;
+            onShelf < media.getQuantity() || copyNumber <= highestOnLoan;
+            copyNumber++) {
+          register(media.getId(), availability);
+          if (!onLoan.contains(copyNumber) && onShelf < media.getQuantity()) {
+            onShelf++;
+          } else {
+            availability.reserve(copyNumber);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds new copies to a title and increases its available quantity.
+   *
+   * @param mediaId title to add copies to
+   * @param count number of copies, must be positive
+   * @return the new copies
+   */
+  public List<Copy> addCopies(String mediaId, int count) {
+    if (count <= 0) {
+      throw new LibraryException("Copy count must be positive");
+    }
+    Media media =
+        mediaRepository
+            .findById(mediaId)
+            .orElseThrow(() -> new LibraryException("Media not found: " + mediaId));
+    trackExisting(media);
+    CopyAvailability availability = availabilityFor(mediaId);
+    List<Copy> added = new ArrayList<>(count);
+    synchronized (availability) {
+      for (int i = 0; i < count; i++) {
+        added.add(register(mediaId, availability));
+      }
+    }
+    media.setQuantity(media.getQuantity() + count);
+    mediaRepository.save(media);
+    return added;
+  }
+
+  /**
+   * @param mediaId title to check
+   * @return true if copies are registered for the title
+   */
+  public boolean isTracked(String mediaId) {
+    CopyAvailability availability = availabilityByMedia.get(mediaId);
+    return availability != null && availability.totalCopies() > 0;
+  }
+
+  /**
+   * @param mediaId title to check
+   * @return true if at least one copy is on the shelf
+   */
+  public boolean anyAvailable(String mediaId) {
+    CopyAvailability availability = availabilityByMedia.get(mediaId);
+    return availability != null && availability.anyAvailable();
+  }
+
+  /**
+   * @param mediaId title to check
+   * @return number of copies on the shelf
+   */
+  public int availableCopies(String mediaId) {
+    CopyAvailability availability = availabilityByMedia.get(mediaId);
+    return availability == null ? 0 : availability.availableCopies();
+  }
+
+  /**
+   * @param barcode scanned barcode
+   * @return the copy with that barcode, if registered
+   */
+  public Optional<Copy> findByBarcode(String barcode) {
+    return copyRepository.findByBarcode(barcode);
+  }
+
+  /**
+   * @param mediaId title to look up
+   * @return the title's copies ordered by copy number
+   */
+  public List<Copy> copiesOf(String mediaId) {
+    return copyRepository.findByMedia(mediaId);
+  }
+
+  /**
+   * @param copy copy to check
+   * @return true if the copy is on the shelf
+   */
+  public boolean isAvailable(Copy copy) {
+    CopyAvailability availability = availabilityByMedia.get(copy.getMediaId());
+    return availability != null && availability.isAvailable(copy.getCopyNumber());
+  }
+
+  /**
+   * Takes a specific copy off the shelf.
+   *
+   * @param copy copy to reserve
+   * @return true if the copy was available
+   */
+  public boolean reserve(Copy copy) {
+    CopyAvailability availability = availabilityByMedia.get(copy.getMediaId());
+    return availability != null && availability.reserve(copy.getCopyNumber());
+  }
+
+  /**
+   * Takes the lowest-numbered available copy of a title off the shelf.
+   *
+   * @param mediaId title to reserve from
+   * @return the reserved copy, or empty if every copy is out
+   */
+  public Optional<Copy> reserveAny(String mediaId) {
+    CopyAvailability availability = availabilityByMedia.get(mediaId);
+    if (availability == null) {
+      return Optional.empty();
+    }
+    int copyNumber = availability.reserveAny();
+    if (copyNumber == 0) {
+      return Optional.empty();
+    }
+    return copyRepository.findByBarcode(Copy.barcodeFor(mediaId, copyNumber));
+  }
+
+  /**
+   * Puts a copy back on the shelf.
+   *
+   * @param barcode barcode of the returned copy
+   */
+  public void release(String barcode) {
+    Copy copy =
+        copyRepository
+            .findByBarcode(barcode)
+            .orElseThrow(() -> new LibraryException("Unknown copy barcode: " + barcode));
+    availabilityFor(copy.getMediaId()).release(copy.getCopyNumber());
+  }
+
+  /**
+   * Forgets all copies of a title, e.g. after it was removed from the catalog.
+   *
+   * @param mediaId title to forget
+   */
+  public void untrack(String mediaId) {
+    availabilityByMedia.remove(mediaId);
+    copyRepository.deleteByMedia(mediaId);
+  }
+
+  private CopyAvailability availabilityFor(String mediaId) {
+    return availabilityByMedia.computeIfAbsent(mediaId, id -> new CopyAvailability());
+  }
+
+  private Copy register(String mediaId, CopyAvailability availability) {
+    int copyNumber = availability.addCopy();
+    Copy copy = new Copy(Copy.barcodeFor(mediaId, copyNumber), mediaId, copyNumber);
+    copyRepository.save(copy);
+    return copy;
+  }
+}
@@ -2,13 +2,19 @@ package com.library.service;
 
 import com.library.domain.Loan;
 import com.library.domain.User;
+import com.library.metrics.Counter;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
 import com.library.notification.ReminderObserver;
 import com.library.repository.LoanRepository;
 import com.library.repository.UserRepository;
 import com.library.support.DateProvider;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
@@ -19,12 +25,24 @@ public class ReminderService {
   private final UserRepository userRepository;
   private final DateProvider dateProvider;
   private final List<ReminderObserver> observers = new CopyOnWriteArrayList<>();
+  private final Timer dailyRunTimer;
+  private final Counter remindersSent;
 
   public ReminderService(
       LoanRepository loanRepository, UserRepository userRepository, DateProvider dateProvider) {
+    this(loanRepository, userRepository, dateProvider, new MetricsRegistry());
+  }
+
+  public ReminderService(
+      LoanRepository loanRepository,
+      UserRepository userRepository,
+      DateProvider dateProvider,
+      MetricsRegistry metrics) {
     this.loanRepository = loanRepository;
     this.userRepository = userRepository;
     this.dateProvider = dateProvider;
+    this.dailyRunTimer = metrics.timer("reminder.daily");
+    this.remindersSent = metrics.counter("reminder.sent");
   }
 
   public void register(ReminderObserver observer) {
@@ -36,13 +54,24 @@ public class ReminderService {
   }
 
   public List<User> sendDailyReminders() {
-    List<User> notified = new ArrayList<>();
-    for (User user : userRepository.findAll()) {
-      if (sendReminder(user)) {
-        notified.add(user);
+    long start = dailyRunTimer.start();
+    try {
+      // Only users with at least one overdue loan, found through the due-date index.
+      Set<String> overdueUserIds = new LinkedHashSet<>();
+      for (Loan loan : loanRepository.findActiveDueBefore(dateProvider.today())) {
+        overdueUserIds.add(loan.getUserId());
+      }
+      List<User> notified = new ArrayList<>();
+      for (String userId : overdueUserIds) {
+        Optional<User> user = userRepository.findById(userId);
+        if (user.isPresent() && sendReminder(user.get())) {
+          notified.add(user.get());
+        }
       }
+      return notified;
+    } finally {
+      dailyRunTimer.stop(start);
     }
-    return notified;
   }
 
   public boolean sendReminder(User user) {
@@ -56,6 +85,7 @@ public class ReminderService {
     }
     String message = "You have %d overdue book(s).".formatted(overdueCount);
     notifyObservers(user, message);
+    remindersSent.increment();
     return true;
   }
 
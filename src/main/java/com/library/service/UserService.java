@@ -1,14 +1,16 @@
 package com.library.service;
 
+import com.library.circulation.CirculationLog;
+import com.library.circulation.CirculationState;
 import com.library.domain.User;
 import com.library.domain.UserRole;
 import com.library.common.LibraryException;
 import com.library.repository.LoanRepository;
 import com.library.repository.UserRepository;
+import com.library.support.IdGenerator;
 import java.util.Collection;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.UUID;
 
 /**
  * Manages user lifecycle operations.
@@ -17,41 +19,54 @@ public class UserService {
   private final UserRepository userRepository;
   private final LoanRepository loanRepository;
   private final AuthService authService;
+  private final CirculationLog circulationLog;
 
   public UserService(
       UserRepository userRepository, LoanRepository loanRepository, AuthService authService) {
+    this(userRepository, loanRepository, authService, new CirculationLog());
+  }
+
+  /**
+   * @param circulationLog log shared with the circulation services; its projections tell
+   *     whether a user still has open loans or fines
+   */
+  public UserService(
+      UserRepository userRepository,
+      LoanRepository loanRepository,
+      AuthService authService,
+      CirculationLog circulationLog) {
     this.userRepository = userRepository;
     this.loanRepository = loanRepository;
     this.authService = authService;
+    this.circulationLog = circulationLog;
   }
  
 
   public User registerMember(String username, String name, String password) {
     ensureUsernameAvailable(username);
     User member =
-        new User(UUID.randomUUID().toString(), username, name, UserRole.MEMBER, password);
+        new User(IdGenerator.newId(), username, name, UserRole.MEMBER, password);
     userRepository.save(member);
     return member;
   }
 
   public User registerAdmin(String username, String name, String password) {
     ensureUsernameAvailable(username);
-    User admin = new User(UUID.randomUUID().toString(), username, name, UserRole.ADMIN, password);
+    User admin = new User(IdGenerator.newId(), username, name, UserRole.ADMIN, password);
     userRepository.save(admin);
     return admin;
   }
 
   public void unregister(String userId) {
     authService.requireAdmin();
-    User user =
-        userRepository
-            .findById(userId)
-            .orElseThrow(() -> new LibraryException("User not found"));
-    boolean hasActiveLoans = !loanRepository.findActiveByUser(userId).isEmpty();
-    if (hasActiveLoans) {
+    userRepository
+        .findById(userId)
+        .orElseThrow(() -> new LibraryException("User not found"));
+    CirculationState projections = circulationLog.projections();
+    if (!projections.activeLoans(userId).isEmpty()) {
       throw new LibraryException("Cannot remove user with active loans");
     }
-    if (user.hasOutstandingFines()) {
+    if (projections.balance(userId).signum() > 0) {
       throw new LibraryException("Cannot remove user with unpaid fines");
     }
     userRepository.delete(userId);
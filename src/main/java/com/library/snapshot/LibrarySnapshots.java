@@ -0,0 +1,535 @@
+package com.library.snapshot;
+
+import com.library.circulation.CirculationLog;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
+import com.library.repository.LoanRepository;
+import com.library.repository.MediaRepository;
+import com.library.repository.UserRepository;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Exports the whole library state (media, users and loans) to a stream and restores it.
+ *
+ * <p>A snapshot is a header followed by chunks of at most {@value #CHUNK_RECORDS} records of
+ * one kind, cut early once they reach {@value #CHUNK_BYTES} bytes. Each chunk is
+ * Deflate-compressed on its own and carries its record count, both lengths and a CRC-32 of
+ * its header fields and uncompressed bytes, so damage is detected per chunk and chunks can be
+ * compressed, checked and decoded in parallel. Lengths above {@value #MAX_CHUNK_BYTES} are
+ * rejected as damage before anything is allocated for them:</p>
+ *
+ * <pre>
+ *   "LMSSNAP" version
+ *   { section records rawLength compressedLength crc32 bytes[compressedLength] }*
+ *   0
+ * </pre>
+ *
+ * <p>Loans moved to an archive are neither exported nor restored: they already live in the
+ * archive's own files, so a snapshot holds {@link LoanRepository#findAllUnarchived()} and is
+ * restored through {@link LoanRepository#restoreAll}.</p>
+ *
+ * <p>Export reads the repositories through a copy-on-write {@link SnapshotGate.View}, so the
+ * snapshot shows the state of the moment it started, never a borrow or return half-applied,
+ * and circulation carries on meanwhile. Records changed during the export are written as
+ * they were before the change, and records added during it are left out. Chunks are
+ * compressed and written as they fill, so only a window of {@code PARALLEL_CHUNKS} chunks is
+ * held in memory. Restore verifies and decodes every chunk before saving anything, so a
+ * damaged snapshot leaves the repositories untouched. The price is that all decoded records
+ * are held on the heap at once, so restoring needs memory for the whole snapshot's records
+ * besides the repositories themselves. The saves then run as one
+ * {@link SnapshotGate#change}, which also {@linkplain CirculationLog#reset resets} the
+ * circulation log to the restored state.</p>
+ */
+public class LibrarySnapshots {
+
+  /** Records per chunk. */
+  static final int CHUNK_RECORDS = 4_096;
+
+  /** Uncompressed bytes after which a chunk is cut even if it has fewer records. */
+  static final int CHUNK_BYTES = 4 << 20;
+
+  /** Largest uncompressed or compressed chunk a snapshot may hold. */
+  static final int MAX_CHUNK_BYTES = 64 << 20;
+
+  /** Chunks compressed or decoded together before the next ones are read or written. */
+  private static final int PARALLEL_CHUNKS =
+      Math.max(2, Runtime.getRuntime().availableProcessors() * 2);
+
+  private static final byte[] MAGIC = "LMSSNAP".getBytes(StandardCharsets.US_ASCII);
+  /** Version 2 covers the chunk header fields with the CRC. */
+  private static final int FORMAT_VERSION = 2;
+
+  private static final int END = 0;
+  private static final int MEDIA = 1;
+  private static final int USERS = 2;
+  private static final int LOANS = 3;
+
+  private final MediaRepository mediaRepository;
+  private final UserRepository userRepository;
+  private final LoanRepository loanRepository;
+  private final SnapshotGate gate;
+  private final CirculationLog circulationLog;
+  private final Timer exportTimer;
+  private final Timer restoreTimer;
+
+  public LibrarySnapshots(
+      MediaRepository mediaRepository,
+      UserRepository userRepository,
+      LoanRepository loanRepository,
+      SnapshotGate gate) {
+    this(mediaRepository, userRepository, loanRepository, gate, new MetricsRegistry());
+  }
+
+  public LibrarySnapshots(
+      MediaRepository mediaRepository,
+      UserRepository userRepository,
+      LoanRepository loanRepository,
+      SnapshotGate gate,
+      MetricsRegistry metrics) {
+    this(mediaRepository, userRepository, loanRepository, gate, new CirculationLog(), metrics);
+  }
+
+  /**
+   * @param circulationLog log shared with the circulation services; a restore resets it to
+   *     the open loans and fine balances the repositories hold afterwards
+   */
+  public LibrarySnapshots(
+      MediaRepository mediaRepository,
+      UserRepository userRepository,
+      LoanRepository loanRepository,
+      SnapshotGate gate,
+      CirculationLog circulationLog,
+      MetricsRegistry metrics) {
+    this.mediaRepository = mediaRepository;
+    this.userRepository = userRepository;
+    this.loanRepository = loanRepository;
+    this.gate = gate;
+    this.circulationLog = circulationLog;
+    this.exportTimer = metrics.timer("snapshot.export");
+    this.restoreTimer = metrics.timer("snapshot.restore");
+  }
+
+  /** Counts of what a snapshot held. */
+  public record SnapshotInfo(int media, int users, int loans, int chunks, long bytes) {}
+
+  /**
+   * Writes a snapshot of the current state. The stream is not closed.
+   *
+   * @param out destination
+   * @return what was written
+   * @throws IOException if writing fails
+   */
+  public SnapshotInfo export(OutputStream out) throws IOException {
+    long start = exportTimer.start();
+    ExportView view = new ExportView();
+    gate.open(view);
+    try {
+      DataOutputStream data = new DataOutputStream(out);
+      data.write(MAGIC);
+      data.writeByte(FORMAT_VERSION);
+      ChunkWriter chunks = new ChunkWriter(data);
+      encode(MEDIA, mediaRepository.findAll(), view, chunks);
+      encode(USERS, userRepository.findAll(), view, chunks);
+      // Archived loans stay in the archive's own files.
+      encode(LOANS, loanRepository.findAllUnarchived(), view, chunks);
+      chunks.flush();
+      data.writeByte(END);
+      data.flush();
+      return new SnapshotInfo(chunks.counts[MEDIA], chunks.counts[USERS], chunks.counts[LOANS],
+          chunks.written, MAGIC.length + 2 + chunks.bytes);
+    } catch (UncheckedIOException ex) {
+      throw ex.getCause();
+    } finally {
+      gate.close(view);
+      exportTimer.stop(start);
+    }
+  }
+
+  /**
+   * Reads a snapshot and saves its records, replacing stored records with the same IDs.
+   * Records not in the snapshot are kept.
+   *
+   * <p>Every record is decoded and held in memory before the first save.</p>
+   *
+   * @param in snapshot written by {@link #export}; read to the end marker, not closed
+   * @return what was restored
+   * @throws IOException if reading fails
+   * @throws IllegalArgumentException if the stream is not a snapshot or a chunk is damaged
+   */
+  public SnapshotInfo restore(InputStream in) throws IOException {
+    long start = restoreTimer.start();
+    try {
+      Contents contents = read(in);
+      gate.change(() -> {
+        if (gate.observed()) {
+          // An export is running; it must see the records this restore replaces as they were.
+          contents.media().forEach(media -> mediaRepository.findById(media.getId())
+              .ifPresentOrElse(gate::touch, () -> gate.created(media)));
+          contents.users().forEach(user -> userRepository.findById(user.getId())
+              .ifPresentOrElse(gate::touch, () -> gate.created(user)));
+          // One pass over the stored loans rather than a lookup each, which for a missing ID
+          // would search the whole archive; archived loans are not exported anyway.
+          Map<String, Loan> stored = new HashMap<>();
+          loanRepository.findAllUnarchived().forEach(loan -> stored.put(loan.getId(), loan));
+          contents.loans().forEach(loan -> {
+            Loan previous = stored.get(loan.getId());
+            if (previous != null) {
+              gate.touch(previous);
+            } else {
+              gate.created(loan);
+            }
+          });
+        }
+        mediaRepository.saveAll(contents.media());
+        userRepository.saveAll(contents.users());
+        loanRepository.restoreAll(contents.loans());
+        // The log's events no longer describe the repositories; start it over from them.
+        circulationLog.reset(loanRepository.findAllUnarchived(), userRepository.findAll());
+        return null;
+      });
+      return contents.info();
+    } finally {
+      restoreTimer.stop(start);
+    }
+  }
+
+  /** Records of a snapshot, decoded but not saved anywhere. */
+  public record Contents(List<Media> media, List<User> users, List<Loan> loans, SnapshotInfo info) {}
+
+  /**
+   * Verifies and decodes a snapshot without saving it, e.g. for a loader that fills
+   * repositories its own way. Chunks are decoded in parallel; the returned records are all
+   * held in memory.
+   *
+   * @param in snapshot written by {@link #export}; read to the end marker, not closed
+   * @return the records
+   * @throws IOException if reading fails
+   * @throws IllegalArgumentException if the stream is not a snapshot or a chunk is damaged
+   */
+  public static Contents read(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(in);
+    byte[] magic = new byte[MAGIC.length];
+    try {
+      data.readFully(magic);
+    } catch (EOFException ex) {
+      throw new IllegalArgumentException("Not a library snapshot");
+    }
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IllegalArgumentException("Not a library snapshot");
+    }
+    int version = data.readUnsignedByte();
+    if (version != FORMAT_VERSION) {
+      throw new IllegalArgumentException("Unsupported snapshot version " + version);
+    }
+
+    List<Media> media = new ArrayList<>();
+    List<User> users = new ArrayList<>();
+    List<Loan> loans = new ArrayList<>();
+    int chunks = 0;
+    long bytes = MAGIC.length + 2;
+    List<Frame> window = new ArrayList<>(PARALLEL_CHUNKS);
+    boolean ended = false;
+    while (!ended) {
+      Frame frame = readFrame(data, chunks + window.size() + 1);
+      ended = frame == null;
+      if (frame != null) {
+        window.add(frame);
+        bytes += 17 + frame.bytes().length;
+      }
+      if (window.size() == PARALLEL_CHUNKS || (ended && !window.isEmpty())) {
+        List<Decoded> decoded = window.parallelStream().map(LibrarySnapshots::decode).toList();
+        for (int i = 0; i < window.size(); i++) {
+          if (decoded.get(i).records() == null) {
+            throw new IllegalArgumentException(
+                "Snapshot chunk " + window.get(i).number() + " is damaged");
+          }
+          addAll(window.get(i).section(), decoded.get(i).records(), media, users, loans);
+        }
+        chunks += window.size();
+        window.clear();
+      }
+    }
+    return new Contents(media, users, loans,
+        new SnapshotInfo(media.size(), users.size(), loans.size(), chunks, bytes));
+  }
+
+  private static void encode(int section, Collection<?> records, ExportView view,
+      ChunkWriter chunks) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(buffer);
+    int count = 0;
+    for (Object record : records) {
+      if (view.write(record, out)
+          && (++count == CHUNK_RECORDS || buffer.size() >= CHUNK_BYTES)) {
+        chunks.add(new Chunk(section, count, buffer.toByteArray()));
+        buffer.reset();
+        count = 0;
+      }
+    }
+    if (count > 0) {
+      chunks.add(new Chunk(section, count, buffer.toByteArray()));
+    }
+  }
+
+  private static void writeRecord(DataOutputStream out, Object record) throws IOException {
+    if (record instanceof Media media) {
+      SnapshotCodec.writeMedia(out, media);
+    } else if (record instanceof User user) {
+      SnapshotCodec.writeUser(out, user);
+    } else {
+      SnapshotCodec.writeLoan(out, (Loan) record);
+    }
+  }
+
+  /**
+   * The state of the library when an export started. Records that changes report are encoded
+   * before they are modified; every other record is still as it was and is encoded live.
+   */
+  private static final class ExportView implements SnapshotGate.View {
+    /** Marks a record added after the view opened. */
+    private static final byte[] CREATED = new byte[0];
+
+    /**
+     * Encoded records as they were before a change, by {@link #key}. Kept after they are
+     * written: a record moving between tiers of a repository while it is being read, e.g. a
+     * loan being returned, can come up twice and must be written the same way both times.
+     */
+    private final ConcurrentHashMap<String, byte[]> images = new ConcurrentHashMap<>();
+
+    @Override
+    public void preserve(Object record) {
+      images.computeIfAbsent(key(record), k -> {
+        ByteArrayOutputStream image = new ByteArrayOutputStream(64);
+        try {
+          writeRecord(new DataOutputStream(image), record);
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+        return image.toByteArray();
+      });
+    }
+
+    @Override
+    public void created(Object record) {
+      images.putIfAbsent(key(record), CREATED);
+    }
+
+    /**
+     * Appends a record as it was when the view opened. Runs under the record's map entry, so
+     * a change cannot start modifying it while it is being encoded.
+     *
+     * @return false if the record did not exist yet and nothing was written
+     */
+    boolean write(Object record, DataOutputStream out) {
+      boolean[] existed = {true};
+      images.compute(key(record), (key, image) -> {
+        try {
+          if (image == null) {
+            writeRecord(out, record);
+          } else if (image == CREATED) {
+            existed[0] = false;
+          } else {
+            out.write(image);
+          }
+        } catch (IOException ex) {
+          throw new UncheckedIOException(ex);
+        }
+        return image;
+      });
+      return existed[0];
+    }
+
+    private static String key(Object record) {
+      if (record instanceof Media media) {
+        return "M" + media.getId();
+      }
+      if (record instanceof User user) {
+        return "U" + user.getId();
+      }
+      return "L" + ((Loan) record).getId();
+    }
+  }
+
+  /** Compresses chunks a window at a time and writes them out in order. */
+  private static final class ChunkWriter {
+    private final DataOutputStream data;
+    private final List<Chunk> window = new ArrayList<>(PARALLEL_CHUNKS);
+    private final int[] counts = new int[LOANS + 1];
+    private int written;
+    /** Bytes of the frames written so far; a long, since snapshots may exceed 2 GiB. */
+    private long bytes;
+
+    ChunkWriter(DataOutputStream data) {
+      this.data = data;
+    }
+
+    void add(Chunk chunk) throws IOException {
+      window.add(chunk);
+      if (window.size() == PARALLEL_CHUNKS) {
+        flush();
+      }
+    }
+
+    void flush() throws IOException {
+      List<Frame> frames = window.parallelStream().map(LibrarySnapshots::compress).toList();
+      window.clear();
+      for (Frame frame : frames) {
+        data.writeByte(frame.section());
+        data.writeInt(frame.records());
+        data.writeInt(frame.rawLength());
+        data.writeInt(frame.bytes().length);
+        data.writeInt(frame.crc());
+        data.write(frame.bytes());
+        counts[frame.section()] += frame.records();
+        written++;
+        bytes += 17 + frame.bytes().length;
+      }
+    }
+  }
+
+  private static Frame compress(Chunk chunk) {
+    if (chunk.raw().length > MAX_CHUNK_BYTES) {
+      throw new IllegalArgumentException(
+          "A record of " + chunk.raw().length + " bytes is too large for a snapshot");
+    }
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(chunk.raw());
+      deflater.finish();
+      ByteArrayOutputStream compressed = new ByteArrayOutputStream(chunk.raw().length / 2 + 64);
+      byte[] buffer = new byte[8_192];
+      while (!deflater.finished()) {
+        compressed.write(buffer, 0, deflater.deflate(buffer));
+      }
+      byte[] bytes = compressed.toByteArray();
+      int crc = checksum(chunk.section(), chunk.records(), chunk.raw().length, bytes.length,
+          chunk.raw());
+      return new Frame(chunk.section(), chunk.records(), chunk.raw().length, crc, bytes, 0);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /** @return the next frame, or null at the end marker */
+  private static Frame readFrame(DataInputStream data, int number) throws IOException {
+    try {
+      int section = data.readUnsignedByte();
+      if (section == END) {
+        return null;
+      }
+      if (section > LOANS) {
+        throw new IllegalArgumentException("Chunk " + number + ": unknown section " + section);
+      }
+      int records = data.readInt();
+      int rawLength = data.readInt();
+      int compressedLength = data.readInt();
+      int crc = data.readInt();
+      // Checked before anything is sized from them; the CRC only helps after the read.
+      if (records < 0 || records > CHUNK_RECORDS
+          || rawLength < 0 || rawLength > MAX_CHUNK_BYTES
+          || compressedLength < 0 || compressedLength > MAX_CHUNK_BYTES) {
+        throw new IllegalArgumentException("Snapshot chunk " + number + " is damaged");
+      }
+      byte[] bytes = new byte[compressedLength];
+      data.readFully(bytes);
+      return new Frame(section, records, rawLength, crc, bytes, number);
+    } catch (EOFException ex) {
+      throw new IllegalArgumentException("Snapshot is truncated at chunk " + number);
+    }
+  }
+
+  private static Decoded decode(Frame frame) {
+    byte[] raw = new byte[frame.rawLength()];
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(frame.bytes());
+      int length = 0;
+      while (length < raw.length && !inflater.finished() && !inflater.needsInput()) {
+        length += inflater.inflate(raw, length, raw.length - length);
+      }
+      if (length != raw.length || !inflater.finished()) {
+        return Decoded.DAMAGED;
+      }
+    } catch (DataFormatException ex) {
+      return Decoded.DAMAGED;
+    } finally {
+      inflater.end();
+    }
+    int crc = checksum(frame.section(), frame.records(), frame.rawLength(),
+        frame.bytes().length, raw);
+    if (crc != frame.crc()) {
+      return Decoded.DAMAGED;
+    }
+
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+    List<Object> records = new ArrayList<>(frame.records());
+    try {
+      for (int i = 0; i < frame.records(); i++) {
+        records.add(switch (frame.section()) {
+          case MEDIA -> SnapshotCodec.readMedia(in);
+          case USERS -> SnapshotCodec.readUser(in);
+          default -> SnapshotCodec.readLoan(in);
+        });
+      }
+    } catch (IOException | RuntimeException ex) {
+      return Decoded.DAMAGED;
+    }
+    return new Decoded(records);
+  }
+
+  /** @return CRC-32 of a chunk's header fields followed by its uncompressed bytes */
+  private static int checksum(
+      int section, int records, int rawLength, int compressedLength, byte[] raw) {
+    CRC32 crc = new CRC32();
+    crc.update(ByteBuffer.allocate(13)
+        .put((byte) section).putInt(records).putInt(rawLength).putInt(compressedLength)
+        .flip());
+    crc.update(raw);
+    return (int) crc.getValue();
+  }
+
+  @SuppressWarnings("unchecked")
+  private static void addAll(
+      int section, List<?> records, List<Media> media, List<User> users, List<Loan> loans) {
+    switch (section) {
+      case MEDIA -> media.addAll((List<Media>) records);
+      case USERS -> users.addAll((List<User>) records);
+      default -> loans.addAll((List<Loan>) records);
+    }
+  }
+
+  /** Encoded, uncompressed records of one section. */
+  private record Chunk(int section, int records, byte[] raw) {}
+
+  /** A chunk as stored: compressed bytes plus header fields; number is 1-based, for errors. */
+  private record Frame(int section, int records, int rawLength, int crc, byte[] bytes, int number) {}
+
+  /** Records of a verified chunk; null records if the chunk failed its checks. */
+  private record Decoded(List<?> records) {
+    static final Decoded DAMAGED = new Decoded(null);
+  }
+}
@@ -0,0 +1,123 @@
+package com.library.snapshot;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.MediaType;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Binary form of the records in a snapshot chunk.
+ *
+ * <p>Strings use {@link DataOutput#writeUTF}; nullable values are preceded by a presence flag
+ * and dates are stored as epoch days.</p>
+ */
+final class SnapshotCodec {
+
+  private SnapshotCodec() {
+  }
+
+  static void writeMedia(DataOutput out, Media media) throws IOException {
+    out.writeByte(media.getType().ordinal());
+    out.writeUTF(media.getId());
+    out.writeUTF(media.getTitle());
+    if (media instanceof Book book) {
+      out.writeUTF(book.getAuthor());
+      writeNullable(out, book.getIsbn());
+    } else {
+      out.writeUTF(((CD) media).getArtist());
+    }
+    out.writeInt(media.getQuantity());
+  }
+
+  static Media readMedia(DataInput in) throws IOException {
+    MediaType type = enumValue(MediaType.values(), in.readByte());
+    String id = in.readUTF();
+    String title = in.readUTF();
+    String creator = in.readUTF();
+    Media media = type == MediaType.BOOK
+        ? new Book(id, title, creator, readNullable(in))
+        : new CD(id, title, creator);
+    media.setQuantity(in.readInt());
+    return media;
+  }
+
+  static void writeUser(DataOutput out, User user) throws IOException {
+    out.writeUTF(user.getId());
+    out.writeUTF(user.getUsername());
+    out.writeUTF(user.getName());
+    out.writeByte(user.getRole().ordinal());
+    out.writeUTF(user.getPassword());
+    out.writeUTF(user.getFineBalance().toPlainString());
+    String[] loanIds = user.getActiveLoanIds().toArray(String[]::new);
+    out.writeInt(loanIds.length);
+    for (String loanId : loanIds) {
+      out.writeUTF(loanId);
+    }
+  }
+
+  static User readUser(DataInput in) throws IOException {
+    User user = new User(
+        in.readUTF(), in.readUTF(), in.readUTF(), enumValue(UserRole.values(), in.readByte()),
+        in.readUTF());
+    user.addFine(new BigDecimal(in.readUTF()));
+    int loans = in.readInt();
+    for (int i = 0; i < loans; i++) {
+      user.addLoan(in.readUTF());
+    }
+    return user;
+  }
+
+  static void writeLoan(DataOutput out, Loan loan) throws IOException {
+    out.writeUTF(loan.getId());
+    out.writeUTF(loan.getUserId());
+    out.writeUTF(loan.getMediaId());
+    writeNullable(out, loan.getCopyBarcode());
+    out.writeLong(loan.getCheckoutDate().toEpochDay());
+    out.writeLong(loan.getDueDate().toEpochDay());
+    out.writeInt(loan.getRenewalCount());
+    LocalDate returned = loan.getReturnedDate();
+    out.writeBoolean(returned != null);
+    if (returned != null) {
+      out.writeLong(returned.toEpochDay());
+    }
+  }
+
+  static Loan readLoan(DataInput in) throws IOException {
+    String id = in.readUTF();
+    String userId = in.readUTF();
+    String mediaId = in.readUTF();
+    String copyBarcode = readNullable(in);
+    LocalDate checkoutDate = LocalDate.ofEpochDay(in.readLong());
+    LocalDate dueDate = LocalDate.ofEpochDay(in.readLong());
+    int renewalCount = in.readInt();
+    LocalDate returnedDate = in.readBoolean() ? LocalDate.ofEpochDay(in.readLong()) : null;
+    return Loan.restore(
+        id, userId, mediaId, copyBarcode, checkoutDate, dueDate, renewalCount, returnedDate);
+  }
+
+  private static void writeNullable(DataOutput out, String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static String readNullable(DataInput in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static <E extends Enum<E>> E enumValue(E[] values, byte ordinal) throws IOException {
+    if (ordinal < 0 || ordinal >= values.length) {
+      throw new IOException("Unknown constant " + ordinal);
+    }
+    return values[ordinal];
+  }
+}
@@ -0,0 +1,174 @@
+package com.library.snapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Lets a snapshot read library state that is consistent across repositories without making
+ * circulation wait for it.
+ *
+ * <p>State changes that touch several repositories (a borrow saves a loan, the item and the
+ * user) run through {@link #change}, and report each record just before they modify it with
+ * {@link #touch} or, for records they create, {@link #created}. Changes never wait for each
+ * other or for snapshots.</p>
+ *
+ * <p>A snapshot registers a {@link View} with {@link #open} and then reads the live
+ * repositories at its own pace. The view is copy-on-write: every record a change is about
+ * to modify is handed to it first, so it can keep the record as it was when the view
+ * opened. Opening waits only for changes that were already running, so a view never sees
+ * one half-applied; later changes carry on and just pay for the copy of what they
+ * touch.</p>
+ */
+public final class SnapshotGate {
+
+  /** Receives records as they were before a change, while a snapshot is being taken. */
+  public interface View {
+    /**
+     * Called before a change modifies a record; only the first call for a record matters.
+     *
+     * @param record the record in its state before the change
+     */
+    void preserve(Object record);
+
+    /**
+     * Called before a change adds a record that did not exist when the view was opened.
+     *
+     * @param record the new record
+     */
+    void created(Object record);
+  }
+
+  /** Changes that started while a given set of views was open. */
+  private static final class Epoch {
+    final List<View> views;
+    final AtomicInteger running = new AtomicInteger();
+    /** The epoch this one replaced, until all of its changes are known to have finished. */
+    volatile Epoch previous;
+
+    Epoch(List<View> views, Epoch previous) {
+      this.views = views;
+      this.previous = previous;
+    }
+  }
+
+  private volatile Epoch current = new Epoch(List.of(), null);
+  /** Epoch of the change running on this thread, if any. */
+  private final ThreadLocal<Epoch> entered = new ThreadLocal<>();
+
+  /**
+   * Runs a state change.
+   *
+   * @param work the change
+   * @param <T> result type
+   * @return the change's result
+   */
+  public <T> T change(Supplier<T> work) {
+    Epoch outer = entered.get();
+    if (outer != null) {
+      // Nested changes belong to the change that is already running.
+      return work.get();
+    }
+    Epoch epoch;
+    do {
+      epoch = current;
+      epoch.running.incrementAndGet();
+      if (epoch == current) {
+        break;
+      }
+      // A view opened in between; join the new epoch so the change reports to it.
+      epoch.running.decrementAndGet();
+    } while (true);
+    entered.set(epoch);
+    try {
+      return work.get();
+    } finally {
+      entered.remove();
+      epoch.running.decrementAndGet();
+    }
+  }
+
+  /**
+   * Reports records the running change is about to modify. Outside a change, or while no view
+   * is open, this does nothing.
+   *
+   * @param records records about to be modified, in their current state; nulls are ignored
+   */
+  public void touch(Object... records) {
+    Epoch epoch = entered.get();
+    if (epoch == null) {
+      return;
+    }
+    for (View view : epoch.views) {
+      for (Object record : records) {
+        if (record != null) {
+          view.preserve(record);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reports a record the running change is about to add. Outside a change, or while no view
+   * is open, this does nothing.
+   *
+   * @param record the new record
+   */
+  public void created(Object record) {
+    Epoch epoch = entered.get();
+    if (epoch == null) {
+      return;
+    }
+    for (View view : epoch.views) {
+      view.created(record);
+    }
+  }
+
+  /**
+   * @return true if the running change has views to report to; lets a change skip the lookups
+   *     needed to call {@link #touch} when nobody is listening
+   */
+  public boolean observed() {
+    Epoch epoch = entered.get();
+    return epoch != null && !epoch.views.isEmpty();
+  }
+
+  /**
+   * Starts reporting changes to a view. When this returns, the repositories hold no change
+   * half-applied, and every later change reports what it touches to the view until it is
+   * {@linkplain #close closed}.
+   *
+   * @param view the view
+   */
+  public synchronized void open(View view) {
+    List<View> views = new ArrayList<>(current.views);
+    views.add(view);
+    Epoch opened = new Epoch(List.copyOf(views), current);
+    current = opened;
+    // Changes that started before the view existed do not report to it; let them finish.
+    for (Epoch older = opened.previous; older != null; older = older.previous) {
+      int spins = 0;
+      while (older.running.get() > 0) {
+        if (++spins < 100) {
+          Thread.onSpinWait();
+        } else {
+          LockSupport.parkNanos(50_000);
+        }
+      }
+    }
+    opened.previous = null;
+  }
+
+  /**
+   * Stops reporting changes to a view.
+   *
+   * @param view a view passed to {@link #open}
+   */
+  public synchronized void close(View view) {
+    List<View> views = new ArrayList<>(current.views);
+    views.remove(view);
+    current = new Epoch(List.copyOf(views), current);
+  }
+}
@@ -0,0 +1,135 @@
+package com.library.startup;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a line-oriented data file in parallel.
+ *
+ * <p>The file is cut into byte ranges that end just after a newline, so no line spans two
+ * chunks; UTF-8 never uses the newline byte inside a multi-byte character, so each chunk can
+ * be decoded on its own. Chunks are then read with positional reads and parsed on the pool,
+ * and the records come back in file order.</p>
+ */
+final class ChunkedLines {
+
+  /** Chunks are at most this large, so each fits one array regardless of file size. */
+  static final int MAX_CHUNK_BYTES = 32 * 1024 * 1024;
+
+  /** Files smaller than this are not worth splitting. */
+  static final int MIN_CHUNK_BYTES = 256 * 1024;
+
+  private ChunkedLines() {
+  }
+
+  /**
+   * @param file file to read; a missing file has no records
+   * @param parser turns a line into a record, or null to skip it
+   * @param pool pool the chunks are read and parsed on
+   * @param <T> record type
+   * @return the parsed records, in file order
+   * @throws IOException if the file cannot be read
+   */
+  static <T> List<T> read(Path file, Function<String, T> parser, ForkJoinPool pool)
+      throws IOException {
+    if (!Files.exists(file)) {
+      return List.of();
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long[] bounds = boundaries(channel, pool.getParallelism());
+      List<List<T>> chunks = pool.submit(() -> IntStream.range(0, bounds.length - 1)
+              .parallel()
+              .mapToObj(i -> parse(channel, bounds[i], bounds[i + 1], parser))
+              .toList())
+          .get();
+      List<T> records = new ArrayList<>();
+      chunks.forEach(records::addAll);
+      return records;
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + file, ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof UncheckedIOException io) {
+        throw io.getCause();
+      }
+      if (ex.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IOException("Could not read " + file, ex.getCause());
+    }
+  }
+
+  /** @return chunk start offsets followed by the file size; each start follows a newline */
+  static long[] boundaries(FileChannel channel, int parallelism) throws IOException {
+    long size = channel.size();
+    long wanted = Math.max((size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES,
+        Math.min(parallelism * 4L, size / MIN_CHUNK_BYTES));
+    int chunks = (int) Math.max(1, wanted);
+    List<Long> bounds = new ArrayList<>(chunks + 1);
+    bounds.add(0L);
+    for (int i = 1; i < chunks; i++) {
+      long next = lineStartAfter(channel, size * i / chunks, size);
+      if (next > bounds.get(bounds.size() - 1) && next < size) {
+        bounds.add(next);
+      }
+    }
+    bounds.add(size);
+    return bounds.stream().mapToLong(Long::longValue).toArray();
+  }
+
+  /** @return offset just past the first newline at or after {@code position} */
+  private static long lineStartAfter(FileChannel channel, long position, long size)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(8_192);
+    while (position < size) {
+      buffer.clear();
+      int read = channel.read(buffer, position);
+      if (read < 0) {
+        break;
+      }
+      for (int i = 0; i < read; i++) {
+        if (buffer.get(i) == '\n') {
+          return position + i + 1;
+        }
+      }
+      position += read;
+    }
+    return size;
+  }
+
+  private static <T> List<T> parse(
+      FileChannel channel, long from, long to, Function<String, T> parser) {
+    byte[] bytes = new byte[(int) (to - from)];
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, from + buffer.position()) < 0) {
+          throw new EOFException("File shrank while it was read");
+        }
+      }
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+    List<T> records = new ArrayList<>();
+    new String(bytes, StandardCharsets.UTF_8).lines().forEach(line -> {
+      T record = parser.apply(line);
+      if (record != null) {
+        records.add(record);
+      }
+    });
+    return records;
+  }
+}
@@ -0,0 +1,158 @@
+package com.library.startup;
+
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
+import com.library.repository.LoanRepository;
+import com.library.repository.UserRepository;
+import com.library.repository.file.FileMediaRepository;
+import com.library.repository.file.FileUserRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.snapshot.LibrarySnapshots;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Fills in-memory repositories from the data directory at startup, using every core.
+ *
+ * <p>The source is {@value #SNAPSHOT_FILE} if the directory has one, otherwise the text files
+ * of the file repositories. Text files are read in parallel chunks ({@link ChunkedLines}) and
+ * snapshot chunks are decoded in parallel. Users and loans are then saved while the media
+ * repository builds its search indexes, each on the fork-join pool; see
+ * {@link InMemoryMediaRepository#load}. {@link #load} returns once every record can be found
+ * by ID, with a future for the search indexes, so the system can serve lookups, logins and
+ * loans while full-text search is still being prepared.</p>
+ *
+ * <p>Recorded as the {@code startup.load.read}, {@code startup.load.store} and
+ * {@code startup.load.search} timers; the last one runs until search is ready.</p>
+ */
+public class StartupLoader {
+
+  /** Snapshot file in the data directory that is preferred over the text files. */
+  public static final String SNAPSHOT_FILE = "library.snapshot";
+
+  private static final Logger LOG = Logger.getLogger(StartupLoader.class.getName());
+
+  private final ForkJoinPool pool;
+  private final Timer readTimer;
+  private final Timer storeTimer;
+  private final Timer searchTimer;
+
+  public StartupLoader(ForkJoinPool pool) {
+    this(pool, new MetricsRegistry());
+  }
+
+  public StartupLoader(ForkJoinPool pool, MetricsRegistry metrics) {
+    this.pool = pool;
+    this.readTimer = metrics.timer("startup.load.read");
+    this.storeTimer = metrics.timer("startup.load.store");
+    this.searchTimer = metrics.timer("startup.load.search");
+  }
+
+  /** What was loaded, and a future that completes once it is all searchable. */
+  public record Result(int media, int users, int loans, CompletableFuture<Void> searchReady) {}
+
+  /**
+   * Loads the data directory into the given repositories.
+   *
+   * @param dataDirectory directory with {@value #SNAPSHOT_FILE} or users.txt, books.txt and
+   *     cds.txt; missing files are treated as empty
+   * @param media media repository, preferably empty (see {@link InMemoryMediaRepository#load})
+   * @param users user repository; must allow concurrent saves
+   * @param loans loan repository; only a snapshot holds loans
+   * @return what was loaded
+   * @throws IOException if a file cannot be read
+   * @throws IllegalArgumentException if the snapshot is damaged
+   */
+  public Result load(
+      Path dataDirectory, InMemoryMediaRepository media, UserRepository users, LoanRepository loans)
+      throws IOException {
+    long start = readTimer.start();
+    List<Media> mediaRecords;
+    List<User> userRecords;
+    List<Loan> loanRecords;
+    Path snapshot = dataDirectory.resolve(SNAPSHOT_FILE);
+    try {
+      if (Files.exists(snapshot)) {
+        LibrarySnapshots.Contents contents = readSnapshot(snapshot);
+        mediaRecords = contents.media();
+        userRecords = contents.users();
+        loanRecords = contents.loans();
+      } else {
+        mediaRecords = new ArrayList<>(ChunkedLines.read(
+            dataDirectory.resolve("books.txt"), FileMediaRepository::parseBook, pool));
+        mediaRecords.addAll(ChunkedLines.read(
+            dataDirectory.resolve("cds.txt"), FileMediaRepository::parseCd, pool));
+        userRecords = ChunkedLines.read(
+            dataDirectory.resolve("users.txt"), FileUserRepository::parseUser, pool);
+        loanRecords = List.of();
+      }
+    } finally {
+      readTimer.stop(start);
+    }
+    return store(mediaRecords, userRecords, loanRecords, media, users, loans);
+  }
+
+  private LibrarySnapshots.Contents readSnapshot(Path snapshot) throws IOException {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16)) {
+      // Submitted so the parallel chunk decoding runs on this loader's pool.
+      return pool.submit(() -> LibrarySnapshots.read(in)).get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while reading " + snapshot, ex);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof IOException io) {
+        throw io;
+      }
+      if (ex.getCause() instanceof RuntimeException runtime) {
+        throw runtime;
+      }
+      throw new IOException("Could not read " + snapshot, ex.getCause());
+    }
+  }
+
+  private Result store(
+      List<Media> mediaRecords,
+      List<User> userRecords,
+      List<Loan> loanRecords,
+      InMemoryMediaRepository media,
+      UserRepository users,
+      LoanRepository loans) {
+    long start = storeTimer.start();
+    long searchStart = searchTimer.start();
+    CompletableFuture<Void> searchReady;
+    try {
+      // Queued ahead of the search indexes, so waiting for them never waits for the indexes.
+      CompletableFuture<Void> usersSaved = CompletableFuture.runAsync(
+          () -> userRecords.parallelStream().forEach(users::save), pool);
+      // In snapshot order, so loan history keeps its order; runs alongside the users. Loans
+      // already in the archive stay there instead of being copied back into memory.
+      CompletableFuture<Void> loansSaved =
+          CompletableFuture.runAsync(() -> loans.restoreAll(loanRecords), pool);
+      searchReady = media.load(mediaRecords, pool);
+      CompletableFuture.allOf(usersSaved, loansSaved).join();
+    } finally {
+      storeTimer.stop(start);
+    }
+    searchReady.whenComplete((ignored, failure) -> {
+      long nanos = searchTimer.stop(searchStart);
+      if (failure == null) {
+        LOG.info(String.format("Search indexes for %d media ready in %d ms",
+            mediaRecords.size(), TimeUnit.NANOSECONDS.toMillis(nanos)));
+      }
+    });
+    return new Result(mediaRecords.size(), userRecords.size(), loanRecords.size(), searchReady);
+  }
+}
@@ -0,0 +1,89 @@
+package com.library.support;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timer wheel with one-day ticks.
+ *
+ * <p>Items are placed in the slot for their due day; advancing the wheel only visits the slots
+ * of the days that elapsed, so expiring N items costs O(N) regardless of how many items are
+ * scheduled in total. Items due beyond one revolution stay in their slot until the wheel has
+ * gone round often enough. Cancellation is lazy: callers check an item's state when it fires.</p>
+ *
+ * @param <T> scheduled item type
+ */
+public class DayTimerWheel<T> {
+
+  private record Entry<T>(long dueDay, T item) {
+  }
+
+  private final List<ArrayDeque<Entry<T>>> slots;
+  private final int mask;
+  private long currentDay;
+  private int size;
+
+  /**
+   * @param slotCount number of one-day slots, rounded up to a power of two
+   * @param start day the wheel starts at; items due on or before it fire on the next advance
+   */
+  public DayTimerWheel(int slotCount, LocalDate start) {
+    int slots = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+    this.slots = new ArrayList<>(slots);
+    for (int i = 0; i < slots; i++) {
+      this.slots.add(new ArrayDeque<>());
+    }
+    this.mask = slots - 1;
+    this.currentDay = start.toEpochDay() - 1;
+  }
+
+  /**
+   * Schedules an item. Items due in the past fire on the next call to {@link #advanceTo}.
+   *
+   * @param due day the item becomes due
+   * @param item item to schedule
+   */
+  public synchronized void schedule(LocalDate due, T item) {
+    long day = Math.max(due.toEpochDay(), currentDay + 1);
+    slots.get((int) (day & mask)).add(new Entry<>(day, item));
+    size++;
+  }
+
+  /**
+   * Advances the wheel to the given day and returns every item due on or before it.
+   *
+   * @param today day to advance to; earlier days are ignored
+   * @return due items in due-day order
+   */
+  public synchronized List<T> advanceTo(LocalDate today) {
+    long target = today.toEpochDay();
+    if (target <= currentDay || size == 0) {
+      currentDay = Math.max(currentDay, target);
+      return List.of();
+    }
+    List<T> due = new ArrayList<>();
+    // Every slot is visited at most once per advance, however many days elapsed.
+    long last = Math.min(target, currentDay + slots.size());
+    for (long day = currentDay + 1; day <= last; day++) {
+      Iterator<Entry<T>> entries = slots.get((int) (day & mask)).iterator();
+      while (entries.hasNext()) {
+        Entry<T> entry = entries.next();
+        if (entry.dueDay() <= target) {
+          entries.remove();
+          due.add(entry.item());
+          size--;
+        }
+      }
+    }
+    currentDay = target;
+    return due;
+  }
+
+  /** @return number of scheduled items, including lazily cancelled ones */
+  public synchronized int size() {
+    return size;
+  }
+}
@@ -0,0 +1,58 @@
+package com.library.support;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Array-backed map from dense {@code int} codes (see {@link IdDictionary}) to values.
+ *
+ * <p>Lookups are a bounds check and an array read, with no hashing or boxing. Reads are
+ * lock-free; creating a value synchronises so each code gets exactly one value.</p>
+ *
+ * @param <V> value type
+ */
+public class DenseIndex<V> {
+
+  private volatile AtomicReferenceArray<V> slots = new AtomicReferenceArray<>(64);
+
+  /**
+   * @param code dictionary code, may be {@link IdDictionary#ABSENT}
+   * @return the value for the code, or null if none was created
+   */
+  public V get(int code) {
+    AtomicReferenceArray<V> current = slots;
+    return code >= 0 && code < current.length() ? current.get(code) : null;
+  }
+
+  /**
+   * Returns the value for the code, creating it with the factory if there is none yet.
+   *
+   * @param code dictionary code, must not be negative
+   * @param factory creates the value
+   * @return the existing or new value
+   */
+  public V computeIfAbsent(int code, IntFunction<V> factory) {
+    V value = get(code);
+    if (value != null) {
+      return value;
+    }
+    synchronized (this) {
+      AtomicReferenceArray<V> current = slots;
+      if (code >= current.length()) {
+        AtomicReferenceArray<V> grown =
+            new AtomicReferenceArray<>(Math.max(code + 1, current.length() * 2));
+        for (int i = 0; i < current.length(); i++) {
+          grown.set(i, current.get(i));
+        }
+        slots = grown;
+        current = grown;
+      }
+      value = current.get(code);
+      if (value == null) {
+        value = factory.apply(code);
+        current.set(code, value);
+      }
+      return value;
+    }
+  }
+}
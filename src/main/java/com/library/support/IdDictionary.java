@@ -0,0 +1,70 @@
+package com.library.support;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps string IDs to dense {@code int} codes and back.
+ *
+ * <p>Codes are assigned in first-seen order starting at 0 and never change, so they can be
+ * stored in primitive columns instead of repeating the strings. Each distinct string is kept
+ * once. Lookups in both directions are lock-free; only assigning a new code synchronises.</p>
+ */
+public class IdDictionary {
+  /** Code returned by {@link #lookup(String)} for unknown IDs. */
+  public static final int ABSENT = -1;
+
+  private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+  private volatile String[] values = new String[16];
+  private int size;
+
+  /**
+   * Returns the code for an ID, assigning the next free one if it has none yet.
+   *
+   * @param id the ID to encode
+   * @return its code
+   */
+  public int encode(String id) {
+    Integer code = codes.get(id);
+    return code != null ? code : assign(id);
+  }
+
+  /**
+   * @param id the ID to look up
+   * @return its code, or {@link #ABSENT} if it was never encoded
+   */
+  public int lookup(String id) {
+    Integer code = codes.get(id);
+    return code == null ? ABSENT : code;
+  }
+
+  /**
+   * @param code a code previously returned by {@link #encode(String)}
+   * @return the ID for that code
+   */
+  public String decode(int code) {
+    return values[code];
+  }
+
+  /** @return number of distinct IDs encoded so far */
+  public synchronized int size() {
+    return size;
+  }
+
+  private synchronized int assign(String id) {
+    Integer existing = codes.get(id);
+    if (existing != null) {
+      return existing;
+    }
+    String[] current = values;
+    if (size == current.length) {
+      current = Arrays.copyOf(current, current.length * 2);
+    }
+    current[size] = id;
+    // Publish the array before the code so readers holding the code can decode it.
+    values = current;
+    codes.put(id, size);
+    return size++;
+  }
+}
@@ -0,0 +1,64 @@
+package com.library.support;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered, UUID-formatted IDs (UUID version 7 layout).
+ *
+ * <p>The first 48 bits are the Unix time in milliseconds and the next 12 a sequence, so IDs
+ * created later sort later, both as strings and as {@code long} pairs, even within the same
+ * millisecond. The remaining bits come from {@link ThreadLocalRandom}, which unlike
+ * {@link UUID#randomUUID()} needs no shared {@code SecureRandom}. IDs are unique within the
+ * process and practically unique across processes; they are not meant to be unguessable.</p>
+ */
+public final class IdGenerator {
+
+  /** Last issued {@code millis << 12 | sequence}. */
+  private static final AtomicLong lastTimeAndSequence = new AtomicLong();
+
+  private IdGenerator() {
+  }
+
+  /** @return a new ID in canonical UUID text form */
+  public static String newId() {
+    return newUuid().toString();
+  }
+
+  /** @return a new time-ordered UUID */
+  public static UUID newUuid() {
+    long timeAndSequence = nextTimeAndSequence();
+    long mostSigBits =
+        (timeAndSequence >>> 12) << 16 | 0x7000L | (timeAndSequence & 0xFFFL);
+    long leastSigBits =
+        ThreadLocalRandom.current().nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+    return new UUID(mostSigBits, leastSigBits);
+  }
+
+  /**
+   * @param id an ID created by this generator
+   * @return the creation time in epoch milliseconds
+   * @throws IllegalArgumentException if the ID is not a version 7 UUID
+   */
+  public static long timestampMillis(String id) {
+    UUID uuid = UUID.fromString(id);
+    if (uuid.version() != 7) {
+      throw new IllegalArgumentException("Not a time-ordered ID: " + id);
+    }
+    return uuid.getMostSignificantBits() >>> 16;
+  }
+
+  private static long nextTimeAndSequence() {
+    long now = System.currentTimeMillis() << 12;
+    while (true) {
+      long last = lastTimeAndSequence.get();
+      // Within one millisecond the sequence counts up; on overflow it borrows the next
+      // millisecond, which keeps IDs strictly increasing.
+      long next = now > last ? now : last + 1;
+      if (lastTimeAndSequence.compareAndSet(last, next)) {
+        return next;
+      }
+    }
+  }
+}
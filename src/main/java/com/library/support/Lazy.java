@@ -0,0 +1,52 @@
+package com.library.support;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * A value that is created on first use and then shared.
+ *
+ * <p>The initializer runs at most once, on the first thread that asks; threads asking at the
+ * same time wait for it. If it throws, nothing is cached and the next call tries again. Once
+ * the value exists, reading it is a single volatile read.</p>
+ *
+ * @param <T> type of the value
+ */
+public final class Lazy<T> implements Supplier<T> {
+
+  private final Supplier<? extends T> initializer;
+  private volatile T value;
+
+  private Lazy(Supplier<? extends T> initializer) {
+    this.initializer = initializer;
+  }
+
+  /**
+   * @param initializer creates the value; must not return null
+   * @param <T> type of the value
+   * @return a lazy value that calls {@code initializer} on first use
+   */
+  public static <T> Lazy<T> of(Supplier<? extends T> initializer) {
+    return new Lazy<>(Objects.requireNonNull(initializer, "initializer"));
+  }
+
+  @Override
+  public T get() {
+    T current = value;
+    if (current == null) {
+      synchronized (this) {
+        current = value;
+        if (current == null) {
+          current = Objects.requireNonNull(initializer.get(), "lazy value");
+          value = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /** @return true once the value has been created */
+  public boolean isInitialized() {
+    return value != null;
+  }
+}
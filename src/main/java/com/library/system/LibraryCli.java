@@ -1,17 +1,30 @@
 package com.library.system;
 
+import com.library.circulation.CirculationLog;
+import com.library.domain.Hold;
 import com.library.domain.Media;
 import com.library.domain.OverdueReport;
 import com.library.domain.User;
+import com.library.importer.FeedFormat;
+import com.library.importer.ImportReport;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
 import com.library.service.AuthService;
-import com.library.service.BorrowService;
-import com.library.service.CatalogService;
-import com.library.service.FineService;
 import com.library.service.LibraryException;
-import com.library.service.ReminderService;
-import com.library.service.UserService;
+import com.library.snapshot.LibrarySnapshots;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Scanner;
 
@@ -19,23 +32,17 @@ import java.util.Scanner;
  * Console based presentation layer.
  */
 public class LibraryCli {
+  /** Search results shown before asking whether to continue. */
+  private static final int SEARCH_PAGE_SIZE = 20;
+
   private final AuthService authService;
-  private final CatalogService catalogService;
-  private final BorrowService borrowService;
-  private final FineService fineService;
-  private final ReminderService reminderService;
-  private final UserService userService;
+  /** Other services are fetched when a menu needs them, so they are built on first use. */
   private final LibraryEnvironment environment;
   private final Scanner scanner = new Scanner(System.in);
 
   public LibraryCli(LibraryEnvironment environment) {
     this.environment = environment;
     this.authService = environment.getAuthService();
-    this.catalogService = environment.getCatalogService();
-    this.borrowService = environment.getBorrowService();
-    this.fineService = environment.getFineService();
-    this.reminderService = environment.getReminderService();
-    this.userService = environment.getUserService();
   }
 
   public void run() {
@@ -73,6 +80,7 @@ public class LibraryCli {
     System.out.println("1. Login");
     System.out.println("2. Register member");
     System.out.println("3. Search media");
+    System.out.println("4. Browse catalog");
     System.out.println("0. Exit");
     System.out.print("> ");
   }
@@ -84,6 +92,13 @@ public class LibraryCli {
     System.out.println("2. Return media");
     System.out.println("3. Pay fine");
     System.out.println("4. Search media");
+    System.out.println("5. Borrow by copy barcode");
+    System.out.println("6. Place hold");
+    System.out.println("7. Cancel hold");
+    System.out.println("8. Renew loan");
+    System.out.println("9. Renew all loans");
+    System.out.println("10. Loan history");
+    System.out.println("11. Browse catalog");
     System.out.println("0. Logout");
     System.out.print("> ");
   }
@@ -98,6 +113,13 @@ public class LibraryCli {
     System.out.println("4. Show overdue report");
     System.out.println("5. List all users");
     System.out.println("6. Unregister user");
+    System.out.println("7. Show metrics");
+    System.out.println("8. Write metrics dump");
+    System.out.println("9. Show circulation history");
+    System.out.println("10. Add copies");
+    System.out.println("11. Import catalog feed");
+    System.out.println("12. Export snapshot");
+    System.out.println("13. Restore snapshot");
     System.out.println("0. Logout");
     System.out.print("> ");
   }
@@ -119,6 +141,7 @@ public class LibraryCli {
       case "1" -> { login(); yield true; }
       case "2" -> { registerMember(); yield true; }
       case "3" -> { search(); yield true; }
+      case "4" -> { browse(); yield true; }
       case "0" -> { System.out.println("Goodbye!"); yield false; }
       default -> { System.out.println("Invalid option, please try again"); yield true; }
     };
@@ -130,6 +153,13 @@ public class LibraryCli {
       case "2" -> { returnMedia(); yield true; }
       case "3" -> { payFine(); yield true; }
       case "4" -> { search(); yield true; }
+      case "5" -> { borrowByBarcode(); yield true; }
+      case "6" -> { placeHold(); yield true; }
+      case "7" -> { cancelHold(); yield true; }
+      case "8" -> { renewLoan(); yield true; }
+      case "9" -> { renewAllLoans(); yield true; }
+      case "10" -> { showLoanHistory(); yield true; }
+      case "11" -> { browse(); yield true; }
       case "0" -> { 
         authService.logout();
         System.out.println("Successfully logged out");
@@ -147,6 +177,13 @@ public class LibraryCli {
       case "4" -> { showOverdueReport(); yield true; }
       case "5" -> { listAllUsers(); yield true; }
       case "6" -> { unregister(); yield true; }
+      case "7" -> { showMetrics(); yield true; }
+      case "8" -> { dumpMetrics(); yield true; }
+      case "9" -> { showCirculationHistory(); yield true; }
+      case "10" -> { addCopies(); yield true; }
+      case "11" -> { importCatalog(); yield true; }
+      case "12" -> { exportSnapshot(); yield true; }
+      case "13" -> { restoreSnapshot(); yield true; }
       case "0" -> { 
         authService.logout();
         System.out.println("Successfully logged out");
@@ -172,7 +209,7 @@ public class LibraryCli {
     String name = scanner.nextLine().trim();
     System.out.print("Password: ");
     String password = scanner.nextLine().trim();
-    User member = userService.registerMember(username, name, password);
+    User member = environment.getUserService().registerMember(username, name, password);
     System.out.println("Member created with id " + member.getId());
   }
 
@@ -184,7 +221,7 @@ public class LibraryCli {
     String author = scanner.nextLine();
     System.out.print("ISBN: ");
     String isbn = scanner.nextLine();
-    Media book = catalogService.addBook(title, author, isbn);
+    Media book = environment.getCatalogService().addBook(title, author, isbn);
     System.out.println("Book added with id " + book.getId());
   }
 
@@ -194,23 +231,94 @@ public class LibraryCli {
     String title = scanner.nextLine();
     System.out.print("Artist: ");
     String artist = scanner.nextLine();
-    Media cd = catalogService.addCd(title, artist);
+    Media cd = environment.getCatalogService().addCd(title, artist);
     System.out.println("CD added with id " + cd.getId());
   }
 
   private void search() {
     System.out.print("Search term (blank for all): ");
     String term = scanner.nextLine();
-    List<Media> results = catalogService.search(term);
-    if (results.isEmpty()) {
-      System.out.println("No results.");
+    Page<Media> page = environment.getCatalogService()
+        .searchPage(term, null, SEARCH_PAGE_SIZE, MediaSort.TITLE);
+    if (page.items().isEmpty()) {
+      List<Media> suggestions = environment.getCatalogService().searchFuzzy(term);
+      if (suggestions.isEmpty()) {
+        System.out.println("No results.");
+        return;
+      }
+      System.out.println("No exact matches. Did you mean:");
+      suggestions.forEach(this::printSearchResult);
       return;
     }
-    results.forEach(
-        media ->
-            System.out.printf(
-                "%s - %s (%s) available=%s%n",
-                media.getId(), media.getTitle(), media.getType(), media.isAvailable()));
+    while (true) {
+      page.items().forEach(this::printSearchResult);
+      if (!page.hasNext()) {
+        return;
+      }
+      System.out.print("More results? (y/N): ");
+      if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+        return;
+      }
+      page = environment.getCatalogService()
+          .searchPage(term, page.nextCursor(), SEARCH_PAGE_SIZE, MediaSort.TITLE);
+    }
+  }
+
+  private void browse() {
+    Map<Facet, String> selection = new EnumMap<>(Facet.class);
+    while (true) {
+      System.out.printf("%n%d item(s) match %s%n",
+          environment.getCatalogService().countByFacets(selection),
+          selection.isEmpty() ? "the whole catalog" : selection.values());
+      System.out.println(
+          "Refine by: 1. Type  2. Author/Artist  3. Availability  4. First letter"
+              + "  5. List items  6. Clear  0. Done");
+      System.out.print("> ");
+      String choice = scanner.nextLine().trim();
+      Facet facet;
+      switch (choice) {
+        case "1" -> facet = Facet.TYPE;
+        case "2" -> facet = Facet.CREATOR;
+        case "3" -> facet = Facet.AVAILABILITY;
+        case "4" -> facet = Facet.LETTER;
+        case "5" -> {
+          environment.getCatalogService().browse(selection).forEach(this::printSearchResult);
+          continue;
+        }
+        case "6" -> {
+          selection.clear();
+          continue;
+        }
+        case "0" -> {
+          return;
+        }
+        default -> {
+          System.out.println("Unknown option");
+          continue;
+        }
+      }
+      List<Map.Entry<String, Long>> buckets =
+          List.copyOf(environment.getCatalogService().facetCounts(facet, selection).entrySet());
+      for (int i = 0; i < buckets.size(); i++) {
+        Map.Entry<String, Long> bucket = buckets.get(i);
+        System.out.printf("%d. %s (%d)%n", i + 1, bucket.getKey(), bucket.getValue());
+      }
+      System.out.print("Pick a value (blank to keep current): ");
+      String pick = scanner.nextLine().trim();
+      if (!pick.isEmpty()) {
+        int index = Integer.parseInt(pick) - 1;
+        if (index < 0 || index >= buckets.size()) {
+          throw new LibraryException("No such value: " + pick);
+        }
+        selection.put(facet, buckets.get(index).getKey());
+      }
+    }
+  }
+
+  private void printSearchResult(Media media) {
+    System.out.printf(
+        "%s - %s (%s) available=%s%n",
+        media.getId(), media.getTitle(), media.getType(), media.isAvailable());
   }
 
   private void borrow() {
@@ -223,7 +331,7 @@ public class LibraryCli {
     }
     System.out.print("Media id: ");
     String mediaId = scanner.nextLine().trim();
-    var loan = borrowService.borrow(current.get().getId(), mediaId);
+    var loan = environment.getBorrowService().borrow(current.get().getId(), mediaId);
     System.out.println(
         "Loan created. Due on "
             + loan.getDueDate()
@@ -231,6 +339,102 @@ public class LibraryCli {
             + loan.getId());
   }
 
+  private void borrowByBarcode() {
+    Optional<User> current = authService.getCurrentUser();
+    if (current.isEmpty()) {
+      throw new LibraryException("Login required");
+    }
+    if (current.get().isAdmin()) {
+      throw new LibraryException("Members only");
+    }
+    System.out.print("Copy barcode: ");
+    String barcode = scanner.nextLine().trim();
+    var loan = environment.getBorrowService().borrowByBarcode(current.get().getId(), barcode);
+    System.out.println(
+        "Loan created for copy "
+            + loan.getCopyBarcode()
+            + ". Due on "
+            + loan.getDueDate()
+            + ". Loan id: "
+            + loan.getId());
+  }
+
+  private void placeHold() {
+    Optional<User> current = authService.getCurrentUser();
+    if (current.isEmpty()) {
+      throw new LibraryException("Login required");
+    }
+    System.out.print("Media id: ");
+    String mediaId = scanner.nextLine().trim();
+    Hold hold = environment.getHoldService().placeHold(current.get().getId(), mediaId);
+    System.out.println(
+        "Hold placed. Hold id: "
+            + hold.getId()
+            + ". Waiting: "
+            + environment.getHoldService().waitingCount(mediaId));
+  }
+
+  private void cancelHold() {
+    Optional<User> current = authService.getCurrentUser();
+    if (current.isEmpty()) {
+      throw new LibraryException("Login required");
+    }
+    List<Hold> holds = environment.getHoldService().activeHoldsForUser(current.get().getId());
+    if (holds.isEmpty()) {
+      System.out.println("You have no active holds.");
+      return;
+    }
+    holds.forEach(hold -> System.out.printf(
+        "%s media=%s status=%s%n", hold.getId(), hold.getMediaId(), hold.getStatus()));
+    System.out.print("Hold id: ");
+    String holdId = scanner.nextLine().trim();
+    if (holds.stream().noneMatch(hold -> hold.getId().equals(holdId))) {
+      throw new LibraryException("Hold not found: " + holdId);
+    }
+    environment.getHoldService().cancelHold(holdId);
+    System.out.println("Hold cancelled.");
+  }
+
+  private void renewLoan() {
+    Optional<User> current = authService.getCurrentUser();
+    if (current.isEmpty()) {
+      throw new LibraryException("Login required");
+    }
+    System.out.print("Loan id: ");
+    String loanId = scanner.nextLine().trim();
+    var loan = environment.getBorrowService().renew(loanId);
+    System.out.println("Loan renewed. New due date: " + loan.getDueDate());
+  }
+
+  private void renewAllLoans() {
+    Optional<User> current = authService.getCurrentUser();
+    if (current.isEmpty()) {
+      throw new LibraryException("Login required");
+    }
+    var renewed = environment.getBorrowService().renewAll(current.get().getId());
+    if (renewed.isEmpty()) {
+      System.out.println("No loans could be renewed.");
+      return;
+    }
+    renewed.forEach(loan ->
+        System.out.println("Renewed " + loan.getId() + ", now due " + loan.getDueDate()));
+  }
+
+  private void showLoanHistory() {
+    Optional<User> current = authService.getCurrentUser();
+    if (current.isEmpty()) {
+      throw new LibraryException("Login required");
+    }
+    var history = environment.getLoanRepository().findHistoryByUser(current.get().getId());
+    if (history.isEmpty()) {
+      System.out.println("No returned loans yet.");
+      return;
+    }
+    history.forEach(loan -> System.out.printf(
+        "%s borrowed %s, returned %s%n",
+        loan.getMediaId(), loan.getCheckoutDate(), loan.getReturnedDate()));
+  }
+
   private void returnMedia() {
     Optional<User> current = authService.getCurrentUser();
     if (current.isEmpty()) {
@@ -238,7 +442,7 @@ public class LibraryCli {
     }
     System.out.print("Loan id: ");
     String loanId = scanner.nextLine().trim();
-    BigDecimal fine = borrowService.returnMedia(loanId);
+    BigDecimal fine = environment.getBorrowService().returnMedia(loanId);
     if (fine.signum() > 0) {
       System.out.println("Returned with fine: " + fine);
     } else {
@@ -259,13 +463,13 @@ public class LibraryCli {
     System.out.println("Your current outstanding fine: " + user.getFineBalance());
     System.out.print("Payment amount: ");
     BigDecimal amount = new BigDecimal(scanner.nextLine().trim());
-    BigDecimal remaining = fineService.payFine(user.getId(), amount);
+    BigDecimal remaining = environment.getFineService().payFine(user.getId(), amount);
     System.out.println("Remaining balance: " + remaining);
   }
 
   private void sendReminders() {
     authService.requireAdmin();
-    var notified = reminderService.sendDailyReminders();
+    var notified = environment.getReminderService().sendDailyReminders();
     System.out.println("Reminders sent to " + notified.size() + " user(s).");
     environment
         .getEmailNotifier()
@@ -278,7 +482,7 @@ public class LibraryCli {
     authService.requireAdmin();
     System.out.print("User id to remove: ");
     String userId = scanner.nextLine().trim();
-    userService.unregister(userId);
+    environment.getUserService().unregister(userId);
     System.out.println("User removed.");
   }
 
@@ -287,7 +491,8 @@ public class LibraryCli {
     if (current.isEmpty()) {
       throw new LibraryException("Login required");
     }
-    OverdueReport report = fineService.generateOverdueReport(current.get().getId());
+    OverdueReport report =
+        environment.getFineService().generateOverdueReport(current.get().getId());
     if (report.getItems().isEmpty()) {
       System.out.println("No overdue items.");
       return;
@@ -305,9 +510,106 @@ public class LibraryCli {
     System.out.println("Total fine: " + report.getTotalFine());
   }
 
+  private void showMetrics() {
+    authService.requireAdmin();
+    System.out.println(environment.getMetricsRegistry().render());
+  }
+
+  private void dumpMetrics() {
+    authService.requireAdmin();
+    System.out.print("Dump file (blank for data/metrics.txt): ");
+    String input = scanner.nextLine().trim();
+    Path target = input.isEmpty() ? Paths.get("data", "metrics.txt") : Paths.get(input);
+    try {
+      environment.getMetricsRegistry().dumpTo(target);
+      System.out.println("Metrics written to " + target.toAbsolutePath());
+    } catch (IOException ex) {
+      throw new LibraryException("Could not write metrics dump: " + ex.getMessage());
+    }
+  }
+
+  private void showCirculationHistory() {
+    authService.requireAdmin();
+    System.out.print("User ID: ");
+    String userId = scanner.nextLine().trim();
+    List<CirculationLog.Entry> history =
+        environment.getCirculationLog().historyForUser(userId);
+    if (history.isEmpty()) {
+      System.out.println("No circulation events for this user.");
+      return;
+    }
+    history.forEach(entry -> System.out.printf("#%d %s%n", entry.sequence(), entry.event()));
+    System.out.println("Outstanding balance: "
+        + environment.getCirculationLog().projections().balance(userId));
+  }
+
+  private void addCopies() {
+    authService.requireAdmin();
+    System.out.print("Media id: ");
+    String mediaId = scanner.nextLine().trim();
+    System.out.print("Number of copies: ");
+    int count;
+    try {
+      count = Integer.parseInt(scanner.nextLine().trim());
+    } catch (NumberFormatException ex) {
+      throw new LibraryException("Invalid number of copies");
+    }
+    var copies = environment.getInventoryService().addCopies(mediaId, count);
+    copies.forEach(copy -> System.out.println("Added copy " + copy.getBarcode()));
+  }
+
+  private void importCatalog() {
+    authService.requireAdmin();
+    System.out.print("Feed file (.csv, or .mrc for MARC 21): ");
+    Path file = Paths.get(scanner.nextLine().trim());
+    ImportReport report;
+    try {
+      report = environment.getCatalogService().importCatalog(
+          Files.newInputStream(file),
+          FeedFormat.forFile(file),
+          (read, accepted, committed) -> System.out.print(committed
+              ? "\rSaved " + accepted + " items.                    \n"
+              : "\rRead " + read + " records, " + accepted + " accepted..."));
+    } catch (IOException ex) {
+      throw new LibraryException("Could not open feed: " + ex.getMessage());
+    }
+    System.out.printf("Imported %d of %d records (%d duplicates, %d rejected)%n",
+        report.imported(), report.read(), report.duplicates(), report.rejected());
+    report.errors().forEach(error -> System.out.println("  " + error));
+  }
+
+  private void exportSnapshot() {
+    authService.requireAdmin();
+    System.out.print("Snapshot file (blank for data/library.snapshot): ");
+    String input = scanner.nextLine().trim();
+    Path target = input.isEmpty() ? Paths.get("data", "library.snapshot") : Paths.get(input);
+    LibrarySnapshots.SnapshotInfo info;
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+      info = environment.getSnapshots().export(out);
+    } catch (IOException ex) {
+      throw new LibraryException("Could not write snapshot: " + ex.getMessage());
+    }
+    System.out.printf("Exported %d media, %d users and %d loans (%d bytes) to %s%n",
+        info.media(), info.users(), info.loans(), info.bytes(), target.toAbsolutePath());
+  }
+
+  private void restoreSnapshot() {
+    authService.requireAdmin();
+    System.out.print("Snapshot file: ");
+    Path file = Paths.get(scanner.nextLine().trim());
+    LibrarySnapshots.SnapshotInfo info;
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+      info = environment.getSnapshots().restore(in);
+    } catch (IOException | IllegalArgumentException ex) {
+      throw new LibraryException("Could not restore snapshot: " + ex.getMessage());
+    }
+    System.out.printf("Restored %d media, %d users and %d loans%n",
+        info.media(), info.users(), info.loans());
+  }
+
   private void listAllUsers() {
     authService.requireAdmin();
-    java.util.Collection<User> users = userService.listAllUsers();
+    java.util.Collection<User> users = environment.getUserService().listAllUsers();
     if (users.isEmpty()) {
       System.out.println("No users found.");
       return;
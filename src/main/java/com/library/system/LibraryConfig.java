@@ -0,0 +1,261 @@
+package com.library.system;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Settings that decide how {@link LibraryEnvironment#bootstrap(LibraryConfig)} wires the
+ * system: storage backend, caches, repository timing and thread pool sizes.
+ *
+ * <p>{@link #load()} reads a properties file, {@code data/library.properties} unless
+ * {@code -Dlibrary.config} names another, and lets system properties of the same name
+ * override it, so existing {@code -Dlibrary.cache.enabled=true} style switches keep working.
+ * Missing keys take the defaults below; an unparsable value fails the bootstrap with the key
+ * in the message.</p>
+ *
+ * <pre>
+ * library.storage=file                     # file or memory
+ * library.dataDir=data                     # directory of users.txt and books.txt
+ * library.seedDemoData=true                # demo titles when the catalog is empty
+ * library.cache.enabled=false
+ * library.cache.maxEntries=10000
+ * library.cache.ttlSeconds=300
+ * library.repository.timing=false
+ * library.repository.slowThresholdMs=50
+ * library.gui.threads=4                    # background workers of the GUI
+ * library.startup.preload=false            # memory storage: load dataDir at startup
+ * library.startup.threads=&lt;cores&gt;          # fork-join workers of the startup load
+ * library.loans.archive.enabled=false      # move old returned loans to disk
+ * library.loans.archive.afterDays=90       # days after return before a loan is archived
+ * library.loans.archive.dir=&lt;dataDir&gt;/loan-archive
+ * </pre>
+ */
+public final class LibraryConfig {
+
+  /** Where users and media are stored. */
+  public enum Storage {
+    /** Text files under the data directory, kept between runs. */
+    FILE,
+    /** In memory only, e.g. for demos and tests. */
+    MEMORY
+  }
+
+  static final String CONFIG_FILE_PROPERTY = "library.config";
+  static final Path DEFAULT_CONFIG_FILE = Paths.get("data", "library.properties");
+
+  static final String STORAGE_PROPERTY = "library.storage";
+  static final String DATA_DIR_PROPERTY = "library.dataDir";
+  static final String SEED_DEMO_DATA_PROPERTY = "library.seedDemoData";
+  static final String CACHE_ENABLED_PROPERTY = "library.cache.enabled";
+  static final String CACHE_MAX_ENTRIES_PROPERTY = "library.cache.maxEntries";
+  static final String CACHE_TTL_SECONDS_PROPERTY = "library.cache.ttlSeconds";
+  static final String REPOSITORY_TIMING_PROPERTY = "library.repository.timing";
+  static final String SLOW_THRESHOLD_PROPERTY = "library.repository.slowThresholdMs";
+  static final String GUI_THREADS_PROPERTY = "library.gui.threads";
+  static final String STARTUP_PRELOAD_PROPERTY = "library.startup.preload";
+  static final String STARTUP_THREADS_PROPERTY = "library.startup.threads";
+  static final String LOAN_ARCHIVE_ENABLED_PROPERTY = "library.loans.archive.enabled";
+  static final String LOAN_ARCHIVE_AFTER_DAYS_PROPERTY = "library.loans.archive.afterDays";
+  static final String LOAN_ARCHIVE_DIR_PROPERTY = "library.loans.archive.dir";
+
+  private static final int DEFAULT_CACHE_MAX_ENTRIES = 10_000;
+  private static final long DEFAULT_CACHE_TTL_SECONDS = 300;
+  private static final long DEFAULT_SLOW_THRESHOLD_MS = 50;
+  private static final int DEFAULT_GUI_THREADS = 4;
+  private static final int DEFAULT_LOAN_ARCHIVE_AFTER_DAYS = 90;
+
+  private final Storage storage;
+  private final Path dataDirectory;
+  private final boolean seedDemoData;
+  private final boolean cacheEnabled;
+  private final int cacheMaxEntries;
+  private final Duration cacheTtl;
+  private final boolean repositoryTiming;
+  private final long slowThresholdMillis;
+  private final int guiThreads;
+  private final boolean startupPreload;
+  private final int startupThreads;
+  private final boolean loanArchiveEnabled;
+  private final int loanArchiveAfterDays;
+  private final Path loanArchiveDirectory;
+
+  private LibraryConfig(Properties properties) {
+    String storageName = properties.getProperty(STORAGE_PROPERTY, "file").trim();
+    try {
+      this.storage = Storage.valueOf(storageName.toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException ex) {
+      throw invalid(STORAGE_PROPERTY, storageName);
+    }
+    this.dataDirectory = Paths.get(properties.getProperty(DATA_DIR_PROPERTY, "data").trim());
+    this.seedDemoData = bool(properties, SEED_DEMO_DATA_PROPERTY, true);
+    this.cacheEnabled = bool(properties, CACHE_ENABLED_PROPERTY, false);
+    this.cacheMaxEntries =
+        (int) positive(properties, CACHE_MAX_ENTRIES_PROPERTY, DEFAULT_CACHE_MAX_ENTRIES);
+    this.cacheTtl = Duration.ofSeconds(
+        positive(properties, CACHE_TTL_SECONDS_PROPERTY, DEFAULT_CACHE_TTL_SECONDS));
+    this.repositoryTiming = bool(properties, REPOSITORY_TIMING_PROPERTY, false);
+    this.slowThresholdMillis =
+        number(properties, SLOW_THRESHOLD_PROPERTY, DEFAULT_SLOW_THRESHOLD_MS);
+    this.guiThreads = (int) positive(properties, GUI_THREADS_PROPERTY, DEFAULT_GUI_THREADS);
+    this.startupPreload = bool(properties, STARTUP_PRELOAD_PROPERTY, false);
+    this.startupThreads = (int) positive(properties, STARTUP_THREADS_PROPERTY,
+        Runtime.getRuntime().availableProcessors());
+    this.loanArchiveEnabled = bool(properties, LOAN_ARCHIVE_ENABLED_PROPERTY, false);
+    this.loanArchiveAfterDays = (int) positive(
+        properties, LOAN_ARCHIVE_AFTER_DAYS_PROPERTY, DEFAULT_LOAN_ARCHIVE_AFTER_DAYS);
+    String archiveDir = properties.getProperty(LOAN_ARCHIVE_DIR_PROPERTY);
+    this.loanArchiveDirectory = archiveDir != null
+        ? Paths.get(archiveDir.trim()) : dataDirectory.resolve("loan-archive");
+  }
+
+  /** @return the configuration with every setting at its default */
+  public static LibraryConfig defaults() {
+    return new LibraryConfig(new Properties());
+  }
+
+  /**
+   * @param properties settings by key; missing keys take their defaults
+   * @return the configuration
+   * @throws IllegalArgumentException if a value cannot be parsed
+   */
+  public static LibraryConfig fromProperties(Properties properties) {
+    return new LibraryConfig(properties);
+  }
+
+  /**
+   * Reads the configuration file, if there is one, and applies system property overrides.
+   *
+   * @return the configuration
+   * @throws UncheckedIOException if the configuration file exists but cannot be read
+   * @throws IllegalArgumentException if a value cannot be parsed
+   */
+  public static LibraryConfig load() {
+    String configured = System.getProperty(CONFIG_FILE_PROPERTY);
+    Path file = configured != null ? Paths.get(configured) : DEFAULT_CONFIG_FILE;
+    Properties properties = new Properties();
+    if (configured != null || Files.exists(file)) {
+      try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+        properties.load(reader);
+      } catch (IOException ex) {
+        throw new UncheckedIOException("Could not read configuration " + file, ex);
+      }
+    }
+    for (String key : System.getProperties().stringPropertyNames()) {
+      if (key.startsWith("library.")) {
+        properties.setProperty(key, System.getProperty(key));
+      }
+    }
+    return new LibraryConfig(properties);
+  }
+
+  public Storage storage() {
+    return storage;
+  }
+
+  /** @return directory holding the data files of {@link Storage#FILE} storage */
+  public Path dataDirectory() {
+    return dataDirectory;
+  }
+
+  public boolean seedDemoData() {
+    return seedDemoData;
+  }
+
+  public boolean cacheEnabled() {
+    return cacheEnabled;
+  }
+
+  public int cacheMaxEntries() {
+    return cacheMaxEntries;
+  }
+
+  public Duration cacheTtl() {
+    return cacheTtl;
+  }
+
+  public boolean repositoryTiming() {
+    return repositoryTiming;
+  }
+
+  /** @return threshold for slow-call logging; zero or negative disables it */
+  public long slowThresholdMillis() {
+    return slowThresholdMillis;
+  }
+
+  /** @return number of background worker threads of the GUI */
+  public int guiThreads() {
+    return guiThreads;
+  }
+
+  /**
+   * @return whether {@link Storage#MEMORY} storage is filled from the data directory at
+   *     startup, from a snapshot if there is one
+   */
+  public boolean startupPreload() {
+    return startupPreload;
+  }
+
+  /** @return parallelism of the pool that loads data and builds indexes at startup */
+  public int startupThreads() {
+    return startupThreads;
+  }
+
+  /** @return whether returned loans are tiered into an archive on disk */
+  public boolean loanArchiveEnabled() {
+    return loanArchiveEnabled;
+  }
+
+  /** @return days after its return that a loan moves into the archive */
+  public int loanArchiveAfterDays() {
+    return loanArchiveAfterDays;
+  }
+
+  /** @return directory of the loan archive partitions */
+  public Path loanArchiveDirectory() {
+    return loanArchiveDirectory;
+  }
+
+  private static boolean bool(Properties properties, String key, boolean fallback) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return fallback;
+    }
+    return switch (value.trim().toLowerCase(Locale.ROOT)) {
+      case "true" -> true;
+      case "false" -> false;
+      default -> throw invalid(key, value);
+    };
+  }
+
+  private static long number(Properties properties, String key, long fallback) {
+    String value = properties.getProperty(key);
+    if (value == null) {
+      return fallback;
+    }
+    try {
+      return Long.parseLong(value.trim());
+    } catch (NumberFormatException ex) {
+      throw invalid(key, value);
+    }
+  }
+
+  private static long positive(Properties properties, String key, long fallback) {
+    long value = number(properties, key, fallback);
+    if (value < 1 || value > Integer.MAX_VALUE) {
+      throw invalid(key, properties.getProperty(key));
+    }
+    return value;
+  }
+
+  private static IllegalArgumentException invalid(String key, String value) {
+    return new IllegalArgumentException("Invalid value for " + key + ": '" + value + "'");
+  }
+}
@@ -1,74 +1,309 @@
 package com.library.system;
 
+import com.library.circulation.CirculationLog;
+import com.library.circulation.CirculationState;
 import com.library.domain.Book;
 import com.library.domain.CD;
 import com.library.domain.FineStrategyFactory;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
 import com.library.notification.EmailNotifier;
 import com.library.repository.LoanRepository;
 import com.library.repository.MediaRepository;
 import com.library.repository.UserRepository;
+import com.library.repository.archive.LoanArchive;
+import com.library.repository.cache.CachingMediaRepository;
+import com.library.repository.cache.CachingUserRepository;
+import com.library.repository.cache.SegmentedLruCache;
 import com.library.repository.file.FileMediaRepository;
 import com.library.repository.file.FileUserRepository;
-
+import com.library.repository.memory.InMemoryCopyRepository;
 import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.repository.timing.RepositoryCallRecorder;
+import com.library.repository.timing.TimedLoanRepository;
+import com.library.repository.timing.TimedMediaRepository;
+import com.library.repository.timing.TimedUserRepository;
 import com.library.service.AuthService;
 import com.library.service.BorrowService;
 import com.library.service.CatalogService;
 import com.library.service.FineService;
+import com.library.service.HoldService;
+import com.library.service.InventoryService;
 import com.library.service.ReminderService;
 import com.library.service.UserService;
+import com.library.snapshot.LibrarySnapshots;
+import com.library.snapshot.SnapshotGate;
+import com.library.startup.StartupLoader;
 import com.library.support.DateProvider;
-import com.library.repository.LoanRepository;
+import com.library.support.IdDictionary;
+import com.library.support.Lazy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
 /**
  * Wiring helper for the layered architecture.
+ *
+ * <p>Bootstrapping only builds what the first screen needs: the repositories, authentication
+ * and the seeded admin accounts. Every other service, and the catalog with its demo seeding,
+ * is built on first use, so a kiosk that only shows the login screen never reads the media
+ * file. The time taken is recorded in the {@code startup.bootstrap} timer and logged; each
+ * lazily built component adds a {@code startup.<component>} timer.</p>
+ *
+ * <p>With memory storage and {@code library.startup.preload}, a {@link StartupLoader} fills
+ * the repositories from the data directory in parallel during bootstrap; search becomes
+ * ready shortly afterwards, see {@link #getSearchReadiness()}.</p>
  */
 public class LibraryEnvironment {
+
+  private static final Logger LOG = Logger.getLogger(LibraryEnvironment.class.getName());
+  /** How often the loan archive checks whether today's tiering is still due. */
+  private static final long TIERING_CHECK_MINUTES = 60;
+
+  private final LibraryConfig config;
   private final AuthService authService;
-  private final CatalogService catalogService;
-  private final BorrowService borrowService;
-  private final FineService fineService;
-  private final ReminderService reminderService;
   private final UserService userService;
   private final EmailNotifier emailNotifier;
   private final LoanRepository loanRepository;
-  private final MediaRepository mediaRepository;
   private final DateProvider dateProvider;
+  private final MetricsRegistry metricsRegistry;
+  private final CirculationLog circulationLog;
+  private final Lazy<MediaRepository> mediaRepository;
+  private final Lazy<InventoryService> inventoryService;
+  private final Lazy<HoldService> holdService;
+  private final Lazy<BorrowService> borrowService;
+  private final Lazy<FineService> fineService;
+  private final Lazy<ReminderService> reminderService;
+  private final Lazy<CatalogService> catalogService;
+  private final Lazy<LibrarySnapshots> snapshots;
+  private final CompletableFuture<Void> searchReadiness;
 
   private LibraryEnvironment(
-		    AuthService authService,
-		    CatalogService catalogService,
-		    BorrowService borrowService,
-		    FineService fineService,
-		    ReminderService reminderService,
-		    UserService userService,
-		    EmailNotifier emailNotifier,
-		    LoanRepository loanRepository,
-	  		MediaRepository mediaRepository,
-	  		DateProvider dateProvider) {
-		  this.authService = authService;
-		  this.catalogService = catalogService;
-		  this.borrowService = borrowService;
-		  this.fineService = fineService;
-		  this.reminderService = reminderService;
-		  this.userService = userService;
-		  this.emailNotifier = emailNotifier;
-		  this.loanRepository = loanRepository; 
-		  this.mediaRepository = mediaRepository;  
-		  this.dateProvider = dateProvider;  
-
-		}
+      LibraryConfig config,
+      MetricsRegistry metricsRegistry,
+      UserRepository userRepository,
+      Supplier<MediaRepository> mediaRepository,
+      LoanRepository loanRepository,
+      CompletableFuture<Void> searchReadiness) {
+    this.config = config;
+    this.searchReadiness = searchReadiness;
+    this.metricsRegistry = metricsRegistry;
+    this.loanRepository = loanRepository;
+    this.dateProvider = new DateProvider.System();
+    this.emailNotifier = new EmailNotifier();
+    FineStrategyFactory fineStrategyFactory = new FineStrategyFactory();
+    this.authService = new AuthService(userRepository);
+
+    // Borrow/return and fine payments share one event log so its projections see every change.
+    // It starts from what storage (or the startup preload) already holds.
+    this.circulationLog = new CirculationLog();
+    circulationLog.reset(loanRepository.findAllUnarchived(), userRepository.findAll());
+    this.userService =
+        new UserService(userRepository, loanRepository, authService, circulationLog);
+    metricsRegistry.gauge("circulation.events", circulationLog::lastSequence);
+    metricsRegistry.gauge(
+        "circulation.activeLoans", () -> circulationLog.projections().activeLoanCount());
+    // Circulation changes pass through the gate so snapshots see none of them half-applied.
+    SnapshotGate snapshotGate = new SnapshotGate();
+
+    this.mediaRepository = lazy("media", mediaRepository);
+    this.inventoryService = lazy("inventory", () -> {
+      // One barcoded copy per unit of stored quantity, plus the copies out on open loans under
+      // the barcodes they were lent with, so returns find them and they are not lent twice.
+      InventoryService inventory =
+          new InventoryService(new InMemoryCopyRepository(), this.mediaRepository.get());
+      CirculationState projections = circulationLog.projections();
+      for (Media media : this.mediaRepository.get().findAll()) {
+        List<String> loanedBarcodes = new ArrayList<>();
+        for (String loanId : projections.activeLoansForMedia(media.getId())) {
+          loanRepository.findById(loanId).map(Loan::getCopyBarcode).ifPresent(loanedBarcodes::add);
+        }
+        inventory.trackExisting(media, loanedBarcodes);
+      }
+      return inventory;
+    });
+    this.holdService = lazy("holds", () -> {
+      HoldService holds = new HoldService(
+          userRepository, this.mediaRepository.get(), dateProvider, inventoryService.get(),
+          metricsRegistry);
+      holds.register(emailNotifier);
+      return holds;
+    });
+    this.borrowService = lazy("borrow", () -> new BorrowService(
+        loanRepository, this.mediaRepository.get(), userRepository, dateProvider,
+        fineStrategyFactory, metricsRegistry, circulationLog, inventoryService.get(),
+        holdService.get(), snapshotGate));
+    this.fineService = lazy("fines", () -> new FineService(
+        userRepository, loanRepository, this.mediaRepository.get(), dateProvider,
+        fineStrategyFactory, metricsRegistry, circulationLog, snapshotGate));
+    this.reminderService = lazy("reminders", () -> {
+      ReminderService reminders =
+          new ReminderService(loanRepository, userRepository, dateProvider, metricsRegistry);
+      reminders.register(emailNotifier);
+      return reminders;
+    });
+    this.catalogService = lazy("catalog",
+        () -> new CatalogService(this.mediaRepository.get(), authService, metricsRegistry));
+    this.snapshots = lazy("snapshots", () -> new LibrarySnapshots(
+        this.mediaRepository.get(), userRepository, loanRepository, snapshotGate,
+        circulationLog, metricsRegistry));
+  }
 
+  /**
+   * Boots the system as configured by {@link LibraryConfig#load()}.
+   *
+   * @return the environment
+   */
   public static LibraryEnvironment bootstrap() {
-    // Use file-based repositories for users and media so data is kept between runs.
-    UserRepository userRepository = new FileUserRepository();
-    MediaRepository mediaRepository = new FileMediaRepository();
-    LoanRepository loanRepository = new InMemoryLoanRepository();
-    DateProvider dateProvider = new DateProvider.System();
-    FineStrategyFactory fineStrategyFactory = new FineStrategyFactory();
+    return bootstrap(LibraryConfig.load());
+  }
+
+  /**
+   * Boots the system with the given configuration.
+   *
+   * @param config storage, cache and timing settings
+   * @return the environment
+   */
+  public static LibraryEnvironment bootstrap(LibraryConfig config) {
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    Timer bootstrapTimer = metricsRegistry.timer("startup.bootstrap");
+    long start = bootstrapTimer.start();
+
+    UserRepository userRepository;
+    MediaRepository mediaRepository;
+    if (config.storage() == LibraryConfig.Storage.FILE) {
+      // File-based repositories for users and media so data is kept between runs.
+      userRepository = new FileUserRepository(
+          config.dataDirectory().resolve("users.txt"), metricsRegistry);
+      mediaRepository = new FileMediaRepository(
+          config.dataDirectory().resolve("books.txt"), metricsRegistry);
+    } else {
+      userRepository = new InMemoryUserRepository();
+      mediaRepository = new InMemoryMediaRepository();
+    }
+    // Shared string-ID -> dense int dictionary for internal indexes and compact loan history.
+    IdDictionary idDictionary = new IdDictionary();
+    metricsRegistry.gauge("ids.dictionary.size", idDictionary::size);
+    InMemoryLoanRepository loans = new InMemoryLoanRepository(idDictionary);
+    // Old returned loans move to monthly partitions on disk (library.loans.archive.*).
+    if (config.loanArchiveEnabled()) {
+      LoanArchive archive = new LoanArchive(config.loanArchiveDirectory(), metricsRegistry);
+      loans.setArchive(archive, new DateProvider.System(), config.loanArchiveAfterDays());
+      metricsRegistry.gauge("loans.archive.size", archive::size);
+      metricsRegistry.gauge("loans.history.size", () -> loans.getHistory().size());
+      // Tiering writes partition files, so it runs on its own thread instead of in save().
+      ScheduledExecutorService tiering = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "library-loan-tiering");
+        thread.setDaemon(true);
+        return thread;
+      });
+      tiering.scheduleWithFixedDelay(
+          loans::archiveDue, 1, TIERING_CHECK_MINUTES, TimeUnit.MINUTES);
+    }
+    LoanRepository loanRepository = loans;
+
+    // Parallel load of the data directory into memory (library.startup.*); returns once
+    // records can be found by ID, while the search indexes are still being built.
+    CompletableFuture<Void> searchReadiness = CompletableFuture.completedFuture(null);
+    if (config.storage() == LibraryConfig.Storage.MEMORY && config.startupPreload()) {
+      searchReadiness = preload(config, metricsRegistry,
+          (InMemoryMediaRepository) mediaRepository, userRepository, loanRepository);
+    }
+
+    // Read-through caches for the file-backed repositories (library.cache.*).
+    if (config.cacheEnabled()) {
+      int maxEntries = config.cacheMaxEntries();
+      Duration ttl = config.cacheTtl();
+      CachingMediaRepository cachedMedia = new CachingMediaRepository(
+          mediaRepository, new SegmentedLruCache<>(maxEntries, ttl));
+      CachingUserRepository cachedUsers = new CachingUserRepository(
+          userRepository,
+          new SegmentedLruCache<>(maxEntries, ttl),
+          new SegmentedLruCache<>(maxEntries, ttl));
+      registerCacheGauges(metricsRegistry, "media", cachedMedia::stats);
+      registerCacheGauges(metricsRegistry, "user", cachedUsers::stats);
+      mediaRepository = cachedMedia;
+      userRepository = cachedUsers;
+    }
+
+    // Per-method repository timing and slow-call logging (library.repository.*).
+    if (config.repositoryTiming()) {
+      long slowThresholdMs = config.slowThresholdMillis();
+      userRepository = new TimedUserRepository(
+          userRepository, new RepositoryCallRecorder(metricsRegistry, "user", slowThresholdMs));
+      mediaRepository = new TimedMediaRepository(
+          mediaRepository, new RepositoryCallRecorder(metricsRegistry, "media", slowThresholdMs));
+      loanRepository = new TimedLoanRepository(
+          loanRepository, new RepositoryCallRecorder(metricsRegistry, "loan", slowThresholdMs));
+    }
+
+    MediaRepository media = mediaRepository;
+    LibraryEnvironment environment = new LibraryEnvironment(
+        config, metricsRegistry, userRepository, () -> seedCatalog(media, config), loanRepository,
+        searchReadiness);
+
+    // Seed default admin accounts; one pass over the users instead of a lookup per account.
+    Set<String> usernames = userRepository.findAll().stream()
+        .map(User::getUsername)
+        .collect(Collectors.toSet());
+    if (!usernames.contains("sally")) {
+      environment.userService.registerAdmin("sally", "Sally", "admin123");
+    }
+    if (!usernames.contains("tala")) {
+      environment.userService.registerAdmin("tala", "Tala", "tala123");
+    }
+
+    long nanos = bootstrapTimer.stop(start);
+    LOG.info(String.format("Library environment ready in %d ms (%s storage)",
+        TimeUnit.NANOSECONDS.toMillis(nanos), config.storage().name().toLowerCase(Locale.ROOT)));
+    return environment;
+  }
+
+  private static CompletableFuture<Void> preload(
+      LibraryConfig config,
+      MetricsRegistry metricsRegistry,
+      InMemoryMediaRepository media,
+      UserRepository users,
+      LoanRepository loans) {
+    ForkJoinPool pool = new ForkJoinPool(config.startupThreads());
+    try {
+      StartupLoader.Result loaded = new StartupLoader(pool, metricsRegistry)
+          .load(config.dataDirectory(), media, users, loans);
+      LOG.info(String.format("Preloaded %d media, %d users and %d loans from %s",
+          loaded.media(), loaded.users(), loaded.loans(), config.dataDirectory()));
+      return loaded.searchReady().whenComplete((ignored, failure) -> pool.shutdown());
+    } catch (IOException ex) {
+      pool.shutdown();
+      throw new UncheckedIOException("Could not preload " + config.dataDirectory(), ex);
+    } catch (RuntimeException ex) {
+      pool.shutdown();
+      throw ex;
+    }
+  }
 
-    // Seed some demo books and CDs into the media repository if it's empty so that
-    // the files are populated and the catalog is not empty on first run.
-    if (mediaRepository.findAll().isEmpty()) {
+  /**
+   * Seeds some demo books and CDs into the media repository if it's empty so that the files
+   * are populated and the catalog is not empty on first run.
+   */
+  private static MediaRepository seedCatalog(MediaRepository mediaRepository, LibraryConfig config) {
+    if (config.seedDemoData() && mediaRepository.findAll().isEmpty()) {
       mediaRepository.save(
           new Book("B1", "Clean Code", "Robert C. Martin", "9780132350884"));
       mediaRepository.save(
@@ -76,39 +311,36 @@ public class LibraryEnvironment {
       mediaRepository.save(new CD("C1", "Thriller", "Michael Jackson"));
       mediaRepository.save(new CD("C2", "Back in Black", "AC/DC"));
     }
+    return mediaRepository;
+  }
 
-    AuthService authService = new AuthService(userRepository);
-    BorrowService borrowService =
-        new BorrowService(
-            loanRepository, mediaRepository, userRepository, dateProvider, fineStrategyFactory);
-    FineService fineService =
-        new FineService(
-            userRepository, loanRepository, mediaRepository, dateProvider, fineStrategyFactory);
-    ReminderService reminderService = new ReminderService(loanRepository, userRepository, dateProvider);
-    EmailNotifier emailNotifier = new EmailNotifier();
-    reminderService.register(emailNotifier);
-    CatalogService catalogService = new CatalogService(mediaRepository, authService);
-    UserService userService = new UserService(userRepository, loanRepository, authService);
-
-    // Seed default admin accounts
-    if (userRepository.findByUsername("sally").isEmpty()) {
-      userService.registerAdmin("sally", "Sally", "admin123");
-    }
-    if (userRepository.findByUsername("tala").isEmpty()) {
-      userService.registerAdmin("tala", "Tala", "tala123");
-    }
+  /** Wraps a component so it is built on first use, timed as {@code startup.<name>}. */
+  private <T> Lazy<T> lazy(String name, Supplier<T> initializer) {
+    Timer timer = metricsRegistry.timer("startup." + name);
+    return Lazy.of(() -> {
+      long start = timer.start();
+      try {
+        return initializer.get();
+      } finally {
+        timer.stop(start);
+      }
+    });
+  }
 
-    return new LibraryEnvironment(
-    	    authService,
-    	    catalogService,
-    	    borrowService,
-    	    fineService,
-    	    reminderService,
-    	    userService,
-    	    emailNotifier,
-    	    loanRepository,
-    	    mediaRepository,
-    	    dateProvider);
+  private static void registerCacheGauges(
+      MetricsRegistry metrics, String name, Supplier<SegmentedLruCache.CacheStats> stats) {
+    metrics.gauge("cache." + name + ".hits", () -> stats.get().hits());
+    metrics.gauge("cache." + name + ".misses", () -> stats.get().misses());
+    metrics.gauge("cache." + name + ".evictions", () -> stats.get().evictions());
+    metrics.gauge("cache." + name + ".expirations", () -> stats.get().expirations());
+  }
+
+  /**
+   * Returns the settings the environment was booted with.
+   * @return the configuration
+   */
+  public LibraryConfig getConfig() {
+    return config;
   }
 
   public AuthService getAuthService() {
@@ -116,19 +348,19 @@ public class LibraryEnvironment {
   }
 
   public CatalogService getCatalogService() {
-    return catalogService;
+    return catalogService.get();
   }
 
   public BorrowService getBorrowService() {
-    return borrowService;
+    return borrowService.get();
   }
 
   public FineService getFineService() {
-    return fineService;
+    return fineService.get();
   }
 
   public ReminderService getReminderService() {
-    return reminderService;
+    return reminderService.get();
   }
 
   public UserService getUserService() {
@@ -140,7 +372,7 @@ public class LibraryEnvironment {
   }
 
   /**
-   * Returns the loan repository instance, initializing it if necessary.
+   * Returns the loan repository instance.
    * @return the loan repository instance
    */
   public LoanRepository getLoanRepository() {
@@ -148,7 +380,7 @@ public class LibraryEnvironment {
 	}
 
   public MediaRepository getMediaRepository() {
-	    return mediaRepository;
+	    return mediaRepository.get();
 	}
   public UserRepository getUserRepository() {
 	    return userService.getUserRepository();
@@ -158,6 +390,56 @@ public class LibraryEnvironment {
   public DateProvider getDateProvider() {
 	    return dateProvider;
 	}
+
+  /**
+   * Returns the registry holding timers, counters and histograms for all services.
+   * @return the shared metrics registry
+   */
+  public MetricsRegistry getMetricsRegistry() {
+    return metricsRegistry;
+  }
+
+  /**
+   * Returns the append-only log of borrow, return and payment events.
+   * @return the shared circulation log
+   */
+  public CirculationLog getCirculationLog() {
+    return circulationLog;
+  }
+
+  /**
+   * Returns the copy-level inventory used for barcode check-outs.
+   * @return the inventory service
+   */
+  public InventoryService getInventoryService() {
+    return inventoryService.get();
+  }
+
+  /**
+   * Returns the per-title hold queues.
+   * @return the hold service
+   */
+  public HoldService getHoldService() {
+    return holdService.get();
+  }
+
+  /**
+   * Returns a future that completes once every preloaded item is searchable. Until then,
+   * lookups by ID already work and searches wait. Complete unless
+   * {@code library.startup.preload} is on.
+   * @return the search readiness
+   */
+  public CompletableFuture<Void> getSearchReadiness() {
+    return searchReadiness;
+  }
+
+  /**
+   * Returns the exporter and restorer of whole-library snapshots.
+   * @return the snapshot service
+   */
+  public LibrarySnapshots getSnapshots() {
+    return snapshots.get();
+  }
 }
 
 
@@ -0,0 +1,176 @@
+package com.library.circulation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.FineStrategyFactory;
+import com.library.domain.Loan;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.metrics.MetricsRegistry;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.service.BorrowService;
+import com.library.service.FineService;
+import com.library.support.FakeDateProvider;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CirculationLogTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+  @Test
+  void projectionsFollowBorrowReturnAndPayment() {
+    CirculationLog log = new CirculationLog();
+    log.append(new CirculationEvent.Borrowed("l1", "u1", "m1", DAY, DAY.plusDays(7)));
+    log.append(new CirculationEvent.Borrowed("l2", "u1", "m2", DAY, DAY.plusDays(7)));
+
+    CirculationState state = log.projections();
+    assertEquals(1, state.copiesOnLoan("m1"));
+    assertEquals(2, state.activeLoans("u1").size());
+
+    log.append(new CirculationEvent.Returned("l1", "u1", "m1", DAY.plusDays(9), BigDecimal.TEN));
+    log.append(new CirculationEvent.FinePaid("u1", DAY.plusDays(9), BigDecimal.valueOf(4)));
+
+    assertEquals(0, state.copiesOnLoan("m1"));
+    assertEquals(List.of("l2"), List.copyOf(state.activeLoans("u1")));
+    assertEquals(BigDecimal.valueOf(6), state.balance("u1"));
+    assertEquals(4, log.lastSequence());
+  }
+
+  @Test
+  void stateAtReplaysFromNearestSnapshot() {
+    CirculationLog log = new CirculationLog(2);
+    for (int i = 1; i <= 5; i++) {
+      log.append(new CirculationEvent.Borrowed("l" + i, "u1", "m" + i, DAY, DAY.plusDays(7)));
+    }
+    assertEquals(3, log.snapshotCount()); // initial, after 2 and after 4 events
+
+    CirculationState past = log.stateAt(3);
+    assertEquals(3, past.getSequence());
+    assertEquals(3, past.activeLoans("u1").size());
+    assertEquals(0, past.copiesOnLoan("m4"));
+
+    // Detached states and snapshots are not affected by later appends.
+    log.append(new CirculationEvent.Returned("l1", "u1", "m1", DAY, BigDecimal.ZERO));
+    assertEquals(1, past.copiesOnLoan("m1"));
+    assertEquals(1, log.stateAt(2).copiesOnLoan("m1"));
+    assertEquals(0, log.rebuildProjections().copiesOnLoan("m1"));
+    assertEquals(4, log.projections().activeLoans("u1").size());
+  }
+
+  @Test
+  void onlyLatestSnapshotsAreRetained() {
+    CirculationLog log = new CirculationLog(2, 2);
+    for (int i = 1; i <= 9; i++) {
+      log.append(new CirculationEvent.Borrowed("l" + i, "u1", "m" + i, DAY, DAY.plusDays(7)));
+    }
+    assertEquals(3, log.snapshotCount()); // initial, after 6 and after 8 events
+
+    // Older states are replayed from the start of the log.
+    assertEquals(3, log.stateAt(3).activeLoans("u1").size());
+    assertEquals(7, log.stateAt(7).activeLoans("u1").size());
+    assertEquals(9, log.rebuildProjections().activeLoanCount());
+  }
+
+  @Test
+  void eventsBeyondTheRetentionLimitAreDropped() {
+    CirculationLog log = new CirculationLog(2, 8, 4);
+    for (int i = 1; i <= 9; i++) {
+      log.append(new CirculationEvent.Borrowed("l" + i, "u1", "m" + i, DAY, DAY.plusDays(7)));
+    }
+
+    // Replay now starts at the snapshot after 4 events; the 5 events after it are kept.
+    assertEquals(5, log.size());
+    assertEquals(3, log.snapshotCount()); // after 4, 6 and 8 events
+    assertEquals(5, log.historyForUser("u1").size());
+    assertEquals(5, log.entriesSince(1).get(0).sequence());
+    assertEquals(6, log.stateAt(6).activeLoans("u1").size());
+    assertThrows(IllegalArgumentException.class, () -> log.stateAt(3));
+    assertEquals(9, log.rebuildProjections().activeLoanCount());
+  }
+
+  @Test
+  void resetStartsOverFromStoredRecords() {
+    CirculationLog log = new CirculationLog();
+    log.append(new CirculationEvent.Borrowed("l1", "u1", "m1", DAY, DAY.plusDays(7)));
+    User alice = new User("u1", "alice", "Alice", UserRole.MEMBER, "pw");
+    alice.addFine(BigDecimal.valueOf(3));
+    Loan open = new Loan("l2", "u1", "m2", DAY, DAY.plusDays(7));
+    Loan returned = new Loan("l3", "u1", "m3", DAY, DAY.plusDays(7));
+    returned.markReturned(DAY.plusDays(1));
+
+    log.reset(List.of(open, returned), List.of(alice));
+
+    CirculationState state = log.projections();
+    assertEquals(0, log.size());
+    assertEquals(1, log.lastSequence());
+    assertEquals(List.of("l2"), List.copyOf(state.activeLoans("u1")));
+    assertEquals(0, state.copiesOnLoan("m1"));
+    assertEquals(BigDecimal.valueOf(3), state.balance("u1"));
+
+    log.append(new CirculationEvent.Returned("l2", "u1", "m2", DAY, BigDecimal.ONE));
+    assertEquals(2, log.lastSequence());
+    assertEquals(BigDecimal.valueOf(4), log.projections().balance("u1"));
+    assertEquals(0, log.stateAt(1).copiesOnLoan("m1"));
+    assertEquals(1, log.stateAt(1).copiesOnLoan("m2"));
+  }
+
+  @Test
+  void everyCopyOfATitleCanBeOnLoan() {
+    InMemoryMediaRepository media = new InMemoryMediaRepository();
+    InMemoryUserRepository users = new InMemoryUserRepository();
+    CirculationLog log = new CirculationLog();
+    BorrowService borrowService = new BorrowService(new InMemoryLoanRepository(), media, users,
+        new FakeDateProvider(DAY), new FineStrategyFactory(), new MetricsRegistry(), log);
+    users.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    users.save(new User("u2", "bob", "Bob", UserRole.MEMBER, "pw"));
+    Book book = new Book("b1", "Refactoring", "Fowler", "1");
+    book.setQuantity(2);
+    media.save(book);
+
+    borrowService.borrow("u1", "b1");
+    Loan second = borrowService.borrow("u2", "b1");
+
+    assertEquals(2, log.copiesOnLoan("b1"));
+    assertEquals(2, log.projections().activeLoansForMedia("b1").size());
+    borrowService.returnMedia(second.getId());
+    assertEquals(1, log.copiesOnLoan("b1"));
+  }
+
+  @Test
+  void servicesAppendEventsToSharedLog() {
+    InMemoryMediaRepository media = new InMemoryMediaRepository();
+    InMemoryUserRepository users = new InMemoryUserRepository();
+    InMemoryLoanRepository loans = new InMemoryLoanRepository();
+    FakeDateProvider dates = new FakeDateProvider(DAY);
+    FineStrategyFactory fines = new FineStrategyFactory();
+    MetricsRegistry metrics = new MetricsRegistry();
+    CirculationLog log = new CirculationLog();
+    BorrowService borrowService =
+        new BorrowService(loans, media, users, dates, fines, metrics, log);
+    FineService fineService =
+        new FineService(users, loans, media, dates, fines, metrics, log);
+    users.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    media.save(new Book("b1", "Refactoring", "Fowler", "1"));
+
+    Loan loan = borrowService.borrow("u1", "b1");
+    assertEquals(1, log.copiesOnLoan("b1"));
+    dates.advanceDays(30);
+    BigDecimal fine = borrowService.returnMedia(loan.getId());
+    fineService.payFine("u1", fine);
+
+    List<CirculationLog.Entry> history = log.historyForUser("u1");
+    assertEquals(3, history.size());
+    assertInstanceOf(CirculationEvent.Borrowed.class, history.get(0).event());
+    assertInstanceOf(CirculationEvent.Returned.class, history.get(1).event());
+    assertInstanceOf(CirculationEvent.FinePaid.class, history.get(2).event());
+    assertEquals(2, log.historyForMedia("b1").size());
+    assertEquals(BigDecimal.ZERO, log.projections().balance("u1"));
+    assertEquals(0, log.copiesOnLoan("b1"));
+  }
+}
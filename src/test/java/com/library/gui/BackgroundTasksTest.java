@@ -0,0 +1,78 @@
+package com.library.gui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BackgroundTasksTest {
+
+  private ExecutorService workers;
+  /** Stands in for the EDT: callbacks queue up here until the test runs them. */
+  private LinkedBlockingQueue<Runnable> callbacks;
+  private BackgroundTasks tasks;
+
+  @BeforeEach
+  void setUp() {
+    workers = Executors.newFixedThreadPool(2);
+    callbacks = new LinkedBlockingQueue<>();
+    tasks = new BackgroundTasks(workers, callbacks::add);
+  }
+
+  @AfterEach
+  void tearDown() {
+    tasks.close();
+  }
+
+  @Test
+  void deliversResultsAndFailuresThroughTheCallbackExecutor() throws Exception {
+    List<Object> delivered = new ArrayList<>();
+
+    tasks.submit(() -> "done", delivered::add, delivered::add);
+    runNextCallback();
+    tasks.submit(() -> { throw new IllegalStateException("boom"); }, delivered::add, delivered::add);
+    runNextCallback();
+
+    assertEquals("done", delivered.get(0));
+    assertEquals("boom", ((IllegalStateException) delivered.get(1)).getMessage());
+  }
+
+  @Test
+  void newerRequestInASlotSuppressesTheStaleResult() throws Exception {
+    BackgroundTasks.Latest slot = tasks.latest();
+    CountDownLatch slowQueryStarted = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<String> delivered = new ArrayList<>();
+
+    slot.submit(() -> {
+      slowQueryStarted.countDown();
+      // Keeps running even when interrupted, like a query that ignores interrupts.
+      while (!release.await(10, TimeUnit.MILLISECONDS)) {
+        Thread.interrupted();
+      }
+      return "stale";
+    }, delivered::add, ex -> fail(ex));
+    assertTrue(slowQueryStarted.await(5, TimeUnit.SECONDS));
+    slot.submit(() -> "fresh", delivered::add, ex -> fail(ex));
+    release.countDown();
+
+    runNextCallback();
+    runNextCallback();
+
+    assertEquals(List.of("fresh"), delivered);
+  }
+
+  private void runNextCallback() throws InterruptedException {
+    Runnable callback = callbacks.poll(5, TimeUnit.SECONDS);
+    assertNotNull(callback, "expected a callback");
+    callback.run();
+  }
+}
@@ -0,0 +1,134 @@
+package com.library.gui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+import com.library.domain.MediaType;
+import com.library.repository.MediaSort;
+import com.library.repository.memory.InMemoryMediaRepository;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PagedMediaTableModelTest {
+
+  private InMemoryMediaRepository repository;
+  private AtomicInteger loads;
+  private PagedMediaTableModel model;
+
+  @BeforeEach
+  void setUp() {
+    repository = new InMemoryMediaRepository();
+    for (int i = 0; i < 10_000; i++) {
+      Media media = i % 10 == 0
+          ? new CD(String.format("c%05d", i), String.format("Item %05d", i), "Band")
+          : new Book(String.format("b%05d", i), String.format("Item %05d", i), "Author", "" + i);
+      repository.save(media);
+    }
+    loads = new AtomicInteger();
+    model = new PagedMediaTableModel(
+        new String[] {"Title", "Type"},
+        (media, column) -> column == 0 ? media.getTitle() : media.getType().name(),
+        -1, 50, 4);
+  }
+
+  @Test
+  void rowsAreLoadedOnlyWhenAskedForAndWindowIsBounded() {
+    model.setSource(countingLoader(), 10_000);
+
+    assertEquals(10_000, model.getRowCount());
+    assertEquals(0, loads.get());
+
+    assertEquals("Item 00000", model.getValueAt(0, 0));
+    assertEquals("Item 00049", model.getValueAt(49, 0));
+    assertEquals(1, loads.get());
+
+    assertEquals("Item 09999", model.getValueAt(9_999, 0));
+    // From page 1 to page 199: strides end at pages 32, 64, ..., 192, one skip to 199, then
+    // the page itself.
+    assertEquals(9, loads.get(), "skipped forward in strides to the last page");
+    assertTrue(model.cachedPageCount() <= 4);
+
+    assertEquals("Item 05000", model.getValueAt(5_000, 0));
+    assertEquals(11, loads.get(), "one skip from the stride cursor at page 96");
+    assertEquals("Item 05050", model.getValueAt(5_050, 0));
+    assertEquals(12, loads.get(), "the page after a loaded one starts at a known cursor");
+  }
+
+  @Test
+  void openEndedSourceGrowsAPageAtATimeAndSettlesOnTheEnd() {
+    PagedMediaTableModel.PageLoader source = countingLoader();
+    model.setSource(source, source.load(null, 50));
+
+    assertEquals(100, model.getRowCount(), "one page beyond the first is announced");
+    assertEquals("Item 00049", model.getValueAt(49, 0));
+    assertEquals(1, loads.get(), "the first page is not loaded again");
+
+    assertEquals("Item 00050", model.getValueAt(50, 0));
+    assertEquals(150, model.getRowCount());
+
+    assertEquals("Item 09999", model.getValueAt(9_999, 0));
+    assertEquals(10_000, model.getRowCount(), "exact once the source ends");
+    assertNull(model.getMediaAt(10_050));
+
+    PagedMediaTableModel.PageLoader shortList = PagedMediaTableModel.ofList(
+        repository.searchPage("Item 0000", null, 3, MediaSort.TITLE).items());
+    model.setSource(shortList, shortList.load(null, 50));
+    assertEquals(3, model.getRowCount(), "a single short page is exact at once");
+  }
+
+  @Test
+  void filteredSourceFillsWholePagesWithoutSkippingItems() {
+    PagedMediaTableModel.PageLoader cds = PagedMediaTableModel.filtered(
+        countingLoader(), media -> media.getType() == MediaType.CD);
+    model.setSource(cds, 1_000);
+
+    for (int row = 0; row < 1_000; row++) {
+      assertEquals(String.format("Item %05d", row * 10), model.getValueAt(row, 0));
+    }
+    assertEquals("CD", model.getValueAt(999, 1));
+  }
+
+  @Test
+  void listSourceServesRowsAndEndsCleanly() {
+    model.setSource(PagedMediaTableModel.ofList(
+        repository.searchPage("Item 0000", null, 10, MediaSort.TITLE).items()), 12);
+
+    assertEquals("Item 00009", model.getValueAt(9, 0));
+    assertNull(model.getMediaAt(11), "announced rows beyond the source stay empty");
+  }
+
+  @Test
+  void backgroundPagesShowPlaceholderAndStaleLoadsAreDropped() throws Exception {
+    LinkedBlockingQueue<Runnable> edt = new LinkedBlockingQueue<>();
+    try (BackgroundTasks tasks =
+        new BackgroundTasks(Executors.newSingleThreadExecutor(), edt::add)) {
+      model.setBackgroundTasks(tasks);
+      model.setSource(countingLoader(), 10_000);
+
+      assertEquals(PagedMediaTableModel.LOADING, model.getValueAt(0, 0));
+      assertTrue(model.isLoading(0));
+      edt.poll(5, TimeUnit.SECONDS).run();
+      assertEquals("Item 00000", model.getValueAt(0, 0));
+      assertFalse(model.isLoading(0));
+
+      assertEquals(PagedMediaTableModel.LOADING, model.getValueAt(100, 0));
+      model.setSource(PagedMediaTableModel.ofList(
+          repository.searchPage("Item 0001", null, 10, MediaSort.TITLE).items()), 10);
+      edt.poll(5, TimeUnit.SECONDS).run();
+      assertEquals(0, model.cachedPageCount(), "page of the previous source is discarded");
+    }
+  }
+
+  private PagedMediaTableModel.PageLoader countingLoader() {
+    return (cursor, limit) -> {
+      loads.incrementAndGet();
+      return repository.searchPage("", cursor, limit, MediaSort.TITLE);
+    };
+  }
+}
@@ -0,0 +1,33 @@
+package com.library.gui;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.system.LibraryConfig;
+import java.util.Properties;
+import org.junit.jupiter.api.Test;
+
+class StartupBenchmarkTest {
+
+  @Test
+  void measuresBootstrapWithoutLoginScreen() throws Exception {
+    Properties properties = new Properties();
+    properties.setProperty("library.storage", "memory");
+
+    StartupBenchmark.Measurement measurement = StartupBenchmark.measure(
+        LibraryConfig.fromProperties(properties), System.currentTimeMillis(), false);
+
+    assertTrue(measurement.bootstrapMillis() >= 0);
+    assertEquals(-1, measurement.loginScreenMillis());
+    assertTrue(measurement.jvmMillis() > 0, "the test JVM started before this test");
+  }
+
+  @Test
+  void csvRowMatchesHeader() {
+    StartupBenchmark.Measurement measurement = new StartupBenchmark.Measurement(30, 80, 120);
+
+    assertEquals(230, measurement.totalMillis());
+    assertEquals("appcds,230,30,80,120", measurement.toCsv("appcds"));
+    assertEquals(StartupBenchmark.CSV_HEADER.split(",").length,
+        measurement.toCsv("appcds").split(",").length);
+  }
+}
@@ -0,0 +1,185 @@
+package com.library.importer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+import com.library.domain.MediaType;
+import com.library.metrics.MetricsRegistry;
+import com.library.repository.file.FileMediaRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CatalogImporterTest {
+
+  @Test
+  void csvImportValidatesAndDeduplicatesByIsbn() {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    repository.save(new Book("b0", "The Hobbit", "Tolkien", "978-0-261-10357-3"));
+    String feed = String.join("\n",
+        "Title,Author,ISBN,Type,Copies",
+        "\"Dune, Deluxe Edition\",Frank Herbert,0-441-17271-7,book,3",
+        "Dune (again),Frank Herbert,9780441172719,book,1",
+        "The Hobbit,Tolkien,0261103571,book,1",
+        "\"The \"\"Silmarillion\"\"\",Tolkien,978-0-261-10273-6,book,",
+        "Thriller,Michael Jackson,,cd,2",
+        "No Author,,9780306406157,book,1",
+        "Bad ISBN,Someone,1234567890,book,1",
+        "Vinyl,Someone,,record,1");
+
+    ImportReport report = new CatalogImporter(repository)
+        .importFeed(CsvFeedReader.records(new StringReader(feed)), CatalogImporter.Progress.NONE);
+
+    assertEquals(8, report.read());
+    assertEquals(3, report.imported());
+    assertEquals(2, report.duplicates(), "ISBN-10 and ISBN-13 of one book are one ISBN");
+    assertEquals(3, report.rejected());
+    assertEquals(List.of(
+            "line 7: missing author", "line 8: invalid ISBN '1234567890'",
+            "line 9: unknown media type"),
+        report.errors());
+    Map<String, Media> byTitle = repository.findAll().stream()
+        .collect(Collectors.toMap(Media::getTitle, media -> media));
+    Book dune = (Book) byTitle.get("Dune, Deluxe Edition");
+    assertEquals("9780441172719", dune.getIsbn());
+    assertEquals(3, dune.getQuantity());
+    assertTrue(byTitle.containsKey("The \"Silmarillion\""));
+    assertEquals(2, byTitle.get("Thriller").getQuantity());
+  }
+
+  @Test
+  void readerIsClosedWhenTheHeaderIsRejected() {
+    List<String> closed = new ArrayList<>();
+    for (String feed : List.of("Name,Author\nDune,Herbert", "\"Title,Author\nDune")) {
+      StringReader reader = new StringReader(feed) {
+        @Override
+        public void close() {
+          closed.add(feed);
+          super.close();
+        }
+      };
+      assertThrows(IllegalArgumentException.class, () -> CsvFeedReader.records(reader));
+    }
+    assertEquals(2, closed.size(), "missing title column and unterminated quote");
+  }
+
+  @Test
+  void marcRecordsBecomeBooksAndCds() {
+    ByteArrayOutputStream feed = new ByteArrayOutputStream();
+    feed.writeBytes(marc('a', Map.of(
+        "020", "  \u001Fa0261103571 (pbk.)",
+        "100", "1 \u001FaTolkien, J. R. R.,",
+        "245", "14\u001FaThe hobbit :\u001Fbor, There and back again /")));
+    feed.writeBytes(marc('j', Map.of(
+        "110", "2 \u001FaPink Floyd.",
+        "245", "10\u001FaThe dark side of the moon.")));
+
+    List<ImportRecord> records =
+        FeedFormat.MARC21.records(new ByteArrayInputStream(feed.toByteArray())).toList();
+
+    assertEquals(new ImportRecord("record 1", MediaType.BOOK,
+            "The hobbit: or, There and back again", "Tolkien, J. R. R", "0261103571", 1),
+        records.get(0));
+    assertEquals(new ImportRecord("record 2", MediaType.CD,
+            "The dark side of the moon", "Pink Floyd", "", 1),
+        records.get(1));
+  }
+
+  @Test
+  void marcFeedIsClosedWhenTheFirstRecordCannotBeRead() {
+    boolean[] closed = new boolean[1];
+    ByteArrayInputStream in =
+        new ByteArrayInputStream("00100nam".getBytes(StandardCharsets.US_ASCII)) {
+          @Override
+          public void close() {
+            closed[0] = true;
+          }
+        };
+
+    assertThrows(IllegalArgumentException.class, () -> MarcFeedReader.records(in));
+    assertTrue(closed[0]);
+  }
+
+  @Test
+  void marcOffsetsPastTheEndOfTheRecordAreRejected() {
+    byte[] record = marc('a', Map.of("245", "10\u001FaDune"));
+    byte[] badBase = record.clone();
+    System.arraycopy("99999".getBytes(StandardCharsets.US_ASCII), 0, badBase, 12, 5);
+    byte[] badField = record.clone();
+    // Starting position of the first directory entry.
+    System.arraycopy("99999".getBytes(StandardCharsets.US_ASCII), 0, badField, 24 + 7, 5);
+
+    for (byte[] bad : List.of(badBase, badField)) {
+      IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+          () -> MarcFeedReader.records(new ByteArrayInputStream(bad)).toList());
+      assertTrue(ex.getMessage().contains("record 1"), ex.getMessage());
+    }
+  }
+
+  @Test
+  void importsOneHundredThousandRecordsWithOneFileWrite(@TempDir Path dir) {
+    MetricsRegistry metrics = new MetricsRegistry();
+    FileMediaRepository repository = new FileMediaRepository(dir.resolve("books.txt"), metrics);
+    repository.save(new CD("c0", "Existing", "Band"));
+    long writesBefore = metrics.timer("repository.media.file.write").count();
+    List<Integer> progress = new ArrayList<>();
+
+    Stream<ImportRecord> feed = IntStream.range(0, 100_000).mapToObj(i -> new ImportRecord(
+        "line " + (i + 2), MediaType.BOOK, "Title " + i, "Author " + i % 500, isbn13(i), 1));
+    long start = System.nanoTime();
+    ImportReport report = new CatalogImporter(repository)
+        .importFeed(feed, (read, accepted, committed) -> progress.add(read));
+    long millis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(100_000, report.imported());
+    assertEquals(100_001, repository.findAll().size());
+    assertEquals(1, metrics.timer("repository.media.file.write").count() - writesBefore);
+    assertEquals(100_000, progress.get(progress.size() - 1));
+    assertTrue(progress.size() > 2, "progress is reported per chunk");
+    assertTrue(millis < 10_000, "100k records took " + millis + " ms");
+  }
+
+  /** A valid ISBN-13 with {@code n} as its item number. */
+  private static String isbn13(int n) {
+    String digits = String.format("978%09d", n);
+    int sum = 0;
+    for (int i = 0; i < 12; i++) {
+      sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+    }
+    return digits + (10 - sum % 10) % 10;
+  }
+
+  /** Builds an ISO 2709 record; field values start with their two indicators. */
+  private static byte[] marc(char recordType, Map<String, String> fields) {
+    StringBuilder directory = new StringBuilder();
+    ByteArrayOutputStream data = new ByteArrayOutputStream();
+    fields.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(field -> {
+      byte[] value = (field.getValue() + "\u001E").getBytes(StandardCharsets.UTF_8);
+      directory.append(field.getKey())
+          .append(String.format("%04d%05d", value.length, data.size()));
+      data.writeBytes(value);
+    });
+    directory.append('\u001E');
+    int baseAddress = 24 + directory.length();
+    int length = baseAddress + data.size() + 1;
+    String leader = String.format("%05dn%cm a22%05d   4500", length, recordType, baseAddress);
+    ByteArrayOutputStream record = new ByteArrayOutputStream();
+    record.writeBytes((leader + directory).getBytes(StandardCharsets.US_ASCII));
+    record.writeBytes(data.toByteArray());
+    record.write(0x1D);
+    return record.toByteArray();
+  }
+}
@@ -0,0 +1,417 @@
+package com.library.load;
+
+import com.library.circulation.CirculationLog;
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.FineStrategyFactory;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.metrics.MetricsRegistry;
+import com.library.repository.LoanRepository;
+import com.library.repository.MediaRepository;
+import com.library.repository.UserRepository;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.service.BorrowService;
+import com.library.service.CatalogService;
+import com.library.service.FineService;
+import com.library.service.LibraryException;
+import com.library.service.ReminderService;
+import com.library.support.FakeDateProvider;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load-generation harness that simulates a busy library.
+ *
+ * <p>A pool of simulated patrons drives {@link BorrowService}, {@link CatalogService#search},
+ * {@link FineService#payFine} and {@link ReminderService} with a weighted operation mix. Time is
+ * accelerated with a {@link FakeDateProvider}: each simulated day runs a fixed number of
+ * operations, after which the clock is advanced and the circulation invariants are checked.</p>
+ *
+ * <p>The build targets Java 17, so patrons run on a fixed platform-thread pool rather than
+ * virtual threads.</p>
+ *
+ * <p>Run from the command line with optional {@code key=value} arguments, for example:</p>
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes com.library.load.CirculationLoadSimulator \
+ *     patrons=500 titles=2000 days=60 opsPerDay=5000 threads=16
+ * </pre>
+ */
+public class CirculationLoadSimulator {
+
+  /** Operations issued by simulated patrons. */
+  public enum Operation {
+    BORROW,
+    RETURN,
+    SEARCH,
+    PAY_FINE,
+    REMINDERS
+  }
+
+  /**
+   * Tunable parameters for a simulation run.
+   *
+   * @param patrons number of simulated members
+   * @param titles number of media titles in the catalog
+   * @param copiesPerTitle copies held for every title
+   * @param days number of simulated days
+   * @param opsPerDay operations issued per simulated day
+   * @param threads worker threads issuing operations concurrently
+   * @param mix relative weight of each operation
+   */
+  public record Config(
+      int patrons,
+      int titles,
+      int copiesPerTitle,
+      int days,
+      int opsPerDay,
+      int threads,
+      Map<Operation, Integer> mix) {
+
+    /** Returns a modest default configuration roughly shaped like a weekday. */
+    public static Config defaults() {
+      Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+      mix.put(Operation.BORROW, 30);
+      mix.put(Operation.RETURN, 25);
+      mix.put(Operation.SEARCH, 40);
+      mix.put(Operation.PAY_FINE, 4);
+      mix.put(Operation.REMINDERS, 1);
+      return new Config(200, 1_000, 3, 30, 2_000, 8, mix);
+    }
+
+    /**
+     * Applies {@code key=value} overrides, typically taken from the command line.
+     *
+     * @param args overrides such as {@code patrons=500} or {@code search=60}
+     * @return a new configuration
+     */
+    public Config withOverrides(String... args) {
+      int patrons = this.patrons;
+      int titles = this.titles;
+      int copies = this.copiesPerTitle;
+      int days = this.days;
+      int opsPerDay = this.opsPerDay;
+      int threads = this.threads;
+      Map<Operation, Integer> mix = new EnumMap<>(this.mix);
+      for (String arg : args) {
+        String[] parts = arg.split("=", 2);
+        if (parts.length != 2) {
+          throw new IllegalArgumentException("Expected key=value but got: " + arg);
+        }
+        int value = Integer.parseInt(parts[1].trim());
+        switch (parts[0].trim()) {
+          case "patrons" -> patrons = value;
+          case "titles" -> titles = value;
+          case "copies" -> copies = value;
+          case "days" -> days = value;
+          case "opsPerDay" -> opsPerDay = value;
+          case "threads" -> threads = value;
+          default -> mix.put(Operation.valueOf(parts[0].trim().toUpperCase()), value);
+        }
+      }
+      return new Config(patrons, titles, copies, days, opsPerDay, threads, mix);
+    }
+  }
+
+  private final Config config;
+  private final FakeDateProvider dateProvider;
+  private final MediaRepository mediaRepository = new InMemoryMediaRepository();
+  private final UserRepository userRepository = new InMemoryUserRepository();
+  private final LoanRepository loanRepository = new InMemoryLoanRepository();
+  private final BorrowService borrowService;
+  private final CatalogService catalogService;
+  private final FineService fineService;
+  private final ReminderService reminderService;
+  private final List<String> userIds = new ArrayList<>();
+  private final List<String> mediaIds = new ArrayList<>();
+  private final List<String> searchTerms = new ArrayList<>();
+  private final Operation[] weightedOps;
+
+  private final Map<Operation, LatencyHistogram> latencies = new EnumMap<>(Operation.class);
+  private final Map<Operation, LongAdder> rejections = new EnumMap<>(Operation.class);
+  private final LongAdder unexpectedErrors = new LongAdder();
+  private final LongAdder remindersSent = new LongAdder();
+  private final List<String> violations = new ArrayList<>();
+
+  public CirculationLoadSimulator(Config config) {
+    this.config = config;
+    this.dateProvider = new FakeDateProvider(LocalDate.of(2025, 1, 1));
+    FineStrategyFactory fines = new FineStrategyFactory();
+    // Fines charged on return must reach the projections the payments check.
+    MetricsRegistry metrics = new MetricsRegistry();
+    CirculationLog circulationLog = new CirculationLog();
+    this.borrowService = new BorrowService(loanRepository, mediaRepository, userRepository,
+        dateProvider, fines, metrics, circulationLog);
+    this.catalogService = new CatalogService(mediaRepository, null);
+    this.fineService = new FineService(userRepository, loanRepository, mediaRepository,
+        dateProvider, fines, metrics, circulationLog);
+    this.reminderService = new ReminderService(loanRepository, userRepository, dateProvider);
+    this.reminderService.register((user, message) -> remindersSent.increment());
+
+    List<Operation> ops = new ArrayList<>();
+    config.mix().forEach((op, weight) -> {
+      for (int i = 0; i < weight; i++) {
+        ops.add(op);
+      }
+    });
+    if (ops.isEmpty()) {
+      throw new IllegalArgumentException("Operation mix must have at least one positive weight");
+    }
+    this.weightedOps = ops.toArray(new Operation[0]);
+    for (Operation op : Operation.values()) {
+      latencies.put(op, new LatencyHistogram());
+      rejections.put(op, new LongAdder());
+    }
+    seed();
+  }
+
+  private void seed() {
+    String[] words = {"river", "shadow", "garden", "night", "silver", "empire", "ocean", "winter"};
+    for (int i = 0; i < config.titles(); i++) {
+      String word = words[i % words.length];
+      Media media =
+          i % 4 == 0
+              ? new CD("C" + i, "Songs of the " + word + " " + i, "Artist " + (i % 50))
+              : new Book("B" + i, "The " + word + " chronicle " + i, "Author " + (i % 80),
+                  "978" + String.format("%010d", i));
+      media.setQuantity(config.copiesPerTitle());
+      mediaRepository.save(media);
+      mediaIds.add(media.getId());
+    }
+    for (String word : words) {
+      searchTerms.add(word);
+    }
+    searchTerms.add("author 1");
+    searchTerms.add("no-such-title");
+    for (int i = 0; i < config.patrons(); i++) {
+      User user = new User("U" + i, "patron" + i, "Patron " + i, UserRole.MEMBER, "pw");
+      userRepository.save(user);
+      userIds.add(user.getId());
+    }
+  }
+
+  /**
+   * Runs the configured number of simulated days.
+   *
+   * @return the aggregated results
+   * @throws InterruptedException if the harness is interrupted while waiting for workers
+   */
+  public Report run() throws InterruptedException {
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, config.threads()));
+    long started = System.nanoTime();
+    try {
+      for (int day = 0; day < config.days(); day++) {
+        List<Callable<Void>> batch = new ArrayList<>(config.opsPerDay());
+        for (int i = 0; i < config.opsPerDay(); i++) {
+          batch.add(this::runOneOperation);
+        }
+        executor.invokeAll(batch);
+        checkInvariants(dateProvider.today());
+        dateProvider.advanceDays(1);
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    long elapsedNanos = System.nanoTime() - started;
+    return new Report(config, elapsedNanos, latencies, rejections, unexpectedErrors.sum(),
+        remindersSent.sum(), List.copyOf(violations));
+  }
+
+  private Void runOneOperation() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    Operation op = weightedOps[random.nextInt(weightedOps.length)];
+    String userId = userIds.get(random.nextInt(userIds.size()));
+    long start = System.nanoTime();
+    try {
+      switch (op) {
+        case BORROW -> borrowService.borrow(userId, mediaIds.get(random.nextInt(mediaIds.size())));
+        case RETURN -> {
+          List<Loan> active = loanRepository.findActiveByUser(userId);
+          if (!active.isEmpty()) {
+            borrowService.returnMedia(active.get(random.nextInt(active.size())).getId());
+          }
+        }
+        case SEARCH -> catalogService.search(searchTerms.get(random.nextInt(searchTerms.size())));
+        case PAY_FINE -> {
+          BigDecimal balance = userRepository.findById(userId).orElseThrow().getFineBalance();
+          if (balance.signum() > 0) {
+            fineService.payFine(userId, balance);
+          }
+        }
+        case REMINDERS -> reminderService.sendDailyReminders();
+      }
+    } catch (LibraryException ex) {
+      rejections.get(op).increment();
+    } catch (RuntimeException ex) {
+      unexpectedErrors.increment();
+    } finally {
+      latencies.get(op).record(System.nanoTime() - start);
+    }
+    return null;
+  }
+
+  private void checkInvariants(LocalDate day) {
+    Map<String, Integer> activeByMedia = new HashMap<>();
+    Map<String, Integer> activeByUser = new HashMap<>();
+    for (Loan loan : loanRepository.findAll()) {
+      if (!loan.isReturned()) {
+        activeByMedia.merge(loan.getMediaId(), 1, Integer::sum);
+        activeByUser.merge(loan.getUserId(), 1, Integer::sum);
+      }
+    }
+    for (Media media : mediaRepository.findAll()) {
+      int onLoan = activeByMedia.getOrDefault(media.getId(), 0);
+      if (media.getQuantity() < 0) {
+        violations.add(day + ": negative quantity for " + media.getId());
+      }
+      if (onLoan + media.getQuantity() != config.copiesPerTitle()) {
+        violations.add(
+            "%s: %s has %d on loan and %d on shelf but owns %d copies"
+                .formatted(day, media.getId(), onLoan, media.getQuantity(),
+                    config.copiesPerTitle()));
+      }
+    }
+    for (User user : userRepository.findAll()) {
+      int expected = activeByUser.getOrDefault(user.getId(), 0);
+      if (user.getActiveLoanIds().size() != expected) {
+        violations.add(
+            "%s: %s tracks %d active loans but the repository holds %d"
+                .formatted(day, user.getId(), user.getActiveLoanIds().size(), expected));
+      }
+      if (user.getFineBalance().signum() < 0) {
+        violations.add(day + ": negative fine balance for " + user.getId());
+      }
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    Config config = Config.defaults().withOverrides(args);
+    Report report = new CirculationLoadSimulator(config).run();
+    System.out.println(report.render());
+  }
+
+  /**
+   * Lock-free latency histogram with power-of-two microsecond buckets.
+   */
+  public static final class LatencyHistogram {
+    private static final int BUCKETS = 32;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram() {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets[i] = new LongAdder();
+      }
+    }
+
+    void record(long nanos) {
+      long micros = Math.max(1, nanos / 1_000);
+      int bucket = Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+      buckets[bucket].increment();
+      count.increment();
+      totalNanos.add(nanos);
+      maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long count() {
+      return count.sum();
+    }
+
+    /**
+     * Returns the upper bound, in microseconds, of the bucket holding the given percentile.
+     *
+     * @param percentile value between 0 and 100
+     * @return approximate latency in microseconds
+     */
+    public long percentileMicros(double percentile) {
+      long total = count();
+      if (total == 0) {
+        return 0;
+      }
+      long threshold = (long) Math.ceil(total * percentile / 100.0);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets[i].sum();
+        if (seen >= threshold) {
+          return 1L << (i + 1);
+        }
+      }
+      return 1L << BUCKETS;
+    }
+
+    public double meanMicros() {
+      long total = count();
+      return total == 0 ? 0 : totalNanos.sum() / 1_000.0 / total;
+    }
+
+    public long maxMicros() {
+      return maxNanos.get() / 1_000;
+    }
+  }
+
+  /**
+   * Results of a simulation run.
+   */
+  public record Report(
+      Config config,
+      long elapsedNanos,
+      Map<Operation, LatencyHistogram> latencies,
+      Map<Operation, LongAdder> rejections,
+      long unexpectedErrors,
+      long remindersSent,
+      List<String> violations) {
+
+    public long totalOperations() {
+      return latencies.values().stream().mapToLong(LatencyHistogram::count).sum();
+    }
+
+    public double throughputPerSecond() {
+      return elapsedNanos == 0 ? 0 : totalOperations() / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    /** @return a human-readable summary of the run */
+    public String render() {
+      StringBuilder out = new StringBuilder();
+      out.append("=== Circulation load simulation ===\n");
+      out.append("patrons=%d titles=%d copies=%d days=%d opsPerDay=%d threads=%d%n".formatted(
+          config.patrons(), config.titles(), config.copiesPerTitle(), config.days(),
+          config.opsPerDay(), config.threads()));
+      out.append("operations=%d elapsed=%.2fs throughput=%.0f ops/s%n".formatted(
+          totalOperations(), elapsedNanos / 1_000_000_000.0, throughputPerSecond()));
+      out.append("%-10s %9s %9s %9s %9s %9s %9s %9s%n".formatted(
+          "op", "count", "rejected", "mean(us)", "p50(us)", "p90(us)", "p99(us)", "max(us)"));
+      for (Operation op : Operation.values()) {
+        LatencyHistogram histogram = latencies.get(op);
+        out.append("%-10s %9d %9d %9.1f %9d %9d %9d %9d%n".formatted(
+            op, histogram.count(), rejections.get(op).sum(), histogram.meanMicros(),
+            histogram.percentileMicros(50), histogram.percentileMicros(90),
+            histogram.percentileMicros(99), histogram.maxMicros()));
+      }
+      out.append("reminders sent=%d unexpected errors=%d%n".formatted(
+          remindersSent, unexpectedErrors));
+      out.append("invariant violations=%d%n".formatted(violations.size()));
+      violations.stream().limit(20).forEach(v -> out.append("  ").append(v).append('\n'));
+      return out.toString();
+    }
+  }
+}
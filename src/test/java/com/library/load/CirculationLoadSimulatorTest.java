@@ -0,0 +1,54 @@
+package com.library.load;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.load.CirculationLoadSimulator.Config;
+import com.library.load.CirculationLoadSimulator.Report;
+import org.junit.jupiter.api.Test;
+
+class CirculationLoadSimulatorTest {
+
+  @Test
+  void singleThreadedRunKeepsCirculationInvariants() throws InterruptedException {
+    Config config =
+        Config.defaults()
+            .withOverrides("patrons=20", "titles=50", "days=40", "opsPerDay=100", "threads=1");
+
+    Report report = new CirculationLoadSimulator(config).run();
+
+    assertEquals(40L * 100, report.totalOperations());
+    assertEquals(0, report.unexpectedErrors());
+    assertTrue(report.violations().isEmpty(), () -> String.join("\n", report.violations()));
+  }
+
+  @Test
+  void concurrentRunKeepsCirculationInvariants() throws InterruptedException {
+    Config config =
+        Config.defaults()
+            .withOverrides("patrons=20", "titles=10", "days=20", "opsPerDay=400", "threads=8");
+
+    Report report = new CirculationLoadSimulator(config).run();
+
+    assertEquals(20L * 400, report.totalOperations());
+    assertEquals(0, report.unexpectedErrors());
+    assertTrue(report.violations().isEmpty(), () -> String.join("\n", report.violations()));
+  }
+
+  @Test
+  void reportRendersEveryOperation() throws InterruptedException {
+    Config config =
+        Config.defaults().withOverrides("patrons=5", "titles=10", "days=2", "opsPerDay=20");
+
+    String rendered = new CirculationLoadSimulator(config).run().render();
+
+    for (CirculationLoadSimulator.Operation op : CirculationLoadSimulator.Operation.values()) {
+      assertTrue(rendered.contains(op.name()));
+    }
+  }
+
+  @Test
+  void unknownOverrideIsRejected() {
+    assertThrows(IllegalArgumentException.class,
+        () -> Config.defaults().withOverrides("patrons"));
+  }
+}
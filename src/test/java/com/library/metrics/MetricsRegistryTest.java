@@ -0,0 +1,99 @@
+package com.library.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.FineStrategyFactory;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.service.BorrowService;
+import com.library.service.LibraryException;
+import com.library.support.FakeDateProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MetricsRegistryTest {
+
+  private MetricsRegistry registry;
+
+  @BeforeEach
+  void setUp() {
+    registry = new MetricsRegistry();
+  }
+
+  @Test
+  void sameNameReturnsSameMetric() {
+    assertSame(registry.counter("a"), registry.counter("a"));
+    assertSame(registry.timer("t"), registry.timer("t"));
+    assertSame(registry.histogram("h"), registry.histogram("h"));
+  }
+
+  @Test
+  void counterIgnoresNegativeIncrements() {
+    Counter counter = registry.counter("c");
+    counter.increment();
+    counter.increment(4);
+    counter.increment(-10);
+    assertEquals(5, counter.count());
+  }
+
+  @Test
+  void histogramTracksCountSumMaxAndPercentiles() {
+    Histogram histogram = registry.histogram("sizes");
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.count());
+    assertEquals(5050, histogram.sum());
+    assertEquals(100, histogram.max());
+    assertTrue(histogram.percentile(50) >= 50 && histogram.percentile(50) <= 100);
+    assertEquals(100, histogram.percentile(100));
+  }
+
+  @Test
+  void timerRecordsDurations() {
+    Timer timer = registry.timer("op");
+    timer.record(3, TimeUnit.MILLISECONDS);
+    timer.stop(timer.start());
+    assertEquals(2, timer.count());
+    assertTrue(timer.maxNanos() >= TimeUnit.MILLISECONDS.toNanos(3));
+  }
+
+  @Test
+  void borrowServiceRecordsSuccessesAndRejections() {
+    var users = new InMemoryUserRepository();
+    var media = new InMemoryMediaRepository();
+    users.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    media.save(new Book("b1", "Refactoring", "Fowler", "1"));
+    BorrowService borrowService =
+        new BorrowService(new InMemoryLoanRepository(), media, users,
+            new FakeDateProvider(LocalDate.of(2025, 1, 1)), new FineStrategyFactory(), registry);
+
+    borrowService.borrow("u1", "b1");
+    assertThrows(LibraryException.class, () -> borrowService.borrow("u1", "b1"));
+
+    assertEquals(2, registry.timer("borrow.borrow").count());
+    assertEquals(1, registry.counter("borrow.loans.created").count());
+    assertEquals(1, registry.counter("borrow.rejected").count());
+  }
+
+  @Test
+  void dumpWritesRenderedSnapshot(@TempDir Path dir) throws Exception {
+    registry.counter("borrow.loans.created").increment();
+    Path file = dir.resolve("out/metrics.txt");
+
+    registry.dumpTo(file);
+
+    String dump = Files.readString(file);
+    assertTrue(dump.contains("borrow.loans.created"));
+    assertTrue(dump.contains("Timers"));
+  }
+}
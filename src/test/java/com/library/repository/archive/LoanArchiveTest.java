@@ -0,0 +1,124 @@
+package com.library.repository.archive;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Loan;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.support.FakeDateProvider;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LoanArchiveTest {
+
+  private static final LocalDate TODAY = LocalDate.of(2025, 4, 1);
+
+  private final FakeDateProvider dates = new FakeDateProvider(TODAY);
+  private final InMemoryLoanRepository repository = new InMemoryLoanRepository();
+
+  @Test
+  void oldReturnedLoansMoveToMonthlyPartitionsAndHistorySpansBothTiers(@TempDir Path dir) {
+    repository.save(returned("l1", "u1", LocalDate.of(2025, 1, 10)));
+    repository.save(returned("l2", "u2", LocalDate.of(2025, 1, 20)));
+    repository.save(returned("l3", "u1", LocalDate.of(2025, 2, 5)));
+    repository.save(returned("l4", "u1", LocalDate.of(2025, 3, 20)));
+    Loan open = new Loan(UUID.randomUUID().toString(), "u1", "m9", TODAY.minusDays(3), TODAY);
+    repository.save(open);
+    repository.setArchive(new LoanArchive(dir), dates, 30);
+
+    repository.save(returned("l5", "u1", TODAY));
+    assertEquals(0, repository.getArchive().size(), "saves never write archive files");
+
+    assertEquals(3, repository.archiveDue());
+    assertEquals(0, repository.archiveDue(), "tiering runs once a day");
+
+    LoanArchive archive = repository.getArchive();
+    assertEquals(List.of(YearMonth.of(2025, 1), YearMonth.of(2025, 2)),
+        archive.partitions().stream().map(LoanArchive.Partition::month).toList());
+    assertTrue(Files.exists(dir.resolve("loans-2025-01-001.gz")));
+    assertEquals(3, archive.size());
+    assertEquals(2, repository.getHistory().size());
+    assertEquals(List.of("l1", "l3", "l4", "l5"), ids(repository.findHistoryByUser("u1")));
+    assertEquals(List.of(open), repository.findActiveByUser("u1"));
+    Loan archived = repository.findById("l2").orElseThrow();
+    assertEquals(LocalDate.of(2025, 1, 20), archived.getReturnedDate());
+    assertEquals("m-l2", archived.getMediaId());
+    assertEquals(6, repository.findAll().size());
+    assertEquals(6, new ArrayList<>(repository.findAll()).size());
+
+    LoanArchive reopened = new LoanArchive(dir);
+    assertEquals(3, reopened.size());
+    assertEquals(List.of("l1", "l3"), ids(reopened.findByUser("u1")));
+  }
+
+  @Test
+  void archivedLoansAreNeitherSnapshottedNorRestoredTwice(@TempDir Path dir) {
+    repository.setArchive(new LoanArchive(dir), dates, 30);
+    Loan old = returned("l1", "u1", LocalDate.of(2025, 1, 10));
+    Loan recent = returned("l2", "u1", TODAY);
+    repository.save(old);
+    repository.save(recent);
+    repository.archiveDue();
+
+    assertEquals(List.of("l2"), ids(new ArrayList<>(repository.findAllUnarchived())));
+    assertEquals(Set.of("l1"), repository.getArchive().archivedIds(List.of(old, recent)));
+
+    // A snapshot taken before l1 was archived still holds it.
+    repository.restoreAll(List.of(old, recent));
+    assertEquals(2, repository.findAll().size());
+    assertEquals(List.of("l1", "l2"), ids(repository.findHistoryByUser("u1")));
+  }
+
+  @Test
+  void laterBatchesAddPartitionsAndEarlierViewsStayIntact(@TempDir Path dir) {
+    repository.setArchive(new LoanArchive(dir), dates, 30);
+    repository.save(returned("l1", "u1", LocalDate.of(2025, 1, 10)));
+    repository.archiveDue();
+    repository.save(returned("l2", "u1", LocalDate.of(2025, 1, 25)));
+    assertEquals(1, repository.getArchive().size());
+
+    Collection<Loan> before = repository.findAll();
+    assertEquals(1, repository.archiveReturnedBefore(LocalDate.of(2025, 2, 1)));
+
+    assertEquals(List.of("l2", "l1"), ids(new ArrayList<>(before)));
+    assertEquals(List.of(1, 2), repository.getArchive().partitions().stream()
+        .map(LoanArchive.Partition::sequence).toList());
+    assertEquals(0, repository.getHistory().size());
+    assertEquals(List.of("l1", "l2"), ids(repository.findHistoryByUser("u1")));
+  }
+
+  @Test
+  void damagedPartitionIsReported(@TempDir Path dir) throws Exception {
+    LoanArchive archive = new LoanArchive(dir);
+    List<Loan> loans = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      loans.add(returned("l" + i, "u1", LocalDate.of(2025, 1, 1 + i % 28)));
+    }
+    archive.publish(archive.write(loans));
+    Path file = archive.partitions().get(0).file();
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+
+    IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+        () -> new LoanArchive(dir).findByUser("u1"));
+    assertEquals("Damaged loan archive partition: " + file, ex.getMessage());
+  }
+
+  private static Loan returned(String id, String userId, LocalDate returnedOn) {
+    return Loan.restore(id, userId, "m-" + id, null,
+        returnedOn.minusDays(10), returnedOn.minusDays(3), 0, returnedOn);
+  }
+
+  private static List<String> ids(Collection<Loan> loans) {
+    return loans.stream().map(Loan::getId).toList();
+  }
+}
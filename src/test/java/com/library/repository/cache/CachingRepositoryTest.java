@@ -0,0 +1,103 @@
+package com.library.repository.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class CachingRepositoryTest {
+
+  @Test
+  void repeatedFindByIdIsServedFromCache() {
+    CountingMediaRepository backend = new CountingMediaRepository();
+    backend.save(new Book("b1", "Dune", "Herbert", "1"));
+    CachingMediaRepository repository =
+        new CachingMediaRepository(backend, new SegmentedLruCache<>(10, null));
+
+    repository.findById("b1");
+    repository.findById("b1");
+    repository.findById("b1");
+
+    assertEquals(1, backend.findByIdCalls.get());
+    assertEquals(2, repository.stats().hits());
+    assertEquals(1, repository.stats().misses());
+  }
+
+  @Test
+  void saveAndDeleteAreWrittenThrough() {
+    InMemoryMediaRepository backend = new InMemoryMediaRepository();
+    CachingMediaRepository repository =
+        new CachingMediaRepository(backend, new SegmentedLruCache<>(10, null));
+    Book book = new Book("b1", "Dune", "Herbert", "1");
+
+    repository.save(book);
+    assertTrue(backend.findById("b1").isPresent());
+    assertSame(book, repository.findById("b1").orElseThrow());
+
+    repository.delete("b1");
+    assertTrue(backend.findById("b1").isEmpty());
+    assertTrue(repository.findById("b1").isEmpty());
+  }
+
+  @Test
+  void usernameLookupSharesCachedUser() {
+    InMemoryUserRepository backend = new InMemoryUserRepository();
+    CachingUserRepository repository = new CachingUserRepository(
+        backend, new SegmentedLruCache<>(10, null), new SegmentedLruCache<>(10, null));
+    User alice = new User("u1", "alice", "Alice", UserRole.MEMBER, "pw");
+    repository.save(alice);
+
+    assertSame(alice, repository.findByUsername("alice").orElseThrow());
+    repository.delete("u1");
+    assertTrue(repository.findByUsername("alice").isEmpty());
+    assertTrue(repository.findById("u1").isEmpty());
+  }
+
+  @Test
+  void entriesExpireAfterTimeToLive() {
+    AtomicLong clock = new AtomicLong();
+    SegmentedLruCache<String, String> cache =
+        new SegmentedLruCache<>(10, Duration.ofSeconds(5), clock::get);
+    cache.put("k", "v");
+
+    clock.addAndGet(Duration.ofSeconds(4).toNanos());
+    assertEquals("v", cache.get("k"));
+    clock.addAndGet(Duration.ofSeconds(2).toNanos());
+    assertNull(cache.get("k"));
+    assertEquals(1, cache.stats().expirations());
+  }
+
+  @Test
+  void frequentlyReadEntriesSurviveScans() {
+    SegmentedLruCache<String, String> cache = new SegmentedLruCache<>(10, null);
+    cache.put("hot", "h");
+    cache.get("hot"); // promoted to the protected segment
+
+    for (int i = 0; i < 100; i++) {
+      cache.put("scan" + i, "s");
+    }
+
+    assertEquals("h", cache.get("hot"));
+    assertTrue(cache.size() <= 10);
+    assertTrue(cache.stats().evictions() > 0);
+  }
+
+  private static class CountingMediaRepository extends InMemoryMediaRepository {
+    private final AtomicInteger findByIdCalls = new AtomicInteger();
+
+    @Override
+    public Optional<Media> findById(String id) {
+      findByIdCalls.incrementAndGet();
+      return super.findById(id);
+    }
+  }
+}
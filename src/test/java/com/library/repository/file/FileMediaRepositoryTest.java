@@ -0,0 +1,47 @@
+package com.library.repository.file;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+import com.library.metrics.MetricsRegistry;
+import com.library.metrics.Timer;
+import com.library.repository.MediaSort;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileMediaRepositoryTest {
+
+  @Test
+  void searchesReuseParsedKeysUntilTheFilesChange(@TempDir Path dir) throws Exception {
+    MetricsRegistry metrics = new MetricsRegistry();
+    Timer reads = metrics.timer("repository.media.file.read");
+    FileMediaRepository repository = new FileMediaRepository(dir.resolve("books.txt"), metrics);
+    repository.save(new Book("b1", "Clean Code", "Robert C. Martin", "9780132350884"));
+    repository.save(new CD("c1", "Thriller", "Michael Jackson"));
+
+    assertEquals(List.of("b1"), ids(repository.search("martin")));
+    long readsAfterFirstSearch = reads.count();
+    assertEquals(List.of("c1"), ids(repository.search("thriller")));
+    assertEquals(List.of("c1"), ids(repository.streamSearch("jackson").toList()));
+    assertEquals(List.of("b1", "c1"),
+        ids(repository.searchPage(null, null, 10, MediaSort.ID).items()));
+    assertEquals(readsAfterFirstSearch, reads.count());
+
+    repository.save(new Book("b2", "Refactoring", "Martin Fowler", "9780201485677"));
+    assertEquals(List.of("b1", "b2"), ids(repository.search("martin")));
+
+    // Edits made outside the repository are picked up as well.
+    Files.write(dir.resolve("cds.txt"),
+        List.of("c1;Bad;Michael Jackson;1", "c2;Kind of Blue;Miles Davis;1"));
+    assertEquals(List.of("c2"), ids(repository.search("miles")));
+  }
+
+  private static List<String> ids(List<Media> media) {
+    return media.stream().map(Media::getId).toList();
+  }
+}
@@ -0,0 +1,106 @@
+package com.library.repository.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Loan;
+import com.library.support.IdDictionary;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class HistoricalLoanStoreTest {
+
+  private static final LocalDate DAY = LocalDate.of(2025, 1, 1);
+
+  @Test
+  void savingReturnedLoanMovesItToHistory() {
+    InMemoryLoanRepository repository = new InMemoryLoanRepository();
+    Loan open = new Loan("l1", "u1", "m1", DAY, DAY.plusDays(7));
+    Loan other = new Loan(UUID.randomUUID().toString(), "u1", "m2", "m2-001", DAY, DAY.plusDays(7));
+    repository.save(open);
+    repository.save(other);
+
+    open.markReturned(DAY.plusDays(3));
+    repository.save(open);
+
+    assertEquals(1, repository.getHistory().size());
+    assertEquals(List.of(other), repository.findActiveByUser("u1"));
+    Loan restored = repository.findById("l1").orElseThrow();
+    assertNotSame(open, restored);
+    assertEquals(DAY.plusDays(3), restored.getReturnedDate());
+    assertEquals("m1", restored.getMediaId());
+    assertEquals(2, repository.findAll().size());
+
+    other.renew(DAY.plusDays(14));
+    other.markReturned(DAY.plusDays(10));
+    repository.save(other);
+    List<Loan> history = repository.findHistoryByUser("u1");
+    assertEquals(List.of("l1", other.getId()), history.stream().map(Loan::getId).toList());
+    assertEquals("m2-001", history.get(1).getCopyBarcode());
+    assertEquals(1, history.get(1).getRenewalCount());
+    assertEquals(DAY.plusDays(14), history.get(1).getDueDate());
+
+    repository.delete("l1");
+    assertTrue(repository.findById("l1").isEmpty());
+    assertEquals(1, repository.findAll().size());
+  }
+
+  @Test
+  void resavingReturnedLoanDoesNotDuplicateRow() {
+    HistoricalLoanStore store = new HistoricalLoanStore(new IdDictionary());
+    Loan loan = new Loan("l1", "u1", "m1", DAY, DAY.plusDays(7));
+    loan.markReturned(DAY.plusDays(1));
+    store.append(loan);
+    store.append(loan);
+
+    assertEquals(1, store.size());
+    assertEquals(1, store.findByMedia("m1").size());
+    assertThrows(IllegalArgumentException.class,
+        () -> store.append(new Loan("l2", "u1", "m1", DAY, DAY.plusDays(7))));
+  }
+
+  @Test
+  void growingTheIdTableKeepsOneSlotPerRow() {
+    HistoricalLoanStore store = new HistoricalLoanStore(new IdDictionary());
+    // Crosses the ID table's resize threshold twice (at 1,025 and 2,049 rows).
+    int loans = 3_000;
+    for (int i = 0; i < loans; i++) {
+      Loan loan = new Loan("l" + i, "u1", "m1", DAY, DAY.plusDays(7));
+      loan.markReturned(DAY.plusDays(1));
+      store.append(loan);
+    }
+
+    assertEquals(loans, store.size());
+    assertEquals(loans, store.tableEntries());
+    for (int i = 0; i < loans; i++) {
+      assertEquals("l" + i, store.findById("l" + i).orElseThrow().getId());
+    }
+  }
+
+  @Test
+  void rowsStayCompactAtScale() {
+    IdDictionary ids = new IdDictionary();
+    HistoricalLoanStore store = new HistoricalLoanStore(ids);
+    int loans = 200_000;
+    List<String> sampleIds = new ArrayList<>();
+    for (int i = 0; i < loans; i++) {
+      String id = UUID.randomUUID().toString();
+      if (i % 50_000 == 0) {
+        sampleIds.add(id);
+      }
+      Loan loan = new Loan(id, "u" + (i % 5_000), "m" + (i % 20_000), DAY, DAY.plusDays(28));
+      loan.markReturned(DAY.plusDays(i % 40));
+      store.append(loan);
+    }
+
+    assertEquals(loans, store.size());
+    // Columns, ID table and per-user/per-media row lists: well under 100 bytes a row.
+    assertTrue(store.estimatedBytes() / loans < 100, "bytes per row: " + store.estimatedBytes() / loans);
+    for (String id : sampleIds) {
+      assertEquals(id, store.findById(id).orElseThrow().getId());
+    }
+    assertEquals(loans / 5_000, store.findByUser("u42").size());
+  }
+}
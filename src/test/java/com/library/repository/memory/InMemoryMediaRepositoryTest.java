@@ -0,0 +1,235 @@
+package com.library.repository.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+import com.library.repository.MediaSort;
+import com.library.repository.Page;
+import com.library.search.Facet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class InMemoryMediaRepositoryTest {
+
+  @Test
+  void searchMatchesTitleCreatorAndIsbnIgnoringCase() {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    repository.save(new Book("b1", "Clean Code", "Robert C. Martin", "9780132350884"));
+    repository.save(new CD("c1", "Thriller", "Michael Jackson"));
+
+    assertEquals(List.of("b1"), ids(repository.search("CLEAN")));
+    assertEquals(List.of("b1"), ids(repository.search("martin")));
+    assertEquals(List.of("b1"), ids(repository.search("350884")));
+    assertEquals(List.of("c1"), ids(repository.search("jackson")));
+    assertTrue(repository.search("nothing like this").isEmpty());
+
+    repository.delete("b1");
+    assertTrue(repository.search("clean").isEmpty());
+  }
+
+  @Test
+  void writesDuringTheIndexBuildDoNotWaitAndAreReplayed() throws Exception {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    CountDownLatch release = new CountDownLatch(1);
+    Book slow = new Book("b1", "Slow Book", "Author", "9781") {
+      @Override
+      public String getAuthor() {
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        return super.getAuthor();
+      }
+    };
+    ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      CompletableFuture<Void> ready = repository.load(
+          List.of(slow, new CD("c1", "Thriller", "Michael Jackson"),
+              new CD("c2", "Bad", "Michael Jackson")), pool);
+
+      // None of these may wait for the blocked build.
+      CompletableFuture.runAsync(() -> {
+        repository.save(new Book("b2", "Dune", "Frank Herbert", "9780441172719"));
+        repository.save(new CD("c1", "Off the Wall", "Michael Jackson"));
+        repository.delete("c2");
+      }).get(5, TimeUnit.SECONDS);
+      assertEquals("Off the Wall", repository.findById("c1").orElseThrow().getTitle());
+      assertTrue(repository.findById("c2").isEmpty());
+
+      release.countDown();
+      ready.get(10, TimeUnit.SECONDS);
+      assertEquals(List.of("b2"), ids(repository.search("herbert")));
+      assertEquals(List.of("c1"), ids(repository.search("jackson")));
+      assertTrue(repository.search("thriller").isEmpty());
+      assertEquals(List.of("b1", "b2", "c1"),
+          ids(repository.searchPage(null, null, 10, MediaSort.ID).items()));
+      assertEquals(1, repository.countByFacets(Map.of(Facet.CREATOR, "Michael Jackson")));
+    } finally {
+      release.countDown();
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void failedIndexBuildIsRebuiltFromTheStoredItems() throws Exception {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    AtomicInteger titleReads = new AtomicInteger();
+    Book flaky = new Book("b1", "Clean Code", "Robert C. Martin", "9780132350884") {
+      @Override
+      public String getTitle() {
+        if (titleReads.getAndIncrement() == 0) {
+          throw new IllegalStateException("first read fails");
+        }
+        return super.getTitle();
+      }
+    };
+    ForkJoinPool pool = new ForkJoinPool(1);
+    try {
+      repository.load(List.of(flaky), pool).get(10, TimeUnit.SECONDS);
+    } finally {
+      pool.shutdown();
+    }
+
+    assertTrue(repository.isSearchReady());
+    assertEquals(List.of("b1"), ids(repository.search("clean")));
+    assertEquals(List.of("b1"), ids(repository.searchPage("clean", null, 5, MediaSort.TITLE)
+        .items()));
+  }
+
+  @Test
+  void concurrentSavesKeepOneIndexEntryPerItem() throws Exception {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    int threads = 4;
+    int items = 200;
+    CountDownLatch start = new CountDownLatch(1);
+    List<CompletableFuture<Void>> writers = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      writers.add(CompletableFuture.runAsync(() -> {
+        try {
+          start.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        // Every thread renames every item, so writes to the same item race.
+        for (int i = 0; i < items; i++) {
+          repository.save(new Book("b" + i, "Title " + i + " v" + thread, "Author", "978" + i));
+        }
+      }));
+    }
+    start.countDown();
+    CompletableFuture.allOf(writers.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+    List<Media> all = repository.streamSearch(null).toList();
+    assertEquals(items, all.size());
+    for (Media media : all) {
+      assertSame(media, repository.findById(media.getId()).orElseThrow());
+    }
+    assertEquals(items, repository.searchPage("title", null, items * threads, MediaSort.TITLE)
+        .items().size());
+  }
+
+  @Test
+  void searchUsesKeysBuiltOnSave() {
+    AtomicInteger titleReads = new AtomicInteger();
+    Book book = new Book("b1", "Clean Code", "Robert C. Martin", "9780132350884") {
+      @Override
+      public String getTitle() {
+        titleReads.incrementAndGet();
+        return super.getTitle();
+      }
+    };
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    repository.save(book);
+    int readsOnSave = titleReads.get();
+
+    for (int i = 0; i < 100; i++) {
+      assertEquals(List.of("b1"), ids(repository.search("clean")));
+      assertTrue(repository.search("No Such Title").isEmpty());
+    }
+
+    assertEquals(readsOnSave, titleReads.get(), "queries must not read the item fields");
+    repository.save(new Book("b1", "Refactoring", "Martin Fowler", "9780201485677"));
+    assertEquals(List.of("b1"), ids(repository.search("refactoring")));
+    assertTrue(repository.search("clean").isEmpty());
+  }
+
+  @Test
+  void pagesWalkMatchesInTitleOrderWithoutGapsOrRepeats() {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    for (int i = 0; i < 25; i++) {
+      repository.save(new Book("b" + i, String.format("Book %02d", i), "Author", "isbn-" + i));
+    }
+    repository.save(new CD("c1", "Album", "Band"));
+
+    List<String> titles = new ArrayList<>();
+    String cursor = null;
+    int pages = 0;
+    do {
+      Page<Media> page = repository.searchPage("book", cursor, 10, MediaSort.TITLE);
+      page.items().forEach(media -> titles.add(media.getTitle()));
+      cursor = page.nextCursor();
+      pages++;
+      if (pages == 1) {
+        // Items added before the cursor position must not shift later pages.
+        repository.save(new Book("b-early", "Book 00a", "Author", "isbn-x"));
+      }
+    } while (cursor != null);
+
+    assertEquals(3, pages);
+    assertEquals(25, titles.size());
+    assertEquals("Book 00", titles.get(0));
+    assertEquals("Book 24", titles.get(24));
+    assertEquals(titles.stream().sorted().toList(), titles);
+  }
+
+  @Test
+  void pageRejectsCursorFromAnotherSortOrder() {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    repository.save(new Book("b1", "A", "X", "1"));
+    repository.save(new Book("b2", "B", "X", "2"));
+    Page<Media> first = repository.searchPage("", null, 1, MediaSort.ID);
+
+    assertTrue(first.hasNext());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> repository.searchPage("", first.nextCursor(), 1, MediaSort.TITLE));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> repository.searchPage("", "not a cursor!", 1, MediaSort.ID));
+    assertEquals(List.of("b2"),
+        ids(repository.searchPage("", first.nextCursor(), 1, MediaSort.ID).items()));
+  }
+
+  @Test
+  void streamSearchOnlyVisitsWhatIsConsumed() {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    for (int i = 0; i < 1_000; i++) {
+      repository.save(new Book("b" + i, "Title " + i, "Author", "isbn-" + i));
+    }
+    AtomicInteger seen = new AtomicInteger();
+
+    List<Media> firstThree = repository.streamSearch("title")
+        .peek(media -> seen.incrementAndGet())
+        .limit(3)
+        .toList();
+
+    assertEquals(3, firstThree.size());
+    assertEquals(3, seen.get());
+  }
+
+  private static List<String> ids(List<Media> media) {
+    return media.stream().map(Media::getId).sorted().toList();
+  }
+}
@@ -0,0 +1,42 @@
+package com.library.repository.memory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.library.domain.Book;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/** Allocation check for in-memory search; run with {@code mvn -Pbenchmark test}. */
+@Tag("benchmark")
+class InMemoryMediaSearchBenchmarkTest {
+
+  @Test
+  void searchAllocationDoesNotGrowWithCatalogSize() {
+    assumeTrue(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean);
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported());
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    for (int i = 0; i < 20_000; i++) {
+      repository.save(new Book("b" + i, "Title number " + i, "Author " + i, "isbn-" + i));
+    }
+    for (int i = 0; i < 200; i++) {
+      repository.search("No Such Title");
+    }
+
+    int queries = 100;
+    long threadId = Thread.currentThread().getId();
+    long before = threads.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < queries; i++) {
+      repository.search("No Such Title");
+    }
+    long perQuery = (threads.getThreadAllocatedBytes(threadId) - before) / queries;
+
+    // Lower-casing three fields of 20k items per query used to allocate megabytes.
+    assertTrue(perQuery < 1_024, "bytes allocated per query: " + perQuery);
+  }
+}
@@ -0,0 +1,113 @@
+package com.library.repository.timing;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.metrics.MetricsRegistry;
+import com.library.repository.MediaRepository;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TimedRepositoryTest {
+
+  private MetricsRegistry metrics;
+
+  @BeforeEach
+  void setUp() {
+    metrics = new MetricsRegistry();
+  }
+
+  @Test
+  void mediaCallsAreCountedWithResultSizes() {
+    MediaRepository repository = new TimedMediaRepository(
+        new InMemoryMediaRepository(), new RepositoryCallRecorder(metrics, "media", 0));
+    repository.save(new Book("b1", "Dune", "Herbert", "1"));
+    repository.save(new Book("b2", "Emma", "Austen", "2"));
+
+    repository.findById("b1");
+    repository.findById("missing");
+    repository.search("dune");
+
+    assertEquals(2, metrics.timer("repository.media.save").count());
+    assertEquals(2, metrics.timer("repository.media.findById").count());
+    assertEquals(1, metrics.histogram("repository.media.findById.size").sum());
+    assertEquals(1, metrics.histogram("repository.media.search.size").max());
+  }
+
+  @Test
+  void streamSearchIsTimedUntilConsumedOrClosed() {
+    MediaRepository repository = new TimedMediaRepository(
+        new InMemoryMediaRepository(), new RepositoryCallRecorder(metrics, "media", 0));
+    repository.save(new Book("b1", "Dune", "Herbert", "1"));
+    repository.save(new Book("b2", "Dune Messiah", "Herbert", "2"));
+
+    Stream<Media> stream = repository.streamSearch("dune");
+    assertEquals(0, metrics.timer("repository.media.streamSearch").count());
+    assertEquals(2, stream.count());
+    assertEquals(1, metrics.timer("repository.media.streamSearch").count());
+    assertEquals(2, metrics.histogram("repository.media.streamSearch.size").max());
+
+    try (Stream<Media> early = repository.streamSearch("herbert")) {
+      assertTrue(early.findFirst().isPresent());
+    }
+    assertEquals(2, metrics.timer("repository.media.streamSearch").count());
+    assertEquals(3, metrics.histogram("repository.media.streamSearch.size").sum());
+  }
+
+  @Test
+  void userAndLoanDecoratorsDelegate() {
+    var users = new TimedUserRepository(
+        new InMemoryUserRepository(), new RepositoryCallRecorder(metrics, "user", 0));
+    var loans = new TimedLoanRepository(
+        new InMemoryLoanRepository(), new RepositoryCallRecorder(metrics, "loan", 0));
+    users.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    loans.save(new Loan("l1", "u1", "b1", LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 29)));
+
+    assertTrue(users.findByUsername("alice").isPresent());
+    assertEquals(1, loans.findActiveByUser("u1").size());
+    assertTrue(loans.findActiveByMedia("b1").isPresent());
+
+    assertEquals(1, metrics.timer("repository.user.findByUsername").count());
+    assertEquals(1, metrics.histogram("repository.loan.findActiveByUser.size").sum());
+  }
+
+  @Test
+  void slowCallsAreFlagged() {
+    MediaRepository slow = new SlowMediaRepository();
+    MediaRepository repository =
+        new TimedMediaRepository(slow, new RepositoryCallRecorder(metrics, "media", 1));
+
+    repository.findById("b1");
+
+    assertEquals(1, metrics.counter("repository.media.findById.slow").count());
+  }
+
+  private static class SlowMediaRepository extends InMemoryMediaRepository {
+    @Override
+    public Optional<Media> findById(String id) {
+      try {
+        Thread.sleep(5);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return super.findById(id);
+    }
+
+    @Override
+    public Collection<Media> findAll() {
+      return List.of();
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.library.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.FineStrategyFactory;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.service.BorrowService;
+import com.library.support.FakeDateProvider;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class FacetIndexTest {
+
+  private InMemoryMediaRepository mediaRepository;
+  private BorrowService borrowService;
+
+  @BeforeEach
+  void setUp() {
+    mediaRepository = new InMemoryMediaRepository();
+    InMemoryUserRepository userRepository = new InMemoryUserRepository();
+    borrowService =
+        new BorrowService(
+            new InMemoryLoanRepository(),
+            mediaRepository,
+            userRepository,
+            new FakeDateProvider(LocalDate.of(2025, 1, 1)),
+            new FineStrategyFactory());
+    userRepository.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    mediaRepository.save(new Book("b1", "The Hobbit", "Tolkien", "1"));
+    mediaRepository.save(new Book("b2", "The Silmarillion", "Tolkien", "2"));
+    mediaRepository.save(new Book("b3", "Dune", "Herbert", "3"));
+    mediaRepository.save(new CD("c1", "Thriller", "Michael Jackson"));
+  }
+
+  @Test
+  void countsAnyCombinationOfFacets() {
+    assertEquals(4, mediaRepository.countByFacets(Map.of()));
+    assertEquals(3, mediaRepository.countByFacets(select(Facet.TYPE, "BOOK")));
+    assertEquals(2, mediaRepository.countByFacets(
+        select(Facet.TYPE, "BOOK", Facet.CREATOR, "Tolkien", Facet.AVAILABILITY, Facet.AVAILABLE)));
+    assertEquals(3, mediaRepository.countByFacets(select(Facet.LETTER, "T")));
+    assertEquals(Map.of("Herbert", 1L, "Tolkien", 2L),
+        mediaRepository.facetCounts(Facet.CREATOR, select(Facet.TYPE, "BOOK")));
+    assertEquals(Map.of("D", 1L, "T", 3L), mediaRepository.facetCounts(Facet.LETTER, Map.of()));
+  }
+
+  @Test
+  void borrowingAndReturningMoveItemsBetweenAvailabilityBuckets() {
+    Map<Facet, String> availableTolkien =
+        select(Facet.CREATOR, "Tolkien", Facet.AVAILABILITY, Facet.AVAILABLE);
+
+    Loan loan = borrowService.borrow("u1", "b1");
+
+    assertEquals(1, mediaRepository.countByFacets(availableTolkien));
+    assertEquals(List.of("b1"), mediaRepository
+        .findByFacets(select(Facet.AVAILABILITY, Facet.ON_LOAN)).stream()
+        .map(Media::getId)
+        .toList());
+
+    borrowService.returnMedia(loan.getId());
+
+    assertEquals(2, mediaRepository.countByFacets(availableTolkien));
+    assertEquals(0, mediaRepository.countByFacets(select(Facet.AVAILABILITY, Facet.ON_LOAN)));
+  }
+
+  @Test
+  void editsAndDeletesUpdateCounts() {
+    mediaRepository.save(new Book("b3", "Dune Messiah", "Frank Herbert", "3"));
+    mediaRepository.delete("c1");
+
+    assertEquals(Map.of("Frank Herbert", 1L, "Tolkien", 2L),
+        mediaRepository.facetCounts(Facet.CREATOR, Map.of()));
+    assertEquals(0, mediaRepository.countByFacets(select(Facet.TYPE, "CD")));
+    assertEquals(3, mediaRepository.countByFacets(Map.of()));
+  }
+
+  private static Map<Facet, String> select(Object... pairs) {
+    Map<Facet, String> selection = new EnumMap<>(Facet.class);
+    for (int i = 0; i < pairs.length; i += 2) {
+      selection.put((Facet) pairs[i], (String) pairs[i + 1]);
+    }
+    return selection;
+  }
+}
@@ -0,0 +1,42 @@
+package com.library.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Media;
+import com.library.repository.memory.InMemoryMediaRepository;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class FuzzyIndexTest {
+
+  @Test
+  void misspelledAuthorFindsBooksThroughRepository() {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    Media hobbit = new Book("b1", "The Hobbit", "J.R.R. Tolkien", "111");
+    Media dune = new Book("b2", "Dune", "Frank Herbert", "222");
+    Media cd = new CD("c1", "Abbey Road", "The Beatles");
+    repository.save(hobbit);
+    repository.save(dune);
+    repository.save(cd);
+
+    assertTrue(repository.search("Tolkein").isEmpty());
+    assertEquals(List.of(hobbit), repository.searchFuzzy("Tolkein", 2, 10));
+    assertEquals(List.of(hobbit), repository.searchFuzzy("hobit tolkien", 2, 10));
+    assertEquals(List.of(cd), repository.searchFuzzy("Beatels", 2, 10));
+    assertTrue(repository.searchFuzzy("Tolkein", 1, 10).isEmpty(), "two edits needed");
+
+    repository.delete("b1");
+    assertTrue(repository.searchFuzzy("Tolkein", 2, 10).isEmpty());
+  }
+
+  @Test
+  void shortWordsMustMatchExactly() {
+    FuzzyIndex index = new FuzzyIndex();
+    index.index(new Book("b1", "It", "Stephen King", "1"));
+
+    assertEquals(List.of("b1"), index.search("it", 2, 10));
+    assertTrue(index.search("at", 2, 10).isEmpty());
+  }
+}
@@ -0,0 +1,72 @@
+package com.library.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.Media;
+import com.library.repository.memory.InMemoryMediaRepository;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class IncrementalSearchTest {
+
+  private InMemoryMediaRepository repository;
+  private AtomicInteger sourceQueries;
+
+  @BeforeEach
+  void setUp() {
+    repository = new InMemoryMediaRepository();
+    repository.save(new Book("b1", "The Hobbit", "Tolkien", "1"));
+    repository.save(new Book("b2", "The Silmarillion", "Tolkien", "2"));
+    repository.save(new Book("b3", "Dune", "Herbert", "3"));
+    repository.save(new Book("b4", "Tolstoy Stories", "Leo Tolstoy", "4"));
+    sourceQueries = new AtomicInteger();
+  }
+
+  @Test
+  void extendingTheQueryRefinesWithoutAskingTheSource() {
+    IncrementalSearch session = session(100);
+
+    assertEquals(List.of("b1", "b2", "b4"), ids(session.search("tol", media -> true, 10)));
+    IncrementalSearch.Result tolk = session.search("Tolk", media -> true, 10);
+    IncrementalSearch.Result tolkien = session.search("tolkien", media -> true, 10);
+
+    assertTrue(tolk.refined());
+    assertEquals(List.of("b1", "b2"), ids(tolk));
+    assertEquals(List.of("b1", "b2"), ids(tolkien));
+    assertEquals(1, sourceQueries.get());
+
+    assertEquals(List.of("b3"), ids(session.search("dune", media -> true, 10)));
+    assertEquals(2, sourceQueries.get(), "an unrelated query goes back to the source");
+  }
+
+  @Test
+  void capsResultsAndOnlyRemembersSmallResultSets() {
+    IncrementalSearch session = session(2);
+
+    IncrementalSearch.Result all = session.search("t", media -> true, 1);
+    assertEquals(1, all.items().size());
+    assertTrue(all.truncated());
+
+    IncrementalSearch.Result tol = session.search("tol", media -> !media.getId().equals("b1"), 5);
+    assertFalse(tol.refined(), "too many matches for \"t\" to refine from");
+    assertEquals(List.of("b2", "b4"), ids(tol));
+    assertFalse(tol.truncated());
+    assertEquals(2, sourceQueries.get());
+  }
+
+  private IncrementalSearch session(int refineLimit) {
+    return new IncrementalSearch(
+        query -> {
+          sourceQueries.incrementAndGet();
+          return repository.streamSearch(query);
+        },
+        refineLimit);
+  }
+
+  private static List<String> ids(IncrementalSearch.Result result) {
+    return result.items().stream().map(Media::getId).toList();
+  }
+}
@@ -0,0 +1,53 @@
+package com.library.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+/** Lookup latency on a million-term dictionary; run with {@code mvn -Pbenchmark test}. */
+@Tag("benchmark")
+class TermTrieBenchmarkTest {
+
+  @Test
+  void fuzzyLookupOnLargeDictionaryStaysFast() {
+    Random random = new Random(42);
+    TermTrie tree = new TermTrie();
+    List<String> queries = new ArrayList<>();
+    while (tree.size() < 1_000_000) {
+      String term = randomWord(random);
+      tree.add(term);
+      if (tree.size() % 10_000 == 0) {
+        queries.add(typo(term, random));
+      }
+    }
+    for (String query : queries) {
+      tree.search(query, 2, 20); // warm up
+    }
+
+    long start = System.nanoTime();
+    for (String query : queries) {
+      assertFalse(tree.search(query, 2, 20).isEmpty(), query);
+    }
+    long perQueryMillis = (System.nanoTime() - start) / 1_000_000 / queries.size();
+
+    assertTrue(perQueryMillis < 20, "average fuzzy lookup took " + perQueryMillis + " ms");
+  }
+
+  private static String randomWord(Random random) {
+    int length = 4 + random.nextInt(8);
+    StringBuilder word = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      word.append((char) ('a' + random.nextInt(26)));
+    }
+    return word.toString();
+  }
+
+  private static String typo(String word, Random random) {
+    int at = random.nextInt(word.length());
+    return word.substring(0, at) + (char) ('a' + random.nextInt(26)) + word.substring(at + 1);
+  }
+}
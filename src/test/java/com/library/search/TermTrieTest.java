@@ -0,0 +1,129 @@
+package com.library.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TermTrieTest {
+
+  @Test
+  void trieSearchAgreesWithBruteForce() {
+    Random random = new Random(7);
+    TermTrie tree = new TermTrie();
+    List<String> terms = new ArrayList<>();
+    for (int i = 0; i < 5_000; i++) {
+      String term = randomWord(random, 26);
+      if (tree.add(term)) {
+        terms.add(term);
+      }
+    }
+    for (int q = 0; q < 50; q++) {
+      String query = randomWord(random, 26);
+      assertEquals(bruteForce(terms, query, 2), search(tree, query, 2), query);
+    }
+  }
+
+  @Test
+  void prunedSubtreesHoldNoMatchesAtAnyBound() {
+    // A four-letter alphabet makes near matches common, so every bound prunes and keeps
+    // subtrees right at its edge.
+    Random random = new Random(11);
+    TermTrie tree = new TermTrie();
+    List<String> terms = new ArrayList<>();
+    for (int i = 0; i < 3_000; i++) {
+      String term = randomWord(random, 4);
+      if (tree.add(term)) {
+        terms.add(term);
+      }
+    }
+    for (int bound = 0; bound <= 3; bound++) {
+      for (int q = 0; q < 30; q++) {
+        String query = randomWord(random, 4);
+        assertEquals(bruteForce(terms, query, bound), search(tree, query, bound),
+            query + " within " + bound);
+      }
+    }
+  }
+
+  @Test
+  void termsExactlyAtTheBoundSurvivePruning() {
+    TermTrie tree = new TermTrie();
+    List.of("kitten", "mitten", "kittens", "smitten", "zzkitten", "zzzkitten", "kittenzz",
+        "kittenzzz", "kit", "ki", "sitting", "xyz").forEach(tree::add);
+
+    // "zz" and "zzz" prefixes cost two and three edits before the shared suffix; the band
+    // limits lengths to within two of the query.
+    assertEquals(
+        List.of(new TermTrie.Match("kitten", 0), new TermTrie.Match("kittens", 1),
+            new TermTrie.Match("mitten", 1), new TermTrie.Match("kittenzz", 2),
+            new TermTrie.Match("smitten", 2), new TermTrie.Match("zzkitten", 2)),
+        tree.search("kitten", 2, 20));
+    assertEquals(List.of(new TermTrie.Match("kitten", 0)), tree.search("kitten", 0, 20));
+    assertEquals(List.of(new TermTrie.Match("ki", 0), new TermTrie.Match("kit", 1)),
+        tree.search("ki", 1, 20));
+  }
+
+  @Test
+  void resultLimitKeepsNearestTerms() {
+    TermTrie tree = new TermTrie();
+    List.of("book", "books", "boot", "look", "cook", "bookend").forEach(tree::add);
+
+    List<TermTrie.Match> matches = tree.search("book", 2, 2);
+
+    assertEquals(2, matches.size());
+    assertEquals(new TermTrie.Match("book", 0), matches.get(0));
+    assertEquals(1, matches.get(1).distance());
+  }
+
+  @Test
+  void removedTermsNoLongerMatch() {
+    TermTrie tree = new TermTrie();
+    tree.add("tolkien");
+    tree.add("tolkiens");
+
+    assertTrue(tree.remove("tolkien"));
+    assertFalse(tree.remove("tolkien"));
+
+    assertEquals(List.of(new TermTrie.Match("tolkiens", 3)), tree.search("tolkein", 3, 10));
+    assertEquals(1, tree.size());
+  }
+
+  private static List<String> search(TermTrie tree, String query, int bound) {
+    return tree.search(query, bound, Integer.MAX_VALUE).stream()
+        .map(TermTrie.Match::term)
+        .sorted()
+        .toList();
+  }
+
+  private static List<String> bruteForce(List<String> terms, String query, int bound) {
+    return terms.stream().filter(term -> levenshtein(term, query) <= bound).sorted().toList();
+  }
+
+  private static String randomWord(Random random, int letters) {
+    int length = 4 + random.nextInt(8);
+    StringBuilder word = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      word.append((char) ('a' + random.nextInt(letters)));
+    }
+    return word.toString();
+  }
+
+  private static int levenshtein(String a, String b) {
+    int[][] table = new int[a.length() + 1][b.length() + 1];
+    for (int i = 0; i <= a.length(); i++) {
+      for (int j = 0; j <= b.length(); j++) {
+        if (i == 0 || j == 0) {
+          table[i][j] = i + j;
+        } else {
+          int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+          table[i][j] = Math.min(table[i - 1][j - 1] + cost,
+              Math.min(table[i - 1][j], table[i][j - 1]) + 1);
+        }
+      }
+    }
+    return table[a.length()][b.length()];
+  }
+}
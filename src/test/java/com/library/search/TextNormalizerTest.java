@@ -0,0 +1,59 @@
+package com.library.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.repository.memory.InMemoryMediaRepository;
+import java.util.Locale;
+import org.junit.jupiter.api.Test;
+
+class TextNormalizerTest {
+
+  @Test
+  void foldsLatinDiacriticsLigaturesAndCase() {
+    assertEquals("creme brulee", TextNormalizer.normalize("Crème Brûlée"));
+    assertEquals("strasse", TextNormalizer.normalize("STRASSE"));
+    assertEquals("office", TextNormalizer.normalize("Oﬃce"));
+    assertEquals("istanbul", TextNormalizer.normalize("İstanbul"));
+    assertEquals(TextNormalizer.normalize("ΟΔΟΣ"), TextNormalizer.normalize("οδος"));
+  }
+
+  @Test
+  void foldsArabicVariantsAndDiacritics() {
+    // Hamza forms, harakat, tatweel and teh marbuta.
+    assertEquals(TextNormalizer.normalize("احمد"), TextNormalizer.normalize("أَحْمَد"));
+    assertEquals(TextNormalizer.normalize("اسلام"), TextNormalizer.normalize("إســلام"));
+    assertEquals(TextNormalizer.normalize("مكتبه"), TextNormalizer.normalize("مكتبة"));
+    assertEquals(TextNormalizer.normalize("علي"), TextNormalizer.normalize("على"));
+    assertEquals("2025", TextNormalizer.normalize("٢٠٢٥"));
+  }
+
+  @Test
+  void foldsHebrewNiqqudAndFinalForms() {
+    assertEquals(TextNormalizer.normalize("שלום"), TextNormalizer.normalize("שָׁלוֹם"));
+    assertEquals("מ", TextNormalizer.normalize("ם"));
+  }
+
+  @Test
+  void resultDoesNotDependOnDefaultLocale() {
+    Locale original = Locale.getDefault();
+    try {
+      Locale.setDefault(Locale.forLanguageTag("tr"));
+      assertEquals("title", TextNormalizer.normalize("TITLE"));
+      assertEquals("istanbul", TextNormalizer.normalize("ISTANBUL"));
+    } finally {
+      Locale.setDefault(original);
+    }
+  }
+
+  @Test
+  void repositorySearchMatchesAcrossScriptsVariants() {
+    InMemoryMediaRepository repository = new InMemoryMediaRepository();
+    repository.save(new Book("b1", "Les Misérables", "Victor Hugo", "1"));
+    repository.save(new Book("b2", "مقدمة ابن خلدون", "ابن خلدون", "2"));
+
+    assertEquals(1, repository.search("miserables").size());
+    assertEquals(1, repository.search("MISÉRABLES").size());
+    assertEquals(1, repository.search("مقدمه").size());
+  }
+}
@@ -2,13 +2,16 @@ package com.library.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.library.circulation.CirculationLog;
 import com.library.domain.Book;
 import com.library.domain.CD;
 import com.library.domain.Loan;
 import com.library.domain.Media;
+import com.library.domain.MediaType;
 import com.library.domain.User;
 import com.library.domain.UserRole;
 import com.library.domain.FineStrategyFactory;
+import com.library.metrics.MetricsRegistry;
 import com.library.repository.LoanRepository;
 import com.library.repository.MediaRepository;
 import com.library.repository.UserRepository;
@@ -19,6 +22,7 @@ import com.library.support.DateProvider;
 import com.library.support.FakeDateProvider;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -80,9 +84,15 @@ class BorrowServiceTest {
     assertEquals(LocalDate.of(2025, 1, 8), loan.getDueDate());
   }
 
+  /** Starts the log over from records the test wrote straight to the repositories. */
+  private void resetCirculationLog() {
+    borrowService.getCirculationLog().reset(loanRepository.findAll(), userRepository.findAll());
+  }
+
   @Test
   void borrowBlockedWhenUserHasOutstandingFine() {
     user.addFine(BigDecimal.TEN);
+    resetCirculationLog();
     assertThrows(LibraryException.class, () -> borrowService.borrow(user.getId(), book.getId()));
   }
 
@@ -91,6 +101,7 @@ class BorrowServiceTest {
     Loan existing =
         new Loan("l1", user.getId(), book.getId(), LocalDate.of(2024, 12, 1), LocalDate.of(2024, 12, 29));
     loanRepository.save(existing);
+    resetCirculationLog();
     assertThrows(LibraryException.class, () -> borrowService.borrow(user.getId(), cd.getId()));
   }
 
@@ -102,6 +113,23 @@ class BorrowServiceTest {
     assertEquals(BigDecimal.valueOf(20), fine); // 2 days overdue * 10
     assertTrue(book.isAvailable());
   }
+  @Test
+  void returnAllReturnsEveryLoanAndSumsFines() {
+    Loan bookLoan = borrowService.borrow(user.getId(), book.getId());
+    Loan cdLoan = borrowService.borrow(user.getId(), cd.getId());
+    ((FakeDateProvider) dateProvider).advanceDays(30);
+
+    BigDecimal fines = borrowService.returnAll(List.of(bookLoan.getId(), cdLoan.getId()));
+
+    FineStrategyFactory fineStrategies = new FineStrategyFactory();
+    BigDecimal expected = fineStrategies.forType(MediaType.BOOK).calculateFine(2)
+        .add(fineStrategies.forType(MediaType.CD).calculateFine(23));
+    assertEquals(0, expected.compareTo(fines));
+    assertTrue(book.isAvailable());
+    assertTrue(cd.isAvailable());
+    assertTrue(loanRepository.findActiveByUser(user.getId()).isEmpty());
+  }
+
   @Test
   void borrowFailsWhenMediaAlreadyLoanedOut() {
       // borrow once
@@ -161,6 +189,48 @@ class BorrowServiceTest {
           () -> borrowService.returnMedia(loan.getId()));
   }
 
-}
+  @Test
+  void renewExtendsDueDateAndMovesDueDateIndex() {
+    Loan loan = borrowService.borrow(user.getId(), cd.getId());
+    borrowService.renew(loan.getId());
 
+    assertEquals(LocalDate.of(2025, 1, 15), loan.getDueDate());
+    assertEquals(1, loan.getRenewalCount());
+    assertTrue(loanRepository.findActiveDueBefore(LocalDate.of(2025, 1, 10)).isEmpty());
+    assertEquals(1, loanRepository.findActiveDueBefore(LocalDate.of(2025, 1, 16)).size());
+  }
+
+  @Test
+  void renewRejectedAtLimitWhenOverdueOrWhenHoldsWait() {
+    Loan loan = borrowService.borrow(user.getId(), book.getId());
+    for (int i = 0; i < BorrowService.MAX_RENEWALS; i++) {
+      borrowService.renew(loan.getId());
+    }
+    assertThrows(LibraryException.class, () -> borrowService.renew(loan.getId()));
+
+    Loan cdLoan = borrowService.borrow(user.getId(), cd.getId());
+    HoldService holdService =
+        new HoldService(userRepository, mediaRepository, dateProvider, null);
+    BorrowService withHolds = new BorrowService(loanRepository, mediaRepository,
+        userRepository, dateProvider, new FineStrategyFactory(), new MetricsRegistry(),
+        new CirculationLog(), null, holdService);
+    User other = new User("u2", "bob", "Bob", UserRole.MEMBER, "pw");
+    userRepository.save(other);
+    holdService.placeHold(other.getId(), cd.getId());
+    assertThrows(LibraryException.class, () -> withHolds.renew(cdLoan.getId()));
+
+    ((FakeDateProvider) dateProvider).advanceDays(200);
+    assertThrows(LibraryException.class, () -> borrowService.renew(cdLoan.getId()));
+  }
 
+  @Test
+  void renewAllSkipsIneligibleLoans() {
+    Loan bookLoan = borrowService.borrow(user.getId(), book.getId());
+    Loan cdLoan = borrowService.borrow(user.getId(), cd.getId());
+    borrowService.renew(cdLoan.getId());
+    borrowService.renew(cdLoan.getId());
+
+    assertEquals(List.of(bookLoan), borrowService.renewAll(user.getId()));
+    assertEquals(LocalDate.of(2025, 2, 26), bookLoan.getDueDate());
+  }
+}
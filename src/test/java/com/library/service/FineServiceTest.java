@@ -2,6 +2,7 @@ package com.library.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 
+import com.library.circulation.CirculationLog;
 import com.library.domain.Book;
 import com.library.domain.CD;
 import com.library.domain.Loan;
@@ -9,6 +10,7 @@ import com.library.domain.OverdueReport;
 import com.library.domain.User;
 import com.library.domain.UserRole;
 import com.library.domain.FineStrategyFactory;
+import com.library.metrics.MetricsRegistry;
 import com.library.repository.LoanRepository;
 import com.library.repository.MediaRepository;
 import com.library.repository.UserRepository;
@@ -18,6 +20,14 @@ import com.library.repository.memory.InMemoryUserRepository;
 import com.library.support.FakeDateProvider;
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -29,6 +39,7 @@ class FineServiceTest {
   private FakeDateProvider dateProvider;
   private MediaRepository mediaRepository;
   private UserRepository userRepository;
+  private CirculationLog circulationLog;
 
 
   @BeforeEach
@@ -38,6 +49,7 @@ class FineServiceTest {
 	    this.mediaRepository = new InMemoryMediaRepository();
 	    this.loanRepository = new InMemoryLoanRepository();
 	    this.dateProvider = new FakeDateProvider(LocalDate.of(2025, 2, 1));
+	    this.circulationLog = new CirculationLog();
 
 	    fineService =
 	        new FineService(
@@ -45,7 +57,9 @@ class FineServiceTest {
 	            this.loanRepository,
 	            this.mediaRepository,
 	            this.dateProvider,
-	            new FineStrategyFactory());
+	            new FineStrategyFactory(),
+	            new MetricsRegistry(),
+	            this.circulationLog);
 
 	    user = new User("user1", "bob", "Bob", UserRole.MEMBER, "pw");
 	    userRepository.save(user);
@@ -84,15 +98,21 @@ class FineServiceTest {
         BigDecimal.valueOf(10 * 12L + 20 * 7L), report.getTotalFine()); // 12 & 7 days overdue
   }
 
+  /** Charges a fine the way stored state arrives: on the user, then picked up by the log. */
+  private void storeFine(BigDecimal amount) {
+    user.addFine(amount);
+    circulationLog.reset(loanRepository.findAll(), userRepository.findAll());
+  }
+
   @Test
   void payFineSupportsPartialPayments() {
-    user.addFine(BigDecimal.valueOf(50));
+    storeFine(BigDecimal.valueOf(50));
     BigDecimal balance = fineService.payFine(user.getId(), BigDecimal.valueOf(20));
     assertEquals(BigDecimal.valueOf(30), balance);
   }
   @Test
   void payFineRejectsZeroOrNegativeAmount() {
-      user.addFine(BigDecimal.valueOf(10));
+      storeFine(BigDecimal.valueOf(10));
 
       assertThrows(LibraryException.class,
           () -> fineService.payFine(user.getId(), BigDecimal.ZERO));
@@ -115,7 +135,7 @@ class FineServiceTest {
 
   @Test
   void payFineThrowsWhenPaymentExceedsFine() {
-      user.addFine(BigDecimal.valueOf(30));
+      storeFine(BigDecimal.valueOf(30));
 
       assertThrows(LibraryException.class,
           () -> fineService.payFine(user.getId(), BigDecimal.valueOf(40)));
@@ -123,12 +143,42 @@ class FineServiceTest {
 
   @Test
   void payFineAllowsFullPayment() {
-      user.addFine(BigDecimal.valueOf(25));
+      storeFine(BigDecimal.valueOf(25));
 
       BigDecimal balance = fineService.payFine(user.getId(), BigDecimal.valueOf(25));
 
       assertEquals(BigDecimal.ZERO, balance);
   }
+
+  @Test
+  void concurrentPaymentsCannotOverpay() throws Exception {
+    storeFine(BigDecimal.valueOf(15));
+    int threads = 2;
+    CyclicBarrier start = new CyclicBarrier(threads);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<BigDecimal>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      futures.add(pool.submit(() -> {
+        start.await();
+        return fineService.payFine(user.getId(), BigDecimal.TEN);
+      }));
+    }
+    int rejected = 0;
+    for (Future<BigDecimal> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException ex) {
+        assertInstanceOf(LibraryException.class, ex.getCause());
+        rejected++;
+      }
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+
+    assertEquals(1, rejected);
+    assertEquals(BigDecimal.valueOf(5), user.getFineBalance());
+    assertEquals(BigDecimal.valueOf(5), circulationLog.projections().balance(user.getId()));
+  }
   @Test
   void generateOverdueReportThrowsWhenUserMissing() {
       assertThrows(LibraryException.class,
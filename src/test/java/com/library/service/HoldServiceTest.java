@@ -0,0 +1,181 @@
+package com.library.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.circulation.CirculationLog;
+import com.library.domain.Book;
+import com.library.domain.FineStrategyFactory;
+import com.library.domain.Hold;
+import com.library.domain.HoldStatus;
+import com.library.domain.Loan;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.metrics.MetricsRegistry;
+import com.library.repository.file.FileMediaRepository;
+import com.library.repository.memory.InMemoryCopyRepository;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.support.DayTimerWheel;
+import com.library.support.FakeDateProvider;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HoldServiceTest {
+
+  private FakeDateProvider dateProvider;
+  private InMemoryUserRepository userRepository;
+  private InventoryService inventoryService;
+  private HoldService holdService;
+  private BorrowService borrowService;
+  private Book book;
+  private final List<String> notifications = new ArrayList<>();
+
+  @BeforeEach
+  void setUp() {
+    dateProvider = new FakeDateProvider(LocalDate.of(2025, 1, 1));
+    InMemoryMediaRepository mediaRepository = new InMemoryMediaRepository();
+    userRepository = new InMemoryUserRepository();
+    inventoryService = new InventoryService(new InMemoryCopyRepository(), mediaRepository);
+    holdService = new HoldService(userRepository, mediaRepository, dateProvider, inventoryService);
+    holdService.register((user, message) -> notifications.add(user.getId()));
+    borrowService =
+        new BorrowService(
+            new InMemoryLoanRepository(),
+            mediaRepository,
+            userRepository,
+            dateProvider,
+            new FineStrategyFactory(),
+            new MetricsRegistry(),
+            new CirculationLog(),
+            inventoryService,
+            holdService);
+    for (String id : List.of("u1", "u2", "u3")) {
+      userRepository.save(new User(id, id, id, UserRole.MEMBER, "pw"));
+    }
+    book = new Book("b1", "Refactoring", "Fowler", "1");
+    mediaRepository.save(book);
+    inventoryService.trackExisting(book);
+  }
+
+  @Test
+  void returnedCopyGoesToOldestHoldOnly() {
+    Loan loan = borrowService.borrow("u1", "b1");
+    assertThrows(LibraryException.class, () -> holdService.placeHold("u1", "b2"));
+    holdService.placeHold("u2", "b1");
+    holdService.placeHold("u3", "b1");
+    assertThrows(LibraryException.class, () -> holdService.placeHold("u2", "b1"));
+    assertEquals(2, holdService.waitingCount("b1"));
+
+    borrowService.returnMedia(loan.getId());
+
+    assertEquals(List.of("u2"), notifications);
+    assertFalse(book.isAvailable());
+    assertThrows(LibraryException.class, () -> borrowService.borrow("u3", "b1"));
+    Loan held = borrowService.borrow("u2", "b1");
+    assertEquals(loan.getCopyBarcode(), held.getCopyBarcode());
+    assertEquals(1, holdService.waitingCount("b1"));
+  }
+
+  @Test
+  void unclaimedHoldExpiresAndPassesCopyOn() {
+    Loan loan = borrowService.borrow("u1", "b1");
+    Hold first = holdService.placeHold("u2", "b1");
+    Hold second = holdService.placeHold("u3", "b1");
+    borrowService.returnMedia(loan.getId());
+    assertEquals(HoldStatus.READY, first.getStatus());
+
+    dateProvider.advanceDays(HoldService.PICKUP_DAYS);
+    assertEquals(0, holdService.expireUnclaimedHolds());
+    dateProvider.advanceDays(1);
+    assertEquals(1, holdService.expireUnclaimedHolds());
+
+    assertEquals(HoldStatus.EXPIRED, first.getStatus());
+    assertEquals(HoldStatus.READY, second.getStatus());
+
+    holdService.cancelHold(second.getId());
+    assertTrue(book.isAvailable());
+    assertTrue(inventoryService.anyAvailable("b1"));
+  }
+
+  @Test
+  void copyPassedBackToTheShelfIsSaved(@TempDir Path dir) {
+    // File-backed, so every lookup parses a fresh copy and unsaved changes are lost.
+    FileMediaRepository files = new FileMediaRepository(dir.resolve("books.txt"));
+    files.save(new Book("b9", "Clean Code", "Martin", "9"));
+    HoldService holds = new HoldService(userRepository, files, dateProvider, null);
+    BorrowService desk = new BorrowService(new InMemoryLoanRepository(), files, userRepository,
+        dateProvider, new FineStrategyFactory(), new MetricsRegistry(), new CirculationLog(),
+        null, holds);
+    Loan loan = desk.borrow("u1", "b9");
+    Hold hold = holds.placeHold("u2", "b9");
+    desk.returnMedia(loan.getId());
+    assertEquals(HoldStatus.READY, hold.getStatus());
+    assertFalse(files.findById("b9").orElseThrow().isAvailable());
+
+    holds.cancelHold(hold.getId());
+
+    assertTrue(files.findById("b9").orElseThrow().isAvailable());
+  }
+
+  @Test
+  void concurrentHoldsAreServedInPlacementOrderPerThread() throws Exception {
+    borrowService.borrow("u1", "b1");
+    int threads = 4;
+    int perThread = 2_500;
+    for (int t = 0; t < threads; t++) {
+      for (int i = 0; i < perThread; i++) {
+        userRepository.save(new User("t" + t + "-" + i, "x", "x", UserRole.MEMBER, "pw"));
+      }
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      int thread = t;
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < perThread; i++) {
+          holdService.placeHold("t" + thread + "-" + i, "b1");
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(threads * perThread, holdService.waitingCount("b1"));
+
+    int[] nextExpected = new int[threads];
+    for (int i = 0; i < threads * perThread; i++) {
+      assertTrue(holdService.allocate("b1", null));
+    }
+    for (String userId : notifications) {
+      int thread = userId.charAt(1) - '0';
+      assertEquals("t" + thread + "-" + nextExpected[thread]++, userId);
+    }
+    assertFalse(holdService.allocate("b1", null));
+  }
+
+  @Test
+  void timerWheelFiresItemsBeyondOneRevolution() {
+    LocalDate start = LocalDate.of(2025, 1, 1);
+    DayTimerWheel<String> wheel = new DayTimerWheel<>(8, start);
+    wheel.schedule(start.plusDays(2), "soon");
+    wheel.schedule(start.plusDays(10), "later");
+
+    assertEquals(List.of(), wheel.advanceTo(start.plusDays(1)));
+    assertEquals(List.of("soon"), wheel.advanceTo(start.plusDays(2)));
+    assertEquals(List.of(), wheel.advanceTo(start.plusDays(9)));
+    assertEquals(List.of("later"), wheel.advanceTo(start.plusDays(40)));
+    assertEquals(0, wheel.size());
+  }
+}
@@ -0,0 +1,146 @@
+package com.library.service;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.circulation.CirculationLog;
+import com.library.domain.Book;
+import com.library.domain.Copy;
+import com.library.domain.CopyAvailability;
+import com.library.domain.FineStrategyFactory;
+import com.library.domain.Loan;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.metrics.MetricsRegistry;
+import com.library.repository.memory.InMemoryCopyRepository;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.support.FakeDateProvider;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class InventoryServiceTest {
+
+  private InMemoryMediaRepository mediaRepository;
+  private InMemoryLoanRepository loanRepository;
+  private InventoryService inventoryService;
+  private BorrowService borrowService;
+  private Book book;
+
+  @BeforeEach
+  void setUp() {
+    mediaRepository = new InMemoryMediaRepository();
+    InMemoryUserRepository userRepository = new InMemoryUserRepository();
+    loanRepository = new InMemoryLoanRepository();
+    inventoryService = new InventoryService(new InMemoryCopyRepository(), mediaRepository);
+    borrowService =
+        new BorrowService(
+            loanRepository,
+            mediaRepository,
+            userRepository,
+            new FakeDateProvider(LocalDate.of(2025, 1, 1)),
+            new FineStrategyFactory(),
+            new MetricsRegistry(),
+            new CirculationLog(),
+            inventoryService,
+            null);
+    userRepository.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    userRepository.save(new User("u2", "bob", "Bob", UserRole.MEMBER, "pw"));
+    book = new Book("b1", "Refactoring", "Fowler", "1");
+    mediaRepository.save(book);
+  }
+
+  @Test
+  void trackExistingCreatesOneCopyPerUnitOfQuantity() {
+    book.setQuantity(3);
+    inventoryService.trackExisting(book);
+
+    List<Copy> copies = inventoryService.copiesOf("b1");
+    assertEquals(List.of("b1-001", "b1-002", "b1-003"),
+        copies.stream().map(Copy::getBarcode).toList());
+    assertEquals(3, inventoryService.availableCopies("b1"));
+    assertEquals(3, book.getQuantity());
+  }
+
+  @Test
+  void borrowByBarcodeReservesThatCopyUntilReturned() {
+    inventoryService.addCopies("b1", 1);
+    assertEquals(2, book.getQuantity());
+    inventoryService.trackExisting(book); // already tracked, no-op
+
+    Loan loan = borrowService.borrowByBarcode("u1", "b1-002");
+    assertEquals("b1-002", loan.getCopyBarcode());
+    Copy second = inventoryService.findByBarcode("b1-002").orElseThrow();
+    assertFalse(inventoryService.isAvailable(second));
+    assertThrows(LibraryException.class, () -> borrowService.borrowByBarcode("u2", "b1-002"));
+
+    Loan other = borrowService.borrow("u2", "b1");
+    assertEquals("b1-001", other.getCopyBarcode());
+    assertFalse(inventoryService.anyAvailable("b1"));
+
+    borrowService.returnMedia(loan.getId());
+    assertTrue(inventoryService.isAvailable(second));
+    assertEquals(1, book.getQuantity());
+  }
+
+  @Test
+  void trackExistingRegistersCopiesOutOnOpenLoans() {
+    // Restored state: one copy on the shelf, copies 2 and 4 on loan, copy 3 set aside.
+    inventoryService.trackExisting(book, List.of("b1-002", "b1-004", "other-001"));
+
+    assertEquals(4, inventoryService.copiesOf("b1").size());
+    assertEquals(1, inventoryService.availableCopies("b1"));
+    assertTrue(inventoryService.isAvailable(inventoryService.findByBarcode("b1-001").orElseThrow()));
+    assertFalse(inventoryService.isAvailable(inventoryService.findByBarcode("b1-002").orElseThrow()));
+    assertFalse(inventoryService.isAvailable(inventoryService.findByBarcode("b1-003").orElseThrow()));
+
+    Loan restored = Loan.restore("l1", "u1", "b1", "b1-002",
+        LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 29), 0, null);
+    loanRepository.save(restored);
+    assertThrows(LibraryException.class, () -> borrowService.borrowByBarcode("u2", "b1-002"));
+    borrowService.returnMedia("l1");
+    assertTrue(inventoryService.isAvailable(inventoryService.findByBarcode("b1-002").orElseThrow()));
+    assertEquals(2, book.getQuantity());
+  }
+
+  @Test
+  void returnOfUnknownCopyLeavesLoanOpen() {
+    inventoryService.trackExisting(book);
+    Loan restored = Loan.restore("l1", "u1", "b1", "b1-009",
+        LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 29), 0, null);
+    loanRepository.save(restored);
+
+    assertThrows(LibraryException.class, () -> borrowService.returnMedia("l1"));
+    assertFalse(restored.isReturned());
+    assertEquals(1, book.getQuantity());
+    assertEquals(1, inventoryService.availableCopies("b1"));
+  }
+
+  @Test
+  void unknownBarcodeIsRejected() {
+    assertThrows(LibraryException.class, () -> borrowService.borrowByBarcode("u1", "nope"));
+  }
+
+  @Test
+  void availabilityBitmapHandlesManyCopies() {
+    CopyAvailability availability = new CopyAvailability();
+    for (int i = 0; i < 5_000; i++) {
+      availability.addCopy();
+    }
+    for (int n = 1; n <= 4_999; n++) {
+      assertTrue(availability.reserve(n));
+    }
+    assertFalse(availability.reserve(1));
+    assertEquals(5_000, availability.reserveAny());
+    assertEquals(0, availability.reserveAny());
+
+    availability.release(4_097);
+    availability.release(70);
+    assertTrue(availability.isAvailable(70));
+    assertEquals(70, availability.reserveAny());
+    assertEquals(4_097, availability.reserveAny());
+    assertEquals(0, availability.availableCopies());
+  }
+}
@@ -0,0 +1,227 @@
+package com.library.snapshot;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.circulation.CirculationLog;
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.FineStrategyFactory;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.metrics.MetricsRegistry;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.service.BorrowService;
+import com.library.support.FakeDateProvider;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class LibrarySnapshotsTest {
+
+  private final InMemoryMediaRepository media = new InMemoryMediaRepository();
+  private final InMemoryUserRepository users = new InMemoryUserRepository();
+  private final InMemoryLoanRepository loans = new InMemoryLoanRepository();
+  private final SnapshotGate gate = new SnapshotGate();
+  private final LibrarySnapshots snapshots = new LibrarySnapshots(media, users, loans, gate);
+
+  @Test
+  void restoresEveryRecordFromMultipleChunks() throws Exception {
+    for (int i = 0; i < LibrarySnapshots.CHUNK_RECORDS * 2 + 10; i++) {
+      Media item = i % 3 == 0
+          ? new CD("c" + i, "Album " + i, "Band " + i)
+          : new Book("b" + i, "Title " + i, "Author " + i, "978" + i);
+      item.setQuantity(i % 4);
+      media.save(item);
+    }
+    User alice = new User("u1", "alice", "Alice", UserRole.MEMBER, "pw");
+    alice.addFine(new BigDecimal("12.50"));
+    alice.addLoan("l1");
+    users.save(alice);
+    loans.save(Loan.restore("l1", "u1", "b1", "BC-1",
+        LocalDate.of(2025, 1, 1), LocalDate.of(2025, 2, 26), 1, null));
+    loans.save(Loan.restore("l2", "u1", "c3", null,
+        LocalDate.of(2024, 12, 1), LocalDate.of(2024, 12, 8), 0, LocalDate.of(2024, 12, 9)));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    LibrarySnapshots.SnapshotInfo written = snapshots.export(out);
+    assertEquals(new LibrarySnapshots.SnapshotInfo(media.findAll().size(), 1, 2, 5, out.size()),
+        written);
+
+    InMemoryMediaRepository restoredMedia = new InMemoryMediaRepository();
+    InMemoryUserRepository restoredUsers = new InMemoryUserRepository();
+    InMemoryLoanRepository restoredLoans = new InMemoryLoanRepository();
+    CirculationLog restoredLog = new CirculationLog();
+    LibrarySnapshots.SnapshotInfo read =
+        new LibrarySnapshots(restoredMedia, restoredUsers, restoredLoans, new SnapshotGate(),
+            restoredLog, new MetricsRegistry())
+            .restore(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(written, read);
+    Map<String, Media> byId = restoredMedia.findAll().stream()
+        .collect(Collectors.toMap(Media::getId, Function.identity()));
+    for (Media original : media.findAll()) {
+      Media copy = byId.get(original.getId());
+      assertEquals(original.getClass(), copy.getClass());
+      assertEquals(original.getTitle(), copy.getTitle());
+      assertEquals(original.getQuantity(), copy.getQuantity());
+      assertEquals(original.isAvailable(), copy.isAvailable());
+    }
+    assertEquals("9781", ((Book) byId.get("b1")).getIsbn());
+    User restoredAlice = restoredUsers.findByUsername("alice").orElseThrow();
+    assertEquals(0, new BigDecimal("12.50").compareTo(restoredAlice.getFineBalance()));
+    assertEquals(alice.getActiveLoanIds(), restoredAlice.getActiveLoanIds());
+    assertTrue(restoredAlice.passwordMatches("pw"));
+    Loan open = restoredLoans.findById("l1").orElseThrow();
+    assertEquals("BC-1", open.getCopyBarcode());
+    assertEquals(1, open.getRenewalCount());
+    assertFalse(open.isReturned());
+    assertEquals(List.of("l2"),
+        restoredLoans.findHistoryByUser("u1").stream().map(Loan::getId).toList());
+    // The circulation projections start over from the restored records.
+    assertEquals(Set.of("l1"), restoredLog.projections().activeLoans("u1"));
+    assertEquals(1, restoredLog.copiesOnLoan("b1"));
+    assertEquals(0, new BigDecimal("12.50").compareTo(restoredLog.projections().balance("u1")));
+  }
+
+  @Test
+  void damagedChunkIsRejectedBeforeAnythingIsSaved() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      media.save(new Book("b" + i, "Title " + i, "Author", "978" + i));
+    }
+    users.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    snapshots.export(out);
+    byte[] bytes = out.toByteArray();
+    // Inside the first chunk's compressed bytes, past the 8-byte header and 17-byte frame header.
+    bytes[8 + 17 + 5] ^= 0x40;
+
+    InMemoryMediaRepository restoredMedia = new InMemoryMediaRepository();
+    InMemoryUserRepository restoredUsers = new InMemoryUserRepository();
+    LibrarySnapshots target = new LibrarySnapshots(
+        restoredMedia, restoredUsers, new InMemoryLoanRepository(), new SnapshotGate());
+
+    IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+        () -> target.restore(new ByteArrayInputStream(bytes)));
+    assertEquals("Snapshot chunk 1 is damaged", ex.getMessage());
+    assertTrue(restoredMedia.findAll().isEmpty());
+    assertTrue(restoredUsers.findAll().isEmpty());
+  }
+
+  @Test
+  void damagedChunkHeaderIsRejected() throws Exception {
+    for (int i = 0; i < 100; i++) {
+      media.save(new Book("b" + i, "Title " + i, "Author", "978" + i));
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    snapshots.export(out);
+    // First frame header after the 8-byte snapshot header: section, records, rawLength, ...
+    byte[] fewerRecords = out.toByteArray();
+    fewerRecords[8 + 4] ^= 0x01;
+    byte[] hugeRawLength = out.toByteArray();
+    hugeRawLength[8 + 5] = 0x7F;
+
+    for (byte[] bytes : List.of(fewerRecords, hugeRawLength)) {
+      IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+          () -> LibrarySnapshots.read(new ByteArrayInputStream(bytes)));
+      assertEquals("Snapshot chunk 1 is damaged", ex.getMessage());
+    }
+  }
+
+  @Test
+  void changesDuringAnExportAreLeftOut() throws Exception {
+    users.save(new User("u1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    media.save(new Book("b1", "Dune", "Herbert", "9780441172719"));
+    media.save(new Book("b2", "Emma", "Austen", "9780141439587"));
+    BorrowService borrowService = new BorrowService(
+        loans, media, users, new FakeDateProvider(LocalDate.of(2025, 1, 1)),
+        new FineStrategyFactory(), new MetricsRegistry(), new CirculationLog(), null, null, gate);
+    String earlier = borrowService.borrow("u1", "b2").getId();
+    // Borrows b1 and returns b2 after the media section is written but before users are read.
+    InMemoryUserRepository borrowingUsers = new InMemoryUserRepository() {
+      @Override
+      public Collection<User> findAll() {
+        borrowService.borrow("u1", "b1");
+        borrowService.returnMedia(earlier);
+        return users.findAll();
+      }
+    };
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new LibrarySnapshots(media, borrowingUsers, loans, gate).export(out);
+    LibrarySnapshots.Contents copy =
+        LibrarySnapshots.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(List.of(earlier), copy.loans().stream().map(Loan::getId).toList());
+    assertFalse(copy.loans().get(0).isReturned());
+    assertEquals(Set.of(earlier), copy.users().get(0).getActiveLoanIds());
+    assertEquals(2, loans.findAll().size(), "the live state has both changes");
+  }
+
+  @Test
+  void snapshotsTakenDuringCirculationAreConsistent() throws Exception {
+    BorrowService borrowService = new BorrowService(
+        loans, media, users, new FakeDateProvider(LocalDate.of(2025, 1, 1)),
+        new FineStrategyFactory(), new MetricsRegistry(), new CirculationLog(), null, null, gate);
+    int workers = 4;
+    for (int i = 0; i < workers; i++) {
+      users.save(new User("u" + i, "user" + i, "User " + i, UserRole.MEMBER, "pw"));
+      media.save(new Book("b" + i, "Title " + i, "Author", "978" + i));
+    }
+
+    AtomicBoolean stop = new AtomicBoolean();
+    ExecutorService pool = Executors.newFixedThreadPool(workers);
+    List<Future<?>> running = new ArrayList<>();
+    for (int i = 0; i < workers; i++) {
+      String userId = "u" + i;
+      String mediaId = "b" + i;
+      running.add(pool.submit(() -> {
+        for (int n = 0; n < 1_000 && !stop.get(); n++) {
+          borrowService.returnMedia(borrowService.borrow(userId, mediaId).getId());
+        }
+      }));
+    }
+    try {
+      for (int round = 0; round < 20; round++) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        snapshots.export(out);
+        InMemoryMediaRepository copyMedia = new InMemoryMediaRepository();
+        InMemoryUserRepository copyUsers = new InMemoryUserRepository();
+        InMemoryLoanRepository copyLoans = new InMemoryLoanRepository();
+        new LibrarySnapshots(copyMedia, copyUsers, copyLoans, new SnapshotGate())
+            .restore(new ByteArrayInputStream(out.toByteArray()));
+
+        for (int i = 0; i < workers; i++) {
+          boolean onLoan = copyLoans.findActiveByMedia("b" + i).isPresent();
+          User user = copyUsers.findById("u" + i).orElseThrow();
+          assertEquals(onLoan ? 0 : 1, copyMedia.findById("b" + i).orElseThrow().getQuantity());
+          assertEquals(onLoan ? 1 : 0, user.getActiveLoanIds().size());
+        }
+      }
+    } finally {
+      stop.set(true);
+      pool.shutdown();
+      assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+    }
+    for (Future<?> worker : running) {
+      worker.get();
+    }
+  }
+}
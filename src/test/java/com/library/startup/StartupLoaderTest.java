@@ -0,0 +1,175 @@
+package com.library.startup;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Book;
+import com.library.domain.CD;
+import com.library.domain.Loan;
+import com.library.domain.Media;
+import com.library.domain.User;
+import com.library.domain.UserRole;
+import com.library.repository.MediaSort;
+import com.library.repository.archive.LoanArchive;
+import com.library.repository.memory.InMemoryLoanRepository;
+import com.library.repository.memory.InMemoryMediaRepository;
+import com.library.repository.memory.InMemoryUserRepository;
+import com.library.search.Facet;
+import com.library.snapshot.LibrarySnapshots;
+import com.library.snapshot.SnapshotGate;
+import com.library.support.FakeDateProvider;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StartupLoaderTest {
+
+  private final ForkJoinPool pool = new ForkJoinPool(4);
+  private final InMemoryMediaRepository media = new InMemoryMediaRepository();
+  private final InMemoryUserRepository users = new InMemoryUserRepository();
+  private final InMemoryLoanRepository loans = new InMemoryLoanRepository();
+
+  @AfterEach
+  void shutDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  void loadsTextFilesInParallelChunks(@TempDir Path dir) throws Exception {
+    int books = 30_000;
+    List<String> lines = new ArrayList<>(List.of("# id;title;author;isbn;quantity", ""));
+    for (int i = 0; i < books; i++) {
+      lines.add(String.format("B%05d;Title %d;Author %d;978%d;%d", i, i, i % 100, i, i % 3));
+    }
+    lines.add("broken line");
+    Files.write(dir.resolve("books.txt"), lines, StandardCharsets.UTF_8);
+    Files.write(dir.resolve("cds.txt"), List.of("C1;Thriller;Michael Jackson;2"));
+    Files.write(dir.resolve("users.txt"),
+        List.of("U1;alice;Alice;MEMBER;pw;2.50", "U2;bob;Bob;ADMIN;secret;0"));
+
+    try (FileChannel channel = FileChannel.open(dir.resolve("books.txt"), StandardOpenOption.READ)) {
+      long[] bounds = ChunkedLines.boundaries(channel, pool.getParallelism());
+      assertTrue(bounds.length > 2, "expected several chunks");
+      ByteBuffer previous = ByteBuffer.allocate(1);
+      for (int i = 1; i < bounds.length - 1; i++) {
+        previous.clear();
+        channel.read(previous, bounds[i] - 1);
+        assertEquals('\n', previous.get(0));
+      }
+    }
+
+    StartupLoader.Result result =
+        new StartupLoader(pool).load(dir, media, users, loans);
+
+    assertEquals(new StartupLoader.Result(books + 1, 2, 0, result.searchReady()), result);
+    assertEquals("Title 12345", media.findById("B12345").orElseThrow().getTitle());
+    assertEquals(2, media.findById("C1").orElseThrow().getQuantity());
+    assertEquals(books + 1, media.findAll().size());
+    assertTrue(users.findByUsername("alice").orElseThrow().passwordMatches("pw"));
+
+    result.searchReady().get(30, TimeUnit.SECONDS);
+    assertTrue(media.isSearchReady());
+    assertEquals(List.of("B12345"),
+        media.search("title 12345").stream().map(Media::getId).toList());
+    assertEquals("B12345", media.searchFuzzy("Titl 12345", 2, 1).get(0).getId());
+    assertEquals(List.of("B00000", "B00001"), media.searchPage(null, null, 2, MediaSort.ID)
+        .items().stream().map(Media::getId).toList());
+    assertEquals(books / 100, media.countByFacets(Map.of(Facet.CREATOR, "Author 7")));
+  }
+
+  @Test
+  void itemsCanBeFoundByIdBeforeSearchIsReady() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Book slow = new Book("B1", "Slow Book", "Author", "9781") {
+      @Override
+      public String getAuthor() {
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+        return super.getAuthor();
+      }
+    };
+    List<Media> items = List.of(slow, new CD("C1", "Thriller", "Michael Jackson"));
+
+    CompletableFuture<Void> ready = media.load(items, pool);
+
+    assertSame(slow, media.findById("B1").orElseThrow());
+    assertEquals(2, media.findAll().size());
+    assertFalse(media.isSearchReady());
+    CompletableFuture<List<Media>> search =
+        CompletableFuture.supplyAsync(() -> media.search("slow"));
+    Thread.sleep(50);
+    assertFalse(search.isDone(), "search must wait for the indexes");
+
+    release.countDown();
+    ready.get(10, TimeUnit.SECONDS);
+    assertTrue(media.isSearchReady());
+    assertEquals(List.of(slow), search.get(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void snapshotInDataDirectoryIsPreferred(@TempDir Path dir) throws Exception {
+    InMemoryMediaRepository sourceMedia = new InMemoryMediaRepository();
+    InMemoryUserRepository sourceUsers = new InMemoryUserRepository();
+    InMemoryLoanRepository sourceLoans = new InMemoryLoanRepository();
+    sourceMedia.save(new Book("B1", "Clean Code", "Robert C. Martin", "9780132350884"));
+    sourceUsers.save(new User("U1", "alice", "Alice", UserRole.MEMBER, "pw"));
+    sourceLoans.save(Loan.restore("L1", "U1", "B1", null,
+        LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 8), 0, LocalDate.of(2025, 1, 5)));
+    try (OutputStream out = Files.newOutputStream(dir.resolve(StartupLoader.SNAPSHOT_FILE))) {
+      new LibrarySnapshots(sourceMedia, sourceUsers, sourceLoans, new SnapshotGate()).export(out);
+    }
+    Files.write(dir.resolve("books.txt"), List.of("B9;Ignored;Nobody;1;1"));
+
+    StartupLoader.Result result = new StartupLoader(pool).load(dir, media, users, loans);
+    result.searchReady().get(10, TimeUnit.SECONDS);
+
+    assertEquals(1, result.media());
+    assertEquals(1, result.loans());
+    assertTrue(media.findById("B9").isEmpty());
+    assertEquals("Clean Code", media.search("clean").get(0).getTitle());
+    assertEquals(List.of("L1"),
+        loans.findHistoryByUser("U1").stream().map(Loan::getId).toList());
+  }
+
+  @Test
+  void preloadLeavesArchivedLoansInTheArchive(@TempDir Path dir) throws Exception {
+    Loan returned = Loan.restore("L1", "U1", "B1", null,
+        LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 8), 0, LocalDate.of(2025, 1, 5));
+    InMemoryLoanRepository sourceLoans = new InMemoryLoanRepository();
+    sourceLoans.save(returned);
+    try (OutputStream out = Files.newOutputStream(dir.resolve(StartupLoader.SNAPSHOT_FILE))) {
+      new LibrarySnapshots(new InMemoryMediaRepository(), new InMemoryUserRepository(),
+          sourceLoans, new SnapshotGate()).export(out);
+    }
+    // The loan was archived after the snapshot was taken.
+    loans.setArchive(new LoanArchive(dir.resolve("archive")),
+        new FakeDateProvider(LocalDate.of(2025, 3, 1)), 30);
+    loans.save(returned);
+    assertEquals(1, loans.archiveDue());
+
+    new StartupLoader(pool).load(dir, media, users, loans).searchReady()
+        .get(10, TimeUnit.SECONDS);
+
+    assertEquals(List.of("L1"),
+        loans.findHistoryByUser("U1").stream().map(Loan::getId).toList());
+    assertEquals(1, loans.findAll().size());
+    assertTrue(loans.findAllUnarchived().isEmpty());
+  }
+}
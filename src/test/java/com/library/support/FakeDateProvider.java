@@ -3,7 +3,8 @@ package com.library.support;
 import java.time.LocalDate;
 
 public class FakeDateProvider implements DateProvider {
-  private LocalDate date;
+  // volatile so simulated clocks can be advanced while worker threads read it
+  private volatile LocalDate date;
 
   public FakeDateProvider(LocalDate initial) {
     this.date = initial;
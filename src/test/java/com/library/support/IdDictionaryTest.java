@@ -0,0 +1,24 @@
+package com.library.support;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class IdDictionaryTest {
+
+  @Test
+  void dictionaryCodesAreDenseAndStable() {
+    IdDictionary dictionary = new IdDictionary();
+    DenseIndex<String> index = new DenseIndex<>();
+    for (int i = 0; i < 1_000; i++) {
+      int code = dictionary.encode("id-" + i);
+      assertEquals(i, code);
+      index.computeIfAbsent(code, c -> "value-" + c);
+    }
+    assertEquals(42, dictionary.encode("id-42"));
+    assertEquals("id-999", dictionary.decode(999));
+    assertEquals(IdDictionary.ABSENT, dictionary.lookup("unknown"));
+    assertNull(index.get(IdDictionary.ABSENT));
+    assertEquals("value-500", index.get(dictionary.lookup("id-500")));
+  }
+}
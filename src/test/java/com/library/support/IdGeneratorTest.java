@@ -0,0 +1,55 @@
+package com.library.support;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class IdGeneratorTest {
+
+  @Test
+  void idsAreTimeOrderedVersion7Uuids() {
+    long before = System.currentTimeMillis();
+    List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 10_000; i++) {
+      ids.add(IdGenerator.newId());
+    }
+
+    List<String> sorted = new ArrayList<>(ids);
+    sorted.sort(null);
+    assertEquals(ids, sorted);
+    UUID first = UUID.fromString(ids.get(0));
+    assertEquals(7, first.version());
+    assertEquals(2, first.variant());
+    assertEquals(first.toString(), ids.get(0));
+    assertTrue(IdGenerator.timestampMillis(ids.get(0)) >= before);
+    assertThrows(IllegalArgumentException.class,
+        () -> IdGenerator.timestampMillis(UUID.randomUUID().toString()));
+  }
+
+  @Test
+  void idsAreUniqueAcrossThreads() throws Exception {
+    Set<String> ids = ConcurrentHashMap.newKeySet();
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    List<Future<?>> futures = new ArrayList<>();
+    for (int t = 0; t < 4; t++) {
+      futures.add(pool.submit(() -> {
+        for (int i = 0; i < 25_000; i++) {
+          ids.add(IdGenerator.newId());
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    pool.shutdown();
+    assertEquals(100_000, ids.size());
+  }
+}
@@ -0,0 +1,101 @@
+package com.library.system;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.library.domain.Media;
+import com.library.metrics.MetricsRegistry;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LibraryEnvironmentTest {
+
+  @Test
+  void configReadsFileAndLetsSystemPropertiesOverride(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("library.properties");
+    Files.writeString(file, String.join("\n",
+        "library.storage=memory",
+        "library.cache.enabled=true",
+        "library.cache.maxEntries=500",
+        "library.gui.threads=2"));
+    System.setProperty(LibraryConfig.CONFIG_FILE_PROPERTY, file.toString());
+    System.setProperty(LibraryConfig.CACHE_MAX_ENTRIES_PROPERTY, "750");
+    LibraryConfig config;
+    try {
+      config = LibraryConfig.load();
+    } finally {
+      System.clearProperty(LibraryConfig.CONFIG_FILE_PROPERTY);
+      System.clearProperty(LibraryConfig.CACHE_MAX_ENTRIES_PROPERTY);
+    }
+
+    assertEquals(LibraryConfig.Storage.MEMORY, config.storage());
+    assertTrue(config.cacheEnabled());
+    assertEquals(750, config.cacheMaxEntries());
+    assertEquals(Duration.ofSeconds(300), config.cacheTtl());
+    assertEquals(2, config.guiThreads());
+    assertEquals(Paths.get("data"), config.dataDirectory());
+    assertFalse(config.repositoryTiming());
+  }
+
+  @Test
+  void invalidSettingNamesTheKey() {
+    Properties properties = new Properties();
+    properties.setProperty("library.gui.threads", "many");
+
+    IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+        () -> LibraryConfig.fromProperties(properties));
+    assertEquals("Invalid value for library.gui.threads: 'many'", ex.getMessage());
+  }
+
+  @Test
+  void servicesAreBuiltOnFirstUse() {
+    Properties properties = new Properties();
+    properties.setProperty("library.storage", "memory");
+    properties.setProperty("library.repository.timing", "true");
+    LibraryEnvironment environment =
+        LibraryEnvironment.bootstrap(LibraryConfig.fromProperties(properties));
+    MetricsRegistry metrics = environment.getMetricsRegistry();
+
+    assertEquals(1, metrics.timer("startup.bootstrap").count());
+    assertTrue(environment.getUserRepository().findByUsername("sally").isPresent());
+    assertTrue(environment.getUserRepository().findByUsername("tala").isPresent());
+    assertEquals(0, metrics.timer("startup.media").count());
+    assertEquals(0, metrics.timer("repository.media.findAll").count(),
+        "the catalog is not read before it is needed");
+
+    assertSame(environment.getBorrowService(), environment.getBorrowService());
+    assertEquals(1, metrics.timer("startup.borrow").count());
+    assertEquals(1, metrics.timer("startup.media").count());
+    assertEquals(1, metrics.timer("startup.inventory").count());
+    assertEquals(0, metrics.timer("startup.catalog").count());
+    assertEquals(4, environment.getMediaRepository().findAll().size(), "demo titles seeded");
+  }
+
+  @Test
+  void memoryStorageCanBePreloadedFromDataDirectory(@TempDir Path dir) throws Exception {
+    Files.write(dir.resolve("books.txt"), List.of("B7;Dune;Frank Herbert;9780441013593;2"));
+    Files.write(dir.resolve("users.txt"), List.of("U1;alice;Alice;MEMBER;pw;0"));
+    Properties properties = new Properties();
+    properties.setProperty("library.storage", "memory");
+    properties.setProperty("library.dataDir", dir.toString());
+    properties.setProperty("library.startup.preload", "true");
+    properties.setProperty("library.startup.threads", "2");
+
+    LibraryEnvironment environment =
+        LibraryEnvironment.bootstrap(LibraryConfig.fromProperties(properties));
+
+    assertTrue(environment.getUserRepository().findByUsername("alice").isPresent());
+    assertTrue(environment.getUserRepository().findByUsername("sally").isPresent());
+    environment.getSearchReadiness().get(10, TimeUnit.SECONDS);
+    assertEquals(List.of("B7"), environment.getMediaRepository().search("dune").stream()
+        .map(Media::getId).toList());
+    assertEquals(1, environment.getMetricsRegistry().timer("startup.load.read").count());
+  }
+}